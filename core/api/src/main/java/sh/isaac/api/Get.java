@@ -63,7 +63,6 @@ import javafx.concurrent.Task;
 import org.apache.mahout.math.map.OpenIntObjectHashMap;
 import sh.isaac.api.alert.AlertEvent;
 import sh.isaac.api.bootstrap.TermAux;
-import sh.isaac.api.chronicle.LatestVersion;
 import sh.isaac.api.collections.IntSet;
 import sh.isaac.api.commit.ChangeSetWriterService;
 import sh.isaac.api.commit.CommitService;
@@ -76,7 +75,6 @@ import sh.isaac.api.component.concept.ConceptSnapshotService;
 import sh.isaac.api.component.concept.ConceptSpecification;
 import sh.isaac.api.component.semantic.SemanticBuilderService;
 import sh.isaac.api.component.semantic.SemanticChronology;
-import sh.isaac.api.component.semantic.version.DescriptionVersion;
 import sh.isaac.api.coordinate.CoordinateFactory;
 import sh.isaac.api.coordinate.ManifoldCoordinate;
 import sh.isaac.api.coordinate.StampCoordinate;
@@ -389,12 +387,11 @@ public class Get
      if (conceptNid >= 0) {
          throw new IndexOutOfBoundsException("Component identifiers must be negative. Found: " + conceptNid);
       }
-      final LatestVersion<DescriptionVersion> descriptionOptional =
-         defaultConceptSnapshotService().getDescriptionOptional(conceptNid);
+      final Optional<String> descriptionText =
+         defaultConceptSnapshotService().getDescriptionText(conceptNid);
 
-      if (descriptionOptional.isPresent()) {
-         return descriptionOptional.get()
-                                   .getText();
+      if (descriptionText.isPresent()) {
+         return descriptionText.get();
       }
 
       return "No desc for: " + conceptNid + " " + Get.identifierService.getUuidPrimoridalStringForNid(conceptNid);
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api;
+
+import sh.isaac.api.util.NaturalOrder;
+
+/**
+ * A compact summary of a child in a taxonomy, with what a tree needs to
+ * display the child without loading its chronology, descriptions, or logical
+ * definition.
+ *
+ * @author kec
+ */
+public final class TaxonomyChildSummary implements Comparable<TaxonomyChildSummary> {
+
+    private final int nid;
+    private final int typeNid;
+    private final String text;
+    private final boolean defined;
+    private final int parentCount;
+    private final boolean leaf;
+
+    /**
+     * @param nid the nid of the child concept
+     * @param typeNid the nid of the type of the link from the parent to the child
+     * @param text the description text of the child
+     * @param defined true if the child is sufficiently defined
+     * @param parentCount the number of taxonomy parents of the child
+     * @param leaf true if the child has no children
+     */
+    public TaxonomyChildSummary(int nid, int typeNid, String text, boolean defined, int parentCount, boolean leaf) {
+        this.nid = nid;
+        this.typeNid = typeNid;
+        this.text = text;
+        this.defined = defined;
+        this.parentCount = parentCount;
+        this.leaf = leaf;
+    }
+
+    /**
+     * @return the nid of the child concept
+     */
+    public int getNid() {
+        return nid;
+    }
+
+    /**
+     * @return the nid of the type of the link from the parent to the child
+     */
+    public int getTypeNid() {
+        return typeNid;
+    }
+
+    /**
+     * @return the description text of the child
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return true if the child is sufficiently defined
+     */
+    public boolean isDefined() {
+        return defined;
+    }
+
+    /**
+     * @return the number of taxonomy parents of the child
+     */
+    public int getParentCount() {
+        return parentCount;
+    }
+
+    /**
+     * @return true if the child has more than one taxonomy parent
+     */
+    public boolean isMultiParent() {
+        return parentCount > 1;
+    }
+
+    /**
+     * @return true if the child has no children
+     */
+    public boolean isLeaf() {
+        return leaf;
+    }
+
+    /**
+     * @return the key siblings are sorted by, compared in {@link NaturalOrder}
+     */
+    public String getSortKey() {
+        return text;
+    }
+
+    @Override
+    public int compareTo(TaxonomyChildSummary o) {
+        int comparison = NaturalOrder.compareStrings(getSortKey(), o.getSortKey());
+        if (comparison != 0) {
+            return comparison;
+        }
+        return Integer.compare(nid, o.nid);
+    }
+
+    @Override
+    public String toString() {
+        return "TaxonomyChildSummary{" + "nid=" + nid + ", text=" + text + ", defined=" + defined
+                + ", parentCount=" + parentCount + ", leaf=" + leaf + '}';
+    }
+}
@@ -45,7 +45,11 @@ package sh.isaac.api;
 //~--- non-JDK imports --------------------------------------------------------
 
 import java.util.Collection;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
 import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.component.concept.ConceptSnapshotService;
 import sh.isaac.api.coordinate.ManifoldCoordinate;
 import sh.isaac.api.tree.Tree;
 
@@ -128,6 +132,55 @@ public interface TaxonomySnapshot {
     */
    Collection<TaxonomyLink> getTaxonomyChildLinks(int childConceptNid);
    
+   /**
+    * Checks if a concept is sufficiently defined, according to its stated
+    * definition at the manifold coordinate of this snapshot.
+    *
+    * @param conceptNid the concept to test
+    * @return true if the stated definition includes a sufficient set
+    */
+   default boolean isSufficientlyDefined(int conceptNid) {
+      ManifoldCoordinate manifoldCoordinate = getManifoldCoordinate();
+      return Get.concept(conceptNid).isSufficientlyDefined(manifoldCoordinate, manifoldCoordinate);
+   }
+
+   /**
+    * Summarize the children of a concept for display in a tree. The children
+    * are summarized in parallel, from the taxonomy and the description text
+    * of the manifold coordinate of this snapshot.
+    *
+    * @param parentConceptNid the parent concept
+    * @return the summaries of the children, sorted by sort key
+    */
+   default List<TaxonomyChildSummary> getTaxonomyChildSummaries(int parentConceptNid) {
+      ConceptSnapshotService conceptSnapshot = Get.conceptService().getSnapshot(getManifoldCoordinate());
+      return getTaxonomyChildSummaries(parentConceptNid,
+              (childNid) -> conceptSnapshot.getDescriptionText(childNid).orElse("no description for " + childNid));
+   }
+
+   /**
+    * Summarize the children of a concept for display in a tree, with the
+    * text provided for each child. The children are summarized in parallel.
+    *
+    * @param parentConceptNid the parent concept
+    * @param descriptionText provides the text of a child, from its nid
+    * @return the summaries of the children, sorted by sort key
+    */
+   default List<TaxonomyChildSummary> getTaxonomyChildSummaries(int parentConceptNid, IntFunction<String> descriptionText) {
+      return getTaxonomyChildLinks(parentConceptNid).parallelStream()
+              .map((childLink) -> {
+                 int childNid = childLink.getDestinationNid();
+                 return new TaxonomyChildSummary(childNid,
+                         childLink.getTypeNid(),
+                         descriptionText.apply(childNid),
+                         isSufficientlyDefined(childNid),
+                         getTaxonomyParentConceptNids(childNid).length,
+                         isLeaf(childNid));
+              })
+              .sorted()
+              .collect(Collectors.toList());
+   }
+
    /**
     * Gets the taxonomy tree.
     *
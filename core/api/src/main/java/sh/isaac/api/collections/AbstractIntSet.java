@@ -111,7 +111,7 @@ public abstract class AbstractIntSet<T extends AbstractIntSet<T>> implements Int
     */
    protected AbstractIntSet(Concurrency concurrency) {
       if (concurrency == Concurrency.THREAD_SAFE) {
-         this.intSet = new ConcurrentSkipListIntegerSet();
+         this.intSet = new ConcurrentRoaringIntSet();
       } else {
          this.intSet = new RoaringIntSet();
       }
@@ -547,6 +547,16 @@ public abstract class AbstractIntSet<T extends AbstractIntSet<T>> implements Int
     * @return the supplier<? extends spliterator. of int>
     */
    protected Supplier<? extends Spliterator.OfInt> get() {
+      // Use the splittable spliterators of the roaring sets, so parallel streams are parallel.
+      if (this.intSet instanceof RoaringIntSet) {
+         return ((RoaringIntSet) this.intSet).get();
+      }
+
+      if (this.intSet instanceof ConcurrentRoaringIntSet) {
+         return ((ConcurrentRoaringIntSet) this.intSet).snapshot()
+               .get();
+      }
+
       return new SpliteratorSupplier();
    }
 
@@ -0,0 +1,569 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api.collections;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.util.OptionalInt;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.IntStream;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.roaringbitmap.ArrayContainer;
+import org.roaringbitmap.Container;
+import org.roaringbitmap.ContainerPointer;
+import org.roaringbitmap.RoaringBitmap;
+
+//~--- classes ----------------------------------------------------------------
+
+/**
+ * A thread safe {@link IntSet}, made of one Roaring container per value of
+ * the high 16 bits of the members, each container guarded by its own lock.
+ * Threads adding members in different 65536 member ranges never contend, and
+ * {@link #add(int)} and {@link #contains(int)} do not box or allocate (other
+ * than when a container grows). {@link #contains(int)} first tries an
+ * optimistic read, so readers do not contend with each other.
+ *
+ * <p>The containers are kept in a two level table indexed by the high 16 bits,
+ * so iteration order is the unsigned order of the members, the same as
+ * {@link RoaringIntSet}. Set operations with a {@link RoaringIntSet} or
+ * another {@code ConcurrentRoaringIntSet} are done container by container.
+ * Iteration and streams operate over a snapshot of the set.</p>
+ *
+ * @author kec
+ */
+public class ConcurrentRoaringIntSet
+         implements IntSet {
+   /** Each table entry covers 256 containers, so a set with members in one range allocates one small table. */
+   private static final int TABLE_BITS = 8;
+   private static final int TABLE_SIZE = 1 << TABLE_BITS;
+   private static final int TABLE_MASK = TABLE_SIZE - 1;
+
+   /** The containers, indexed by the high 8, then the next 8 bits of the member. */
+   private final AtomicReferenceArray<AtomicReferenceArray<Chunk>> table = new AtomicReferenceArray<>(TABLE_SIZE);
+
+   //~--- constructors --------------------------------------------------------
+
+   /**
+    * Instantiates a new concurrent roaring int set.
+    */
+   protected ConcurrentRoaringIntSet() {}
+
+   /**
+    * Instantiates a new concurrent roaring int set.
+    *
+    * @param members the members
+    */
+   protected ConcurrentRoaringIntSet(int... members) {
+      for (final int member: members) {
+         add(member);
+      }
+   }
+
+   /**
+    * Instantiates a new concurrent roaring int set.
+    *
+    * @param memberStream the member stream
+    */
+   protected ConcurrentRoaringIntSet(IntStream memberStream) {
+      memberStream.forEach((member) -> add(member));
+   }
+
+   //~--- methods -------------------------------------------------------------
+
+   /**
+    * Adds the.
+    *
+    * @param item to add to set.
+    */
+   @Override
+   public void add(int item) {
+      final Chunk chunk = getOrCreateChunk(item >>> 16);
+      final long  stamp = chunk.lock.writeLock();
+
+      try {
+         chunk.container = chunk.container.add((short) item);
+      } finally {
+         chunk.lock.unlockWrite(stamp);
+      }
+   }
+
+   /**
+    * Adds the all.
+    *
+    * @param intStream the int stream
+    */
+   @Override
+   public void addAll(IntStream intStream) {
+      intStream.forEach((anInt) -> add(anInt));
+   }
+
+   /**
+    * And.
+    *
+    * @param otherSet the other set
+    * @return the int set
+    */
+   @Override
+   public IntSet and(IntSet otherSet) {
+      final ContainerPointer pointer = getRoaringSet(otherSet).getContainerPointer();
+
+      for (int i = 0; i < TABLE_SIZE; i++) {
+         final AtomicReferenceArray<Chunk> chunks = this.table.get(i);
+
+         if (chunks != null) {
+            for (int j = 0; j < TABLE_SIZE; j++) {
+               final Chunk chunk = chunks.get(j);
+
+               if (chunk != null) {
+                  final int key = (i << TABLE_BITS) | j;
+
+                  while ((pointer.getContainer() != null) && (Short.toUnsignedInt(pointer.key()) < key)) {
+                     pointer.advance();
+                  }
+
+                  final long stamp = chunk.lock.writeLock();
+
+                  try {
+                     if ((pointer.getContainer() != null) && (Short.toUnsignedInt(pointer.key()) == key)) {
+                        chunk.container = chunk.container.iand(pointer.getContainer());
+                     } else {
+                        chunk.container = new ArrayContainer();
+                     }
+                  } finally {
+                     chunk.lock.unlockWrite(stamp);
+                  }
+               }
+            }
+         }
+      }
+
+      return this;
+   }
+
+   /**
+    * And not.
+    *
+    * @param otherSet the other set
+    * @return the int set
+    */
+   @Override
+   public IntSet andNot(IntSet otherSet) {
+      final ContainerPointer pointer = getRoaringSet(otherSet).getContainerPointer();
+
+      while (pointer.getContainer() != null) {
+         final Chunk chunk = getChunk(Short.toUnsignedInt(pointer.key()));
+
+         if (chunk != null) {
+            final long stamp = chunk.lock.writeLock();
+
+            try {
+               chunk.container = chunk.container.iandNot(pointer.getContainer());
+            } finally {
+               chunk.lock.unlockWrite(stamp);
+            }
+         }
+
+         pointer.advance();
+      }
+
+      return this;
+   }
+
+   /**
+    * As array.
+    *
+    * @return the int[]
+    */
+   @Override
+   public int[] asArray() {
+      return toRoaringBitmap().toArray();
+   }
+
+   /**
+    * Clear.
+    */
+   @Override
+   public void clear() {
+      for (int i = 0; i < TABLE_SIZE; i++) {
+         this.table.set(i, null);
+      }
+   }
+
+   /**
+    * Contains.
+    *
+    * @param item to test for containment in set.
+    * @return true if item is contained in set.
+    */
+   @Override
+   public boolean contains(int item) {
+      final Chunk chunk = getChunk(item >>> 16);
+
+      if (chunk == null) {
+         return false;
+      }
+
+      final short low   = (short) item;
+      long        stamp = chunk.lock.tryOptimisticRead();
+
+      if (stamp != 0) {
+         try {
+            final boolean contains = chunk.container.contains(low);
+
+            if (chunk.lock.validate(stamp)) {
+               return contains;
+            }
+         } catch (final RuntimeException e) {
+            // The container was read while being modified, read again under the lock.
+         }
+      }
+
+      stamp = chunk.lock.readLock();
+
+      try {
+         return chunk.container.contains(low);
+      } finally {
+         chunk.lock.unlockRead(stamp);
+      }
+   }
+
+   /**
+    * Find first.
+    *
+    * @return the optional int
+    */
+   @Override
+   public OptionalInt findFirst() {
+      return snapshot().findFirst();
+   }
+
+   /**
+    * Or.
+    *
+    * @param otherSet the other set
+    * @return the int set
+    */
+   @Override
+   public IntSet or(IntSet otherSet) {
+      final ContainerPointer pointer = getRoaringSet(otherSet).getContainerPointer();
+
+      while (pointer.getContainer() != null) {
+         final Chunk chunk = getOrCreateChunk(Short.toUnsignedInt(pointer.key()));
+         final long  stamp = chunk.lock.writeLock();
+
+         try {
+            chunk.container = chunk.container.ior(pointer.getContainer());
+         } finally {
+            chunk.lock.unlockWrite(stamp);
+         }
+
+         pointer.advance();
+      }
+
+      return this;
+   }
+
+   /**
+    * Parallel stream.
+    *
+    * @return the set members as an {@code IntStream}
+    */
+   @Override
+   public IntStream parallelStream() {
+      return snapshot().parallelStream();
+   }
+
+   /**
+    * Removes the.
+    *
+    * @param item to remove from set.
+    */
+   @Override
+   public void remove(int item) {
+      final Chunk chunk = getChunk(item >>> 16);
+
+      if (chunk != null) {
+         final long stamp = chunk.lock.writeLock();
+
+         try {
+            chunk.container = chunk.container.remove((short) item);
+         } finally {
+            chunk.lock.unlockWrite(stamp);
+         }
+      }
+   }
+
+   /**
+    * Size.
+    *
+    * @return the number of elements in this set.
+    */
+   @Override
+   public int size() {
+      int size = 0;
+
+      for (int i = 0; i < TABLE_SIZE; i++) {
+         final AtomicReferenceArray<Chunk> chunks = this.table.get(i);
+
+         if (chunks != null) {
+            for (int j = 0; j < TABLE_SIZE; j++) {
+               final Chunk chunk = chunks.get(j);
+
+               if (chunk != null) {
+                  size += chunk.getCardinality();
+               }
+            }
+         }
+      }
+
+      return size;
+   }
+
+   /**
+    * Stream.
+    *
+    * @return the set members as an {@code IntStream}
+    */
+   @Override
+   public IntStream stream() {
+      return snapshot().stream();
+   }
+
+   /**
+    * Copy the members into a new, non thread safe, roaring bitmap.
+    *
+    * @return the roaring bitmap
+    */
+   public RoaringBitmap toRoaringBitmap() {
+      final RoaringBitmap bitmap = new RoaringBitmap();
+
+      for (int i = 0; i < TABLE_SIZE; i++) {
+         final AtomicReferenceArray<Chunk> chunks = this.table.get(i);
+
+         if (chunks != null) {
+            for (int j = 0; j < TABLE_SIZE; j++) {
+               final Chunk chunk = chunks.get(j);
+
+               if (chunk != null) {
+                  final long stamp = chunk.lock.readLock();
+
+                  try {
+                     chunk.container.forEach((short) ((i << TABLE_BITS) | j), bitmap::add);
+                  } finally {
+                     chunk.lock.unlockRead(stamp);
+                  }
+               }
+            }
+         }
+      }
+
+      return bitmap;
+   }
+
+   /**
+    * To string.
+    *
+    * @return the string
+    */
+   @Override
+   public String toString() {
+      return this.getClass()
+                 .getSimpleName() + " size: " + size() + " elements: " + toRoaringBitmap();
+   }
+
+   /**
+    * Xor.
+    *
+    * @param otherSet the other set
+    * @return the int set
+    */
+   @Override
+   public IntSet xor(IntSet otherSet) {
+      final ContainerPointer pointer = getRoaringSet(otherSet).getContainerPointer();
+
+      while (pointer.getContainer() != null) {
+         final Chunk chunk = getOrCreateChunk(Short.toUnsignedInt(pointer.key()));
+         final long  stamp = chunk.lock.writeLock();
+
+         try {
+            chunk.container = chunk.container.ixor(pointer.getContainer());
+         } finally {
+            chunk.lock.unlockWrite(stamp);
+         }
+
+         pointer.advance();
+      }
+
+      return this;
+   }
+
+   /**
+    * A snapshot of the set, for iteration and streams.
+    *
+    * @return the roaring int set
+    */
+   RoaringIntSet snapshot() {
+      final RoaringIntSet snapshot = new RoaringIntSet();
+
+      snapshot.rbmp = toRoaringBitmap();
+      return snapshot;
+   }
+
+   //~--- get methods ---------------------------------------------------------
+
+   /**
+    * Checks if empty.
+    *
+    * @return true if the set is empty.
+    */
+   @Override
+   public boolean isEmpty() {
+      for (int i = 0; i < TABLE_SIZE; i++) {
+         final AtomicReferenceArray<Chunk> chunks = this.table.get(i);
+
+         if (chunks != null) {
+            for (int j = 0; j < TABLE_SIZE; j++) {
+               final Chunk chunk = chunks.get(j);
+
+               if ((chunk != null) && (chunk.getCardinality() > 0)) {
+                  return false;
+               }
+            }
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * Gets the chunk for the high 16 bits of a member.
+    *
+    * @param key the high 16 bits
+    * @return the chunk, or null if none
+    */
+   private Chunk getChunk(int key) {
+      final AtomicReferenceArray<Chunk> chunks = this.table.get(key >>> TABLE_BITS);
+
+      if (chunks == null) {
+         return null;
+      }
+
+      return chunks.get(key & TABLE_MASK);
+   }
+
+   /**
+    * Gets the chunk for the high 16 bits of a member, creating it if absent.
+    *
+    * @param key the high 16 bits
+    * @return the chunk
+    */
+   private Chunk getOrCreateChunk(int key) {
+      final int                   tableIndex = key >>> TABLE_BITS;
+      AtomicReferenceArray<Chunk> chunks     = this.table.get(tableIndex);
+
+      if (chunks == null) {
+         this.table.compareAndSet(tableIndex, null, new AtomicReferenceArray<>(TABLE_SIZE));
+         chunks = this.table.get(tableIndex);
+      }
+
+      final int chunkIndex = key & TABLE_MASK;
+      Chunk     chunk      = chunks.get(chunkIndex);
+
+      if (chunk == null) {
+         chunks.compareAndSet(chunkIndex, null, new Chunk());
+         chunk = chunks.get(chunkIndex);
+      }
+
+      return chunk;
+   }
+
+   /**
+    * Gets the int iterator.
+    *
+    * @return the int iterator
+    */
+   @Override
+   public PrimitiveIterator.OfInt getIntIterator() {
+      return snapshot().getIntIterator();
+   }
+
+   /**
+    * Gets the reverse int iterator.
+    *
+    * @return the reverse int iterator
+    */
+   @Override
+   public PrimitiveIterator.OfInt getReverseIntIterator() {
+      return snapshot().getReverseIntIterator();
+   }
+
+   /**
+    * Gets the roaring set.
+    *
+    * @param set the set
+    * @return the roaring set
+    */
+   private static RoaringBitmap getRoaringSet(IntSet set) {
+      if (set instanceof RoaringIntSet) {
+         return ((RoaringIntSet) set).rbmp;
+      }
+
+      if (set instanceof ConcurrentRoaringIntSet) {
+         return ((ConcurrentRoaringIntSet) set).toRoaringBitmap();
+      }
+
+      final RoaringBitmap roaringSet = new RoaringBitmap();
+
+      set.stream()
+         .forEach((member) -> roaringSet.add(member));
+      return roaringSet;
+   }
+
+   //~--- inner classes -------------------------------------------------------
+
+   /**
+    * The container for one value of the high 16 bits, and its lock.
+    */
+   private static class Chunk {
+      /** Guards the container. */
+      final StampedLock lock = new StampedLock();
+
+      /** Replaced when an operation converts the container to another type. */
+      Container container = new ArrayContainer();
+
+      //~--- get methods ------------------------------------------------------
+
+      /**
+       * Gets the cardinality.
+       *
+       * @return the cardinality
+       */
+      int getCardinality() {
+         final long stamp = this.lock.readLock();
+
+         try {
+            return this.container.getCardinality();
+         } finally {
+            this.lock.unlockRead(stamp);
+         }
+      }
+   }
+}
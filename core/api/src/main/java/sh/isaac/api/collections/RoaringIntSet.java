@@ -50,6 +50,7 @@ import java.util.stream.StreamSupport;
 //~--- non-JDK imports --------------------------------------------------------
 
 import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.PeekableIntIterator;
 import org.roaringbitmap.RoaringBitmap;
 
 //~--- classes ----------------------------------------------------------------
@@ -321,6 +322,10 @@ public class RoaringIntSet
          return ((RoaringIntSet) set).rbmp;
       }
 
+      if (set instanceof ConcurrentRoaringIntSet) {
+         return ((ConcurrentRoaringIntSet) set).toRoaringBitmap();
+      }
+
       final RoaringBitmap roaringSet = new RoaringBitmap();
 
       set.stream()
@@ -331,12 +336,47 @@ public class RoaringIntSet
    //~--- inner classes -------------------------------------------------------
 
    /**
-    * The Class BitSetSpliterator.
+    * A spliterator over a range of member ranks. Splits are aligned to the
+    * start of a Roaring container where possible, and the size of each split
+    * is exact.
     */
    private class BitSetSpliterator
             implements Spliterator.OfInt {
-      /** The int iterator. */
-      IntIterator intIterator = RoaringIntSet.this.rbmp.getIntIterator();
+      /** Ranges smaller than this are not split. */
+      private static final int MIN_SPLIT_SIZE = 1024;
+
+      /** The bitmap. */
+      private final RoaringBitmap bitmap = RoaringIntSet.this.rbmp;
+
+      /** The rank of the next member. */
+      private int origin;
+
+      /** One past the rank of the last member. */
+      private final int fence;
+
+      /** The int iterator, created on first traversal. */
+      private PeekableIntIterator intIterator;
+
+      //~--- constructors -----------------------------------------------------
+
+      /**
+       * Instantiates a new bit set spliterator over all the members.
+       */
+      BitSetSpliterator() {
+         this.origin = 0;
+         this.fence  = this.bitmap.getCardinality();
+      }
+
+      /**
+       * Instantiates a new bit set spliterator.
+       *
+       * @param origin the rank of the first member
+       * @param fence one past the rank of the last member
+       */
+      BitSetSpliterator(int origin, int fence) {
+         this.origin = origin;
+         this.fence  = fence;
+      }
 
       //~--- methods ----------------------------------------------------------
 
@@ -348,7 +388,7 @@ public class RoaringIntSet
       @Override
       public int characteristics() {
          return Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.ORDERED
-                | Spliterator.SIZED | Spliterator.SORTED;
+                | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.SORTED;
       }
 
       /**
@@ -358,7 +398,24 @@ public class RoaringIntSet
        */
       @Override
       public long estimateSize() {
-         return RoaringIntSet.this.size();
+         return this.fence - this.origin;
+      }
+
+      /**
+       * For each remaining.
+       *
+       * @param action the action
+       */
+      @Override
+      public void forEachRemaining(IntConsumer action) {
+         if (this.origin < this.fence) {
+            startIterator();
+
+            while (this.origin < this.fence) {
+               action.accept(this.intIterator.next());
+               this.origin++;
+            }
+         }
       }
 
       /**
@@ -369,18 +426,57 @@ public class RoaringIntSet
        */
       @Override
       public boolean tryAdvance(IntConsumer action) {
+         if (this.origin >= this.fence) {
+            return false;
+         }
+
+         startIterator();
          action.accept(this.intIterator.next());
-         return this.intIterator.hasNext();
+         this.origin++;
+         return true;
       }
 
       /**
-       * Try split.
+       * Split off the first half of the remaining members, ending at the
+       * start of the container that holds the middle member, or at the
+       * middle member if the remaining members are all in one container.
        *
        * @return the spliterator. of int
        */
       @Override
       public Spliterator.OfInt trySplit() {
-         return null;
+         if ((this.intIterator != null) || (this.fence - this.origin < MIN_SPLIT_SIZE)) {
+            return null;
+         }
+
+         int       split          = (this.origin + this.fence) >>> 1;
+         final int containerStart = this.bitmap.select(split) & 0xFFFF0000;
+
+         if (containerStart != 0) {
+            final int containerStartRank = this.bitmap.rank(containerStart - 1);
+
+            if (containerStartRank > this.origin) {
+               split = containerStartRank;
+            }
+         }
+
+         final BitSetSpliterator prefix = new BitSetSpliterator(this.origin, split);
+
+         this.origin = split;
+         return prefix;
+      }
+
+      /**
+       * Position the iterator at the member with rank origin.
+       */
+      private void startIterator() {
+         if (this.intIterator == null) {
+            this.intIterator = this.bitmap.getIntIterator();
+
+            if (this.origin > 0) {
+               this.intIterator.advanceIfNeeded(this.bitmap.select(this.origin));
+            }
+         }
       }
    }
 
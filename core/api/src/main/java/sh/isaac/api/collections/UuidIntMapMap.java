@@ -215,6 +215,8 @@ public class UuidIntMapMap
         try {
             final boolean returnValue = map.put(keyAsArray, value, stamp);
 
+            // a nid put directly, such as one replayed from a log, is never generated again
+            NEXT_NID_PROVIDER.accumulateAndGet(value, Math::max);
             this.maps[mapIndex].elementUpdated();
             if (returnValue) {
                updateCache(value, uuidKey);
@@ -41,6 +41,7 @@ package sh.isaac.api.component.concept;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.Optional;
 
 //~--- non-JDK imports --------------------------------------------------------
 
@@ -105,5 +106,32 @@ public interface ConceptSnapshotService extends SharedConceptSnapshotService {
     * {@code LanguageCoordinate} of this snapshot.
     */
    LatestVersion<DescriptionVersion> getPreferredDescription(int conceptNid);
+
+   /**
+    * Gets the text of the description that {@link #getDescriptionOptional(int)} returns.
+    * Implementations may cache the text for the coordinate of this snapshot.
+    *
+    * @param conceptNid of the concept to get the description text for
+    * @return the text, or an empty optional if there is no description for this concept.
+    */
+   default Optional<String> getDescriptionText(int conceptNid) {
+      final LatestVersion<DescriptionVersion> description = getDescriptionOptional(conceptNid);
+
+      if (description.isPresent()) {
+         return Optional.of(description.get().getText());
+      }
+
+      return Optional.empty();
+   }
+
+   /**
+    * Resolve the description text of the concepts of an assemblage ahead of use, so
+    * implementations that cache description text can serve later requests from the cache.
+    * For a semantic assemblage, the referenced concepts are resolved.
+    *
+    * @param assemblageNid the assemblage of the concepts to resolve
+    */
+   default void preloadDescriptionText(int assemblageNid) {
+      // nothing to preload without a cache.
+   }
 }
-//~--- JDK imports ------------------------------------------------------------
@@ -103,5 +103,17 @@ public class SystemPropertyConstants {
     */
    public static final String FAIL_ON_DATABASE_IDENTITY_MISMATCH = "FAIL_ON_DATABASE_IDENTITY_MISMATCH";
 
+   /** 
+    * Used to specify the size, in megabytes, of the cache of serialized chronologies kept by the chronology provider. 
+    * A value of 0 disables the cache.
+    */
+   public static final String CHRONOLOGY_CACHE_SIZE_MB = "CHRONOLOGY_CACHE_SIZE_MB";
+
+   /** 
+    * Used to specify the average number of reachability intervals per concept a taxonomy tree may keep, before it 
+    * stops indexing and answers subsumption questions by walking the graph. A value of 0 disables the index.
+    */
+   public static final String TAXONOMY_REACHABILITY_INTERVALS_PER_NODE = "TAXONOMY_REACHABILITY_INTERVALS_PER_NODE";
+
 }
 
@@ -42,12 +42,16 @@ package sh.isaac.api.datastore;
 
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.UUID;
 import java.util.function.BinaryOperator;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.IntStream;
 import org.jvnet.hk2.annotations.Contract;
 import sh.isaac.api.DatastoreServices;
 import sh.isaac.api.chronicle.VersionType;
 import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.commit.Stamp;
 import sh.isaac.api.externalizable.ByteArrayDataBuffer;
 import sh.isaac.api.externalizable.DataWriteListener;
 import sh.isaac.api.externalizable.IsaacObjectType;
@@ -208,5 +212,96 @@ public interface DataStore
    default boolean implementsExtendedStoreAPI() {
       return false;
    }
+
+   /**
+    * Make the writes made before this call durable, without waiting for a full {@link #sync()}. Called after each 
+    * commit. Stores that log their writes should force the log here, so that concurrent commits share a single 
+    * force of the log. The default implementation does nothing, leaving durability to {@link #sync()}.
+    */
+   default void flushCommittedWrites() {
+      // nothing to flush
+   }
+
+   /**
+    * The number of chronology writes made to an assemblage over the life of the store, which services that index 
+    * an assemblage may persist with their index, to tell on startup whether the assemblage was written while they 
+    * were not running. The sequence may count a write more than once (such as when it is replayed after a crash), 
+    * but never misses a durable write. The default implementation does not track writes.
+    * @param assemblageNid the assemblage
+    * @return the write sequence of the assemblage, or empty if the store does not track writes
+    */
+   default OptionalLong getAssemblageWriteSequence(int assemblageNid) {
+      return OptionalLong.empty();
+   }
+
+   /**
+    * The allocations that services outside of the store persist themselves, and may log through the store so that 
+    * the writes that use them are never replayed without them.
+    */
+   enum LoggedAllocation {
+      /** uuid to nid assignments of the identifier service */
+      NIDS,
+      /** stamp sequence assignments of the stamp service */
+      STAMPS
+   }
+
+   /**
+    * Log the assignment of a nid to a uuid, in order with the writes to this store. The default implementation 
+    * does nothing.
+    * @param uuid the uuid
+    * @param nid the nid assigned to the uuid
+    */
+   default void logNidAssignment(UUID uuid, int nid) {
+      // nothing to log
+   }
+
+   /**
+    * Log the assignment of a stamp sequence, in order with the writes to this store. The default implementation 
+    * does nothing.
+    * @param stampSequence the stamp sequence
+    * @param stamp the stamp assigned to the sequence
+    */
+   default void logStampAssignment(int stampSequence, Stamp stamp) {
+      // nothing to log
+   }
+
+   /**
+    * Pass the nid assignments logged since the last completed {@link LoggedAllocation#NIDS} checkpoint to the 
+    * consumer, in the order they were logged. Called once by the identifier service as it starts, after which the 
+    * logged assignments are retained until it completes a checkpoint.
+    * @param consumer accepts the uuid and its nid
+    */
+   default void replayNidAssignments(ObjIntConsumer<UUID> consumer) {
+      // nothing logged
+   }
+
+   /**
+    * Pass the stamp assignments logged since the last completed {@link LoggedAllocation#STAMPS} checkpoint to the 
+    * consumer, in the order they were logged. Called once by the stamp service as it starts, after which the logged 
+    * assignments are retained until it completes a checkpoint.
+    * @param consumer accepts the stamp and its stamp sequence
+    */
+   default void replayStampAssignments(ObjIntConsumer<Stamp> consumer) {
+      // nothing logged
+   }
+
+   /**
+    * Start a checkpoint of logged allocations. All allocations logged before this call must be written by the 
+    * caller before it calls {@link #completeAllocationCheckpoint(LoggedAllocation, long)}.
+    * @return the checkpoint to complete
+    */
+   default long startAllocationCheckpoint() {
+      return -1;
+   }
+
+   /**
+    * Record that the allocations logged before the checkpoint started are written, so the store may discard 
+    * them from its log.
+    * @param allocation the allocations written
+    * @param checkpoint the value returned by {@link #startAllocationCheckpoint()}
+    */
+   default void completeAllocationCheckpoint(LoggedAllocation allocation, long checkpoint) {
+      // nothing logged
+   }
 }
 
@@ -55,10 +55,34 @@ public interface BinaryDataReaderService
    /**
     * Return a stream of the ochreExternlizables, already parsed
     *
-    * The implementation behind this guarantees order, but it slow (single threaded).
+    * The stream is sequential, and its encounter order is the order of the data. Readers
+    * backed by a file index the records when opened, so the stream may be made parallel,
+    * and will split into chunks of approximately equal bytes. Readers backed by an
+    * input stream do not split.
     *
     * @return the stream
     */
    Stream<IsaacExternalizable> getStream();
+
+   /**
+    * Return a stream of the ochreExternlizables of a single object type, already parsed.
+    * Readers backed by a file only parse the records of the requested type, and may be
+    * streamed once per type, so a loader can finish the concepts (in parallel) before it
+    * starts on the semantics that depend on them. The reader is not closed when the stream
+    * is consumed.
+    *
+    * @param objectType the type of object to stream
+    * @return the stream
+    */
+   default Stream<IsaacExternalizable> getStream(IsaacObjectType objectType) {
+      return getStream().filter((object) -> object.getIsaacObjectType() == objectType);
+   }
+
+   /**
+    * Close the underlying file or input stream. Narrows {@link AutoCloseable#close()}, so a reader
+    * can be used in a try-with-resources statement without handling a checked exception.
+    */
+   @Override
+   void close();
 }
 
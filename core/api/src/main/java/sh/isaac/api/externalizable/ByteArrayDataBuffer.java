@@ -164,7 +164,7 @@ public class ByteArrayDataBuffer {
     */
    public void append(ByteArrayDataBuffer db, int position, int length) {
       ensureSpace(this.position + length);
-      System.arraycopy(db.data, position, this.data, this.position, length);
+      db.get(position, this.data, this.position, length);
       this.position += length;
       this.used = Math.max(used, this.position);
    }
@@ -194,17 +194,13 @@ public class ByteArrayDataBuffer {
    }
 
    /**
-    * New wrapper.
+    * New wrapper. The wrapper is read only, and shares the current backing
+    * array, so reads do not need to be validated against a concurrent grow.
     *
     * @return the byte array data buffer
     */
    public ByteArrayDataBuffer newWrapper() {
-      final ByteArrayDataBuffer newWrapper = new ByteArrayDataBuffer(this.data);
-
-      newWrapper.readOnly = true;
-      newWrapper.position = 0;
-      newWrapper.used     = this.used;
-      return newWrapper;
+      return ReadOnlyByteArrayDataBuffer.wrap(this.data, 0, 0, this.used);
    }
 
    /**
@@ -674,12 +670,7 @@ public class ByteArrayDataBuffer {
     * @return the byte array data buffer
     */
    public ByteArrayDataBuffer slice() {
-      final ByteArrayDataBuffer slice = new ByteArrayDataBuffer(this.data, this.position);
-
-      slice.readOnly = true;
-      slice.position = this.position;
-      slice.used     = this.used;
-      return slice;
+      return ReadOnlyByteArrayDataBuffer.wrap(this.data, this.position, this.position, this.used);
    }
 
    /**
@@ -1154,6 +1145,17 @@ public class ByteArrayDataBuffer {
       return getInt();
    }
 
+   /**
+    * Gets nids, filling the provided array.
+    *
+    * @param nids the array to fill with nids
+    */
+   public void getNids(int[] nids) {
+      for (int i = 0; i < nids.length; i++) {
+         nids[i] = getNid();
+      }
+   }
+
    /**
     * Gets the object data format version.
     *
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api.externalizable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * A read only {@link ByteArrayDataBuffer} backed by a big endian
+ * {@link ByteBuffer}, which may be a heap buffer or a direct (for example
+ * memory mapped) buffer. Since the backing data never grows, reads do not
+ * need the optimistic read validation of the writable buffer, and are
+ * delegated to the absolute get methods of the byte buffer. All put methods
+ * throw a {@link java.nio.ReadOnlyBufferException}.
+ *
+ * @author kec
+ */
+public class ReadOnlyByteArrayDataBuffer extends ByteArrayDataBuffer {
+
+   private static final byte[] EMPTY_DATA = new byte[0];
+
+   /** The backing buffer, accessed with absolute gets only, so it may be shared between wrappers. */
+   private final ByteBuffer buffer;
+
+   /** The backing array if the buffer is a heap buffer, otherwise null. */
+   private final byte[] heapData;
+
+   /**
+    * Instantiates a new read only buffer over a byte array.
+    *
+    * @param data the data
+    */
+   public ReadOnlyByteArrayDataBuffer(byte[] data) {
+      this(data, 0);
+   }
+
+   /**
+    * Instantiates a new read only buffer over a byte array.
+    *
+    * @param data the data
+    * @param positionStart the position start
+    */
+   public ReadOnlyByteArrayDataBuffer(byte[] data, int positionStart) {
+      this(ByteBuffer.wrap(data), data, positionStart, data.length);
+   }
+
+   /**
+    * Instantiates a new read only buffer over the remaining bytes of a byte
+    * buffer, without copying them.
+    *
+    * @param buffer the buffer, the position and limit of which are not changed.
+    */
+   public ReadOnlyByteArrayDataBuffer(ByteBuffer buffer) {
+      this(buffer.slice().order(ByteOrder.BIG_ENDIAN), null, 0, buffer.remaining());
+   }
+
+   private ReadOnlyByteArrayDataBuffer(ByteBuffer buffer, byte[] heapData, int positionStart, int used) {
+      super((heapData == null) ? EMPTY_DATA : heapData, positionStart);
+      this.buffer   = buffer;
+      this.heapData = heapData;
+      this.used     = used;
+      this.readOnly = true;
+   }
+
+   /**
+    * Create a read only wrapper sharing a byte array with another buffer.
+    *
+    * @param data the data
+    * @param positionStart the position start
+    * @param position the position
+    * @param used the used
+    * @return the wrapper
+    */
+   static ReadOnlyByteArrayDataBuffer wrap(byte[] data, int positionStart, int position, int used) {
+      final ReadOnlyByteArrayDataBuffer wrapper = new ReadOnlyByteArrayDataBuffer(ByteBuffer.wrap(data), data, positionStart, used);
+
+      wrapper.position = position;
+      return wrapper;
+   }
+
+   @Override
+   public ByteArrayDataBuffer newWrapper() {
+      final ReadOnlyByteArrayDataBuffer newWrapper = new ReadOnlyByteArrayDataBuffer(this.buffer, this.heapData, 0, this.used);
+
+      newWrapper.position = 0;
+      return newWrapper;
+   }
+
+   @Override
+   public ByteArrayDataBuffer slice() {
+      final ReadOnlyByteArrayDataBuffer slice = new ReadOnlyByteArrayDataBuffer(this.buffer, this.heapData, this.position, this.used);
+
+      slice.position = this.position;
+      return slice;
+   }
+
+   /**
+    * Gets the data. If this buffer is not backed by a heap array, the data is
+    * copied.
+    *
+    * @return the byte[] that backs this buffer, or a copy of the backing data.
+    */
+   @Override
+   public byte[] getData() {
+      if (this.heapData != null) {
+         return this.heapData;
+      }
+
+      final byte[] copy = new byte[this.buffer.capacity()];
+
+      get(0, copy, 0, copy.length);
+      return copy;
+   }
+
+   @Override
+   public int getCapacity() {
+      return this.buffer.capacity();
+   }
+
+   @Override
+   public byte getByte(int position) {
+      return this.buffer.get(position);
+   }
+
+   @Override
+   public char getChar(int position) {
+      return this.buffer.getChar(position);
+   }
+
+   @Override
+   public short getShort(int position) {
+      return this.buffer.getShort(position);
+   }
+
+   @Override
+   public int getInt(int position) {
+      return this.buffer.getInt(position);
+   }
+
+   @Override
+   public long getLong(int position) {
+      return this.buffer.getLong(position);
+   }
+
+   @Override
+   public void get(int position, byte[] src, int offset, int length) {
+      if (this.heapData != null) {
+         System.arraycopy(this.heapData, position, src, offset, length);
+      } else {
+         final ByteBuffer view = this.buffer.duplicate();
+
+         view.position(position);
+         view.get(src, offset, length);
+      }
+   }
+
+   @Override
+   public byte[] getByteArrayField() {
+      final int    length  = getInt();
+      final byte[] results = new byte[length];
+
+      get(this.position, results, 0, length);
+      this.position += length;
+      return results;
+   }
+
+   /**
+    * Gets the int array, decoded with a single bulk read from an int view of
+    * the backing buffer.
+    *
+    * @return the int array
+    */
+   @Override
+   public int[] getIntArray() {
+      final int[]      array = new int[getInt()];
+      final ByteBuffer view  = this.buffer.duplicate();
+
+      view.position(this.position);
+      view.asIntBuffer()
+          .get(array);
+      this.position += array.length * 4;
+      return array;
+   }
+
+   @Override
+   public int getNid() {
+      if (this.externalData) {
+         return super.getNid();
+      }
+
+      final int nid = this.buffer.getInt(this.position);
+
+      this.position += 4;
+      return nid;
+   }
+
+   @Override
+   public void getNids(int[] nids) {
+      if (this.externalData) {
+         super.getNids(nids);
+         return;
+      }
+
+      final ByteBuffer view = this.buffer.duplicate();
+
+      view.position(this.position);
+      view.asIntBuffer()
+          .get(nids);
+      this.position += nids.length * 4;
+   }
+
+   @Override
+   public String toString() {
+      return "ReadOnlyByteArrayDataBuffer{" + "position=" + this.position + ", positionStart=" + this.positionStart +
+             ", direct=" + this.buffer.isDirect() + ", objectDataFormatVersion=" + this.objectDataFormatVersion +
+             ", externalData=" + this.externalData + ", used=" + this.used + ", data=" +
+             DatatypeConverter.printHexBinary(getData()) + '}';
+   }
+}
@@ -44,7 +44,7 @@ package sh.isaac.api.index;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -73,6 +73,9 @@ public class GenerateIndexes extends TimedTask<Void> implements PersistTaskResul
 
    //The number of items that must be indexed, in total.
    private long componentCount;
+
+   //When indexing started, in nanoseconds, for reporting throughput
+   private long startNanos;
    
    private boolean stopNow = false;
 
@@ -154,26 +157,33 @@ public class GenerateIndexes extends TimedTask<Void> implements PersistTaskResul
          LOG.info("Semantic elements to index: " + semanticCount);
          this.componentCount = semanticCount;
 
+         this.startNanos = System.nanoTime();
+
+         // Each worker thread indexes into its own segment, on its own thread, rather than queuing a future per item 
+         // onto the shared writer.  The segments are combined into the index by completeBatchReindex.
          Get.assemblageService().getSemanticChronologyStream().parallel().forEach((SemanticChronology semantic) -> {
             for (final IndexBuilderService i : this.indexers) {
                if (stopNow) {
                   throw new RuntimeException("Stop requested!");
                }
-               try {
-                  if (semantic == null) {
-                     // noop - this error is already logged elsewhere. Just skip.
-                  } else {
-                     i.index(semantic).get();
-                  }
-               } catch (final InterruptedException | ExecutionException e) {
-                  throw new RuntimeException(e);
+               if (semantic == null) {
+                  // noop - this error is already logged elsewhere. Just skip.
+               } else {
+                  i.indexForBatchReindex(semantic);
                }
             }
 
             updateProcessedCount();
          });
 
+         LOG.info(String.format("Indexed %,d semantics at %,d per second", this.processed.get(), getItemsPerSecond(this.processed.get())));
+
          for (final IndexBuilderService i : this.indexers) {
+            if (!stopNow) {
+               updateMessage("Combining index segments for " + i.getIndexerName() + "...");
+               i.completeBatchReindex();
+            }
+
             if (islList != null) {
                for (final IndexStatusListener isl : islList) {
                   isl.reindexCompleted(i);
@@ -210,18 +220,24 @@ public class GenerateIndexes extends TimedTask<Void> implements PersistTaskResul
 
       if (processedCount % 1000 == 0) {
          updateProgress(processedCount, this.componentCount);
-         updateMessage(String.format("Indexed %,d components...", processedCount));
+         updateMessage(String.format("Indexed %,d components, %,d per second...", processedCount, getItemsPerSecond(processedCount)));
 
-         // We were committing too often every 1000 components, it was bad for performance.
+         // Content is not visible until the batch segments are combined, so there is no point committing along the way.
          if (processedCount % 100000 == 0) {
-            for (final IndexBuilderService i : this.indexers) {
-               i.sync();
-            }
             LOG.info("Indexed " + processedCount + " semantics");
          }
       }
    }
 
+   /**
+    * @param processedCount the number of items processed so far
+    * @return the number of items processed per second, since indexing started
+    */
+   private long getItemsPerSecond(long processedCount) {
+      final long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos));
+      return (processedCount * 1000) / elapsedMillis;
+   }
+
    @Override
    public void stopJob() {
       LOG.info("Stop requested");
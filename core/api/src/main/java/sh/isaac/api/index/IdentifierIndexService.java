@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api.index;
+
+import java.util.OptionalInt;
+import org.jvnet.hk2.annotations.Contract;
+import sh.isaac.api.DatastoreServices;
+import sh.isaac.api.bootstrap.TermAux;
+
+/**
+ * An exact match index from external identifiers, such as SCTIDs, LOINC codes and RxNorm CUIs, to the nid of the 
+ * component that carries the identifier.  Identifiers are indexed per identifier assemblage - any assemblage marked as 
+ * a member of {@link TermAux#IDENTIFIER_SOURCE}.  The index is maintained as identifier semantics are written to the
+ * datastore, and is persisted beside the datastore, so lookups don't require a search of the semantic index, or the 
+ * loading of any semantic chronology.
+ *
+ * Identifiers that are decimal integers are held as primitive longs, others as strings - callers don't need to know 
+ * which is which, as the string lookups convert as necessary.
+ *
+ * An identifier carried by more than one component is reported when it is indexed, and resolves to the component it 
+ * was first indexed for, while {@link #getAllNidsForIdentifier(int, String)} returns every component that carries it.
+ *
+ * @author kec
+ */
+@Contract
+public interface IdentifierIndexService extends DatastoreServices {
+
+   /**
+    * The value returned by the batch lookups for identifiers that are not in the index.  Nids are always negative.
+    */
+   public static final int UNRESOLVED_NID = 0;
+
+   /**
+    * @param identifierAssemblageNid the assemblage that the identifier is a member of, such as {@link TermAux#SNOMED_IDENTIFIER}
+    * @param identifier the identifier, as stored in the identifier semantic
+    * @return the nid of the component that carries the identifier, if any.
+    */
+   OptionalInt getNidForIdentifier(int identifierAssemblageNid, String identifier);
+
+   /**
+    * @param identifierAssemblageNid the assemblage that the identifier is a member of, such as {@link TermAux#SNOMED_IDENTIFIER}
+    * @param identifier the identifier
+    * @return the nid of the component that carries the identifier, if any.
+    */
+   OptionalInt getNidForIdentifier(int identifierAssemblageNid, long identifier);
+
+   /**
+    * Resolve many identifiers of the same assemblage at once, under a single acquisition of the index.
+    *
+    * @param identifierAssemblageNid the assemblage that the identifiers are members of
+    * @param identifiers the identifiers, as stored in the identifier semantics
+    * @return the nids of the components that carry the identifiers, in the same order as the identifiers, with 
+    * {@link #UNRESOLVED_NID} for any identifier that isn't in the index.
+    */
+   int[] getNidsForIdentifiers(int identifierAssemblageNid, String... identifiers);
+
+   /**
+    * Resolve many identifiers of the same assemblage at once, under a single acquisition of the index.
+    *
+    * @param identifierAssemblageNid the assemblage that the identifiers are members of
+    * @param identifiers the identifiers
+    * @return the nids of the components that carry the identifiers, in the same order as the identifiers, with 
+    * {@link #UNRESOLVED_NID} for any identifier that isn't in the index.
+    */
+   int[] getNidsForIdentifiers(int identifierAssemblageNid, long... identifiers);
+
+   /**
+    * @param identifierAssemblageNid the assemblage that the identifier is a member of
+    * @param identifier the identifier, as stored in the identifier semantic
+    * @return the nids of every component that carries the identifier, in the order they were indexed, or an empty 
+    * array if none do.
+    */
+   int[] getAllNidsForIdentifier(int identifierAssemblageNid, String identifier);
+
+   /**
+    * @param assemblageNid the assemblage to test
+    * @return true, if the assemblage is an identifier assemblage, whose semantics are indexed by this service.
+    */
+   boolean isIdentifierAssemblage(int assemblageNid);
+}
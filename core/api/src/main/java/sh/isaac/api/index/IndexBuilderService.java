@@ -122,6 +122,28 @@ public interface IndexBuilderService extends DatastoreServices, IndexQueryServic
     */
    long indexNow(Chronology chronicle);
 
+   /**
+    * Index the Chronology as part of a batch-reindex, on the calling thread.  Only valid between calls to 
+    * {@link #startBatchReindex} and {@link #completeBatchReindex}.  Unlike {@link #indexNow(Chronology)}, implementations 
+    * may write the document into a segment private to the calling thread, so that many threads can index without 
+    * contending on a single writer, and without a future per item.  Content indexed this way is not visible in queries
+    * until {@link #completeBatchReindex} returns.
+    * 
+    * @param chronicle the chronicle
+    */
+   default void indexForBatchReindex(Chronology chronicle) {
+      indexNow(chronicle);
+   }
+
+   /**
+    * Call this after all content of a batch-reindex has been passed to {@link #indexForBatchReindex(Chronology)}, and 
+    * before {@link #finishBatchReindex}, to combine any per-thread segments into the index.  If a batch-reindex is 
+    * abandoned, skip this call - {@link #finishBatchReindex} discards any segments that were not combined.
+    */
+   default void completeBatchReindex() {
+      // noop, unless the implementation builds per-thread segments
+   }
+
    /**
     * Locate the concept most closely tied to a search result, and merge them together, maintaining the best score.
     * This is a convenience method.
@@ -48,7 +48,9 @@ import sh.isaac.api.component.concept.ConceptSpecification;
 //~--- classes ----------------------------------------------------------------
 /**
  * <code>ParentClause</code> that computes the intersection of the set results
- * from the enclosed <code>Clauses</code>.
+ * from the enclosed <code>Clauses</code>. The clauses are computed cheapest and
+ * most selective first, each over the intersection so far, and computation
+ * stops once the intersection is empty.
  *
  * @author kec
  */
@@ -81,12 +83,18 @@ public class And
      */
     @Override
     public Map<ConceptSpecification, NidSet> computeComponents(Map<ConceptSpecification, NidSet> incomingComponents) {
-        final NidSet results = NidSet.of(incomingComponents.get(this.getAssemblageForIteration()).stream());
-
-        for (final Clause clause : getChildren()) {
-            results.and(clause.computeComponents(incomingComponents).get(clause.getAssemblageForIteration()));
-            setAssemblageForIteration(clause.getAssemblageForIteration());
+        final ConceptSpecification assemblage = this.getAssemblageForIteration();
+        final NidSet results = NidSet.of(incomingComponents.get(assemblage).stream());
+        final Map<ConceptSpecification, NidSet> candidates = new HashMap<>(incomingComponents);
+
+        for (final Clause clause : getEvaluationOrder(results.size(), true)) {
+            if (results.isEmpty()) {
+                break;
+            }
+            restrictCandidates(candidates, assemblage, clause, results);
+            results.and(computeChildComponents(clause, candidates));
         }
+        setAssemblageForIterationFromChildren();
         HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(incomingComponents);
         resultsMap.put(this.getAssemblageForIteration(), results);
         return resultsMap;
@@ -100,17 +108,40 @@ public class And
      */
     @Override
     public Map<ConceptSpecification, NidSet> computePossibleComponents(Map<ConceptSpecification, NidSet> incomingPossibleComponents) {
-        final NidSet results = NidSet.of(incomingPossibleComponents.get(this.getAssemblageForIteration()).stream());
-
-        getChildren().stream().forEach((clause) -> {
-            results.and(clause.computePossibleComponents(incomingPossibleComponents).get(clause.getAssemblageForIteration()));
-            setAssemblageForIteration(clause.getAssemblageForIteration());
-        });
+        final ConceptSpecification assemblage = this.getAssemblageForIteration();
+        final NidSet results = NidSet.of(incomingPossibleComponents.get(assemblage).stream());
+        final Map<ConceptSpecification, NidSet> candidates = new HashMap<>(incomingPossibleComponents);
+
+        for (final Clause clause : planEvaluationOrder(results.size(), true)) {
+            if (results.isEmpty()) {
+                break;
+            }
+            restrictCandidates(candidates, assemblage, clause, results);
+            results.and(computeChildPossibleComponents(clause, candidates));
+        }
+        setAssemblageForIterationFromChildren();
         HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(incomingPossibleComponents);
         resultsMap.put(this.getAssemblageForIteration(), results);
         return resultsMap;
     }
 
+    /**
+     * Estimate the fraction of the candidate components matched by all the
+     * enclosed clauses, treating them as independent.
+     *
+     * @param candidateCount the number of candidate components
+     * @return the estimated selectivity
+     */
+    @Override
+    public double estimateSelectivity(int candidateCount) {
+        double selectivity = 1;
+
+        for (final Clause clause : getChildren()) {
+            selectivity *= clause.estimateSelectivity(candidateCount);
+        }
+        return selectivity;
+    }
+
     //~--- get methods ---------------------------------------------------------
     /**
      * Gets the where clause.
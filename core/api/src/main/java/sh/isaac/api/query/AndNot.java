@@ -80,12 +80,18 @@ public class AndNot
      */
     @Override
     public Map<ConceptSpecification, NidSet> computeComponents(Map<ConceptSpecification, NidSet> incomingComponents) {
-        final NidSet results = NidSet.of(incomingComponents.get(this.getAssemblageForIteration()).stream());
-
-        getChildren().stream().forEach((clause) -> {
-            results.andNot(clause.computeComponents(incomingComponents).get(clause.getAssemblageForIteration()));
-            setAssemblageForIteration(clause.getAssemblageForIteration());
-        });
+        final ConceptSpecification assemblage = this.getAssemblageForIteration();
+        final NidSet results = NidSet.of(incomingComponents.get(assemblage).stream());
+        final Map<ConceptSpecification, NidSet> candidates = new HashMap<>(incomingComponents);
+
+        for (final Clause clause : getEvaluationOrder(results.size(), false)) {
+            if (results.isEmpty()) {
+                break;
+            }
+            restrictCandidates(candidates, assemblage, clause, results);
+            results.andNot(computeChildComponents(clause, candidates));
+        }
+        setAssemblageForIterationFromChildren();
         HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(incomingComponents);
         resultsMap.put(this.getAssemblageForIteration(), results);
         return resultsMap;
@@ -99,17 +105,64 @@ public class AndNot
      */
     @Override
     public Map<ConceptSpecification, NidSet> computePossibleComponents(Map<ConceptSpecification, NidSet> incomingPossibleComponents) {
-        final NidSet results = NidSet.of(incomingPossibleComponents.get(this.getAssemblageForIteration()).stream());
-
-        getChildren().stream().forEach((clause) -> {
-            results.andNot(clause.computePossibleComponents(incomingPossibleComponents).get(clause.getAssemblageForIteration()));
-            setAssemblageForIteration(clause.getAssemblageForIteration());
-        });
+        final ConceptSpecification assemblage = this.getAssemblageForIteration();
+        final NidSet results = NidSet.of(incomingPossibleComponents.get(assemblage).stream());
+        final Map<ConceptSpecification, NidSet> candidates = new HashMap<>(incomingPossibleComponents);
+
+        for (final Clause clause : planEvaluationOrder(results.size(), false)) {
+            if (results.isEmpty()) {
+                break;
+            }
+            restrictCandidates(candidates, assemblage, clause, results);
+            final NidSet clausePossibleComponents = computeChildPossibleComponents(clause, candidates);
+            // The possible components of a clause that needs iteration include
+            // components it will not match, so they can't be removed yet.
+            if (!requiresIteration(clause)) {
+                results.andNot(clausePossibleComponents);
+            }
+        }
+        setAssemblageForIterationFromChildren();
         HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(incomingPossibleComponents);
         resultsMap.put(this.getAssemblageForIteration(), results);
         return resultsMap;
     }
 
+    /**
+     * Checks if a clause, or any clause it encloses, needs iteration to
+     * compute its components.
+     *
+     * @param clause the clause
+     * @return true if iteration is needed
+     */
+    private static boolean requiresIteration(Clause clause) {
+        if (clause.getComputePhases().contains(ClauseComputeType.ITERATION)) {
+            return true;
+        }
+        for (final Clause child : clause.getChildren()) {
+            if (requiresIteration(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estimate the fraction of the candidate components matched by none of
+     * the enclosed clauses, treating them as independent.
+     *
+     * @param candidateCount the number of candidate components
+     * @return the estimated selectivity
+     */
+    @Override
+    public double estimateSelectivity(int candidateCount) {
+        double selectivity = 1;
+
+        for (final Clause clause : getChildren()) {
+            selectivity *= 1 - clause.estimateSelectivity(candidateCount);
+        }
+        return selectivity;
+    }
+
     //~--- get methods ---------------------------------------------------------
     @Override
     public ClauseSemantic getClauseSemantic() {
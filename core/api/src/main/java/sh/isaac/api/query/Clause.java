@@ -186,6 +186,36 @@ public abstract class Clause implements ConceptSpecification {
      */
     public abstract Map<ConceptSpecification, NidSet> computePossibleComponents(Map<ConceptSpecification, NidSet> incomingPossibleComponents);
 
+    /**
+     * Estimate the time to compute this clause, used by a
+     * <code>ParentClause</code> to order the computation of its children.
+     *
+     * @param candidateCount the number of candidate components
+     * @return the estimated cost in nanoseconds
+     */
+    public double estimateCost(int candidateCount) {
+        return getStatistics().estimateCost(getClauseSemantic(), candidateCount);
+    }
+
+    /**
+     * Estimate the fraction of the candidate components this clause will
+     * match, used by a <code>ParentClause</code> to order the computation of
+     * its children.
+     *
+     * @param candidateCount the number of candidate components
+     * @return the estimated selectivity, between 0 and 1
+     */
+    public double estimateSelectivity(int candidateCount) {
+        return getStatistics().estimateSelectivity(getClauseSemantic(), candidateCount);
+    }
+
+    private ClauseStatistics getStatistics() {
+        if (this.enclosingQuery == null) {
+            return ClauseStatistics.UNOBSERVED;
+        }
+        return this.enclosingQuery.getPlan().getStatistics();
+    }
+
     //~--- get methods ---------------------------------------------------------
     /**
      * Gets the children.
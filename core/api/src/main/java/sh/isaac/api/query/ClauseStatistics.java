@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api.query;
+
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cost and selectivity estimates for query clauses, used by {@link ParentClause}
+ * to decide the order in which its children are computed. Estimates start from
+ * a table keyed by {@link ClauseSemantic} that reflects how each clause finds
+ * its matches: a direct lookup, an index search, or a scan of every candidate.
+ * The estimates are then refined from the statistics of each clause computed.
+ * Each {@link Query} keeps its own statistics, so that observations from one
+ * query, or from a query against another datastore, do not skew the plan of
+ * another.
+ *
+ * @author kec
+ */
+final class ClauseStatistics {
+
+    /**
+     * Weight given to the latest observation when refining an estimate.
+     */
+    private static final double SMOOTHING = 0.25;
+
+    private static final EnumMap<ClauseSemantic, Estimate> DEFAULT_ESTIMATES = new EnumMap<>(ClauseSemantic.class);
+
+    private static final Estimate DEFAULT_ESTIMATE = new Estimate(Access.SCAN, 1_000, 0.5);
+
+    /**
+     * Statistics with no observations, for clauses outside of a query.
+     */
+    static final ClauseStatistics UNOBSERVED = new ClauseStatistics();
+
+    static {
+        // Taxonomy and identifier lookups: cost and matches independent of the candidates.
+        DEFAULT_ESTIMATES.put(ClauseSemantic.CONCEPT_IS, new Estimate(Access.LOOKUP, 1_000, 1));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.CONCEPT_IS_CHILD_OF, new Estimate(Access.LOOKUP, 50_000, 20));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.CONCEPT_IS_DESCENDENT_OF, new Estimate(Access.LOOKUP, 50_000, 20));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.CONCEPT_IS_KIND_OF, new Estimate(Access.LOOKUP, 2_000_000, 1_000));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.ASSEMBLAGE_CONTAINS_COMPONENT, new Estimate(Access.LOOKUP, 1_000_000, 1_000));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.ASSEMBLAGE_CONTAINS_CONCEPT, new Estimate(Access.LOOKUP, 1_000_000, 1_000));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.ASSEMBLAGE_CONTAINS_KIND_OF_CONCEPT, new Estimate(Access.LOOKUP, 3_000_000, 1_000));
+        // Index searches: bounded by the index hit limit.
+        DEFAULT_ESTIMATES.put(ClauseSemantic.DESCRIPTION_LUCENE_MATCH, new Estimate(Access.INDEX, 5_000_000, 1_000));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.DESCRIPTION_ACTIVE_LUCENE_MATCH, new Estimate(Access.INDEX, 5_000_000, 1_000));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.ASSEMBLAGE_LUCENE_MATCH, new Estimate(Access.INDEX, 5_000_000, 1_000));
+        // Scans: cost per candidate, matches a fraction of the candidates.
+        DEFAULT_ESTIMATES.put(ClauseSemantic.DESCRIPTION_REGEX_MATCH, new Estimate(Access.SCAN, 20_000, 0.01));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.DESCRIPTION_ACTIVE_REGEX_MATCH, new Estimate(Access.SCAN, 20_000, 0.01));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.ASSEMBLAGE_CONTAINS_STRING, new Estimate(Access.SCAN, 10_000, 0.01));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.CHANGED_FROM_PREVIOUS_VERSION, new Estimate(Access.SCAN, 5_000, 0.1));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.REL_RESTRICTION, new Estimate(Access.SCAN, 10_000, 0.05));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.REL_TYPE, new Estimate(Access.SCAN, 10_000, 0.05));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.RELATIONSHIP_IS_CIRCULAR, new Estimate(Access.SCAN, 10_000, 0.01));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.COMPONENT_IS_ACTIVE, new Estimate(Access.SCAN, 2_000, 0.9));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.FULLY_QUALIFIED_NAME_FOR_CONCEPT, new Estimate(Access.SCAN, 2_000, 1));
+        DEFAULT_ESTIMATES.put(ClauseSemantic.PREFERRED_NAME_FOR_CONCEPT, new Estimate(Access.SCAN, 2_000, 1));
+    }
+
+    private final ConcurrentHashMap<ClauseSemantic, Estimate> observedEstimates = new ConcurrentHashMap<>();
+
+    /**
+     * Estimate the time to compute a clause.
+     *
+     * @param semantic the semantic of the clause
+     * @param candidateCount the number of candidate components
+     * @return the estimated cost in nanoseconds
+     */
+    double estimateCost(ClauseSemantic semantic, int candidateCount) {
+        final Estimate estimate = getEstimate(semantic);
+        if (estimate.access == Access.SCAN) {
+            return estimate.nanos * candidateCount;
+        }
+        return estimate.nanos;
+    }
+
+    /**
+     * Estimate the fraction of the candidate components a clause will match.
+     *
+     * @param semantic the semantic of the clause
+     * @param candidateCount the number of candidate components
+     * @return the estimated selectivity, between 0 and 1
+     */
+    double estimateSelectivity(ClauseSemantic semantic, int candidateCount) {
+        final Estimate estimate = getEstimate(semantic);
+        if (estimate.access == Access.SCAN) {
+            return estimate.matches;
+        }
+        if (candidateCount == 0) {
+            return 1;
+        }
+        return Math.min(1, estimate.matches / candidateCount);
+    }
+
+    /**
+     * Refine the estimates for a clause semantic from a computed clause.
+     *
+     * @param semantic the semantic of the clause
+     * @param candidateCount the number of candidate components
+     * @param matchCount the number of components matched
+     * @param nanos the time taken to compute the clause
+     */
+    void record(ClauseSemantic semantic, int candidateCount, int matchCount, long nanos) {
+        final Estimate defaultEstimate = DEFAULT_ESTIMATES.getOrDefault(semantic, DEFAULT_ESTIMATE);
+        final Estimate observed;
+        if (defaultEstimate.access == Access.SCAN) {
+            if (candidateCount == 0) {
+                return;
+            }
+            observed = new Estimate(Access.SCAN, (double) nanos / candidateCount, (double) matchCount / candidateCount);
+        } else {
+            observed = new Estimate(defaultEstimate.access, nanos, matchCount);
+        }
+        this.observedEstimates.merge(semantic, observed, Estimate::refine);
+    }
+
+    /**
+     * Discard the statistics recorded so far, reverting to the default estimates.
+     */
+    void clear() {
+        this.observedEstimates.clear();
+    }
+
+    private Estimate getEstimate(ClauseSemantic semantic) {
+        final Estimate observed = this.observedEstimates.get(semantic);
+        if (observed != null) {
+            return observed;
+        }
+        return DEFAULT_ESTIMATES.getOrDefault(semantic, DEFAULT_ESTIMATE);
+    }
+
+    /**
+     * How a clause finds its matches.
+     */
+    private enum Access {
+        /**
+         * Looked up directly, independent of the candidates.
+         */
+        LOOKUP,
+        /**
+         * Searched for in an index, independent of the candidates.
+         */
+        INDEX,
+        /**
+         * Tested against each candidate.
+         */
+        SCAN
+    }
+
+    /**
+     * For lookups and index searches, the total time and the number of matches.
+     * For scans, the time per candidate and the fraction of candidates matched.
+     */
+    private static final class Estimate {
+
+        private final Access access;
+        private final double nanos;
+        private final double matches;
+
+        private Estimate(Access access, double nanos, double matches) {
+            this.access = access;
+            this.nanos = nanos;
+            this.matches = matches;
+        }
+
+        private Estimate refine(Estimate observation) {
+            return new Estimate(this.access,
+                    this.nanos + SMOOTHING * (observation.nanos - this.nanos),
+                    this.matches + SMOOTHING * (observation.matches - this.matches));
+        }
+    }
+}
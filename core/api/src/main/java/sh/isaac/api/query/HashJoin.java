@@ -0,0 +1,423 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api.query;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+import org.apache.mahout.math.map.OpenIntIntHashMap;
+
+/**
+ * An equi-join of tuples of nids with a set of nids, on nid valued keys. The
+ * build side is loaded into a hash table keyed on the join key, and the probe
+ * tuples are streamed against it, with each joined tuple passed to a consumer
+ * as it is found. A key of 0 means the component has no value for the join
+ * field, and never matches.
+ *
+ * <p>When the build side has more rows than fit within the in memory limit,
+ * both sides are partitioned on the join key into temporary files, and the
+ * partitions are joined one at a time, so that only one partition of the
+ * build side is held in memory. The probe tuples are written to the probe
+ * partitions, and streamed back from them, so the probe side is read once
+ * and never held in memory. A partition left too large by skew in the keys
+ * is partitioned again, and one that can't be split, such as a single key
+ * with more rows than the limit, is joined a chunk of build rows at a time,
+ * so no more than the limit of build rows is ever held in memory.</p>
+ *
+ * @author kec
+ */
+public class HashJoin {
+
+    /** The default maximum number of build rows held in memory at once. */
+    public static final int DEFAULT_MAX_BUILD_ROWS = 4 * 1024 * 1024;
+
+    private static final int MAX_PARTITIONS = 256;
+
+    /** The most times a skewed partition is partitioned again, before it is joined in chunks. */
+    private static final int MAX_REPARTITION_DEPTH = 3;
+
+    private final int maxBuildRows;
+
+    /** The most build rows held in memory at once, over the joins made by this instance. */
+    private int peakBuildRows = 0;
+
+    public HashJoin() {
+        this(DEFAULT_MAX_BUILD_ROWS);
+    }
+
+    /**
+     * @param maxBuildRows the maximum number of build rows to hold in memory at once
+     */
+    public HashJoin(int maxBuildRows) {
+        if (maxBuildRows < 1) {
+            throw new IllegalArgumentException("maxBuildRows must be positive: " + maxBuildRows);
+        }
+        this.maxBuildRows = maxBuildRows;
+    }
+
+    /**
+     * Join probe tuples with build nids.
+     *
+     * @param probeTuples the tuples to probe with
+     * @param probeKey the join key of a probe tuple, or 0 if the tuple has no key
+     * @param buildNids the nids of the build side
+     * @param buildKey the join key of a build nid, or 0 if the nid has no key
+     * @return for each match, the probe tuple extended with the matching build nid
+     */
+    public int[][] join(int[][] probeTuples, ToIntFunction<int[]> probeKey, int[] buildNids, IntUnaryOperator buildKey) {
+        List<int[]> results = new ArrayList<>();
+        join(Arrays.asList(probeTuples).iterator(), probeKey, buildNids, buildKey, results::add);
+        return results.toArray(new int[results.size()][]);
+    }
+
+    /**
+     * Join probe tuples with build nids, passing each joined tuple to a
+     * consumer as it is found. The probe tuples are read once, in order. The
+     * joined tuples are in probe order when the build side fits in memory,
+     * and otherwise in probe order within each partition and chunk of build
+     * rows.
+     *
+     * @param probeTuples the tuples to probe with
+     * @param probeKey the join key of a probe tuple, or 0 if the tuple has no key
+     * @param buildNids the nids of the build side
+     * @param buildKey the join key of a build nid, or 0 if the nid has no key
+     * @param joinedTupleConsumer receives, for each match, the probe tuple extended with the matching build nid
+     */
+    public void join(Iterator<int[]> probeTuples, ToIntFunction<int[]> probeKey, int[] buildNids, IntUnaryOperator buildKey,
+            Consumer<int[]> joinedTupleConsumer) {
+        if (!probeTuples.hasNext() || buildNids.length == 0) {
+            return;
+        }
+        if (buildNids.length <= this.maxBuildRows) {
+            BuildTable table = new BuildTable(buildNids.length);
+            for (int buildNid : buildNids) {
+                table.add(buildKey.applyAsInt(buildNid), buildNid);
+            }
+            this.peakBuildRows = Math.max(this.peakBuildRows, buildNids.length);
+            while (probeTuples.hasNext()) {
+                int[] probeTuple = probeTuples.next();
+                table.probe(probeKey.applyAsInt(probeTuple), probeTuple, joinedTupleConsumer);
+            }
+            return;
+        }
+        try {
+            partitionedJoin(probeTuples, probeKey, buildNids, buildKey, joinedTupleConsumer);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return the most build rows held in memory at once, over the joins made
+     * by this instance.
+     */
+    int getPeakBuildRows() {
+        return this.peakBuildRows;
+    }
+
+    private void partitionedJoin(Iterator<int[]> probeTuples, ToIntFunction<int[]> probeKey, int[] buildNids, IntUnaryOperator buildKey,
+            Consumer<int[]> joinedTupleConsumer)
+            throws IOException {
+        Path spillFolder = Files.createTempDirectory("isaac-join");
+        try {
+            Partitions partitions = new Partitions(spillFolder, "0", partitionCount(buildNids.length), 0);
+            partitions.open();
+            try {
+                for (int buildNid : buildNids) {
+                    partitions.addBuildRow(buildKey.applyAsInt(buildNid), buildNid);
+                }
+            } finally {
+                partitions.close();
+            }
+            partitions.open();
+            try {
+                while (probeTuples.hasNext()) {
+                    int[] probeTuple = probeTuples.next();
+                    partitions.addProbeTuple(probeKey.applyAsInt(probeTuple), probeTuple);
+                }
+            } finally {
+                partitions.close();
+            }
+            joinPartitions(partitions, joinedTupleConsumer);
+        } finally {
+            for (File spillFile : spillFolder.toFile().listFiles()) {
+                spillFile.delete();
+            }
+            Files.deleteIfExists(spillFolder);
+        }
+    }
+
+    private int partitionCount(long buildRows) {
+        // twice the minimum, to leave room for skew in the key distribution.
+        return (int) Math.min(MAX_PARTITIONS, 2L * ((buildRows + this.maxBuildRows - 1) / this.maxBuildRows));
+    }
+
+    /**
+     * Join each partition in turn. A partition with more build rows than fit
+     * in memory, because of skew in the keys, is partitioned again on other
+     * bits of the key. A partition that can't be split, because all its rows
+     * have the same key, or the depth limit is reached, is joined a memory
+     * sized chunk of build rows at a time, reading its probe tuples once per
+     * chunk.
+     */
+    private void joinPartitions(Partitions partitions, Consumer<int[]> joinedTupleConsumer)
+            throws IOException {
+        for (int partition = 0; partition < partitions.count; partition++) {
+            int buildCount = partitions.buildCounts[partition];
+            if (buildCount > 0 && partitions.probeCounts[partition] > 0) {
+                if (buildCount > this.maxBuildRows && partitions.mixedKeys[partition]
+                        && partitions.level < MAX_REPARTITION_DEPTH) {
+                    Partitions split = partitions.split(partition, partitionCount(buildCount));
+                    joinPartitions(split, joinedTupleConsumer);
+                } else {
+                    joinPartition(partitions, partition, joinedTupleConsumer);
+                }
+            }
+            partitions.delete(partition);
+        }
+    }
+
+    private void joinPartition(Partitions partitions, int partition, Consumer<int[]> joinedTupleConsumer)
+            throws IOException {
+        int buildCount = partitions.buildCounts[partition];
+        try (DataInputStream build = openInput(partitions.buildFiles[partition])) {
+            for (int chunkStart = 0; chunkStart < buildCount; chunkStart += this.maxBuildRows) {
+                int chunkSize = Math.min(this.maxBuildRows, buildCount - chunkStart);
+                BuildTable table = new BuildTable(chunkSize);
+                for (int i = 0; i < chunkSize; i++) {
+                    table.add(build.readInt(), build.readInt());
+                }
+                this.peakBuildRows = Math.max(this.peakBuildRows, chunkSize);
+                try (DataInputStream probe = openInput(partitions.probeFiles[partition])) {
+                    for (long i = 0; i < partitions.probeCounts[partition]; i++) {
+                        int key = probe.readInt();
+                        table.probe(key, readTuple(probe), joinedTupleConsumer);
+                    }
+                }
+            }
+        }
+    }
+
+    private static DataInputStream openInput(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    private static int[] readTuple(DataInputStream dis) throws IOException {
+        int[] tuple = new int[dis.readInt()];
+        for (int column = 0; column < tuple.length; column++) {
+            tuple[column] = dis.readInt();
+        }
+        return tuple;
+    }
+
+    private static DataOutputStream[] openPartitions(File[] files) throws IOException {
+        DataOutputStream[] outputs = new DataOutputStream[files.length];
+        for (int i = 0; i < files.length; i++) {
+            outputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(files[i])));
+        }
+        return outputs;
+    }
+
+    private static void closePartitions(DataOutputStream[] outputs) throws IOException {
+        IOException exception = null;
+        for (DataOutputStream output : outputs) {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException ex) {
+                    exception = ex;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * @param level the depth of repartitioning, so each level splits on
+     * different bits of the hashed key.
+     */
+    private static int partition(int key, int partitionCount, int level) {
+        return (Integer.rotateLeft(key * 0x9E3779B9, 11 * level) >>> 1) % partitionCount;
+    }
+
+    /**
+     * The build and probe spill files of one level of partitioning. Build
+     * rows are written before probe tuples, and a probe tuple is only written
+     * to a partition with build rows.
+     */
+    private static class Partitions {
+
+        final Path spillFolder;
+        final String name;
+        final int count;
+        final int level;
+        final File[] buildFiles;
+        final File[] probeFiles;
+        final int[] buildCounts;
+        final long[] probeCounts;
+        /** The key of the first build row of each partition. */
+        final int[] firstKeys;
+        /** True if a partition has build rows with more than one key, so splitting can reduce it. */
+        final boolean[] mixedKeys;
+        private DataOutputStream[] outputs;
+
+        Partitions(Path spillFolder, String name, int count, int level) {
+            this.spillFolder = spillFolder;
+            this.name = name;
+            this.count = count;
+            this.level = level;
+            this.buildFiles = new File[count];
+            this.probeFiles = new File[count];
+            this.buildCounts = new int[count];
+            this.probeCounts = new long[count];
+            this.firstKeys = new int[count];
+            this.mixedKeys = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                this.buildFiles[i] = spillFolder.resolve("build-" + name + "-" + i).toFile();
+                this.probeFiles[i] = spillFolder.resolve("probe-" + name + "-" + i).toFile();
+            }
+        }
+
+        /**
+         * Open the build files, or the probe files once build rows have been added.
+         */
+        void open() throws IOException {
+            this.outputs = openPartitions(this.outputs == null ? this.buildFiles : this.probeFiles);
+        }
+
+        void close() throws IOException {
+            closePartitions(this.outputs);
+        }
+
+        void addBuildRow(int key, int nid) throws IOException {
+            if (key != 0) {
+                int partition = partition(key, this.count, this.level);
+                if (this.buildCounts[partition] == 0) {
+                    this.firstKeys[partition] = key;
+                } else if (this.firstKeys[partition] != key) {
+                    this.mixedKeys[partition] = true;
+                }
+                this.outputs[partition].writeInt(key);
+                this.outputs[partition].writeInt(nid);
+                this.buildCounts[partition]++;
+            }
+        }
+
+        void addProbeTuple(int key, int[] probeTuple) throws IOException {
+            if (key != 0) {
+                int partition = partition(key, this.count, this.level);
+                if (this.buildCounts[partition] == 0) {
+                    return;
+                }
+                this.outputs[partition].writeInt(key);
+                this.outputs[partition].writeInt(probeTuple.length);
+                for (int nid : probeTuple) {
+                    this.outputs[partition].writeInt(nid);
+                }
+                this.probeCounts[partition]++;
+            }
+        }
+
+        /**
+         * Partition the rows of one partition again, at the next level.
+         */
+        Partitions split(int partition, int splitCount) throws IOException {
+            Partitions split = new Partitions(this.spillFolder, this.name + "-" + partition, splitCount, this.level + 1);
+            split.open();
+            try (DataInputStream dis = openInput(this.buildFiles[partition])) {
+                for (int i = 0; i < this.buildCounts[partition]; i++) {
+                    split.addBuildRow(dis.readInt(), dis.readInt());
+                }
+            } finally {
+                split.close();
+            }
+            split.open();
+            try (DataInputStream dis = openInput(this.probeFiles[partition])) {
+                for (long i = 0; i < this.probeCounts[partition]; i++) {
+                    int key = dis.readInt();
+                    split.addProbeTuple(key, readTuple(dis));
+                }
+            } finally {
+                split.close();
+            }
+            return split;
+        }
+
+        void delete(int partition) {
+            this.buildFiles[partition].delete();
+            this.probeFiles[partition].delete();
+        }
+    }
+
+    /**
+     * A hash table from join key to build nids, with the rows for a key
+     * chained through an array, so no per row objects are allocated.
+     */
+    private static class BuildTable {
+
+        /** From key to one plus the index of the most recently added row for the key. */
+        private final OpenIntIntHashMap heads;
+        /** One plus the index of the previous row with the same key, or 0. */
+        private final int[] next;
+        private final int[] nids;
+        private int size = 0;
+
+        BuildTable(int capacity) {
+            this.heads = new OpenIntIntHashMap(capacity);
+            this.next = new int[capacity];
+            this.nids = new int[capacity];
+        }
+
+        void add(int key, int nid) {
+            if (key == 0) {
+                return;
+            }
+            this.next[this.size] = this.heads.get(key);
+            this.nids[this.size] = nid;
+            this.size++;
+            this.heads.put(key, this.size);
+        }
+
+        void probe(int key, int[] probeTuple, Consumer<int[]> joinedTupleConsumer) {
+            if (key == 0) {
+                return;
+            }
+            for (int row = this.heads.get(key); row != 0; row = this.next[row - 1]) {
+                int[] joined = Arrays.copyOf(probeTuple, probeTuple.length + 1);
+                joined[probeTuple.length] = this.nids[row - 1];
+                joinedTupleConsumer.accept(joined);
+            }
+        }
+    }
+}
@@ -18,14 +18,41 @@ package sh.isaac.api.query;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import org.apache.mahout.math.map.OpenIntIntHashMap;
+import sh.isaac.api.Get;
 import sh.isaac.api.bootstrap.TermAux;
+import sh.isaac.api.chronicle.Chronology;
+import sh.isaac.api.chronicle.LatestVersion;
+import sh.isaac.api.chronicle.Version;
 import sh.isaac.api.collections.NidSet;
 import sh.isaac.api.component.concept.ConceptSpecification;
+import sh.isaac.api.component.semantic.SemanticChronology;
+import sh.isaac.api.component.semantic.version.ComponentNidVersion;
+import sh.isaac.api.component.semantic.version.DescriptionVersion;
+import sh.isaac.api.component.semantic.version.brittle.BrittleVersion;
+import sh.isaac.api.coordinate.StampCoordinate;
+import sh.isaac.api.observable.ObservableVersion;
 import static sh.isaac.api.query.Clause.getParentClauses;
 
 /**
+ * Joins the components of the assemblage for iteration with the components of
+ * the assemblages to join, where the value of the source field equals the
+ * value of the join field. Join specifications are applied as a chain: the
+ * first joins the assemblage for iteration, and each subsequent specification
+ * reads its source field from the components joined by the one before it.
+ * The candidates of each assemblage are those computed by the child clauses
+ * for that assemblage, or all the components of the assemblage if no child
+ * clause iterates it.
+ *
+ * <p>The joined tuples are available from {@link #getJoinedTuples()}, with
+ * columns in the order of {@link #getJoinedAssemblages()}. With no join
+ * specifications, the components of the child clauses are combined as a
+ * union.</p>
  *
  * @author kec
  */
@@ -33,6 +60,21 @@ public class Join
         extends ParentClause {
 
     List<JoinSpecification> joinSpecifications = new ArrayList<>();
+
+    /**
+     * The stamp coordinate for reading the join fields of versions. If null, the default stamp coordinate is used.
+     */
+    StampCoordinate stampCoordinate;
+
+    /**
+     * The assemblages of the columns of the joined tuples.
+     */
+    private List<ConceptSpecification> joinedAssemblages = new ArrayList<>();
+
+    /**
+     * The tuples from the last compute, or null if not computed with join specifications.
+     */
+    private int[][] joinedTuples;
     
     /**
      * Default no arg constructor for Jaxb.
@@ -60,17 +102,129 @@ public class Join
      */
     @Override
     public Map<ConceptSpecification, NidSet> computeComponents(Map<ConceptSpecification, NidSet> incomingComponents) {
-        final NidSet results = new NidSet();
+        if (this.joinSpecifications.isEmpty()) {
+            final NidSet results = new NidSet();
 
+            getChildren().stream().forEach((clause) -> {
+                results.or(clause.computeComponents(incomingComponents).get(clause.getAssemblageForIteration()));
+                setAssemblageForIteration(clause.getAssemblageForIteration());
+            });
+            HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(incomingComponents);
+            resultsMap.put(this.getAssemblageForIteration(), results);
+            this.joinedTuples = null;
+            return resultsMap;
+        }
+
+        HashMap<ConceptSpecification, NidSet> candidates = new HashMap<>();
         getChildren().stream().forEach((clause) -> {
-            results.or(clause.computeComponents(incomingComponents).get(clause.getAssemblageForIteration()));
-            setAssemblageForIteration(clause.getAssemblageForIteration());
+            NidSet clauseResults = clause.computeComponents(incomingComponents).get(clause.getAssemblageForIteration());
+            if (clauseResults != null) {
+                candidates.computeIfAbsent(clause.getAssemblageForIteration(), (assemblage) -> new NidSet()).or(clauseResults);
+            }
         });
+
+        final StampCoordinate coordinate = this.stampCoordinate != null ? this.stampCoordinate
+                : Get.defaultCoordinate().getStampCoordinate();
+        final HashJoin hashJoin = new HashJoin();
+        List<ConceptSpecification> assemblages = new ArrayList<>();
+        ConceptSpecification sourceAssemblage = this.getAssemblageForIteration();
+        assemblages.add(sourceAssemblage);
+
+        int[] sourceNids = getCandidates(sourceAssemblage, candidates, incomingComponents);
+        List<int[]> tuples = new ArrayList<>(sourceNids.length);
+        for (int sourceNid : sourceNids) {
+            tuples.add(new int[]{sourceNid});
+        }
+        for (JoinSpecification joinSpecification : this.joinSpecifications) {
+            final int sourceColumn = assemblages.size() - 1;
+            final FieldReader sourceReader = new FieldReader(joinSpecification.getSourceField(), assemblages.get(sourceColumn), coordinate);
+            final FieldReader joinReader = new FieldReader(joinSpecification.getJoinField(), joinSpecification.getAssemblageToJoin(), coordinate);
+            final List<int[]> joinedTuples = new ArrayList<>();
+            hashJoin.join(drainingIterator(tuples),
+                    (tuple) -> sourceReader.getFieldNid(tuple[sourceColumn]),
+                    getCandidates(joinSpecification.getAssemblageToJoin(), candidates, incomingComponents),
+                    joinReader::readFieldNid,
+                    joinedTuples::add);
+            tuples = joinedTuples;
+            assemblages.add(joinSpecification.getAssemblageToJoin());
+        }
+        this.joinedAssemblages = assemblages;
+        this.joinedTuples = tuples.toArray(new int[tuples.size()][]);
+
         HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(incomingComponents);
-        resultsMap.put(this.getAssemblageForIteration(), results);
+        for (int column = 0; column < assemblages.size(); column++) {
+            NidSet columnNids = new NidSet();
+            for (int[] tuple : this.joinedTuples) {
+                columnNids.add(tuple[column]);
+            }
+            resultsMap.put(assemblages.get(column), columnNids);
+        }
         return resultsMap;
     }
 
+    /**
+     * An iterator over a list of tuples that releases each tuple from the list
+     * as it is returned, so the tuples of a step of the join chain can be
+     * collected while the tuples of the previous step are consumed.
+     */
+    private static Iterator<int[]> drainingIterator(List<int[]> tuples) {
+        return new Iterator<int[]>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < tuples.size();
+            }
+
+            @Override
+            public int[] next() {
+                return tuples.set(this.index++, null);
+            }
+        };
+    }
+
+    private static int[] getCandidates(ConceptSpecification assemblage, Map<ConceptSpecification, NidSet> candidates,
+            Map<ConceptSpecification, NidSet> incomingComponents) {
+        NidSet assemblageCandidates = candidates.get(assemblage);
+        if (assemblageCandidates == null) {
+            assemblageCandidates = incomingComponents.get(assemblage);
+        }
+        if (assemblageCandidates == null) {
+            return Get.identifierService().getNidsForAssemblage(assemblage).toArray();
+        }
+        return assemblageCandidates.asArray();
+    }
+
+    /**
+     * Forget the tuples of the last compute.
+     */
+    void clearJoinedTuples() {
+        this.joinedTuples = null;
+        this.joinedAssemblages = new ArrayList<>();
+    }
+
+    /**
+     * @return the assemblages of the columns of the joined tuples.
+     */
+    public List<ConceptSpecification> getJoinedAssemblages() {
+        return joinedAssemblages;
+    }
+
+    /**
+     * @return the tuples of joined nids from the last compute, or null if the join has not been computed with join specifications.
+     */
+    public int[][] getJoinedTuples() {
+        return joinedTuples;
+    }
+
+    public StampCoordinate getStampCoordinate() {
+        return stampCoordinate;
+    }
+
+    public void setStampCoordinate(StampCoordinate stampCoordinate) {
+        this.stampCoordinate = stampCoordinate;
+    }
+
     public List<JoinSpecification> getJoinSpecifications() {
         return joinSpecifications;
     }
@@ -87,14 +241,25 @@ public class Join
      */
     @Override
     public Map<ConceptSpecification, NidSet> computePossibleComponents(Map<ConceptSpecification, NidSet> searchSpace) {
-        final NidSet results = new NidSet();
+        if (this.joinSpecifications.isEmpty()) {
+            final NidSet results = new NidSet();
 
+            getChildren().stream().forEach((clause) -> {
+                results.or(clause.computePossibleComponents(searchSpace).get(clause.getAssemblageForIteration()));
+                setAssemblageForIteration(clause.getAssemblageForIteration());
+            });
+            HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(searchSpace);
+            resultsMap.put(this.getAssemblageForIteration(), results);
+            return resultsMap;
+        }
+        // keep the possible components of each assemblage separate, they are joined, not combined.
+        HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(searchSpace);
         getChildren().stream().forEach((clause) -> {
-            results.or(clause.computePossibleComponents(searchSpace).get(clause.getAssemblageForIteration()));
-            setAssemblageForIteration(clause.getAssemblageForIteration());
+            NidSet clauseResults = clause.computePossibleComponents(searchSpace).get(clause.getAssemblageForIteration());
+            if (clauseResults != null) {
+                resultsMap.put(clause.getAssemblageForIteration(), clauseResults);
+            }
         });
-        HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(searchSpace);
-        resultsMap.put(this.getAssemblageForIteration(), results);
         return resultsMap;
     }
 
@@ -140,4 +305,110 @@ public class Join
     public Clause[] getAllowedSiblingClauses() {
         return getAllClauses();
     }
+
+    /**
+     * Reads the nid value of a field from the latest version of the components
+     * of an assemblage. The field is either a stamp or component field, such as
+     * {@link TermAux#REFERENCED_COMPONENT_NID_FOR_SEMANTIC}, or a semantic field
+     * defined for the assemblage by {@link TermAux#ASSEMBLAGE_SEMANTIC_FIELDS}.
+     * Fields without a nid value read as 0, which never joins. The build nids
+     * of a join are distinct, so are read directly, while the probe side keeps
+     * the value read for each component, which may appear in many tuples.
+     */
+    private static class FieldReader {
+
+        private final int fieldNid;
+        private final StampCoordinate stampCoordinate;
+        private final int semanticFieldIndex;
+        private final OpenIntIntHashMap fieldNidsForComponents = new OpenIntIntHashMap();
+
+        FieldReader(ConceptSpecification field, ConceptSpecification assemblage, StampCoordinate stampCoordinate) {
+            this.fieldNid = field.getNid();
+            this.stampCoordinate = stampCoordinate;
+            OptionalInt propertyIndex = Get.assemblageService()
+                    .getPropertyIndexForSemanticField(this.fieldNid, assemblage.getNid(), stampCoordinate);
+            this.semanticFieldIndex = propertyIndex.isPresent()
+                    ? propertyIndex.getAsInt() - ObservableVersion.PROPERTY_INDEX.SEMANTIC_FIELD_START.getIndex() : -1;
+        }
+
+        /**
+         * @param componentNid the nid of the component
+         * @return the field value, read once per component
+         */
+        int getFieldNid(int componentNid) {
+            if (this.fieldNid == TermAux.ASSEMBLAGE_NID_FOR_COMPONENT.getNid()) {
+                return readFieldNid(componentNid);
+            }
+            if (this.fieldNidsForComponents.containsKey(componentNid)) {
+                return this.fieldNidsForComponents.get(componentNid);
+            }
+            int value = readFieldNid(componentNid);
+            this.fieldNidsForComponents.put(componentNid, value);
+            return value;
+        }
+
+        /**
+         * @param componentNid the nid of the component
+         * @return the field value, read without keeping it
+         */
+        int readFieldNid(int componentNid) {
+            if (this.fieldNid == TermAux.ASSEMBLAGE_NID_FOR_COMPONENT.getNid()) {
+                return Get.identifierService().getAssemblageNid(componentNid).orElse(0);
+            }
+            Optional<? extends Chronology> optionalChronology = Get.identifiedObjectService().getChronology(componentNid);
+            if (!optionalChronology.isPresent()) {
+                return 0;
+            }
+            Chronology chronology = optionalChronology.get();
+            if (this.fieldNid == TermAux.REFERENCED_COMPONENT_NID_FOR_SEMANTIC.getNid()) {
+                return chronology instanceof SemanticChronology ? ((SemanticChronology) chronology).getReferencedComponentNid() : 0;
+            }
+            LatestVersion<Version> latest = chronology.getLatestVersion(this.stampCoordinate);
+            if (!latest.isPresent()) {
+                return 0;
+            }
+            Version version = latest.get();
+            if (this.fieldNid == TermAux.AUTHOR_NID_FOR_VERSION.getNid()) {
+                return version.getAuthorNid();
+            }
+            if (this.fieldNid == TermAux.MODULE_NID_FOR_VERSION.getNid()) {
+                return version.getModuleNid();
+            }
+            if (this.fieldNid == TermAux.PATH_NID_FOR_VERSION.getNid()) {
+                return version.getPathNid();
+            }
+            return getSemanticFieldNid(version);
+        }
+
+        private int getSemanticFieldNid(Version version) {
+            if (this.semanticFieldIndex < 0) {
+                return 0;
+            }
+            if (version instanceof ComponentNidVersion) {
+                return this.semanticFieldIndex == 0 ? ((ComponentNidVersion) version).getComponentNid() : 0;
+            }
+            if (version instanceof DescriptionVersion) {
+                DescriptionVersion description = (DescriptionVersion) version;
+                switch (this.semanticFieldIndex) {
+                    case 1:
+                        return description.getLanguageConceptNid();
+                    case 2:
+                        return description.getDescriptionTypeConceptNid();
+                    case 3:
+                        return description.getCaseSignificanceConceptNid();
+                    default:
+                        return 0;
+                }
+            }
+            if (version instanceof BrittleVersion) {
+                Object[] fields = ((BrittleVersion) version).getDataFields();
+                // nids are negative, other integer fields do not join.
+                if (this.semanticFieldIndex < fields.length && fields[this.semanticFieldIndex] instanceof Integer
+                        && (Integer) fields[this.semanticFieldIndex] < 0) {
+                    return (Integer) fields[this.semanticFieldIndex];
+                }
+            }
+            return 0;
+        }
+    }
 }
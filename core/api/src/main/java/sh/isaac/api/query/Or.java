@@ -48,7 +48,9 @@ import sh.isaac.api.component.concept.ConceptSpecification;
 //~--- classes ----------------------------------------------------------------
 /**
  * Clause that computes the union of the results of the enclosed
- * <code>Clauses</code>.
+ * <code>Clauses</code>. The clauses are computed in order of estimated cost per
+ * candidate matched, and the components of each are computed over the
+ * candidates not yet matched.
  *
  * @author dylangrald
  */
@@ -82,11 +84,22 @@ public class Or
     @Override
     public Map<ConceptSpecification, NidSet> computeComponents(Map<ConceptSpecification, NidSet> incomingComponents) {
         final NidSet results = new NidSet();
-
-        getChildren().stream().forEach((clause) -> {
-            results.or(clause.computeComponents(incomingComponents).get(clause.getAssemblageForIteration()));
-            setAssemblageForIteration(clause.getAssemblageForIteration());
-        });
+        final ConceptSpecification assemblage = this.getAssemblageForIteration();
+        final NidSet incoming = incomingComponents.get(assemblage);
+        final NidSet remaining = incoming == null ? null : NidSet.of(incoming);
+        final Map<ConceptSpecification, NidSet> candidates = new HashMap<>(incomingComponents);
+
+        for (final Clause clause : getEvaluationOrder(remaining == null ? 0 : remaining.size(), false)) {
+            if (remaining != null) {
+                restrictCandidates(candidates, assemblage, clause, remaining);
+            }
+            final NidSet clauseResults = computeChildComponents(clause, candidates);
+            results.or(clauseResults);
+            if (remaining != null && clauseResults != null) {
+                remaining.andNot(clauseResults);
+            }
+        }
+        setAssemblageForIterationFromChildren();
         HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(incomingComponents);
         resultsMap.put(this.getAssemblageForIteration(), results);
         return resultsMap;
@@ -101,16 +114,36 @@ public class Or
     @Override
     public Map<ConceptSpecification, NidSet> computePossibleComponents(Map<ConceptSpecification, NidSet> searchSpace) {
         final NidSet results = new NidSet();
-
-        getChildren().stream().forEach((clause) -> {
-            results.or(clause.computePossibleComponents(searchSpace).get(clause.getAssemblageForIteration()));
-            setAssemblageForIteration(clause.getAssemblageForIteration());
-        });
+        final NidSet incoming = searchSpace.get(this.getAssemblageForIteration());
+
+        // Clauses that need iteration pass all their candidates through as possible
+        // components, so the search space is only narrowed when computing components.
+        for (final Clause clause : planEvaluationOrder(incoming == null ? 0 : incoming.size(), false)) {
+            results.or(computeChildPossibleComponents(clause, searchSpace));
+        }
+        setAssemblageForIterationFromChildren();
         HashMap<ConceptSpecification, NidSet> resultsMap = new HashMap<>(searchSpace);
         resultsMap.put(this.getAssemblageForIteration(), results);
         return resultsMap;
     }
 
+    /**
+     * Estimate the fraction of the candidate components matched by any of the
+     * enclosed clauses, treating them as independent.
+     *
+     * @param candidateCount the number of candidate components
+     * @return the estimated selectivity
+     */
+    @Override
+    public double estimateSelectivity(int candidateCount) {
+        double unmatched = 1;
+
+        for (final Clause clause : getChildren()) {
+            unmatched *= 1 - clause.estimateSelectivity(candidateCount);
+        }
+        return 1 - unmatched;
+    }
+
     //~--- get methods ---------------------------------------------------------
     @Override
     public ClauseSemantic getClauseSemantic() {
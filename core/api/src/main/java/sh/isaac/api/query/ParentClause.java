@@ -43,8 +43,10 @@ package sh.isaac.api.query;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -54,6 +56,8 @@ import javax.xml.bind.annotation.XmlRootElement;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.component.concept.ConceptSpecification;
 import sh.isaac.api.component.concept.ConceptVersion;
 
 //~--- classes ----------------------------------------------------------------
@@ -70,6 +74,12 @@ import sh.isaac.api.component.concept.ConceptVersion;
 @XmlAccessorType(value = XmlAccessType.NONE)
 public abstract class ParentClause
         extends Clause {
+   /**
+    * Floor on the fraction of candidates a child is estimated to eliminate,
+    * so that children estimated to eliminate none still have a finite rank.
+    */
+   private static final double MIN_ELIMINATION = 0.000001;
+
    /**
     * Array of instances of
     * <code>Clause</code> that are children of the ParentClause in the tree
@@ -111,8 +121,154 @@ public abstract class ParentClause
       setChildren(children);
    }
 
+   //~--- methods -------------------------------------------------------------
+
+   /**
+    * Estimate the time to compute the children of this clause. Children
+    * skipped by short-circuit evaluation make the actual cost lower.
+    *
+    * @param candidateCount the number of candidate components
+    * @return the estimated cost in nanoseconds
+    */
+   @Override
+   public double estimateCost(int candidateCount) {
+      double cost = 0;
+
+      for (Clause child: this.children) {
+         cost += child.estimateCost(candidateCount);
+      }
+
+      return cost;
+   }
+
+   /**
+    * Plan the order in which the children are computed, ranking each child by
+    * its estimated cost per candidate it eliminates, so that cheap, selective
+    * children run first and shrink the candidates of the more expensive ones.
+    * The order is kept in the plan of the enclosing query for subsequent calls
+    * to {@link #getEvaluationOrder(int, boolean)} in the same computation.
+    *
+    * @param candidateCount the number of candidate components
+    * @param keepsMatches true if the candidates a child matches are kept for
+    * the next child, as for AND, false if they are removed, as for OR and AND NOT
+    * @return the children in the order they are to be computed
+    */
+   protected List<Clause> planEvaluationOrder(int candidateCount, boolean keepsMatches) {
+      final List<Clause> evaluationOrder;
+
+      if (this.enclosingQuery == null || !this.enclosingQuery.isPlanningEnabled() || this.children.size() < 2) {
+         evaluationOrder = this.children;
+      } else {
+         final double[] ranks = new double[this.children.size()];
+         final Integer[] indexes = new Integer[ranks.length];
+
+         for (int i = 0; i < ranks.length; i++) {
+            final Clause child = this.children.get(i);
+            final double selectivity = child.estimateSelectivity(candidateCount);
+            final double eliminated = keepsMatches ? 1 - selectivity : selectivity;
+
+            ranks[i] = child.estimateCost(candidateCount) / Math.max(eliminated, MIN_ELIMINATION);
+            indexes[i] = i;
+         }
+
+         Arrays.sort(indexes, (a, b) -> Double.compare(ranks[a], ranks[b]));
+
+         final List<Clause> order = new ArrayList<>(ranks.length);
+
+         for (Integer index: indexes) {
+            order.add(this.children.get(index));
+         }
+
+         evaluationOrder = Collections.unmodifiableList(order);
+      }
+
+      if (this.enclosingQuery != null) {
+         this.enclosingQuery.getPlan().recordEvaluationOrder(this, evaluationOrder);
+      }
+
+      return evaluationOrder;
+   }
+
+   /**
+    * Compute the possible components of a child, recording the computation in
+    * the plan of the enclosing query.
+    *
+    * @param child the child to compute
+    * @param candidates the candidate components
+    * @return the possible components of the child, for the child's assemblage
+    */
+   protected NidSet computeChildPossibleComponents(Clause child, Map<ConceptSpecification, NidSet> candidates) {
+      if (this.enclosingQuery == null) {
+         return child.computePossibleComponents(candidates).get(child.getAssemblageForIteration());
+      }
+
+      return this.enclosingQuery.getPlan().computePossibleComponents(child, candidates).get(child.getAssemblageForIteration());
+   }
+
+   /**
+    * Compute the components of a child, recording the computation in the plan
+    * of the enclosing query.
+    *
+    * @param child the child to compute
+    * @param candidates the candidate components
+    * @return the components of the child, for the child's assemblage
+    */
+   protected NidSet computeChildComponents(Clause child, Map<ConceptSpecification, NidSet> candidates) {
+      if (this.enclosingQuery == null) {
+         return child.computeComponents(candidates).get(child.getAssemblageForIteration());
+      }
+
+      return this.enclosingQuery.getPlan().computeComponents(child, candidates).get(child.getAssemblageForIteration());
+   }
+
+   /**
+    * Narrow the candidates passed to a child to the components that may still
+    * change the result of this clause.
+    *
+    * @param candidates the candidate components passed to the children, updated in place
+    * @param assemblage the assemblage the remaining components belong to
+    * @param child the child about to be computed
+    * @param remaining the components that may still change the result
+    */
+   protected static void restrictCandidates(Map<ConceptSpecification, NidSet> candidates,
+         ConceptSpecification assemblage,
+         Clause child,
+         NidSet remaining) {
+      if (!child.getAssemblageForIteration().equals(assemblage)) {
+         return;
+      }
+
+      final NidSet current = candidates.get(assemblage);
+
+      if (current == null || current.size() != remaining.size()) {
+         candidates.put(assemblage, NidSet.of(remaining));
+      }
+   }
+
    //~--- get methods ---------------------------------------------------------
 
+   /**
+    * Gets the order in which the children are computed, as planned when the
+    * possible components were computed in the current computation of the
+    * enclosing query, or planned now if they were not.
+    *
+    * @param candidateCount the number of candidate components
+    * @param keepsMatches true if the candidates a child matches are kept for
+    * the next child, false if they are removed
+    * @return the children in the order they are to be computed
+    */
+   protected List<Clause> getEvaluationOrder(int candidateCount, boolean keepsMatches) {
+      if (this.enclosingQuery != null) {
+         final List<Clause> evaluationOrder = this.enclosingQuery.getPlan().getEvaluationOrder(this);
+
+         if (evaluationOrder != null && evaluationOrder.size() == this.children.size()) {
+            return evaluationOrder;
+         }
+      }
+
+      return planEvaluationOrder(candidateCount, keepsMatches);
+   }
+
    /**
     * Gets the array of instances of <code>Clause</code> that are children of the ParentClause in the tree used to compute the constructed <code>Query</code>.
     *
@@ -125,6 +281,16 @@ public abstract class ParentClause
 
    //~--- set methods ---------------------------------------------------------
 
+   /**
+    * Sets the assemblage for iteration to that of the last child, as computing
+    * the children in declaration order would.
+    */
+   protected void setAssemblageForIterationFromChildren() {
+      if (!this.children.isEmpty()) {
+         setAssemblageForIteration(this.children.get(this.children.size() - 1).getAssemblageForIteration());
+      }
+   }
+
    /**
     * Set array of instances of <code>Clause</code> that are children of the ParentClause in the tree used to compute the constructed <code>Query</code>.
     *
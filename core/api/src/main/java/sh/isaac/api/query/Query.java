@@ -40,6 +40,7 @@ package sh.isaac.api.query;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import sh.isaac.api.bootstrap.TermAux;
 import sh.isaac.api.collections.NidSet;
@@ -109,6 +110,18 @@ public abstract class Query {
      */
     private ForSetsSpecification forSetSpecification;
 
+    /**
+     * The record of the last computation, rendered by {@link #explain()}, and
+     * the clause statistics the plan of each computation is based on.
+     */
+    private final QueryPlan plan = new QueryPlan();
+
+    /**
+     * True if parent clauses order the computation of their children by
+     * estimated cost and selectivity, false to compute them in declaration order.
+     */
+    private boolean planningEnabled = true;
+
     //~--- constructors --------------------------------------------------------
     /**
      * Constructor for <code>Query</code>.
@@ -158,10 +171,29 @@ public abstract class Query {
         setup();
         getLetDeclarations();
         this.rootClause[0] = Where();
+        clearJoinedTuples(this.rootClause[0]);
 
-        final Map<ConceptSpecification, NidSet> possibleComponentMap = this.rootClause[0].computePossibleComponents(For());
+        this.plan.clear();
 
-        return this.rootClause[0].computeComponents(possibleComponentMap);
+        final Map<ConceptSpecification, NidSet> possibleComponentMap = this.plan.computePossibleComponents(this.rootClause[0], For());
+
+        return this.plan.computeComponents(this.rootClause[0], possibleComponentMap);
+    }
+
+    /**
+     * Describe how the query was last computed: for each clause, the order in
+     * which it was computed among its siblings, its estimated cost and
+     * selectivity, and the candidates, matches and time of each compute step.
+     * If the query has not been computed, the estimates alone are described.
+     *
+     * @return the description, one clause per line
+     */
+    public String explain() {
+        if (this.rootClause[0] == null) {
+            setup();
+        }
+        final NidSet candidates = For().get(this.rootClause[0].getAssemblageForIteration());
+        return this.plan.explain(this.rootClause[0], candidates == null ? 0 : candidates.size());
     }
 
     public ForSetsSpecification getForSetSpecification() {
@@ -169,12 +201,21 @@ public abstract class Query {
     }
 
     /**
-     * 
+     * Compute the query, and return the results as rows of component nids.
+     * Without a join, each row holds one nid. With a join as the root clause,
+     * each row is a joined tuple, with a column for each assemblage of the for
+     * set specification, in the order of {@link ForSetsSpecification#getAssembalgeToIndexMap()}.
+     * The tuples of a join nested in other clauses are not reified, since the
+     * clauses around it do not filter them.
+     *
      * @return an array of component nids in an array...
      */
     public int[][] reify() {
         Map<ConceptSpecification, NidSet> assemlageMapResults = compute();
         assemlageMapResults.remove(TermAux.UNINITIALIZED_COMPONENT_ID); // TODO remove cause, not the symptom...
+        if (this.rootClause[0] instanceof Join && ((Join) this.rootClause[0]).getJoinedTuples() != null) {
+            return reifyJoin((Join) this.rootClause[0]);
+        }
         if (assemlageMapResults.size() == 1) {
             for (Map.Entry<ConceptSpecification, NidSet> entry : assemlageMapResults.entrySet()) {
                 int[][] resultArray = new int[entry.getValue().size()][];
@@ -186,10 +227,48 @@ public abstract class Query {
             }
             throw new IllegalStateException("No entry found, though list is not empty. ");
         } else {
-            throw new UnsupportedOperationException("Can't handle joins yet" + assemlageMapResults);
+            throw new UnsupportedOperationException("Can't handle multiple assemblages without a join: " + assemlageMapResults);
         }
     }
 
+    /**
+     * Forget the tuples of every join from a prior compute, so a join skipped
+     * by a short circuiting parent holds none.
+     */
+    private static void clearJoinedTuples(Clause clause) {
+        if (clause == null) {
+            return;
+        }
+        if (clause instanceof Join) {
+            ((Join) clause).clearJoinedTuples();
+        }
+        for (Clause child : clause.getChildren()) {
+            clearJoinedTuples(child);
+        }
+    }
+
+    private int[][] reifyJoin(Join join) {
+        Map<ConceptSpecification, Integer> assemblageToIndexMap = this.forSetSpecification.getAssembalgeToIndexMap();
+        List<ConceptSpecification> joinedAssemblages = join.getJoinedAssemblages();
+        int[] columnForJoinColumn = new int[joinedAssemblages.size()];
+        for (int joinColumn = 0; joinColumn < columnForJoinColumn.length; joinColumn++) {
+            Integer column = assemblageToIndexMap.get(joinedAssemblages.get(joinColumn));
+            if (column == null) {
+                throw new IllegalStateException("Joined assemblage is not in the for set: " + joinedAssemblages.get(joinColumn));
+            }
+            columnForJoinColumn[joinColumn] = column;
+        }
+        int[][] joinedTuples = join.getJoinedTuples();
+        int[][] resultArray = new int[joinedTuples.length][];
+        for (int row = 0; row < joinedTuples.length; row++) {
+            resultArray[row] = new int[assemblageToIndexMap.size()];
+            for (int joinColumn = 0; joinColumn < columnForJoinColumn.length; joinColumn++) {
+                resultArray[row][columnForJoinColumn[joinColumn]] = joinedTuples[row][joinColumn];
+            }
+        }
+        return resultArray;
+    }
+
     /**
      * Let.
      *
@@ -668,6 +747,25 @@ public abstract class Query {
         return this.premiseType;
     }
 
+    /**
+     * Checks if parent clauses order the computation of their children by
+     * estimated cost and selectivity.
+     *
+     * @return true if planning is enabled
+     */
+    public boolean isPlanningEnabled() {
+        return this.planningEnabled;
+    }
+
+    /**
+     * Gets the record of the last computation.
+     *
+     * @return the plan
+     */
+    QueryPlan getPlan() {
+        return this.plan;
+    }
+
     //~--- set methods ---------------------------------------------------------
     /**
      * Sets the premise type.
@@ -678,6 +776,16 @@ public abstract class Query {
         this.premiseType = premiseType;
     }
 
+    /**
+     * Sets whether parent clauses order the computation of their children by
+     * estimated cost and selectivity, or compute them in declaration order.
+     *
+     * @param planningEnabled true to enable planning
+     */
+    public void setPlanningEnabled(boolean planningEnabled) {
+        this.planningEnabled = planningEnabled;
+    }
+
     /**
      * Set number of Components output in the returnResultSet method.
      *
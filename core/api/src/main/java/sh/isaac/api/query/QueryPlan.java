@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api.query;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.component.concept.ConceptSpecification;
+
+/**
+ * Records how the clauses of a {@link Query} were computed: the order chosen for
+ * the children of each {@link ParentClause}, the estimates that order was based
+ * on, and the candidates, matches and time of each compute step. The record is
+ * rendered by {@link Query#explain()}. The plan also keeps the statistics of
+ * the clauses computed, which outlive each computation so that estimates for
+ * repeated computations of the query are refined.
+ *
+ * @author kec
+ */
+final class QueryPlan {
+
+    private final Map<Clause, ClauseExecution> executions = new IdentityHashMap<>();
+
+    private final Map<ParentClause, List<Clause>> evaluationOrders = new IdentityHashMap<>();
+
+    private final ClauseStatistics statistics = new ClauseStatistics();
+
+    /**
+     * Discard the record of the previous computation, including the order
+     * planned for the children of each parent clause, so that the next
+     * computation is planned from the current statistics.
+     */
+    void clear() {
+        this.executions.clear();
+        this.evaluationOrders.clear();
+    }
+
+    /**
+     * Gets the statistics of the clauses computed by the query.
+     *
+     * @return the statistics
+     */
+    ClauseStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Gets the order planned in this computation for the children of a parent clause.
+     *
+     * @param parentClause the parent clause
+     * @return the children in the order they are to be computed, or null if
+     * the order has not been planned in this computation
+     */
+    List<Clause> getEvaluationOrder(ParentClause parentClause) {
+        return this.evaluationOrders.get(parentClause);
+    }
+
+    /**
+     * Record the order in which the children of a parent clause will be computed.
+     *
+     * @param parentClause the parent clause
+     * @param evaluationOrder the children, in the order they will be computed
+     */
+    void recordEvaluationOrder(ParentClause parentClause, List<Clause> evaluationOrder) {
+        this.evaluationOrders.put(parentClause, evaluationOrder);
+        for (int i = 0; i < evaluationOrder.size(); i++) {
+            getExecution(evaluationOrder.get(i)).position = i + 1;
+        }
+    }
+
+    /**
+     * Compute the possible components of a clause, recording the estimates,
+     * candidates, matches and time.
+     *
+     * @param clause the clause to compute
+     * @param incomingPossibleComponents the incoming possible components
+     * @return the possible components of the clause
+     */
+    Map<ConceptSpecification, NidSet> computePossibleComponents(Clause clause, Map<ConceptSpecification, NidSet> incomingPossibleComponents) {
+        final ClauseExecution execution = getExecution(clause);
+        final int candidateCount = count(incomingPossibleComponents, clause);
+        execution.estimatedCost = clause.estimateCost(candidateCount);
+        execution.estimatedSelectivity = clause.estimateSelectivity(candidateCount);
+        final long start = System.nanoTime();
+        final Map<ConceptSpecification, NidSet> results = clause.computePossibleComponents(incomingPossibleComponents);
+        execution.possibleComponents = new ComputeStep(candidateCount, count(results, clause), System.nanoTime() - start);
+        return results;
+    }
+
+    /**
+     * Compute the components of a clause, recording the candidates, matches and
+     * time, and refining the statistics for the clause's semantic.
+     *
+     * @param clause the clause to compute
+     * @param incomingComponents the incoming components
+     * @return the components of the clause
+     */
+    Map<ConceptSpecification, NidSet> computeComponents(Clause clause, Map<ConceptSpecification, NidSet> incomingComponents) {
+        final ClauseExecution execution = getExecution(clause);
+        final int candidateCount = count(incomingComponents, clause);
+        final long start = System.nanoTime();
+        final Map<ConceptSpecification, NidSet> results = clause.computeComponents(incomingComponents);
+        execution.components = new ComputeStep(candidateCount, count(results, clause), System.nanoTime() - start);
+
+        if (execution.possibleComponents != null) {
+            this.statistics.record(clause.getClauseSemantic(), execution.possibleComponents.candidateCount,
+                    execution.components.matchCount, execution.possibleComponents.nanos + execution.components.nanos);
+        } else {
+            this.statistics.record(clause.getClauseSemantic(), candidateCount,
+                    execution.components.matchCount, execution.components.nanos);
+        }
+        return results;
+    }
+
+    /**
+     * Describe the computation of a clause tree, one clause per line. Clauses
+     * that have not been computed are described by their estimates alone.
+     *
+     * @param root the root of the clause tree
+     * @param candidateCount the number of candidates for the root, used to
+     * estimate clauses that have not been computed
+     * @return the description
+     */
+    String explain(Clause root, int candidateCount) {
+        final StringBuilder sb = new StringBuilder();
+        explain(root, candidateCount, 0, sb);
+        return sb.toString();
+    }
+
+    private void explain(Clause clause, int candidateCount, int depth, StringBuilder sb) {
+        final ClauseExecution execution = this.executions.get(clause);
+        for (int i = 0; i < depth; i++) {
+            sb.append("    ");
+        }
+        if (execution != null && execution.position > 0) {
+            sb.append('#').append(execution.position).append(' ');
+        }
+        sb.append(clause.getClauseSemantic());
+
+        if (execution == null || execution.possibleComponents == null) {
+            sb.append(String.format(" est. cost %.3f ms, est. selectivity %.4f",
+                    clause.estimateCost(candidateCount) / 1_000_000d, clause.estimateSelectivity(candidateCount)));
+            if (execution != null && execution.position > 0) {
+                sb.append("; not computed");
+            }
+        } else {
+            sb.append(String.format(" est. cost %.3f ms, est. selectivity %.4f",
+                    execution.estimatedCost / 1_000_000d, execution.estimatedSelectivity));
+            sb.append("; possible ").append(execution.possibleComponents);
+            if (execution.components != null) {
+                sb.append("; components ").append(execution.components);
+            }
+        }
+        sb.append('\n');
+
+        for (Clause child : clause.getChildren()) {
+            explain(child, candidateCount, depth + 1, sb);
+        }
+    }
+
+    private ClauseExecution getExecution(Clause clause) {
+        return this.executions.computeIfAbsent(clause, (key) -> new ClauseExecution());
+    }
+
+    private static int count(Map<ConceptSpecification, NidSet> components, Clause clause) {
+        final NidSet nids = components.get(clause.getAssemblageForIteration());
+        return nids == null ? 0 : nids.size();
+    }
+
+    private static final class ClauseExecution {
+
+        /**
+         * One-based position among the children of the parent clause, or 0 for the root.
+         */
+        private int position;
+        private double estimatedCost;
+        private double estimatedSelectivity;
+        private ComputeStep possibleComponents;
+        private ComputeStep components;
+    }
+
+    private static final class ComputeStep {
+
+        private final int candidateCount;
+        private final int matchCount;
+        private final long nanos;
+
+        private ComputeStep(int candidateCount, int matchCount, long nanos) {
+            this.candidateCount = candidateCount;
+            this.matchCount = matchCount;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d -> %d in %.3f ms", this.candidateCount, this.matchCount, this.nanos / 1_000_000d);
+        }
+    }
+}
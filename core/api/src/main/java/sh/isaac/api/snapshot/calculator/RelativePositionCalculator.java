@@ -44,12 +44,15 @@ package sh.isaac.api.snapshot.calculator;
 import java.time.Instant;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Singleton;
 
@@ -90,7 +93,25 @@ public class RelativePositionCalculator implements StaticIsaacCache {
    /** The Constant LOG. */
    private static final Logger LOG = LogManager.getLogger();
 
-   private static RelativePositionCalculator lastCalculator = null;
+   /** The maximum number of calculators retained by the calculator cache. */
+   private static final int MAX_CACHED_CALCULATORS = 64;
+
+   /**
+    * Calculators keyed by the values of the coordinate fields that determine
+    * the result of a calculation, so equal coordinates share a calculator and
+    * its memo tables, regardless of the coordinate instance.
+    */
+   private static final ConcurrentHashMap<CalculatorKey, RelativePositionCalculator> CALCULATOR_CACHE = new ConcurrentHashMap<>();
+   private static final AtomicLong CACHE_HITS = new AtomicLong();
+   private static final AtomicLong CACHE_MISSES = new AtomicLong();
+   private static final AtomicLong CACHE_EVICTIONS = new AtomicLong();
+   private static final AtomicLong CACHE_ACCESS_SEQUENCE = new AtomicLong();
+
+   /**
+    * Incremented when a path or path origin is committed, so that every calculator,
+    * cached or held by a caller, rebuilds its path segments before its next use.
+    */
+   private static final AtomicLong PATH_GENERATION = new AtomicLong();
 
    //~--- fields --------------------------------------------------------------
 
@@ -98,18 +119,23 @@ public class RelativePositionCalculator implements StaticIsaacCache {
    private int  errorCount   = 0;
    private StampService stampService;
 
-   /** The coordinate. */
-   private StampCoordinate coordinate;
+   /** The coordinate values of the calculator, copied from the first requesting coordinate. */
+   private CalculatorKey key;
+
+   /** A copy of the destination of the coordinate, unaffected by later changes to the coordinate. */
+   private StampPosition destination;
+   private StampPrecedence stampPrecedence;
    private EnumSet<Status>  allowedStates;
-   private final ConcurrentHashMap<Integer, Boolean> stampOnRoute = new ConcurrentHashMap<>();
-   private final ConcurrentHashMap<Integer, Boolean> stampIsAllowedState = new ConcurrentHashMap<>();
 
-   /**
-    * Mapping from pathNid to each segment for that pathNid. There is one entry
-    * for each path reachable antecedent to the destination position of the
-    * computer.
-    */
-   ConcurrentHashMap<Integer, Segment> pathNidSegmentMap;
+   /** Sorted module nids of the coordinate, empty to match all modules. */
+   private int[] moduleNids;
+   private final StampBooleanMemo stampIsAllowedState = new StampBooleanMemo();
+
+   /** Used to find the least recently used calculator when the cache is full. */
+   private volatile long lastAccess;
+
+   /** The path segments of the destination, replaced when paths change. */
+   private volatile Route route;
 
    //~--- constructors --------------------------------------------------------
 
@@ -127,9 +153,16 @@ public class RelativePositionCalculator implements StaticIsaacCache {
     */
    private RelativePositionCalculator(StampCoordinate coordinate) {
       //For the internal callback to populate the cache
-      this.coordinate             = coordinate;
-      this.pathNidSegmentMap = setupPathNidSegmentMap(coordinate.getStampPosition());
-      this.allowedStates          = coordinate.getAllowedStates();
+      this(coordinate, new CalculatorKey(coordinate));
+   }
+
+   private RelativePositionCalculator(StampCoordinate coordinate, CalculatorKey key) {
+      this.key                    = key;
+      this.destination            = coordinate.getStampPosition().deepClone();
+      this.stampPrecedence        = key.stampPrecedence;
+      this.allowedStates          = EnumSet.copyOf(key.allowedStates);
+      this.moduleNids             = key.moduleNids;
+      this.route                  = new Route(PATH_GENERATION.get(), setupPathNidSegmentMap(this.destination));
    }
 
    //~--- methods -------------------------------------------------------------
@@ -159,7 +192,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
                                         .getPathNidForStamp(stampSequence2);
 
       if (ss1PathNid == ss2PathNid) {
-         final Segment seg = this.pathNidSegmentMap.get(ss1PathNid);
+         final Segment seg = getPathNidSegmentMap().get(ss1PathNid);
 
          if (seg.containsPosition(ss1PathNid, ss1ModuleNid, ss1Time) &&
                seg.containsPosition(ss2PathNid, ss2ModuleNid, ss2Time)) {
@@ -179,8 +212,9 @@ public class RelativePositionCalculator implements StaticIsaacCache {
          return RelativePosition.UNREACHABLE;
       }
 
-      final Segment seg1 = this.pathNidSegmentMap.get(ss1PathNid);
-      final Segment seg2 = this.pathNidSegmentMap.get(ss2PathNid);
+      final ConcurrentHashMap<Integer, Segment> pathNidSegmentMap = getPathNidSegmentMap();
+      final Segment seg1 = pathNidSegmentMap.get(ss1PathNid);
+      final Segment seg2 = pathNidSegmentMap.get(ss2PathNid);
 
       if ((seg1 == null) || (seg2 == null)) {
          return RelativePosition.UNREACHABLE;
@@ -228,7 +262,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
          StampedVersion v2,
          StampPrecedence precedencePolicy) {
       if (v1.getPathNid() == v2.getPathNid()) {
-         final Segment seg = this.pathNidSegmentMap.get(v1.getPathNid());
+         final Segment seg = getPathNidSegmentMap().get(v1.getPathNid());
 
          if (seg == null) {
             final StringBuilder builder = new StringBuilder();
@@ -239,7 +273,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
             builder.append("\nv2: ")
                    .append(v1);
             builder.append("\nno segment in map: ")
-                   .append(this.pathNidSegmentMap);
+                   .append(getPathNidSegmentMap());
             throw new IllegalStateException(builder.toString());
          }
 
@@ -261,8 +295,9 @@ public class RelativePositionCalculator implements StaticIsaacCache {
          return RelativePosition.UNREACHABLE;
       }
 
-      final Segment seg1 = this.pathNidSegmentMap.get(v1.getPathNid());
-      final Segment seg2 = this.pathNidSegmentMap.get(v2.getPathNid());
+      final ConcurrentHashMap<Integer, Segment> pathNidSegmentMap = getPathNidSegmentMap();
+      final Segment seg1 = pathNidSegmentMap.get(v1.getPathNid());
+      final Segment seg2 = pathNidSegmentMap.get(v2.getPathNid());
 
       if ((seg1 == null) || (seg2 == null)) {
          return RelativePosition.UNREACHABLE;
@@ -304,10 +339,12 @@ public class RelativePositionCalculator implements StaticIsaacCache {
     * @return true, if successful
     */
    public boolean onRoute(int stampSequence) {
-      if (stampOnRoute.containsKey(stampSequence)) {
-         return stampOnRoute.get(stampSequence);
+      final Route currentRoute = getRoute();
+      final byte memo = currentRoute.stampOnRoute.get(stampSequence);
+      if (memo != StampBooleanMemo.UNKNOWN) {
+         return memo == StampBooleanMemo.TRUE;
       }
-      final Segment seg = this.pathNidSegmentMap.get(getStampService()
+      final Segment seg = currentRoute.pathNidSegmentMap.get(getStampService()
                                                              .getPathNidForStamp(stampSequence));
       boolean returnValue = false;
       if (seg != null) {
@@ -319,7 +356,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
              getStampService()
                 .getTimeForStamp(stampSequence));
       }
-      stampOnRoute.put(stampSequence, returnValue);
+      currentRoute.stampOnRoute.put(stampSequence, returnValue);
       return returnValue;
    }
 
@@ -331,7 +368,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
     * @return true, if successful
     */
    public <V extends StampedVersion> boolean onRoute(V version) {
-      final Segment seg = this.pathNidSegmentMap.get(version.getPathNid());
+      final Segment seg = getPathNidSegmentMap().get(version.getPathNid());
 
       if (seg != null) {
          return seg.containsPosition(version.getPathNid(), version.getModuleNid(), version.getTime());
@@ -377,7 +414,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
     */
    @Override
    public String toString() {
-      return "RelativePositionCalculator{" + this.coordinate + '}';
+      return "RelativePositionCalculator{" + this.key + '}';
    }
 
    /**
@@ -430,7 +467,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
       final List<StampedVersion> partsToCompare = new ArrayList<>(partsForPosition);
 
       for (final StampedVersion prevPartToTest: partsToCompare) {
-         switch (fastRelativePosition(part, prevPartToTest, this.coordinate.getStampPrecedence())) {
+         switch (fastRelativePosition(part, prevPartToTest, this.stampPrecedence)) {
          case AFTER:
             partsForPosition.remove((V) prevPartToTest);
             partsForPosition.add((V) part);
@@ -503,7 +540,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
       final OpenIntHashSet stampsToCompare = (OpenIntHashSet) stampsForPosition.clone();
 
       stampsToCompare.forEachKey((prevStamp) -> {
-             switch (fastRelativePosition(stampSequence, prevStamp, this.coordinate.getStampPrecedence())) {
+             switch (fastRelativePosition(stampSequence, prevStamp, this.stampPrecedence)) {
              case AFTER:
                 stampsForPosition.remove(prevStamp);
                 stampsForPosition.add(stampSequence);
@@ -549,7 +586,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
                     "n Can't handle: " + fastRelativePosition(
                         stampSequence,
                         prevStamp,
-                        this.coordinate.getStampPrecedence()));
+                        this.stampPrecedence));
              }
 
              return true;
@@ -579,6 +616,27 @@ public class RelativePositionCalculator implements StaticIsaacCache {
    }
 
    //~--- get methods ---------------------------------------------------------
+   /**
+    * Get the path segments of the destination, rebuilding them if a path or
+    * path origin was committed since they were built.
+    *
+    * @return the current route
+    */
+   private Route getRoute() {
+      Route currentRoute = this.route;
+      final long generation = PATH_GENERATION.get();
+
+      if (currentRoute.generation != generation) {
+         currentRoute = new Route(generation, setupPathNidSegmentMap(this.destination));
+         this.route = currentRoute;
+      }
+      return currentRoute;
+   }
+
+   private ConcurrentHashMap<Integer, Segment> getPathNidSegmentMap() {
+      return getRoute().pathNidSegmentMap;
+   }
+
    private StampService getStampService() {
       if (this.stampService == null) {
          this.stampService = Get.stampService();
@@ -586,8 +644,9 @@ public class RelativePositionCalculator implements StaticIsaacCache {
       return this.stampService;
    }
    private boolean isAllowedState(int stampSequence) {
-      if (stampIsAllowedState.containsKey(stampSequence)) {
-         return stampIsAllowedState.get(stampSequence);
+      final byte memo = stampIsAllowedState.get(stampSequence);
+      if (memo != StampBooleanMemo.UNKNOWN) {
+         return memo == StampBooleanMemo.TRUE;
       }
       boolean allowed = this.allowedStates.contains(getStampService().getStatusForStamp(stampSequence));
       stampIsAllowedState.put(stampSequence, allowed);
@@ -601,17 +660,69 @@ public class RelativePositionCalculator implements StaticIsaacCache {
     * @return the calculator
     */
    public static RelativePositionCalculator getCalculator(StampCoordinate coordinate) {
-       RelativePositionCalculator calcToTry = lastCalculator;
-       if (calcToTry != null) {
-           if (calcToTry.coordinate == coordinate) {
-               return calcToTry;
-           }
-       }
+      final CalculatorKey key = new CalculatorKey(coordinate);
+      RelativePositionCalculator calculator = CALCULATOR_CACHE.get(key);
+
+      if (calculator != null) {
+         CACHE_HITS.incrementAndGet();
+      } else {
+         CACHE_MISSES.incrementAndGet();
+         calculator = CALCULATOR_CACHE.computeIfAbsent(key, (newKey) -> new RelativePositionCalculator(coordinate, newKey));
+         if (CALCULATOR_CACHE.size() > MAX_CACHED_CALCULATORS) {
+            evictLeastRecentlyUsed(calculator);
+         }
+      }
+      calculator.lastAccess = CACHE_ACCESS_SEQUENCE.incrementAndGet();
+      return calculator;
+   }
 
-      calcToTry = new RelativePositionCalculator(coordinate);
-      lastCalculator = calcToTry;
+   /**
+    * Remove the least recently used calculator from the calculator cache.
+    *
+    * @param calculatorToKeep the calculator just added, which is never evicted
+    */
+   private static void evictLeastRecentlyUsed(RelativePositionCalculator calculatorToKeep) {
+      Map.Entry<CalculatorKey, RelativePositionCalculator> eldest = null;
+
+      for (Map.Entry<CalculatorKey, RelativePositionCalculator> entry: CALCULATOR_CACHE.entrySet()) {
+         if (entry.getValue() != calculatorToKeep &&
+               (eldest == null || entry.getValue().lastAccess < eldest.getValue().lastAccess)) {
+            eldest = entry;
+         }
+      }
+      if (eldest != null && CALCULATOR_CACHE.remove(eldest.getKey(), eldest.getValue())) {
+         CACHE_EVICTIONS.incrementAndGet();
+      }
+   }
+
+   /**
+    * Discard the path segments of every calculator, so they are rebuilt from
+    * the current paths and path origins on their next use. Called when a path
+    * or a path origin is committed.
+    */
+   public static void invalidatePaths() {
+      PATH_GENERATION.incrementAndGet();
+   }
+
+   /**
+    * @return the number of calculator requests satisfied by the calculator cache.
+    */
+   public static long getCacheHitCount() {
+      return CACHE_HITS.get();
+   }
+
+   /**
+    * @return the number of calculator requests that required a new calculator.
+    */
+   public static long getCacheMissCount() {
+      return CACHE_MISSES.get();
+   }
 
-      return calcToTry;
+   /**
+    * @return the number of calculators removed from the calculator cache to respect its bound.
+    */
+   public static long getCacheEvictionCount() {
+      return CACHE_EVICTIONS.get();
    }
 
    /**
@@ -621,18 +732,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
     * @return the calculator
     */
    public RelativePositionCalculator getCalculatorInstance(StampCoordinate coordinate) {
-       
-       RelativePositionCalculator calcToTry = lastCalculator;
-       if (calcToTry != null) {
-           if (calcToTry.coordinate == coordinate) {
-               return calcToTry;
-           }
-       }
-
-      calcToTry = new RelativePositionCalculator(coordinate);
-      lastCalculator = calcToTry;
-
-      return calcToTry;
+      return getCalculator(coordinate);
    }
 
    /**
@@ -641,7 +741,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
     * @return the destination
     */
    public StampPosition getDestination() {
-      return this.coordinate.getStampPosition();
+      return this.destination.deepClone();
    }
 
 // private class StampSequenceSetSupplier implements Supplier<StampSequenceSet> {
@@ -775,7 +875,7 @@ public class RelativePositionCalculator implements StaticIsaacCache {
                       }
                    });
 
-      if (Status.isActiveOnlySet(this.coordinate.getAllowedStates())) {
+      if (Status.isActiveOnlySet(this.allowedStates)) {
          final HashSet<V> inactiveVersions = new HashSet<>();
 
          latestVersionSet.stream()
@@ -903,8 +1003,9 @@ public class RelativePositionCalculator implements StaticIsaacCache {
        * @return true, if successful
        */
       private boolean containsPosition(int pathConceptNid, int moduleConceptNid, long time) {
-         if (RelativePositionCalculator.this.coordinate.getModuleNids().isEmpty() ||
-               RelativePositionCalculator.this.coordinate.getModuleNids().contains(moduleConceptNid)) {
+         final int[] calculatorModuleNids = RelativePositionCalculator.this.moduleNids;
+         if (calculatorModuleNids.length == 0 ||
+               Arrays.binarySearch(calculatorModuleNids, moduleConceptNid) >= 0) {
             if ((this.pathConceptNid == pathConceptNid) && (time != Long.MIN_VALUE)) {
                return time <= this.endTime;
             }
@@ -919,7 +1020,125 @@ public class RelativePositionCalculator implements StaticIsaacCache {
     */
    @Override
    public void reset() {
-      lastCalculator = null;
+      if (CACHE_HITS.get() + CACHE_MISSES.get() > 0) {
+         LOG.debug("Relative position calculator cache hits: {}, misses: {}, evictions: {}",
+               CACHE_HITS.get(), CACHE_MISSES.get(), CACHE_EVICTIONS.get());
+      }
+      CALCULATOR_CACHE.clear();
+      PATH_GENERATION.incrementAndGet();
+      CACHE_HITS.set(0);
+      CACHE_MISSES.set(0);
+      CACHE_EVICTIONS.set(0);
+   }
+
+   /**
+    * The values of a stamp coordinate that determine the results of a
+    * calculator. Captured when the key is created, so later changes to a
+    * mutable coordinate do not corrupt the calculator cache.
+    */
+   private static final class CalculatorKey {
+      private final StampPrecedence stampPrecedence;
+      private final int pathNid;
+      private final long time;
+      private final EnumSet<Status> allowedStates;
+      private final int[] moduleNids;
+      private final int hashCode;
+
+      private CalculatorKey(StampCoordinate coordinate) {
+         final StampPosition stampPosition = coordinate.getStampPosition();
+
+         this.stampPrecedence = coordinate.getStampPrecedence();
+         this.pathNid = stampPosition.getStampPathSpecification().getNid();
+         this.time = stampPosition.getTime();
+         this.allowedStates = EnumSet.copyOf(coordinate.getAllowedStates());
+         this.moduleNids = coordinate.getModuleNids().asArray();
+         Arrays.sort(this.moduleNids);
+
+         int hash = 7;
+         hash = 31 * hash + this.stampPrecedence.hashCode();
+         hash = 31 * hash + this.pathNid;
+         hash = 31 * hash + Long.hashCode(this.time);
+         hash = 31 * hash + this.allowedStates.hashCode();
+         hash = 31 * hash + Arrays.hashCode(this.moduleNids);
+         this.hashCode = hash;
+      }
+
+      @Override
+      public int hashCode() {
+         return this.hashCode;
+      }
+
+      @Override
+      public String toString() {
+         return "precedence=" + this.stampPrecedence + ", pathNid=" + this.pathNid + ", time=" + this.time
+               + ", allowedStates=" + this.allowedStates + ", moduleNids=" + Arrays.toString(this.moduleNids);
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         if (this == obj) {
+            return true;
+         }
+         if (!(obj instanceof CalculatorKey)) {
+            return false;
+         }
+         final CalculatorKey other = (CalculatorKey) obj;
+         return this.hashCode == other.hashCode &&
+               this.pathNid == other.pathNid &&
+               this.time == other.time &&
+               this.stampPrecedence == other.stampPrecedence &&
+               this.allowedStates.equals(other.allowedStates) &&
+               Arrays.equals(this.moduleNids, other.moduleNids);
+      }
+   }
+
+   /**
+    * The segments of each path reachable from the destination, with the memo of
+    * the stamps found on them, built for one generation of the paths.
+    */
+   private static final class Route {
+      private final long generation;
+      private final ConcurrentHashMap<Integer, Segment> pathNidSegmentMap;
+      private final StampBooleanMemo stampOnRoute = new StampBooleanMemo();
+
+      private Route(long generation, ConcurrentHashMap<Integer, Segment> pathNidSegmentMap) {
+         this.generation = generation;
+         this.pathNidSegmentMap = pathNidSegmentMap;
+      }
+   }
+
+   /**
+    * A memo of a boolean result per stamp sequence, held in pages of primitive
+    * bytes rather than boxed map entries. Concurrent writers for a stamp always
+    * write the same value, so a lost or late write only causes the value to be
+    * computed again.
+    */
+   private static final class StampBooleanMemo {
+      private static final byte UNKNOWN = 0;
+      private static final byte FALSE = 1;
+      private static final byte TRUE = 2;
+      private static final int PAGE_SIZE = 4096;
+
+      private final ConcurrentHashMap<Integer, byte[]> pages = new ConcurrentHashMap<>();
+
+      private byte get(int stampSequence) {
+         if (stampSequence < 0) {
+            return UNKNOWN;
+         }
+         final byte[] page = this.pages.get(stampSequence / PAGE_SIZE);
+         if (page == null) {
+            return UNKNOWN;
+         }
+         return page[stampSequence % PAGE_SIZE];
+      }
+
+      private void put(int stampSequence, boolean value) {
+         if (stampSequence < 0) {
+            return;
+         }
+         final byte[] page = this.pages.computeIfAbsent(stampSequence / PAGE_SIZE, (pageIndex) -> new byte[PAGE_SIZE]);
+         page[stampSequence % PAGE_SIZE] = value ? TRUE : FALSE;
+      }
    }
 }
 
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.coordinate.ManifoldCoordinate;
+import sh.isaac.api.tree.TaxonomyLinkage;
+import sh.isaac.api.tree.Tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the child summaries of a {@link TaxonomySnapshot}, over a small
+ * taxonomy held in memory.
+ *
+ * @author kec
+ */
+public class TaxonomySnapshotTest {
+
+   private static final int IS_A   = -100;
+   private static final int ROOT   = -1;
+   private static final int ITEM_2 = -2;
+   private static final int ITEM_10 = -3;
+   private static final int ALPHA  = -4;
+   private static final int TWIN_A = -5;
+   private static final int TWIN_B = -6;
+
+   @Test
+   public void testSummariesDescribeEachChild() {
+      final MapTaxonomySnapshot snapshot = new MapTaxonomySnapshot();
+
+      snapshot.addLink(ROOT, ITEM_2);
+      snapshot.addLink(ROOT, ITEM_10);
+      snapshot.addLink(ROOT, ALPHA);
+      snapshot.addLink(ITEM_2, ALPHA);
+      snapshot.addLink(ALPHA, TWIN_A);
+      snapshot.definedNids.add(ITEM_10);
+
+      final List<TaxonomyChildSummary> summaries = snapshot.getTaxonomyChildSummaries(ROOT, MapTaxonomySnapshot::text);
+
+      assertEquals(3, summaries.size());
+
+      final TaxonomyChildSummary alpha = summaries.get(0);
+
+      assertEquals(ALPHA, alpha.getNid());
+      assertEquals(IS_A, alpha.getTypeNid());
+      assertEquals("Alpha", alpha.getText());
+      assertEquals(2, alpha.getParentCount());
+      assertTrue(alpha.isMultiParent());
+      assertFalse(alpha.isLeaf());
+      assertFalse(alpha.isDefined());
+
+      final TaxonomyChildSummary item10 = summaries.get(2);
+
+      assertEquals(ITEM_10, item10.getNid());
+      assertEquals(1, item10.getParentCount());
+      assertFalse(item10.isMultiParent());
+      assertTrue(item10.isLeaf());
+      assertTrue(item10.isDefined());
+   }
+
+   @Test
+   public void testSummariesSortInNaturalOrder() {
+      final MapTaxonomySnapshot snapshot = new MapTaxonomySnapshot();
+
+      snapshot.addLink(ROOT, ITEM_10);
+      snapshot.addLink(ROOT, ITEM_2);
+      snapshot.addLink(ROOT, ALPHA);
+
+      assertEquals(Arrays.asList(ALPHA, ITEM_2, ITEM_10),
+                   nids(snapshot.getTaxonomyChildSummaries(ROOT, MapTaxonomySnapshot::text)));
+   }
+
+   @Test
+   public void testSiblingsWithEqualTextAreKept() {
+      final MapTaxonomySnapshot snapshot = new MapTaxonomySnapshot();
+
+      snapshot.addLink(ROOT, TWIN_B);
+      snapshot.addLink(ROOT, TWIN_A);
+
+      final List<TaxonomyChildSummary> summaries = snapshot.getTaxonomyChildSummaries(ROOT, MapTaxonomySnapshot::text);
+
+      assertEquals(Arrays.asList(TWIN_B, TWIN_A), nids(summaries));
+      assertEquals(summaries.get(0).getText(), summaries.get(1).getText());
+   }
+
+   @Test
+   public void testLeafHasNoSummaries() {
+      final MapTaxonomySnapshot snapshot = new MapTaxonomySnapshot();
+
+      snapshot.addLink(ROOT, ALPHA);
+      assertTrue(snapshot.getTaxonomyChildSummaries(ALPHA, MapTaxonomySnapshot::text).isEmpty());
+   }
+
+   private static List<Integer> nids(List<TaxonomyChildSummary> summaries) {
+      final List<Integer> nids = new ArrayList<>();
+
+      for (TaxonomyChildSummary summary: summaries) {
+         nids.add(summary.getNid());
+      }
+      return nids;
+   }
+
+   /**
+    * A taxonomy of is-a links held in maps, answering only what the child
+    * summaries need.
+    */
+   private static class MapTaxonomySnapshot
+            implements TaxonomySnapshot {
+      private final Map<Integer, List<TaxonomyLink>> childLinks = new HashMap<>();
+      private final Map<Integer, List<Integer>>      parentNids = new HashMap<>();
+      private final Set<Integer>                     definedNids = new HashSet<>();
+
+      void addLink(int parentNid, int childNid) {
+         this.childLinks.computeIfAbsent(parentNid, (nid) -> new ArrayList<>())
+                        .add(new TaxonomyLinkage(IS_A, childNid));
+         this.parentNids.computeIfAbsent(childNid, (nid) -> new ArrayList<>())
+                        .add(parentNid);
+      }
+
+      static String text(int nid) {
+         switch (nid) {
+         case ITEM_2:
+            return "Item 2";
+
+         case ITEM_10:
+            return "Item 10";
+
+         case ALPHA:
+            return "Alpha";
+
+         case TWIN_A:
+         case TWIN_B:
+            return "Twin";
+
+         default:
+            return "Concept " + nid;
+         }
+      }
+
+      @Override
+      public boolean isSufficientlyDefined(int conceptNid) {
+         return this.definedNids.contains(conceptNid);
+      }
+
+      @Override
+      public boolean isLeaf(int conceptNid) {
+         return !this.childLinks.containsKey(conceptNid);
+      }
+
+      @Override
+      public int[] getTaxonomyParentConceptNids(int childConceptNid) {
+         return this.parentNids.getOrDefault(childConceptNid, new ArrayList<>())
+                               .stream()
+                               .mapToInt(Integer::intValue)
+                               .toArray();
+      }
+
+      @Override
+      public Collection<TaxonomyLink> getTaxonomyChildLinks(int parentConceptNid) {
+         return this.childLinks.getOrDefault(parentConceptNid, new ArrayList<>());
+      }
+
+      @Override
+      public boolean isChildOf(int childConceptNid, int parentConceptNid) {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public boolean isKindOf(int childConceptNid, int parentConceptNid) {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public NidSet getKindOfConceptNidSet(int rootConceptNid) {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public int[] getRootNids() {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public int[] getTaxonomyChildConceptNids(int parentConceptNid) {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Collection<TaxonomyLink> getTaxonomyParentLinks(int parentConceptNid) {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Tree getTaxonomyTree() {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public ManifoldCoordinate getManifoldCoordinate() {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public TaxonomySnapshot makeAnalog(ManifoldCoordinate manifoldCoordinate) {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
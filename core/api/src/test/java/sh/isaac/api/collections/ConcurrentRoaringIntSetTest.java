@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link ConcurrentRoaringIntSet} against {@link RoaringIntSet}, which
+ * it must match in membership and iteration order.
+ *
+ * @author kec
+ */
+public class ConcurrentRoaringIntSetTest {
+
+   /** Members in several containers, including negative members such as nids. */
+   private static final int[] MEMBERS = new int[] {
+      Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -70000, -65536, -1, 0, 1, 2, 65535, 65536, 65537, 1 << 24, Integer.MAX_VALUE
+   };
+
+   @Test
+   public void testAddContainsRemove() {
+      final ConcurrentRoaringIntSet set = new ConcurrentRoaringIntSet();
+
+      assertTrue(set.isEmpty());
+      for (final int member: MEMBERS) {
+         set.add(member);
+         set.add(member);
+      }
+      assertEquals(MEMBERS.length, set.size());
+      for (final int member: MEMBERS) {
+         assertTrue(set.contains(member));
+         assertFalse(set.contains(member ^ 0x5555));
+      }
+      set.remove(65536);
+      set.remove(65536);
+      set.remove(12345);
+      assertFalse(set.contains(65536));
+      assertEquals(MEMBERS.length - 1, set.size());
+      set.clear();
+      assertTrue(set.isEmpty());
+      assertEquals(0, set.size());
+   }
+
+   @Test
+   public void testIterationOrderMatchesRoaringIntSet() {
+      final ConcurrentRoaringIntSet set    = new ConcurrentRoaringIntSet(MEMBERS);
+      final RoaringIntSet           expect = new RoaringIntSet(MEMBERS);
+
+      assertArrayEquals(expect.asArray(), set.asArray());
+      assertArrayEquals(expect.stream().toArray(), set.stream().toArray());
+      assertArrayEquals(expect.parallelStream().toArray(), set.parallelStream().toArray());
+      assertEquals(expect.findFirst(), set.findFirst());
+      assertArrayEquals(toArray(expect.getIntIterator()), toArray(set.getIntIterator()));
+      assertArrayEquals(toArray(expect.getReverseIntIterator()), toArray(set.getReverseIntIterator()));
+   }
+
+   @Test
+   public void testSetOperationsMatchRoaringIntSet() {
+      final Random random = new Random(17);
+      final int[]  one    = random.ints(5000, -200000, 200000).toArray();
+      final int[]  other  = random.ints(5000, -200000, 200000).toArray();
+
+      assertArrayEquals(new RoaringIntSet(one).and(new RoaringIntSet(other)).asArray(),
+                        new ConcurrentRoaringIntSet(one).and(new RoaringIntSet(other)).asArray());
+      assertArrayEquals(new RoaringIntSet(one).or(new RoaringIntSet(other)).asArray(),
+                        new ConcurrentRoaringIntSet(one).or(new ConcurrentRoaringIntSet(other)).asArray());
+      assertArrayEquals(new RoaringIntSet(one).andNot(new RoaringIntSet(other)).asArray(),
+                        new ConcurrentRoaringIntSet(one).andNot(new ConcurrentRoaringIntSet(other)).asArray());
+      assertArrayEquals(new RoaringIntSet(one).xor(new RoaringIntSet(other)).asArray(),
+                        new ConcurrentRoaringIntSet(one).xor(new RoaringIntSet(other)).asArray());
+   }
+
+   /**
+    * Threads add to the same containers and to their own, while other
+    * threads read. No member may be lost.
+    */
+   @Test
+   public void testConcurrentAdd()
+            throws Exception {
+      final ConcurrentRoaringIntSet set              = new ConcurrentRoaringIntSet();
+      final int                     threads          = 4;
+      final int                     membersPerThread = 100_000;
+      final ExecutorService         executor         = Executors.newFixedThreadPool(threads * 2);
+
+      try {
+         final CountDownLatch  start   = new CountDownLatch(1);
+         final List<Future<?>> futures = new ArrayList<>();
+
+         for (int t = 0; t < threads; t++) {
+            final int thread = t;
+
+            futures.add(executor.submit(() -> {
+               start.await();
+               for (int i = 0; i < membersPerThread; i++) {
+                  // shared containers, interleaved with the other threads
+                  set.add(Integer.MIN_VALUE + thread + (i * threads));
+                  // a container range of its own
+                  set.add((thread << 20) + i);
+               }
+               return null;
+            }));
+            futures.add(executor.submit(() -> {
+               start.await();
+               for (int i = 0; i < membersPerThread; i++) {
+                  set.contains(Integer.MIN_VALUE + i);
+                  set.size();
+               }
+               return null;
+            }));
+         }
+         start.countDown();
+         for (final Future<?> future: futures) {
+            future.get(2, TimeUnit.MINUTES);
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+
+      assertEquals(2 * threads * membersPerThread, set.size());
+      assertTrue(IntStream.range(0, threads * membersPerThread)
+                          .allMatch((i) -> set.contains(Integer.MIN_VALUE + i)));
+      assertTrue(IntStream.range(0, threads)
+                          .allMatch((t) -> IntStream.range(0, membersPerThread)
+                                .allMatch((i) -> set.contains((t << 20) + i))));
+   }
+
+   private static int[] toArray(PrimitiveIterator.OfInt iterator) {
+      final List<Integer> values = new ArrayList<>();
+
+      while (iterator.hasNext()) {
+         values.add(iterator.nextInt());
+      }
+
+      return values.stream()
+                   .mapToInt(Integer::intValue)
+                   .toArray();
+   }
+}
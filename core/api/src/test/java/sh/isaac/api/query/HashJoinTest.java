@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link HashJoin}, in memory and partitioned through spill files,
+ * against a nested loop join.
+ *
+ * @author kec
+ */
+public class HashJoinTest {
+
+   private static final Comparator<int[]> TUPLE_ORDER = (first, second) -> {
+      for (int i = 0; i < Math.min(first.length, second.length); i++) {
+         final int comparison = Integer.compare(first[i], second[i]);
+         if (comparison != 0) {
+            return comparison;
+         }
+      }
+      return Integer.compare(first.length, second.length);
+   };
+
+   @Test
+   public void testInMemoryJoinMatchesNestedLoop() {
+      final Random random = new Random(11);
+
+      for (int trial = 0; trial < 20; trial++) {
+         assertJoinMatchesNestedLoop(random, new HashJoin());
+      }
+   }
+
+   @Test
+   public void testPartitionedJoinMatchesNestedLoop() {
+      final Random random = new Random(13);
+
+      for (int trial = 0; trial < 20; trial++) {
+         assertJoinMatchesNestedLoop(random, new HashJoin(7));
+      }
+   }
+
+   @Test
+   public void testSkewedKeysStayWithinTheBuildRowLimit() {
+      final Random random = new Random(17);
+      final int[][] probeTuples = new int[300][];
+      for (int i = 0; i < probeTuples.length; i++) {
+         probeTuples[i] = new int[] {-1 - i, -1 - random.nextInt(20)};
+      }
+      final int[] buildNids = new int[500];
+      for (int i = 0; i < buildNids.length; i++) {
+         buildNids[i] = -1000 - i;
+      }
+      // half the build rows share one key, as when one component is referenced by many semantics
+      final IntUnaryOperator buildKey = (nid) -> nid % 2 == 0 ? -1 : -1 - Math.floorMod(nid * 31, 20);
+      final HashJoin hashJoin = new HashJoin(10);
+
+      assertJoinMatchesNestedLoop(hashJoin, probeTuples, (tuple) -> tuple[1], buildNids, buildKey);
+      assertTrue("build rows held: " + hashJoin.getPeakBuildRows(), hashJoin.getPeakBuildRows() <= 10);
+   }
+
+   @Test
+   public void testProbeTuplesReadOnceInOrderWhenInMemory() {
+      final int[][] probeTuples = new int[][] {{-5, -1}, {-6, -2}, {-7, -1}, {-8, 0}};
+      final List<int[]> joined = new ArrayList<>();
+      final CountingIterator probeIterator = new CountingIterator(probeTuples);
+
+      new HashJoin().join(probeIterator, (tuple) -> tuple[1], new int[] {-1, -3}, (nid) -> nid, joined::add);
+
+      assertEquals(probeTuples.length, probeIterator.count);
+      assertEquals(2, joined.size());
+      assertArrayEquals(new int[] {-5, -1, -1}, joined.get(0));
+      assertArrayEquals(new int[] {-7, -1, -1}, joined.get(1));
+   }
+
+   @Test
+   public void testZeroKeysNeverJoin() {
+      final int[][] probeTuples = new int[][] {{-1}, {-2}};
+      final int[] buildNids = new int[] {-3, -4};
+
+      assertEquals(0, new HashJoin().join(probeTuples, (tuple) -> 0, buildNids, (nid) -> 0).length);
+      assertEquals(0, new HashJoin(1).join(probeTuples, (tuple) -> 0, buildNids, (nid) -> 0).length);
+   }
+
+   @Test
+   public void testEmptyInputs() {
+      assertEquals(0, new HashJoin().join(new int[0][], (tuple) -> 1, new int[] {-1}, (nid) -> 1).length);
+
+      final CountingIterator probeIterator = new CountingIterator(new int[][] {{-1}});
+      new HashJoin().join(probeIterator, (tuple) -> 1, new int[0], (nid) -> 1, (tuple) -> {
+         throw new AssertionError("no tuples expected");
+      });
+      assertFalse(probeIterator.count > 0);
+   }
+
+   private static void assertJoinMatchesNestedLoop(Random random, HashJoin hashJoin) {
+      final int[][] probeTuples = new int[random.nextInt(200)][];
+      for (int i = 0; i < probeTuples.length; i++) {
+         probeTuples[i] = new int[] {-1 - i, -1 - random.nextInt(40)};
+      }
+      final int[] buildNids = new int[random.nextInt(100)];
+      for (int i = 0; i < buildNids.length; i++) {
+         buildNids[i] = -1000 - i;
+      }
+      final int keyCount = 1 + random.nextInt(40);
+      // some build nids have no key, and so never join
+      final IntUnaryOperator buildKey = (nid) -> nid % 5 == 0 ? 0 : -1 - Math.floorMod(nid * 31, keyCount);
+      final ToIntFunction<int[]> probeKey = (tuple) -> tuple[1];
+
+      assertJoinMatchesNestedLoop(hashJoin, probeTuples, probeKey, buildNids, buildKey);
+   }
+
+   private static void assertJoinMatchesNestedLoop(HashJoin hashJoin, int[][] probeTuples, ToIntFunction<int[]> probeKey,
+         int[] buildNids, IntUnaryOperator buildKey) {
+      final List<int[]> expected = new ArrayList<>();
+      for (final int[] probeTuple : probeTuples) {
+         for (final int buildNid : buildNids) {
+            final int key = buildKey.applyAsInt(buildNid);
+            if (key != 0 && key == probeKey.applyAsInt(probeTuple)) {
+               final int[] joined = Arrays.copyOf(probeTuple, probeTuple.length + 1);
+               joined[probeTuple.length] = buildNid;
+               expected.add(joined);
+            }
+         }
+      }
+
+      final List<int[]> actual = new ArrayList<>();
+      final CountingIterator probeIterator = new CountingIterator(probeTuples);
+      hashJoin.join(probeIterator, probeKey, buildNids, buildKey, actual::add);
+
+      if (buildNids.length > 0) {
+         assertEquals(probeTuples.length, probeIterator.count);
+      }
+      expected.sort(TUPLE_ORDER);
+      actual.sort(TUPLE_ORDER);
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+         assertArrayEquals(expected.get(i), actual.get(i));
+      }
+      assertEquals(expected.size(), hashJoin.join(probeTuples, probeKey, buildNids, buildKey).length);
+   }
+
+   private static class CountingIterator
+           implements Iterator<int[]> {
+      private final int[][] tuples;
+      private int count = 0;
+
+      CountingIterator(int[][] tuples) {
+         this.tuples = tuples;
+      }
+
+      @Override
+      public boolean hasNext() {
+         return this.count < this.tuples.length;
+      }
+
+      @Override
+      public int[] next() {
+         return this.tuples[this.count++];
+      }
+   }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.api.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.Test;
+import sh.isaac.api.bootstrap.TermAux;
+import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.component.concept.ConceptSpecification;
+import sh.isaac.api.component.concept.ConceptVersion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that planning the order of the children of {@link And}, {@link Or}
+ * and {@link AndNot} clauses, and short-circuiting them, doesn't change the
+ * components they compute.
+ *
+ * @author kec
+ */
+public class ParentClausePlanningTest {
+
+   private static final int COMPONENT_COUNT = 200;
+
+   private static final ConceptSpecification ASSEMBLAGE = new TestAssemblage();
+
+   @Test
+   public void testPlannedOrderMatchesDeclarationOrder() {
+      final Random random = new Random(7);
+
+      for (int trial = 0; trial < 50; trial++) {
+         final Query query = newQuery();
+         final Clause root = randomParentClause(query, random, 3);
+         final NidSet expected = expectedComponents(root, allComponents());
+
+         query.setPlanningEnabled(true);
+         assertEquals(expected, compute(query, root, allComponents()));
+         query.setPlanningEnabled(false);
+         assertEquals(expected, compute(query, root, allComponents()));
+      }
+   }
+
+   @Test
+   public void testPlanningRunsLookupsBeforeScans() {
+      final Random random = new Random(11);
+      final Query query = newQuery();
+      final ScanClause scan = new ScanClause(query, randomComponents(random, 0.3));
+      final LookupClause lookup = new LookupClause(query, randomComponents(random, 0.1));
+      final And and = parent(new And(query, scan, lookup));
+      final NidSet expected = expectedComponents(and, allComponents());
+
+      assertEquals(expected, compute(query, and, allComponents()));
+      assertSame(lookup, and.getEvaluationOrder(COMPONENT_COUNT, true).get(0));
+      assertEquals(Collections.singletonList(lookup.getMatches().size()), scan.getCandidateCounts());
+
+      query.setPlanningEnabled(false);
+      scan.getCandidateCounts().clear();
+      assertEquals(expected, compute(query, and, allComponents()));
+      assertSame(scan, and.getEvaluationOrder(COMPONENT_COUNT, true).get(0));
+      // The possible components of the lookup still narrow the candidates of the scan.
+      assertEquals(Collections.singletonList(lookup.getMatches().size()), scan.getCandidateCounts());
+   }
+
+   @Test
+   public void testOrOverIterationOnlyChildren() {
+      final Random random = new Random(13);
+      final Query query = newQuery();
+      final ScanClause first = new ScanClause(query, randomComponents(random, 0.3));
+      final ScanClause second = new ScanClause(query, randomComponents(random, 0.3));
+      final ScanClause third = new ScanClause(query, randomComponents(random, 0.3));
+      final Or or = parent(new Or(query, first, second, third));
+      final NidSet expected = expectedComponents(or, allComponents());
+
+      assertTrue(expected.size() < COMPONENT_COUNT);
+      assertEquals(COMPONENT_COUNT, query.getPlan().computePossibleComponents(or, candidateMap(allComponents())).get(ASSEMBLAGE).size());
+
+      query.setPlanningEnabled(true);
+      assertEquals(expected, compute(query, or, allComponents()));
+
+      query.setPlanningEnabled(false);
+      first.getCandidateCounts().clear();
+      second.getCandidateCounts().clear();
+      third.getCandidateCounts().clear();
+      assertEquals(expected, compute(query, or, allComponents()));
+
+      // Components matched by an earlier child are not passed to later children.
+      final NidSet firstOrSecond = NidSet.of(first.getMatches());
+      firstOrSecond.or(second.getMatches());
+      assertEquals(Collections.singletonList(COMPONENT_COUNT), first.getCandidateCounts());
+      assertEquals(Collections.singletonList(COMPONENT_COUNT - first.getMatches().size()), second.getCandidateCounts());
+      assertEquals(Collections.singletonList(COMPONENT_COUNT - firstOrSecond.size()), third.getCandidateCounts());
+   }
+
+   @Test
+   public void testAndNotWithEmptyIntermediateResult() {
+      final Random random = new Random(17);
+
+      // The first child removes every candidate, so the second is not computed.
+      Query query = newQuery();
+      final ScanClause skippedScan = new ScanClause(query, randomComponents(random, 0.3));
+      final AndNot andNot = parent(new AndNot(query, new LookupClause(query, allComponents()), skippedScan));
+
+      query.setPlanningEnabled(false);
+      assertTrue(compute(query, andNot, allComponents()).isEmpty());
+      assertTrue(skippedScan.getCandidateCounts().isEmpty());
+      query.setPlanningEnabled(true);
+      assertTrue(compute(query, andNot, allComponents()).isEmpty());
+
+      // An enclosing and matches nothing before the and not is reached.
+      query = newQuery();
+      final ScanClause nestedScan = new ScanClause(query, randomComponents(random, 0.3));
+      final And and = parent(new And(query,
+            new LookupClause(query, new NidSet()),
+            parent(new AndNot(query, new LookupClause(query, randomComponents(random, 0.1)), nestedScan))));
+
+      query.setPlanningEnabled(false);
+      assertTrue(compute(query, and, allComponents()).isEmpty());
+      assertTrue(nestedScan.getCandidateCounts().isEmpty());
+      query.setPlanningEnabled(true);
+      assertTrue(compute(query, and, allComponents()).isEmpty());
+
+      // No candidates at all.
+      query = newQuery();
+      final AndNot emptyAndNot = parent(new AndNot(query,
+            new ScanClause(query, randomComponents(random, 0.3)),
+            new LookupClause(query, randomComponents(random, 0.1))));
+
+      assertTrue(compute(query, emptyAndNot, new NidSet()).isEmpty());
+
+      // A scan doesn't remove the candidates it might not match before it is computed.
+      query = newQuery();
+      final ScanClause scan = new ScanClause(query, randomComponents(random, 0.3));
+      final AndNot scanAndNot = parent(new AndNot(query, scan));
+      final NidSet expected = expectedComponents(scanAndNot, allComponents());
+
+      assertNotEquals(0, expected.size());
+      assertEquals(expected, compute(query, scanAndNot, allComponents()));
+   }
+
+   private static Query newQuery() {
+      return new Query(ASSEMBLAGE) {
+         @Override
+         public void Let() {
+            // no let declarations
+         }
+
+         @Override
+         public Clause Where() {
+            throw new UnsupportedOperationException();
+         }
+      };
+   }
+
+   /**
+    * Compute the components of a clause the way {@link Query#compute()}
+    * computes its root clause.
+    */
+   private static NidSet compute(Query query, Clause root, NidSet candidates) {
+      query.getPlan().clear();
+      final Map<ConceptSpecification, NidSet> possibleComponents
+            = query.getPlan().computePossibleComponents(root, candidateMap(candidates));
+      return query.getPlan().computeComponents(root, possibleComponents).get(ASSEMBLAGE);
+   }
+
+   private static Map<ConceptSpecification, NidSet> candidateMap(NidSet candidates) {
+      final Map<ConceptSpecification, NidSet> candidateMap = new HashMap<>();
+      candidateMap.put(ASSEMBLAGE, NidSet.of(candidates));
+      return candidateMap;
+   }
+
+   private static NidSet expectedComponents(Clause clause, NidSet candidates) {
+      return NidSet.of(candidates.stream().filter((nid) -> matches(clause, nid)));
+   }
+
+   private static boolean matches(Clause clause, int nid) {
+      if (clause instanceof StubClause) {
+         return ((StubClause) clause).getMatches().contains(nid);
+      }
+      if (clause instanceof And) {
+         return clause.getChildren().stream().allMatch((child) -> matches(child, nid));
+      }
+      if (clause instanceof Or) {
+         return clause.getChildren().stream().anyMatch((child) -> matches(child, nid));
+      }
+      if (clause instanceof AndNot) {
+         return clause.getChildren().stream().noneMatch((child) -> matches(child, nid));
+      }
+      throw new UnsupportedOperationException(clause.toString());
+   }
+
+   private static Clause randomParentClause(Query query, Random random, int depth) {
+      final Clause[] children = new Clause[2 + random.nextInt(3)];
+
+      for (int i = 0; i < children.length; i++) {
+         if (depth > 1 && random.nextInt(3) == 0) {
+            children[i] = randomParentClause(query, random, depth - 1);
+         } else if (random.nextBoolean()) {
+            children[i] = new LookupClause(query, randomComponents(random, 0.1));
+         } else {
+            children[i] = new ScanClause(query, randomComponents(random, 0.4));
+         }
+      }
+      switch (random.nextInt(3)) {
+         case 0:
+            return parent(new And(query, children));
+         case 1:
+            return parent(new Or(query, children));
+         default:
+            return parent(new AndNot(query, children));
+      }
+   }
+
+   private static <T extends ParentClause> T parent(T parentClause) {
+      parentClause.setAssemblageForIteration(ASSEMBLAGE);
+      return parentClause;
+   }
+
+   private static NidSet allComponents() {
+      final NidSet components = new NidSet();
+      for (int i = 0; i < COMPONENT_COUNT; i++) {
+         components.add(-1 - i);
+      }
+      return components;
+   }
+
+   private static NidSet randomComponents(Random random, double fraction) {
+      final NidSet components = new NidSet();
+      for (int i = 0; i < COMPONENT_COUNT; i++) {
+         if (random.nextDouble() < fraction) {
+            components.add(-1 - i);
+         }
+      }
+      return components;
+   }
+
+   /**
+    * A leaf clause matching a fixed set of components, recording the number
+    * of candidates each time its components are computed.
+    */
+   private abstract static class StubClause extends Clause {
+
+      private final ClauseSemantic semantic;
+      private final NidSet matches;
+      private final List<Integer> candidateCounts = new ArrayList<>();
+
+      StubClause(Query enclosingQuery, ClauseSemantic semantic, NidSet matches) {
+         super(enclosingQuery);
+         this.semantic = semantic;
+         this.matches = matches;
+         setAssemblageForIteration(ASSEMBLAGE);
+      }
+
+      NidSet getMatches() {
+         return this.matches;
+      }
+
+      List<Integer> getCandidateCounts() {
+         return this.candidateCounts;
+      }
+
+      @Override
+      public Map<ConceptSpecification, NidSet> computeComponents(Map<ConceptSpecification, NidSet> incomingComponents) {
+         final NidSet candidates = incomingComponents.get(ASSEMBLAGE);
+         this.candidateCounts.add(candidates.size());
+         final Map<ConceptSpecification, NidSet> results = new HashMap<>(incomingComponents);
+         results.put(ASSEMBLAGE, NidSet.of(candidates.stream().filter(this.matches::contains)));
+         return results;
+      }
+
+      @Override
+      public ClauseSemantic getClauseSemantic() {
+         return this.semantic;
+      }
+
+      @Override
+      public ConceptSpecification getClauseConcept() {
+         return TermAux.UNINITIALIZED_COMPONENT_ID;
+      }
+
+      @Override
+      public List<Clause> getChildren() {
+         return Collections.emptyList();
+      }
+
+      @Override
+      public void getQueryMatches(ConceptVersion conceptVersion) {
+         // matches are fixed
+      }
+
+      @Override
+      public WhereClause getWhereClause() {
+         return new WhereClause();
+      }
+
+      @Override
+      public Clause[] getAllowedSubstutitionClauses() {
+         return new Clause[0];
+      }
+
+      @Override
+      public Clause[] getAllowedChildClauses() {
+         return new Clause[0];
+      }
+
+      @Override
+      public Clause[] getAllowedSiblingClauses() {
+         return new Clause[0];
+      }
+   }
+
+   /**
+    * A clause whose matches are looked up, independent of the candidates.
+    */
+   private static class LookupClause extends StubClause {
+
+      LookupClause(Query enclosingQuery, NidSet matches) {
+         super(enclosingQuery, ClauseSemantic.CONCEPT_IS_CHILD_OF, matches);
+      }
+
+      @Override
+      public Map<ConceptSpecification, NidSet> computePossibleComponents(Map<ConceptSpecification, NidSet> incomingPossibleComponents) {
+         final Map<ConceptSpecification, NidSet> results = new HashMap<>(incomingPossibleComponents);
+         results.put(ASSEMBLAGE, NidSet.of(getMatches()));
+         return results;
+      }
+
+      @Override
+      public EnumSet<ClauseComputeType> getComputePhases() {
+         return PRE_ITERATION;
+      }
+   }
+
+   /**
+    * A clause that has to test each candidate, so its possible components
+    * are all of the candidates.
+    */
+   private static class ScanClause extends StubClause {
+
+      ScanClause(Query enclosingQuery, NidSet matches) {
+         super(enclosingQuery, ClauseSemantic.DESCRIPTION_REGEX_MATCH, matches);
+      }
+
+      @Override
+      public Map<ConceptSpecification, NidSet> computePossibleComponents(Map<ConceptSpecification, NidSet> incomingPossibleComponents) {
+         return new HashMap<>(incomingPossibleComponents);
+      }
+
+      @Override
+      public EnumSet<ClauseComputeType> getComputePhases() {
+         return ITERATION;
+      }
+   }
+
+   /**
+    * The assemblage iterated by the test queries, compared by identity so
+    * no identifier service is needed.
+    */
+   private static class TestAssemblage implements ConceptSpecification {
+
+      private final UUID uuid = UUID.randomUUID();
+
+      @Override
+      public String getFullyQualifiedName() {
+         return "test assemblage";
+      }
+
+      @Override
+      public Optional<String> getRegularName() {
+         return Optional.of("test assemblage");
+      }
+
+      @Override
+      public List<UUID> getUuidList() {
+         return Collections.singletonList(this.uuid);
+      }
+   }
+}
@@ -134,6 +134,29 @@ public abstract class ChronologyImpl
      */
     private final CopyOnWriteArrayList<Version> committedVersions = new CopyOnWriteArrayList<>();
 
+    /**
+     * Guards the lazy version index, and the materialization of versions from it.
+     */
+    private final Object lazyVersionLock = new Object();
+
+    /**
+     * Persisted data from which versions that have not yet been materialized
+     * are read. Null when there are no versions left to materialize.
+     */
+    private volatile ByteArrayDataBuffer lazyVersionData;
+
+    /**
+     * Stamp sequences of versions that have not yet been materialized, -1 for
+     * a version that has been materialized.
+     */
+    private int[] lazyStampSequences;
+
+    /**
+     * Position within the lazy version data of the version fields that follow
+     * the stamp sequence, indexed in parallel with lazyStampSequences.
+     */
+    private int[] lazyVersionPositions;
+
     //~--- constructors --------------------------------------------------------
     /**
      * No argument constructor for reconstituting an object previously
@@ -147,6 +170,7 @@ public abstract class ChronologyImpl
      * @return true if uncommitted versions where removed. 
      */
     public boolean removeUncommittedVersions() {
+        materializeAllVersions();
         boolean anyRemoved = false;
         if (this.uncommittedVersions != null) {
             List<Version> toRemove = new ArrayList<>();
@@ -427,8 +451,12 @@ public abstract class ChronologyImpl
             setAdditionalChronicleFieldsFromBuffer(data);
             constructorEnd(data);
         }
-        readVersionList(data);
-        if (this.committedVersions.isEmpty() && this.uncommittedVersions.isEmpty()) {
+        if (data.isExternalData()) {
+            readVersionList(data);
+        } else {
+            indexVersionList(data);
+        }
+        if (this.committedVersions.isEmpty() && this.uncommittedVersions.isEmpty() && this.lazyVersionData == null) {
            throw new IllegalStateException();
         }
         ModelGet.identifierService().setupNid(this.nid, this.assemblageNid, this.getIsaacObjectType(), this.getVersionType());
@@ -542,6 +570,120 @@ public abstract class ChronologyImpl
         }
     }
 
+    /**
+     * Index the stamp sequence and position of each version, without calling
+     * makeVersion. Versions are materialized when first requested, so a caller
+     * that only needs the latest version(s) for a coordinate does not pay for
+     * deserializing every version of a heavily versioned chronology.
+     *
+     * @param bb the bb
+     */
+    private void indexVersionList(ByteArrayDataBuffer bb) {
+        if (bb.getUsed() == 0) {
+            throw new IllegalStateException();
+        }
+        int[] stampSequences = new int[8];
+        int[] versionPositions = new int[8];
+        int versionCount = 0;
+        int nextPosition = bb.getPosition();
+
+        while (nextPosition < bb.getLimit()) {
+            final int versionLength = bb.getInt();
+            assert versionLength >= 0 : "Length negative: " + versionLength + " buffer: " + bb;
+
+            if (versionLength > 0) {
+                nextPosition = nextPosition + versionLength;
+
+                final int stampSequence = bb.getStampSequence();
+
+                if (stampSequence >= 0) {
+                    if (versionCount == stampSequences.length) {
+                        stampSequences = Arrays.copyOf(stampSequences, versionCount * 2);
+                        versionPositions = Arrays.copyOf(versionPositions, versionCount * 2);
+                    }
+                    stampSequences[versionCount] = stampSequence;
+                    versionPositions[versionCount] = bb.getPositionStart() + bb.getPosition();
+                    versionCount++;
+                } else {
+                    LOG.warn("read a version length, but no stamp sequence? versionLength {}, stampSequence {}, {}", versionLength, stampSequence, bb);
+                }
+                bb.setPosition(nextPosition);
+            } else {
+                nextPosition = Integer.MAX_VALUE;
+            }
+        }
+        if (versionCount > 0) {
+            synchronized (this.lazyVersionLock) {
+                this.lazyStampSequences = Arrays.copyOf(stampSequences, versionCount);
+                this.lazyVersionPositions = Arrays.copyOf(versionPositions, versionCount);
+                this.lazyVersionData = bb.newWrapper();
+                this.lazyVersionData.setObjectDataFormatVersion(bb.getObjectDataFormatVersion());
+            }
+        }
+    }
+
+    /**
+     * Materialize the version for a stamp sequence, if it is in the lazy
+     * version index.
+     *
+     * @param stampSequence the stamp sequence of the version to materialize
+     */
+    private void materializeVersion(int stampSequence) {
+        if (this.lazyVersionData == null) {
+            return;
+        }
+        synchronized (this.lazyVersionLock) {
+            if (this.lazyVersionData == null) {
+                return;
+            }
+            boolean anyRemaining = false;
+            for (int i = 0; i < this.lazyStampSequences.length; i++) {
+                if (this.lazyStampSequences[i] == stampSequence) {
+                    materializeVersionAt(i);
+                } else if (this.lazyStampSequences[i] >= 0) {
+                    anyRemaining = true;
+                }
+            }
+            if (!anyRemaining) {
+                clearLazyVersions();
+            }
+        }
+    }
+
+    /**
+     * Materialize all versions remaining in the lazy version index.
+     */
+    private void materializeAllVersions() {
+        if (this.lazyVersionData == null) {
+            return;
+        }
+        synchronized (this.lazyVersionLock) {
+            if (this.lazyVersionData == null) {
+                return;
+            }
+            for (int i = 0; i < this.lazyStampSequences.length; i++) {
+                if (this.lazyStampSequences[i] >= 0) {
+                    materializeVersionAt(i);
+                }
+            }
+            clearLazyVersions();
+        }
+    }
+
+    private void materializeVersionAt(int index) {
+        final ByteArrayDataBuffer versionData = this.lazyVersionData.newWrapper();
+        versionData.setObjectDataFormatVersion(this.lazyVersionData.getObjectDataFormatVersion());
+        versionData.setPosition(this.lazyVersionPositions[index]);
+        addVersion(makeVersion(this.lazyStampSequences[index], versionData));
+        this.lazyStampSequences[index] = -1;
+    }
+
+    private void clearLazyVersions() {
+        this.lazyVersionData = null;
+        this.lazyStampSequences = null;
+        this.lazyVersionPositions = null;
+    }
+
     /**
      * Skip additional uuids.
      *
@@ -921,6 +1063,7 @@ public abstract class ChronologyImpl
     public <V extends Version> List<V> getUnwrittenVersionList() {
         final ArrayList<V> results = new ArrayList<>();
 
+        materializeAllVersions();
         if (this.uncommittedVersions != null) {
             results.addAll((Collection<V>) this.uncommittedVersions);
         }
@@ -957,6 +1100,7 @@ public abstract class ChronologyImpl
      */
     public <V extends StampedVersion> Optional<V> getVersionForStamp(int stampSequence) {
 
+        materializeVersion(stampSequence);
         if (Get.stampService().isUncommitted(stampSequence)) {
             for (Version version : this.uncommittedVersions) {
                 if (version.getStampSequence() == stampSequence) {
@@ -1048,6 +1192,7 @@ public abstract class ChronologyImpl
     @Override
     public <V extends Version> List<V> getVersionList() {
 
+        materializeAllVersions();
         ArrayList<Version> versionList = new ArrayList<>(this.uncommittedVersions.size()
                 + this.committedVersions.size());
         versionList.addAll(this.uncommittedVersions);
@@ -1071,11 +1216,20 @@ public abstract class ChronologyImpl
     public int[] getVersionStampSequences() {
         final OpenIntHashSet builder = new OpenIntHashSet();
 
-        for (Version v : this.uncommittedVersions) {
-            builder.add(v.getStampSequence());
-        }
-        for (Version v : this.committedVersions) {
-            builder.add(v.getStampSequence());
+        synchronized (this.lazyVersionLock) {
+            if (this.lazyStampSequences != null) {
+                for (int stampSequence : this.lazyStampSequences) {
+                    if (stampSequence >= 0) {
+                        builder.add(stampSequence);
+                    }
+                }
+            }
+            for (Version v : this.uncommittedVersions) {
+                builder.add(v.getStampSequence());
+            }
+            for (Version v : this.committedVersions) {
+                builder.add(v.getStampSequence());
+            }
         }
         return builder.keys().elements();
     }
@@ -1089,6 +1243,9 @@ public abstract class ChronologyImpl
      * @param versions the new versions
      */
     public <V extends Version> void setVersions(Collection<V> versions) {
+        synchronized (this.lazyVersionLock) {
+            clearLazyVersions();
+        }
         this.uncommittedVersions.clear();
         this.committedVersions.clear();
         versions.forEach((V version) -> addVersion(version));
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.model.collections;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A read only, memory mapped view of a single spine file written by a
+ * {@link SpinedByteArrayArrayMap}. The file starts with a header, followed by
+ * an offset table with one entry per element in the spine, followed by the
+ * element records. Only the pages backing the requested records are faulted
+ * in by the operating system, so the heap does not have to hold the spine.
+ *
+ * <p>File layout:</p>
+ * <pre>
+ * int   MAGIC
+ * int   FORMAT_VERSION
+ * int   element count (n)
+ * int[n] record offsets from the start of the file, 0 if the element is null
+ * records:
+ *    int   part count (p)
+ *    int[p] part lengths
+ *    byte[] the parts, concatenated, followed by an integer 0
+ * </pre>
+ *
+ * <p>The trailing integer 0 of a record allows the chronology form of the
+ * record (the parts without the leading 0 integer of the first part, and
+ * terminated by a 0 integer) to be read as one contiguous region.</p>
+ *
+ * @author kec
+ */
+class MappedByteArraySpine {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** "ISPN" - distinguishes mapped spines from the legacy format, which starts with the element count. */
+    static final int MAGIC = 0x4953504E;
+    static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * True if a file cannot be replaced while it is mapped, as on Windows. The
+     * prior mapping of a spine must then be unmapped before the spine file is
+     * replaced, and views handed out by {@link #getChronologyBuffer(int)} are
+     * copies, so that no reader is left holding an unmapped region.
+     */
+    static final boolean REPLACE_REQUIRES_UNMAP = System.getProperty("os.name", "").startsWith("Windows");
+
+    private final MappedByteBuffer buffer;
+    private final int elementCount;
+
+    private MappedByteArraySpine(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.elementCount = buffer.getInt(8);
+    }
+
+    /**
+     * Test if a spine file is in the memory mapped format.
+     *
+     * @param spineFile the spine file to test.
+     * @return true if the file starts with the mapped spine header.
+     * @throws IOException
+     */
+    static boolean isMappedSpineFile(File spineFile) throws IOException {
+        if (spineFile.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(spineFile, "r")) {
+            return raf.readInt() == MAGIC && raf.readInt() == FORMAT_VERSION;
+        }
+    }
+
+    /**
+     * Map a spine file into memory. The mapping remains valid after the
+     * channel is closed, and after the file is replaced by a subsequent write.
+     *
+     * @param spineFile the spine file to map.
+     * @return the mapped spine.
+     * @throws IOException
+     */
+    static MappedByteArraySpine map(File spineFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(spineFile.toPath())) {
+            return new MappedByteArraySpine(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write a spine in the mapped format. The data is written to a temporary
+     * file that then replaces the spine file, so that existing mappings of
+     * the prior spine file are not truncated underneath concurrent readers.
+     * Where {@link #REPLACE_REQUIRES_UNMAP}, the prior mapping must have been
+     * unmapped before calling this method.
+     *
+     * @param spineFile the spine file to write.
+     * @param spine the values of the spine.
+     * @throws IOException
+     */
+    static void write(File spineFile, byte[][][] spine) throws IOException {
+        File tempFile = new File(spineFile.getParentFile(), "tmp-" + spineFile.getName());
+        int[] offsets = new int[spine.length];
+        byte[][][] values = new byte[spine.length][][];
+        long offset = HEADER_SIZE + (4L * spine.length);
+        for (int i = 0; i < spine.length; i++) {
+            byte[][] value = spine[i];
+            if (value != null && value.length > 0) {
+                if (offset > Integer.MAX_VALUE) {
+                    throw new IOException("Spine exceeds maximum mapped size: " + spineFile.getAbsolutePath());
+                }
+                values[i] = value;
+                offsets[i] = (int) offset;
+                offset = offset + recordSize(value);
+            }
+        }
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeInt(offsets.length);
+            for (int recordOffset : offsets) {
+                dos.writeInt(recordOffset);
+            }
+            for (byte[][] value : values) {
+                if (value != null) {
+                    dos.writeInt(value.length);
+                    for (byte[] valuePart : value) {
+                        dos.writeInt(valuePart.length);
+                    }
+                    for (byte[] valuePart : value) {
+                        dos.write(valuePart);
+                    }
+                    dos.writeInt(0);
+                }
+            }
+        }
+        Files.move(tempFile.toPath(), spineFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long recordSize(byte[][] value) {
+        long size = 4L + (4L * value.length) + 4L;
+        for (byte[] valuePart : value) {
+            size = size + valuePart.length;
+        }
+        return size;
+    }
+
+    int getElementCount() {
+        return elementCount;
+    }
+
+    /**
+     * @param indexInSpine the index of the element within the spine.
+     * @return true if the spine has a value for the element.
+     */
+    boolean contains(int indexInSpine) {
+        return indexInSpine < elementCount && recordOffset(indexInSpine) != 0;
+    }
+
+    /**
+     * Decode the parts of an element. Only the pages backing this element are
+     * touched.
+     *
+     * @param indexInSpine the index of the element within the spine.
+     * @return the parts of the element, or null if the element is not present.
+     */
+    byte[][] get(int indexInSpine) {
+        if (!contains(indexInSpine)) {
+            return null;
+        }
+        int recordOffset = recordOffset(indexInSpine);
+        int partCount = buffer.getInt(recordOffset);
+        byte[][] value = new byte[partCount][];
+        ByteBuffer view = buffer.duplicate();
+        view.position(recordOffset + 4 + (4 * partCount));
+        for (int i = 0; i < partCount; i++) {
+            value[i] = new byte[buffer.getInt(recordOffset + 4 + (4 * i))];
+            view.get(value[i]);
+        }
+        return value;
+    }
+
+    /**
+     * A view of the chronology form of an element, the parts without the
+     * leading 0 integer of the first part, terminated by an integer 0. The
+     * view shares the mapped region, so no bytes are copied, unless
+     * {@link #REPLACE_REQUIRES_UNMAP}, in which case the bytes are copied to
+     * the heap so the view remains valid after this spine is unmapped.
+     *
+     * @param indexInSpine the index of the element within the spine.
+     * @return a read only view of the chronology bytes, or null if the element is not present.
+     */
+    ByteBuffer getChronologyBuffer(int indexInSpine) {
+        if (!contains(indexInSpine)) {
+            return null;
+        }
+        int recordOffset = recordOffset(indexInSpine);
+        int partCount = buffer.getInt(recordOffset);
+        int size = 0;
+        for (int i = 0; i < partCount; i++) {
+            size = size + buffer.getInt(recordOffset + 4 + (4 * i));
+        }
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        int start = recordOffset + 4 + (4 * partCount) + 4;
+        view.position(start);
+        view.limit(start + size);
+        if (REPLACE_REQUIRES_UNMAP) {
+            ByteBuffer copy = ByteBuffer.allocate(size);
+            copy.put(view);
+            copy.flip();
+            return copy.asReadOnlyBuffer();
+        }
+        return view.slice();
+    }
+
+    /**
+     * Release the mapping without waiting for the buffer to be garbage
+     * collected, so the file can be replaced where
+     * {@link #REPLACE_REQUIRES_UNMAP}. The spine must not be read afterwards,
+     * and no reader may still hold it, or the JVM will crash on the access.
+     */
+    void unmap() {
+        try {
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException ex) {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOG.warn("Unable to unmap spine, the file will be released when the mapping is collected", ex);
+        }
+    }
+
+    /**
+     * @return the number of mapped bytes.
+     */
+    int mappedSize() {
+        return buffer.capacity();
+    }
+
+    private int recordOffset(int indexInSpine) {
+        return buffer.getInt(HEADER_SIZE + (4 * indexInSpine));
+    }
+}
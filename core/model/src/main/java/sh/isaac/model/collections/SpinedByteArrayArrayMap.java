@@ -17,21 +17,24 @@
 package sh.isaac.model.collections;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
+import sh.isaac.api.externalizable.ByteArrayDataBuffer;
+import sh.isaac.api.externalizable.ReadOnlyByteArrayDataBuffer;
 import sh.isaac.model.ModelGet;
 import static sh.isaac.model.collections.SpineFileUtil.SPINE_PREFIX;
 
@@ -44,11 +47,42 @@ public class SpinedByteArrayArrayMap extends SpinedIntObjectMap<byte[][]> {
     private static final Logger LOG = LogManager.getLogger();
     private final Semaphore diskSemaphore = new Semaphore(1);
 
+    /**
+     * Spines that have been written in the memory mapped format. The heap
+     * spines in {@code spines} only hold values changed since the spine was
+     * mapped, and take precedence over the mapped values. A heap value that
+     * has been written is released by replacing it with an empty array unique
+     * to the write, rather than with null, so that a put that computed its
+     * merge from a superseded mapping cannot store it over a slot that was
+     * changed and released again in the meantime.
+     */
+    private final ConcurrentHashMap<Integer, MappedByteArraySpine> mappedSpines = new ConcurrentHashMap<>();
+
+    /**
+     * Where {@link MappedByteArraySpine#REPLACE_REQUIRES_UNMAP}, a prior
+     * mapping is unmapped before its file is replaced, and touching an
+     * unmapped region crashes the JVM. Readers of the heap spines and
+     * mappings then hold the read lock, and the write holds the write lock
+     * while it moves the mapped values to the heap and unmaps. Elsewhere a
+     * mapping is never unmapped explicitly, it is released when the buffer,
+     * and every view handed out from it, is collected, so reads take no lock.
+     */
+    private final ReentrantReadWriteLock unmapLock = new ReentrantReadWriteLock();
+
     File directory;
 
     public SpinedByteArrayArrayMap() {
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        mappedSpines.clear();
+    }
+
     public int sizeOnDisk() {
         if (directory == null) {
             return 0;
@@ -98,56 +132,65 @@ public class SpinedByteArrayArrayMap extends SpinedIntObjectMap<byte[][]> {
         });
         int spineFilesRead = 0;
         for (File spineFile : files) {
-            readSpine(spineFile);
+            int spineIndex = Integer.parseInt(spineFile.getName().substring(SPINE_PREFIX.length()));
+            this.spines.computeIfAbsent(spineIndex, this::newSpine);
             spineFilesRead++;
         }
         return spineFilesRead;
     }
+
+    /**
+     * Spines in the memory mapped format are mapped, and an empty heap spine is
+     * returned to hold changes. Spines in the legacy format are read onto the
+     * heap, and marked as changed so that the next write converts them to the
+     * memory mapped format.
+     *
+     * @param spineKey the index of the spine
+     * @return the heap spine.
+     */
     @Override
     protected AtomicReferenceArray<byte[][]> newSpine(Integer spineKey) {
-        if (spineKey < this.spineCount.get()) {
-            return readSpine(spineKey);
+        if (spineKey < this.spineCount.get() && directory != null) {
+            File spineFile = new File(directory, SPINE_PREFIX + spineKey);
+            if (spineFile.exists()) {
+                diskSemaphore.acquireUninterruptibly();
+                try {
+                    if (MappedByteArraySpine.isMappedSpineFile(spineFile)) {
+                        this.mappedSpines.put(spineKey, MappedByteArraySpine.map(spineFile));
+                    } else {
+                        AtomicReferenceArray<byte[][]> spine = readLegacySpine(spineFile);
+                        this.changedSpineIndexes.add(spineKey);
+                        return spine;
+                    }
+                } catch (IOException ex) {
+                    LOG.error(ex);
+                } finally {
+                    diskSemaphore.release();
+                }
+            }
         }
         return makeNewSpine(spineKey);
     }
 
-    protected AtomicReferenceArray<byte[][]> readSpine(int spineIndex) {
-        String spineKey = SPINE_PREFIX + spineIndex;
-        File spineFile = new File(directory, spineKey);
-        return readSpine(spineFile);
-    }
-
-    private AtomicReferenceArray<byte[][]> readSpine(File spineFile) throws NumberFormatException {
-        int spineIndex = Integer.parseInt(spineFile.getName().substring(SPINE_PREFIX.length()));
-        if (spineFile.exists()) {
-            diskSemaphore.acquireUninterruptibly();
-            try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(spineFile)))) {
-                int arraySize = dis.readInt();
-                byte[][][] spineArray = new byte[arraySize][][];
-                for (int i = 0; i < arraySize; i++) {
-                    int valueSize = dis.readInt();
-                    if (valueSize != 0) {
-                        byte[][] value = new byte[valueSize][];
-                        for (int j = 0; j < valueSize; j++) {
-                            int valuePartSize = dis.readInt();
-                            byte[] valuePart = new byte[valuePartSize];
-                            dis.readFully(valuePart);
-                            value[j] = valuePart;
-                        }
-                        spineArray[i] = value;
+    private AtomicReferenceArray<byte[][]> readLegacySpine(File spineFile) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(spineFile)))) {
+            int arraySize = dis.readInt();
+            byte[][][] spineArray = new byte[arraySize][][];
+            for (int i = 0; i < arraySize; i++) {
+                int valueSize = dis.readInt();
+                if (valueSize != 0) {
+                    byte[][] value = new byte[valueSize][];
+                    for (int j = 0; j < valueSize; j++) {
+                        int valuePartSize = dis.readInt();
+                        byte[] valuePart = new byte[valuePartSize];
+                        dis.readFully(valuePart);
+                        value[j] = valuePart;
                     }
+                    spineArray[i] = value;
                 }
-                AtomicReferenceArray<byte[][]> spine = new AtomicReferenceArray<>(spineArray);
-                return this.spines.putIfAbsent(spineIndex, spine);
-                
-            } catch (IOException ex) {
-                LOG.error(ex);
-            } finally {
-                diskSemaphore.release();
             }
-        } 
-        return this.spines.putIfAbsent(spineIndex, makeNewSpine(spineIndex));
-        
+            return new AtomicReferenceArray<>(spineArray);
+        }
     }
 
     public boolean write(File directory) {
@@ -164,22 +207,13 @@ public class SpinedByteArrayArrayMap extends SpinedIntObjectMap<byte[][]> {
                     this.changedSpineIndexes.remove(key);
                     File spineFile = new File(directory, spineKey);
                     diskSemaphore.acquireUninterruptibly();
-                    try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spineFile)))) {
-                        dos.writeInt(spine.length());
-                        for (int i = 0; i < spine.length(); i++) {
-                            byte[][] value = spine.get(i);
-                            if (value == null) {
-                                dos.writeInt(0);
-                            } else {
-                                dos.writeInt(value.length);
-                                for (byte[] valuePart : value) {
-                                    dos.writeInt(valuePart.length);
-                                    dos.write(valuePart);
-                                }
-                            }
-                        }
+                    try {
+                        writeSpine(key, spine, spineFile);
                     } catch (IOException ex) {
+                        // Written again on the next write. The heap values are only released once written.
+                        this.changedSpineIndexes.add(key);
                         LOG.error(ex);
+                        throw new RuntimeException(ex);
                     } finally {
                         diskSemaphore.release();
                     }
@@ -196,8 +230,69 @@ public class SpinedByteArrayArrayMap extends SpinedIntObjectMap<byte[][]> {
         }
     }
 
-    @Override
-    public byte[][] get(int index) {
+    private void writeSpine(int key, AtomicReferenceArray<byte[][]> spine, File spineFile) throws IOException {
+        MappedByteArraySpine priorMapping = this.mappedSpines.get(key);
+        byte[][][] written = new byte[spine.length()][][];
+        byte[][][] heapValues = new byte[spine.length()][][];
+        for (int i = 0; i < spine.length(); i++) {
+            heapValues[i] = spine.get(i);
+            if (isReleased(heapValues[i])) {
+                heapValues[i] = null;
+                if (priorMapping != null) {
+                    written[i] = priorMapping.get(i);
+                }
+            } else {
+                written[i] = heapValues[i];
+            }
+        }
+        if (priorMapping != null && MappedByteArraySpine.REPLACE_REQUIRES_UNMAP) {
+            // The prior file cannot be replaced while mapped. Its values are held on
+            // the heap until the new file is mapped, and it is unmapped once no reader
+            // can hold it.
+            this.unmapLock.writeLock().lock();
+            try {
+                for (int i = 0; i < spine.length(); i++) {
+                    byte[][] current = spine.get(i);
+                    if (heapValues[i] == null && written[i] != null
+                            && isReleased(current) && spine.compareAndSet(i, current, written[i])) {
+                        heapValues[i] = written[i];
+                    }
+                }
+                this.mappedSpines.remove(key, priorMapping);
+                priorMapping.unmap();
+            } finally {
+                this.unmapLock.writeLock().unlock();
+            }
+        }
+        MappedByteArraySpine.write(spineFile, written);
+        this.mappedSpines.put(key, MappedByteArraySpine.map(spineFile));
+        // Values now on disk are released from the heap, unless changed during the write. 
+        // A put that merges into a released slot reads the value from the new mapping.
+        byte[][] released = new byte[0][];
+        for (int i = 0; i < spine.length(); i++) {
+            if (heapValues[i] != null) {
+                spine.compareAndSet(i, heapValues[i], released);
+            }
+        }
+    }
+
+    /**
+     * Begin a read of the heap spines and mappings, where a mapping may be
+     * unmapped. Must be followed by {@link #endMappedRead()}.
+     */
+    private void beginMappedRead() {
+        if (MappedByteArraySpine.REPLACE_REQUIRES_UNMAP) {
+            this.unmapLock.readLock().lock();
+        }
+    }
+
+    private void endMappedRead() {
+        if (MappedByteArraySpine.REPLACE_REQUIRES_UNMAP) {
+            this.unmapLock.readLock().unlock();
+        }
+    }
+
+    private int getElementIndex(int index) {
         if (index < 0) {
             if (ModelGet.sequenceStore() != null) {
                index = ModelGet.sequenceStore().getElementSequenceForNid(index);
@@ -206,40 +301,198 @@ public class SpinedByteArrayArrayMap extends SpinedIntObjectMap<byte[][]> {
                index = Integer.MAX_VALUE + index;
             }
         }
+        return index;
+    }
+
+    /**
+     * @param value a heap value
+     * @return true if the heap holds no value of its own, so the mapped value, if any, applies.
+     */
+    private static boolean isReleased(byte[][] value) {
+        return value == null || value.length == 0;
+    }
+
+    private byte[][] getValue(int spineIndex, int indexInSpine) {
+        AtomicReferenceArray<byte[][]> spine = this.spines.computeIfAbsent(spineIndex, this::newSpine);
+        beginMappedRead();
+        try {
+            byte[][] value = spine.get(indexInSpine);
+            if (isReleased(value)) {
+                return getMappedValue(spineIndex, indexInSpine);
+            }
+            return value;
+        } finally {
+            endMappedRead();
+        }
+    }
+
+    @Override
+    public byte[][] get(int index) {
+        index = getElementIndex(index);
+        return getValue(index / spineSize, index % spineSize);
+    }
+
+    @Override
+    public Optional<byte[][]> getOptional(int index) {
+        return Optional.ofNullable(get(index));
+    }
+
+    /**
+     * Get the data for a chronology in the form expected by the chronology
+     * readers: the chronology record without its leading 0 integer, followed by
+     * the version records, followed by a 0 integer to indicate the last version.
+     * If the data has not changed since its spine was mapped, it is read from
+     * the mapped spine without copying, as a read only buffer.
+     *
+     * @param index the element sequence of the chronology
+     * @return the chronology data, or an empty optional if the element is not present.
+     */
+    public Optional<ByteArrayDataBuffer> getChronologyData(int index) {
+        index = getElementIndex(index);
         int spineIndex = index / spineSize;
         int indexInSpine = index % spineSize;
-        if (spineIndex < this.spineCount.get()) {
-            if (!this.spines.containsKey(spineIndex)) {
-                readSpine(spineIndex);
+        AtomicReferenceArray<byte[][]> spine = this.spines.computeIfAbsent(spineIndex, this::newSpine);
+        byte[][] data;
+
+        beginMappedRead();
+        try {
+            data = spine.get(indexInSpine);
+            if (isReleased(data)) {
+                // Where a mapping may be unmapped, the buffer is a heap copy.
+                MappedByteArraySpine mappedSpine = this.mappedSpines.get(spineIndex);
+                if (mappedSpine != null) {
+                    ByteBuffer chronologyBuffer = mappedSpine.getChronologyBuffer(indexInSpine);
+                    if (chronologyBuffer != null) {
+                        return Optional.of(new ReadOnlyByteArrayDataBuffer(chronologyBuffer));
+                    }
+                }
+                return Optional.empty();
             }
+        } finally {
+            endMappedRead();
         }
-        return this.spines.computeIfAbsent(spineIndex, this::newSpine).get(indexInSpine);
+
+        int size = 0;
+
+        for (byte[] dataEntry : data) {
+            size = size + dataEntry.length;
+        }
+
+        ByteArrayDataBuffer byteBuffer = new ByteArrayDataBuffer(
+                size + 4);  // room for 0 int value at end to indicate last version
+
+        for (int i = 0; i < data.length; i++) {
+            if (i == 0) {
+                // discard the 0 integer at the beginning of the record. 
+                // 0 put in to enable the chronicle to sort before the versions. 
+                if (data[0][0] != 0 && data[0][1] != 0 && data[0][2] != 0 && data[0][3] != 0) {
+                    throw new IllegalStateException("Record does not start with zero...");
+                }
+                byteBuffer.put(data[0], 4, data[0].length - 4);
+            } else {
+                byteBuffer.put(data[i]);
+            }
+
+        }
+
+        byteBuffer.putInt(0);
+        byteBuffer.rewind();
+
+        if (byteBuffer.getUsed() != size) {
+            throw new IllegalStateException("Size = " + size + " used = " + byteBuffer.getUsed());
+        }
+        return Optional.of(byteBuffer);
     }
 
     @Override
     public boolean put(int index, byte[][] element) {
-        if (index < 0) {
-           if (ModelGet.sequenceStore() != null) {
-                index = ModelGet.sequenceStore().getElementSequenceForNid(index);
-             }
-             else {
-                index = Integer.MAX_VALUE + index;
-             }
-        }
+        index = getElementIndex(index);
         int spineIndex = index / spineSize;
         int indexInSpine = index % spineSize;
-        if (spineIndex < this.spineCount.get()) {
-            if (!this.spines.containsKey(spineIndex)) {
-                readSpine(spineIndex);
+        AtomicReferenceArray<byte[][]> spine = this.spines.computeIfAbsent(spineIndex, this::newSpine);
+        beginMappedRead();
+        try {
+            // A concurrent write may release the heap value between the read of
+            // the slot and the merge, so an empty slot is resolved to the mapped
+            // value inside the atomic update. The write maps the written spine
+            // before it releases any heap value, so the mapping read here holds
+            // the released value.
+            byte[][] previous = spine.getAndAccumulate(indexInSpine, element,
+                    (byte[][] current, byte[][] update) -> merge(isReleased(current) ? getMappedValue(spineIndex, indexInSpine) : current, update));
+            // Marked after the update, so a write that has already taken its
+            // snapshot of the spine writes the spine again.
+            this.changedSpineIndexes.add(spineIndex);
+            if (!isReleased(previous)) {
+                return true;
             }
+            MappedByteArraySpine mappedSpine = this.mappedSpines.get(spineIndex);
+            return mappedSpine != null && mappedSpine.contains(indexInSpine);
+        } finally {
+            endMappedRead();
+        }
+    }
+
+    private byte[][] getMappedValue(int spineIndex, int indexInSpine) {
+        MappedByteArraySpine mappedSpine = this.mappedSpines.get(spineIndex);
+        if (mappedSpine != null) {
+            return mappedSpine.get(indexInSpine);
         }
-        this.changedSpineIndexes.add(spineIndex);
-        
-        
+        return null;
+    }
+
+    @Override
+    public void forEach(IntBiConsumer<byte[][]> consumer) {
+        int currentSpineCount = this.spineCount.get();
+        int key = 0;
+        for (int spineIndex = 0; spineIndex < currentSpineCount; spineIndex++) {
+            for (int indexInSpine = 0; indexInSpine < spineSize; indexInSpine++) {
+                byte[][] element = getValue(spineIndex, indexInSpine);
+                if (element != null) {
+                    consumer.accept(key, element);
+                }
+                key++;
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(int index) {
+        index = getElementIndex(index);
+        int spineIndex = index / spineSize;
+        int indexInSpine = index % spineSize;
         AtomicReferenceArray<byte[][]> spine = this.spines.computeIfAbsent(spineIndex, this::newSpine);
-        boolean returnValue = spine.get(indexInSpine) != null;
-        spine.accumulateAndGet(indexInSpine, element, this::merge);
-        return returnValue;
+        beginMappedRead();
+        try {
+            if (!isReleased(spine.get(indexInSpine))) {
+                return true;
+            }
+            MappedByteArraySpine mappedSpine = this.mappedSpines.get(spineIndex);
+            return mappedSpine != null && mappedSpine.contains(indexInSpine);
+        } finally {
+            endMappedRead();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        int currentSpineCount = this.spineCount.get();
+        for (int spineIndex = 0; spineIndex < currentSpineCount; spineIndex++) {
+            AtomicReferenceArray<byte[][]> spine = this.spines.computeIfAbsent(spineIndex, this::newSpine);
+            beginMappedRead();
+            try {
+                MappedByteArraySpine mappedSpine = this.mappedSpines.get(spineIndex);
+                for (int indexInSpine = 0; indexInSpine < spineSize; indexInSpine++) {
+                    if (!isReleased(spine.get(indexInSpine))
+                            || (mappedSpine != null && mappedSpine.contains(indexInSpine))) {
+                        size++;
+                    }
+                }
+            } finally {
+                endMappedRead();
+            }
+        }
+        return size;
     }
 
     private static int compare(byte[] one, byte[] another) {
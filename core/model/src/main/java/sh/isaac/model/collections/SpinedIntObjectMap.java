@@ -321,13 +321,20 @@ public class SpinedIntObjectMap<E> implements IntObjectMap<E> {
         }
     }
 
+    /**
+     * A spliterator over a range of element indexes. Splits are aligned to
+     * spine boundaries where possible, so each split reads whole spines.
+     */
     private class SpinedValueSpliterator implements Spliterator<E> {
 
+        /** Ranges within a single spine smaller than this are not split. */
+        private static final int MIN_SPLIT_SIZE = 1024;
+
         int end;
         int currentPosition;
 
         public SpinedValueSpliterator() {
-            this.end = DEFAULT_SPINE_SIZE * spineCount.get();
+            this.end = spineSize * spineCount.get();
             this.currentPosition = 0;
         }
 
@@ -336,13 +343,24 @@ public class SpinedIntObjectMap<E> implements IntObjectMap<E> {
             this.end = end;
         }
 
+        /**
+         * Split off the first half of the remaining range, ending at the spine
+         * boundary nearest the middle, or at the middle if the range is within
+         * one spine.
+         */
         @Override
         public Spliterator<E> trySplit() {
-            int splitEnd = end;
-            int split = end - currentPosition;
-            int half = split / 2;
-            this.end = currentPosition + half;
-            return new SpinedValueSpliterator(currentPosition + half + 1, splitEnd);
+            int remaining = end - currentPosition;
+            int split = currentPosition + remaining / 2;
+            int spineBoundary = ((split + spineSize / 2) / spineSize) * spineSize;
+            if (spineBoundary > currentPosition && spineBoundary < end) {
+                split = spineBoundary;
+            } else if (remaining < MIN_SPLIT_SIZE) {
+                return null;
+            }
+            SpinedValueSpliterator prefix = new SpinedValueSpliterator(currentPosition, split);
+            this.currentPosition = split;
+            return prefix;
         }
 
         @Override
@@ -357,6 +375,9 @@ public class SpinedIntObjectMap<E> implements IntObjectMap<E> {
             return false;
         }
 
+        /**
+         * @return an upper bound, as empty elements are skipped.
+         */
         @Override
         public long estimateSize() {
             return end - currentPosition;
@@ -364,8 +385,7 @@ public class SpinedIntObjectMap<E> implements IntObjectMap<E> {
 
         @Override
         public int characteristics() {
-            return Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.ORDERED
-                    | Spliterator.SIZED;
+            return Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.ORDERED;
         }
 
     }
@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -31,9 +32,10 @@ import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -41,6 +43,15 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
+ * A map from a nid to a sorted set of nids, such as from a component to the
+ * semantics that reference it. Values are added without locking, by
+ * compare-and-set of the array in the slot for the key. Once the set for a key
+ * reaches {@code APPEND_LOG_THRESHOLD} values, further values are appended to
+ * an {@link AppendLog} instead of copying the whole array for each addition.
+ * A log is merged back into the sorted array of its key when it fills a chunk
+ * of {@code APPEND_CHUNK_SIZE} values, and all logs are merged by
+ * {@link #compact()}, which is called when the map is written. Reads of a key
+ * with pending appends reuse the merged values until the key changes.
  *
  * @author kec
  */
@@ -48,6 +59,8 @@ public class SpinedNidNidSetMap {
 
     private static final Logger LOG = LogManager.getLogger();
     private static final int DEFAULT_SPINE_SIZE = 1024;
+    private static final int APPEND_LOG_THRESHOLD = 256;
+    private static final int APPEND_CHUNK_SIZE = 1024;
     protected final int spineSize;
     protected final ConcurrentMap<Integer, AtomicReferenceArray<int[]>> spines = new ConcurrentHashMap<>();
 //    private Function<int[], String> elementStringConverter;
@@ -55,6 +68,8 @@ public class SpinedNidNidSetMap {
     private final Semaphore diskSemaphore = new Semaphore(1);
     protected final AtomicInteger spineCount = new AtomicInteger();
     protected final ConcurrentSkipListSet<Integer> changedSpineIndexes = new ConcurrentSkipListSet<>();
+    /** Pending appends for keys with many values, keyed by index. */
+    private final ConcurrentMap<Integer, AppendLog> appendLogs = new ConcurrentHashMap<>();
 
     public SpinedNidNidSetMap() {
         this.spineSize = DEFAULT_SPINE_SIZE;
@@ -65,6 +80,7 @@ public class SpinedNidNidSetMap {
      */
     public void clear() {
       spines.clear();
+      appendLogs.clear();
       spineCount.set(0);
       changedSpineIndexes.clear();
     }
@@ -80,6 +96,9 @@ public class SpinedNidNidSetMap {
                 }
             }
         }
+        for (AppendLog appendLog : appendLogs.values()) {
+            sizeInBytes = sizeInBytes + appendLog.sizeInBytes();
+        }
         return sizeInBytes;
     }
 
@@ -131,6 +150,7 @@ public class SpinedNidNidSetMap {
      */
     public boolean write(File directory) {
         AtomicBoolean wroteAny = new AtomicBoolean(false);
+        compact();
         try {
             directory.mkdirs();
             SpineFileUtil.writeSpineCount(directory, spineCount.get());
@@ -172,7 +192,7 @@ public class SpinedNidNidSetMap {
         return wroteAny.get();
     }
 
-    public synchronized void add(int index, int element) {
+    public void add(int index, int element) {
         if (index < 0) {
             index = Integer.MAX_VALUE + index;
         } else {
@@ -181,9 +201,55 @@ public class SpinedNidNidSetMap {
         int spineIndex = index / spineSize;
         int indexInSpine = index % spineSize;
         this.changedSpineIndexes.add(spineIndex);
-        this.spines.computeIfAbsent(spineIndex, this::newSpine).accumulateAndGet(indexInSpine, new int[]{element}, MergeIntArray::merge);
+        AtomicReferenceArray<int[]> spine = this.spines.computeIfAbsent(spineIndex, this::newSpine);
+        int[] current = spine.get(indexInSpine);
+        if (current != null && current.length >= APPEND_LOG_THRESHOLD) {
+            if (Arrays.binarySearch(current, element) >= 0) {
+                return;
+            }
+            AppendLog appendLog = this.appendLogs.computeIfAbsent(index, (key) -> new AppendLog());
+            int position = appendLog.append(element);
+            if (position >= 0) {
+                if (position == APPEND_CHUNK_SIZE - 1) {
+                    // the append filled a chunk, so reads would merge at least a chunk of values.
+                    compact(index, appendLog);
+                }
+                return;
+            }
+            // the log is being compacted, add directly to the sorted array.
+        }
+        spine.accumulateAndGet(indexInSpine, new int[]{element}, MergeIntArray::merge);
     }
 
+    /**
+     * Merge pending appends into the sorted arrays of their keys. Values may
+     * be added concurrently; a value added during compaction is either
+     * merged, or remains in a new append log.
+     */
+    public void compact() {
+        this.appendLogs.forEach(this::compact);
+    }
+
+    /**
+     * Merge the pending appends of one key into its sorted array.
+     *
+     * @param index the index of the key
+     * @param appendLog the append log of the key
+     */
+    private void compact(Integer index, AppendLog appendLog) {
+        int[] appended = appendLog.seal();
+        if (appended == null) {
+            // compacted by another thread
+            return;
+        }
+        int spineIndex = index / spineSize;
+        this.changedSpineIndexes.add(spineIndex);
+        if (appended.length > 0) {
+            this.spines.computeIfAbsent(spineIndex, this::newSpine)
+                    .accumulateAndGet(index % spineSize, appended, MergeIntArray::merge);
+        }
+        this.appendLogs.remove(index, appendLog);
+    }
     private int getSpineCount() {
         return spineCount.get();
     }
@@ -210,13 +276,29 @@ public class SpinedNidNidSetMap {
         }
         int spineIndex = index / spineSize;
         int indexInSpine = index % spineSize;
-        int[] result = this.spines.computeIfAbsent(spineIndex, this::newSpine).get(indexInSpine);
+        int[] result = getWithAppends(this.spines.computeIfAbsent(spineIndex, this::newSpine), index, indexInSpine);
         if (result == null) {
             return new int[]{};
         }
         return result;
     }
 
+    /**
+     * @param spine the spine of the key
+     * @param index the index of the key
+     * @param indexInSpine the index of the key within the spine
+     * @return the sorted values of the key including any pending appends, or null if the key has no values
+     */
+    private int[] getWithAppends(AtomicReferenceArray<int[]> spine, int index, int indexInSpine) {
+        // read the log before the slot, so values that compaction moves from the log to the slot are seen in one or the other.
+        AppendLog appendLog = this.appendLogs.isEmpty() ? null : this.appendLogs.get(index);
+        int[] sortedValues = spine.get(indexInSpine);
+        if (appendLog == null || sortedValues == null) {
+            return sortedValues;
+        }
+        return appendLog.mergeWith(sortedValues);
+    }
+
     public boolean containsKey(int index) {
         if (index < 0) {
             index = Integer.MAX_VALUE + index;
@@ -234,7 +316,7 @@ public class SpinedNidNidSetMap {
         for (int spineIndex = 0; spineIndex < currentSpineCount; spineIndex++) {
             AtomicReferenceArray<int[]> spine = this.spines.computeIfAbsent(spineIndex, this::newSpine);
             for (int indexInSpine = 0; indexInSpine < spineSize; indexInSpine++) {
-                int[] element = spine.get(indexInSpine);
+                int[] element = getWithAppends(spine, key, indexInSpine);
                 if (element != null) {
                     processor.process(key, element);
                 }
@@ -330,4 +412,185 @@ public class SpinedNidNidSetMap {
         }
 
     }
+
+    /**
+     * Values appended to a key with many values, in chunks that are filled
+     * without locking. A writer claims a position in the head chunk, and
+     * installs a new head chunk when the head is full. The log is sealed for
+     * compaction by installing a sealed head, after which appends fail and
+     * writers fall back to merging into the sorted array.
+     */
+    private static class AppendLog {
+
+        private final AtomicReference<AppendChunk> head = new AtomicReference<>(new AppendChunk(null, false));
+
+        /** The last merge of the log with a sorted array, reused until either changes. */
+        private volatile MergedValues merged;
+
+        /**
+         * @param element the value to append, never 0.
+         * @return the position of the value within its chunk, or -1 if the log is sealed.
+         */
+        int append(int element) {
+            while (true) {
+                AppendChunk chunk = this.head.get();
+                if (chunk.sealed) {
+                    return -1;
+                }
+                int position = chunk.claimed.getAndIncrement();
+                if (position < APPEND_CHUNK_SIZE) {
+                    chunk.values.set(position, element);
+                    return position;
+                }
+                this.head.compareAndSet(chunk, new AppendChunk(chunk, false));
+            }
+        }
+
+        /**
+         * @param sortedValues the sorted array of the key
+         * @return the sorted array merged with the values appended so far.
+         * Values whose append is in progress may be absent.
+         */
+        int[] mergeWith(int[] sortedValues) {
+            AppendChunk chunk = this.head.get();
+            int headClaimed = chunk.claimedCount();
+            MergedValues cached = this.merged;
+            if (cached != null && cached.sortedValues == sortedValues
+                    && cached.head == chunk && cached.headClaimed == headClaimed) {
+                return cached.values;
+            }
+            int[] appended = collect(chunk, headClaimed, false);
+            int[] values = appended.length == 0 ? sortedValues : MergeIntArray.merge(sortedValues, appended);
+            if (!chunk.sealed && isWritten(chunk, headClaimed)) {
+                // only reused if no append was in progress, as the claimed counts would not change when it completes.
+                this.merged = new MergedValues(sortedValues, chunk, headClaimed, values);
+            }
+            return values;
+        }
+
+        /**
+         * Seal the log, and wait for appends in progress to complete.
+         *
+         * @return all the values appended to the log, sorted and without
+         * duplicates, or null if the log was already sealed by another caller.
+         */
+        int[] seal() {
+            AppendChunk chunk = this.head.get();
+            while (true) {
+                if (chunk.sealed) {
+                    return null;
+                }
+                if (this.head.compareAndSet(chunk, new AppendChunk(chunk, true))) {
+                    break;
+                }
+                chunk = this.head.get();
+            }
+            // mark the prior head full, so no further position may be claimed in it.
+            int headClaimed = Math.min(chunk.claimed.getAndAdd(APPEND_CHUNK_SIZE), APPEND_CHUNK_SIZE);
+            return collect(chunk, headClaimed, true);
+        }
+
+        int sizeInBytes() {
+            int sizeInBytes = 0;
+            for (AppendChunk chunk = this.head.get(); chunk != null; chunk = chunk.previous) {
+                sizeInBytes = sizeInBytes + (APPEND_CHUNK_SIZE * 4);
+            }
+            return sizeInBytes;
+        }
+
+        /**
+         * @param head the head chunk
+         * @param headClaimed the number of claimed positions of the head chunk, prior chunks are full
+         * @return true if the values of all claimed positions have been written
+         */
+        private static boolean isWritten(AppendChunk head, int headClaimed) {
+            for (AppendChunk chunk = head; chunk != null; chunk = chunk.previous) {
+                int claimedCount = chunk == head ? headClaimed : chunk.claimedCount();
+                for (int i = 0; i < claimedCount; i++) {
+                    if (chunk.values.get(i) == 0) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param head the head chunk
+         * @param headClaimed the number of claimed positions of the head chunk, prior chunks are full
+         * @param awaitInProgress true to wait for the values of claimed positions to be written
+         * @return the values, sorted and without duplicates
+         */
+        private static int[] collect(AppendChunk head, int headClaimed, boolean awaitInProgress) {
+            int count = headClaimed;
+            for (AppendChunk chunk = head.previous; chunk != null; chunk = chunk.previous) {
+                count = count + chunk.claimedCount();
+            }
+            int[] collected = new int[count];
+            int size = 0;
+            for (AppendChunk chunk = head; chunk != null; chunk = chunk.previous) {
+                int claimedCount = chunk == head ? headClaimed : chunk.claimedCount();
+                for (int i = 0; i < claimedCount; i++) {
+                    int value = chunk.values.get(i);
+                    while (value == 0 && awaitInProgress) {
+                        Thread.yield();
+                        value = chunk.values.get(i);
+                    }
+                    if (value != 0) {
+                        collected[size++] = value;
+                    }
+                }
+            }
+            Arrays.sort(collected, 0, size);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || collected[unique - 1] != collected[i]) {
+                    collected[unique++] = collected[i];
+                }
+            }
+            return unique == collected.length ? collected : Arrays.copyOf(collected, unique);
+        }
+    }
+
+    /**
+     * The values of a key, merged from its sorted array and the values of its
+     * append log as of the given head chunk and claimed count.
+     */
+    private static class MergedValues {
+
+        private final int[] sortedValues;
+        private final AppendChunk head;
+        private final int headClaimed;
+        private final int[] values;
+
+        MergedValues(int[] sortedValues, AppendChunk head, int headClaimed, int[] values) {
+            this.sortedValues = sortedValues;
+            this.head = head;
+            this.headClaimed = headClaimed;
+            this.values = values;
+        }
+    }
+
+    /**
+     * A chunk of an append log. A value of 0 marks a claimed position whose
+     * value is not yet written, as 0 is never a valid nid.
+     */
+    private static class AppendChunk {
+
+        private final AtomicIntegerArray values;
+        private final AtomicInteger claimed;
+        private final AppendChunk previous;
+        private final boolean sealed;
+
+        AppendChunk(AppendChunk previous, boolean sealed) {
+            this.previous = previous;
+            this.sealed = sealed;
+            this.values = new AtomicIntegerArray(sealed ? 0 : APPEND_CHUNK_SIZE);
+            this.claimed = new AtomicInteger(sealed ? APPEND_CHUNK_SIZE : 0);
+        }
+
+        int claimedCount() {
+            return Math.min(this.claimed.get(), this.values.length());
+        }
+    }
 }
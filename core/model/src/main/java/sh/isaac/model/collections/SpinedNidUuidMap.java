@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.model.collections;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import static sh.isaac.model.collections.SpineFileUtil.SPINE_PREFIX;
+
+/**
+ * A nid to UUID map, with each UUID stored as a most significant bits, least
+ * significant bits pair of primitive longs. Nids are mapped directly, not
+ * through a sequence store, so a UUID may be recorded as soon as the nid is
+ * assigned. Use with circumstances where mapping all nids, not just a subset.
+ *
+ * The nil UUID is used to indicate an absent value. A value is present once
+ * its most significant bits are set, and the least significant bits are always
+ * set first, so readers never see a partially written value.
+ *
+ * @author kec
+ */
+public class SpinedNidUuidMap {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final int DEFAULT_ELEMENTS_PER_SPINE = 1024;
+    private final int elementsPerSpine;
+    private final ConcurrentMap<Integer, AtomicLongArray> spines = new ConcurrentHashMap<>();
+
+    private final Semaphore diskSemaphore = new Semaphore(1);
+    protected final AtomicInteger spineCount = new AtomicInteger();
+    protected final ConcurrentSkipListSet<Integer> changedSpineIndexes = new ConcurrentSkipListSet<>();
+
+    public SpinedNidUuidMap() {
+        this.elementsPerSpine = DEFAULT_ELEMENTS_PER_SPINE;
+    }
+
+    /**
+     * Empty this data structure (does nothing to the disk location it was read from)
+     */
+    public void clear() {
+        spines.clear();
+        spineCount.set(0);
+        changedSpineIndexes.clear();
+    }
+
+    /**
+     *
+     * @param directory
+     * @return the number of spine files read.
+     */
+    public int read(File directory) {
+        diskSemaphore.acquireUninterruptibly();
+        try {
+            File[] files = directory.listFiles((pathname) -> {
+                return pathname.getName().startsWith(SPINE_PREFIX);
+            });
+            spineCount.set(SpineFileUtil.readSpineCount(directory));
+            int spineFilesRead = 0;
+            for (File spineFile : files) {
+                spineFilesRead++;
+                int spine = Integer.parseInt(spineFile.getName().substring(SPINE_PREFIX.length()));
+                try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(spineFile)))) {
+                    int arraySize = dis.readInt();
+                    long[] spineArray = new long[arraySize];
+                    for (int i = 0; i < arraySize; i++) {
+                        spineArray[i] = dis.readLong();
+                    }
+                    spines.put(spine, new AtomicLongArray(spineArray));
+                } catch (IOException ex) {
+                    LOG.error(ex);
+                    throw new RuntimeException(ex);
+                }
+            }
+            return spineFilesRead;
+        } finally {
+            diskSemaphore.release();
+        }
+    }
+
+    public boolean write(File directory) {
+        AtomicBoolean wroteAny = new AtomicBoolean(false);
+        try {
+            directory.mkdirs();
+            SpineFileUtil.writeSpineCount(directory, spineCount.get());
+            spines.forEach((Integer key, AtomicLongArray spine) -> {
+                String spineKey = SPINE_PREFIX + key;
+                boolean spineChanged = changedSpineIndexes.contains(key);
+
+                if (spineChanged) {
+                    wroteAny.set(true);
+                    changedSpineIndexes.remove(key);
+                    File spineFile = new File(directory, spineKey);
+                    diskSemaphore.acquireUninterruptibly();
+                    try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spineFile)))) {
+                        dos.writeInt(spine.length());
+                        for (int i = 0; i < spine.length(); i++) {
+                            dos.writeLong(spine.get(i));
+                        }
+                    } catch (IOException ex) {
+                        LOG.error(ex);
+                        throw new RuntimeException(ex);
+                    } finally {
+                        diskSemaphore.release();
+                    }
+                }
+            });
+        } catch (IOException ex) {
+            LOG.error(ex);
+            throw new RuntimeException(ex);
+        }
+        return wroteAny.get();
+    }
+
+    public long sizeInBytes() {
+        long sizeInBytes = 0;
+
+        sizeInBytes = sizeInBytes + ((elementsPerSpine * 16) * spineCount.get());  // 16 bytes = two 64 bit longs
+        return sizeInBytes;
+    }
+
+    private AtomicLongArray newSpine(Integer spineKey) {
+        this.spineCount.set(Math.max(this.spineCount.get(), spineKey + 1));
+        return new AtomicLongArray(elementsPerSpine * 2);
+    }
+
+    /**
+     * Record the UUID for a nid, if no UUID is yet recorded.
+     *
+     * @param nid the nid
+     * @param uuid the uuid
+     * @return true if the uuid was recorded, false if a uuid was already recorded for the nid.
+     */
+    public boolean putIfAbsent(int nid, UUID uuid) {
+        int index = nid;
+        if (index < 0) {
+            index = Integer.MAX_VALUE + index;
+        }
+        int spineIndex = index / elementsPerSpine;
+        int msbIndex = (index % elementsPerSpine) * 2;
+        AtomicLongArray spine = this.spines.computeIfAbsent(spineIndex, this::newSpine);
+        if (spine.get(msbIndex) != 0) {
+            return false;
+        }
+        synchronized (spine) {
+            if (spine.get(msbIndex) != 0) {
+                return false;
+            }
+            spine.set(msbIndex + 1, uuid.getLeastSignificantBits());
+            spine.set(msbIndex, uuid.getMostSignificantBits());
+        }
+        this.changedSpineIndexes.add(spineIndex);
+        return true;
+    }
+
+    /**
+     * @param nid the nid
+     * @return the uuid recorded for the nid, or an empty optional if none is recorded.
+     */
+    public Optional<UUID> get(int nid) {
+        int index = nid;
+        if (index < 0) {
+            index = Integer.MAX_VALUE + index;
+        }
+        int spineIndex = index / elementsPerSpine;
+        AtomicLongArray spine = this.spines.get(spineIndex);
+        if (spine == null) {
+            return Optional.empty();
+        }
+        int msbIndex = (index % elementsPerSpine) * 2;
+        long msb = spine.get(msbIndex);
+        if (msb == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new UUID(msb, spine.get(msbIndex + 1)));
+    }
+
+    public boolean containsKey(int nid) {
+        int index = nid;
+        if (index < 0) {
+            index = Integer.MAX_VALUE + index;
+        }
+        AtomicLongArray spine = this.spines.get(index / elementsPerSpine);
+        return spine != null && spine.get((index % elementsPerSpine) * 2) != 0;
+    }
+}
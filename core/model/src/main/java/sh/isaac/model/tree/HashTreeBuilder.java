@@ -207,6 +207,9 @@ public class HashTreeBuilder
             LOG.debug(Get.conceptDescriptionText(nid) + " multiParentSet: " + multiParents);
         }
 
+        if (visitData.getCycleSet().isEmpty()) {
+            buildReachabilityIndex();
+        }
         return this;
     }
 }
@@ -56,6 +56,7 @@ import sh.isaac.api.alert.AlertObject;
 import sh.isaac.api.alert.AlertType;
 import sh.isaac.api.bootstrap.TermAux;
 import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.constants.SystemPropertyConstants;
 import sh.isaac.api.coordinate.ManifoldCoordinate;
 import sh.isaac.api.tree.NodeStatus;
 import sh.isaac.api.tree.Tree;
@@ -75,6 +76,7 @@ public class HashTreeWithIntArraySets
          implements Tree {
    private static final Logger LOG = LogManager.getLogger();
    protected static final String MULTI_PARENT_SETS = "MultiParentSets";
+   private static final long DEFAULT_REACHABILITY_INTERVALS_PER_NODE = 8;
 
    /**
     * The Constant EMPTY_INT_ARRAY.
@@ -109,6 +111,12 @@ public class HashTreeWithIntArraySets
    protected final int                       assemblageNid;
    protected final OpenIntHashSet roots = new OpenIntHashSet();
 
+   /**
+    * Optional index answering subsumption questions without walking the
+    * graph. Null until built, and discarded when the graph is changed.
+    */
+   private volatile ReachabilityIndex reachabilityIndex;
+
    /**
     * Instantiates a new hash tree with bit sets.
     *
@@ -133,6 +141,7 @@ public class HashTreeWithIntArraySets
     * @param childId the child id
     */
    private void addChild(int parentId, int childId) {
+      this.reachabilityIndex = null;
       if (this.parentNid_ChildNidSetArray_Map.containsKey(parentId)) {
          this.parentNid_ChildNidSetArray_Map.put(
              parentId,
@@ -309,6 +318,7 @@ public class HashTreeWithIntArraySets
     */
    @Override
    public final void removeParent(int childNid, int parentNid) {
+      this.reachabilityIndex = null;
       int[] parents       = childNid_ParentNidSetArray_Map.get(childNid);
       int[] newParents    = new int[parents.length - 1];
       int   j             = 0;
@@ -521,6 +531,10 @@ public class HashTreeWithIntArraySets
     */
    @Override
    public final NidSet getDescendentNidSet(int parentNid) {
+      final ReachabilityIndex index = this.reachabilityIndex;
+      if (index != null) {
+         return index.getDescendentNidSet(parentNid);
+      }
       final NidSet descendentNids = new NidSet();
       if (this.parentNid_ChildNidSetArray_Map.containsKey(parentNid)) {
          getDescendentsRecursive(parentNid, descendentNids);
@@ -535,6 +549,10 @@ public class HashTreeWithIntArraySets
     */
    @Override
    public final boolean isDescendentOf(int childNid, int parentNid) {
+      final ReachabilityIndex index = this.reachabilityIndex;
+      if (index != null) {
+         return index.isDescendentOf(childNid, parentNid);
+      }
       int[] parentNids = getParentNidsNoFilter(childNid);
 
       if (Arrays.binarySearch(parentNids, parentNid) >= 0) {
@@ -754,6 +772,7 @@ public class HashTreeWithIntArraySets
       if (Get.configurationService().isVerboseDebugEnabled() && (parent == TermAux.SOLOR_ROOT.getNid())) {
          LOG.debug("SOLOR root nid added to tree: " + TermAux.SOLOR_ROOT.getNid());
       }
+      this.reachabilityIndex = null;
       conceptNids.add(parent);
       conceptNids.add(child);
       conceptNidsWithParents.add(child);
@@ -762,6 +781,153 @@ public class HashTreeWithIntArraySets
       this.parentNid_ChildNidSetArray_Map.accumulateAndGet(parent, new int[]{child}, MergeIntArray::merge);
    }
 
+   /**
+    * Copy the nodes and edges of this tree to a new tree, which can be
+    * changed with {@link #replaceParents(int, int[])} while readers continue
+    * to use this one. The reachability index is not copied.
+    *
+    * @return the copy
+    */
+   public synchronized HashTreeWithIntArraySets copy() {
+      final HashTreeWithIntArraySets copy = new HashTreeWithIntArraySets(this.manifoldCoordinate, this.assemblageNid);
+
+      copyTo(this.conceptNids, copy.conceptNids);
+      copyTo(this.conceptNidsWithParents, copy.conceptNidsWithParents);
+      copyTo(this.conceptNidsWithChildren, copy.conceptNidsWithChildren);
+      copyTo(this.roots, copy.roots);
+      this.childNid_ParentNidSetArray_Map.forEach((int childNid, int[] parentNids) -> {
+         if (parentNids.length > 0) {
+            copy.childNid_ParentNidSetArray_Map.put(childNid, parentNids);
+         }
+      });
+      this.parentNid_ChildNidSetArray_Map.forEach((int parentNid, int[] childNids) -> {
+         if (childNids.length > 0) {
+            copy.parentNid_ChildNidSetArray_Map.put(parentNid, childNids);
+         }
+      });
+      return copy;
+   }
+
+   private static void copyTo(OpenIntHashSet from, OpenIntHashSet to) {
+      from.forEachKey((nid) -> {
+         to.add(nid);
+         return true;
+      });
+   }
+
+   /**
+    * Replace the parents of a node, adding and removing the edges that
+    * differ, so that a tree can be patched after a commit rather than
+    * rebuilt. As in a built tree, a node without parents is a root if it
+    * has children, and is removed if it has neither. The edge arrays are
+    * replaced rather than modified, so they may be shared with the tree
+    * this one was copied from. The reachability index is discarded if the
+    * parents change; call {@link #buildReachabilityIndex()} once all changes
+    * are applied.
+    *
+    * @param childNid the child nid
+    * @param parentNids the complete set of parent nids for the child
+    * @return true if the parents of the child changed.
+    */
+   public synchronized boolean replaceParents(int childNid, int[] parentNids) {
+      final int[] newParents = IntStream.of(parentNids).sorted().distinct().toArray();
+      final int[] oldParents = getParentNidsNoFilter(childNid);
+
+      if (Arrays.equals(oldParents, newParents) && (conceptNids.contains(childNid) || newParents.length == 0)) {
+         return false;
+      }
+      this.reachabilityIndex = null;
+      conceptNids.add(childNid);
+
+      for (int oldParent: oldParents) {
+         if (Arrays.binarySearch(newParents, oldParent) < 0) {
+            int[] children = getChildNoFilter(oldParent);
+            int   index    = Arrays.binarySearch(children, childNid);
+
+            if (index >= 0) {
+               int[] newChildren = new int[children.length - 1];
+
+               System.arraycopy(children, 0, newChildren, 0, index);
+               System.arraycopy(children, index + 1, newChildren, index, newChildren.length - index);
+               this.parentNid_ChildNidSetArray_Map.put(oldParent, newChildren);
+               if (newChildren.length == 0) {
+                  conceptNidsWithChildren.remove(oldParent);
+                  removeIfUnconnected(oldParent);
+               }
+            }
+         }
+      }
+
+      for (int newParent: newParents) {
+         if (Arrays.binarySearch(oldParents, newParent) < 0) {
+            conceptNids.add(newParent);
+            conceptNidsWithChildren.add(newParent);
+            this.parentNid_ChildNidSetArray_Map.put(newParent, addToArray(getChildNoFilter(newParent), childNid));
+         }
+      }
+
+      this.childNid_ParentNidSetArray_Map.put(childNid, newParents);
+      if (newParents.length == 0) {
+         conceptNidsWithParents.remove(childNid);
+         roots.add(childNid);
+         removeIfUnconnected(childNid);
+      } else {
+         conceptNidsWithParents.add(childNid);
+         roots.remove(childNid);
+      }
+      return true;
+   }
+
+   /**
+    * Remove a node that has neither parents nor children, such as a retired
+    * concept, which a built tree would not contain.
+    */
+   private void removeIfUnconnected(int nid) {
+      if (!conceptNidsWithParents.contains(nid) && !conceptNidsWithChildren.contains(nid)) {
+         conceptNids.remove(nid);
+         roots.remove(nid);
+      }
+   }
+
+
+   /**
+    * Build the reachability index, so that {@code isDescendentOf} and
+    * {@code getDescendentNidSet} are answered from precomputed interval
+    * labels rather than by recursion. The index is not built if the graph
+    * contains a cycle, or needs more than
+    * {@link SystemPropertyConstants#TAXONOMY_REACHABILITY_INTERVALS_PER_NODE}
+    * intervals per node on average, when the graph is walked instead.
+    *
+    * @return false if the graph contains a cycle.
+    */
+   public boolean buildReachabilityIndex() {
+      final IntArrayList nodeNids = this.conceptNids.keys();
+
+      nodeNids.sort();
+      nodeNids.trimToSize();
+
+      final long intervalsPerNode = Long.getLong(SystemPropertyConstants.TAXONOMY_REACHABILITY_INTERVALS_PER_NODE,
+                                                 DEFAULT_REACHABILITY_INTERVALS_PER_NODE);
+      final ReachabilityIndex index = ReachabilityIndex.build(nodeNids.elements(),
+                                                              this::getChildNoFilter,
+                                                              intervalsPerNode * nodeNids.size());
+
+      if (index == null) {
+         this.reachabilityIndex = null;
+         LOG.info("Reachability index not built for {}, the graph contains a cycle.", manifoldCoordinate.getTaxonomyPremiseType());
+         return false;
+      }
+      if (index.isLabelled()) {
+         this.reachabilityIndex = index;
+      } else {
+         this.reachabilityIndex = null;
+         if (intervalsPerNode > 0) {
+            LOG.info("Reachability index not built for {}, more than {} intervals per node are needed.",
+                     manifoldCoordinate.getTaxonomyPremiseType(), intervalsPerNode);
+         }
+      }
+      return true;
+   }
 
    protected void computeRoots() {
       roots.clear();
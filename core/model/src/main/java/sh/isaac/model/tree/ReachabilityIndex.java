@@ -0,0 +1,282 @@
+/* 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2013-2017 where performed either by US government 
+ * employees, or under US Veterans Health Administration contracts. 
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government 
+ * employees are USGovWork (17USC §105). Not subject to copyright. 
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ * 
+ * Contributions prior to 2013:
+ *
+ * Copyright (C) International Health Terminology Standards Development Organisation.
+ * Licensed under the Apache License, Version 2.0.
+ *
+ */
+
+
+
+package sh.isaac.model.tree;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import org.apache.mahout.math.list.IntArrayList;
+import org.apache.mahout.math.map.OpenIntIntHashMap;
+import org.apache.mahout.math.set.OpenIntHashSet;
+import sh.isaac.api.collections.NidSet;
+
+/**
+ * An interval labelling of an acyclic taxonomy graph, computed once after a
+ * tree is built, so subsumption tests do not have to walk the parent links.
+ *
+ * Each node is numbered in the post order of a depth first traversal. The
+ * spanning tree descendents of a node occupy a contiguous range of post order
+ * numbers, and the descendents reached through additional parents are covered
+ * by merging the intervals of every child, so each node carries a short sorted
+ * list of intervals that covers exactly the node and all of its descendents.
+ * A subsumption test is a binary search of the interval list of the parent.
+ *
+ * Heavily multi parented graphs can fragment the interval lists, so the
+ * labelling is abandoned once the number of intervals passes a limit, and the
+ * tree falls back to walking the graph. The traversal still detects cycles.
+ *
+ * @author kec
+ */
+final class ReachabilityIndex {
+
+   /** Post order number, for each node nid. */
+   private final OpenIntIntHashMap nidToPostOrder;
+
+   /** Node nid, for each post order number. */
+   private final int[] postOrderToNid;
+
+   /**
+    * Sorted, disjoint [start, end] pairs of post order numbers, for each post
+    * order number. Null if the labelling was abandoned.
+    */
+   private final int[][] postOrderIntervals;
+
+   private ReachabilityIndex(OpenIntIntHashMap nidToPostOrder, int[] postOrderToNid, int[][] postOrderIntervals) {
+      this.nidToPostOrder     = nidToPostOrder;
+      this.postOrderToNid     = postOrderToNid;
+      this.postOrderIntervals = postOrderIntervals;
+   }
+
+   /**
+    * Build an index for a graph.
+    *
+    * @param nodeNids the nids of the nodes of the graph
+    * @param childSupplier provides the child nids of a node
+    * @param maxIntervals the most intervals to keep over all nodes, before the
+    * labelling is abandoned. Zero only checks the graph for cycles.
+    * @return the index, or null if the graph contains a cycle, since interval
+    * labelling is only valid for an acyclic graph. The index is not
+    * {@link #isLabelled() labelled} if the limit was passed.
+    */
+   static ReachabilityIndex build(int[] nodeNids, IntFunction<int[]> childSupplier, long maxIntervals) {
+      final OpenIntIntHashMap nidToPostOrder   = new OpenIntIntHashMap(nodeNids.length);
+      final OpenIntHashSet    onStack          = new OpenIntHashSet();
+      final IntArrayList      postOrderToNid   = new IntArrayList(nodeNids.length);
+      final IntArrayList      stackNids        = new IntArrayList();
+      final IntArrayList      stackChildIndex  = new IntArrayList();
+      final IntArrayList      stackLow         = new IntArrayList();
+      int[][]                 intervals        = (maxIntervals > 0) ? new int[nodeNids.length][]
+            : null;
+      long                    intervalCount    = 0;
+
+      for (int startNid: nodeNids) {
+         if (nidToPostOrder.containsKey(startNid)) {
+            continue;
+         }
+         stackNids.add(startNid);
+         stackChildIndex.add(0);
+         stackLow.add(postOrderToNid.size());
+         onStack.add(startNid);
+
+         while (!stackNids.isEmpty()) {
+            final int   top       = stackNids.size() - 1;
+            final int   nid       = stackNids.getQuick(top);
+            final int[] childNids = childSupplier.apply(nid);
+            final int   nextChild = stackChildIndex.getQuick(top);
+
+            if (nextChild < childNids.length) {
+               stackChildIndex.setQuick(top, nextChild + 1);
+               final int childNid = childNids[nextChild];
+
+               if (onStack.contains(childNid)) {
+                  return null;
+               }
+               if (!nidToPostOrder.containsKey(childNid)) {
+                  stackNids.add(childNid);
+                  stackChildIndex.add(0);
+                  stackLow.add(postOrderToNid.size());
+                  onStack.add(childNid);
+               }
+            } else {
+               final int postOrder = postOrderToNid.size();
+
+               postOrderToNid.add(nid);
+               nidToPostOrder.put(nid, postOrder);
+               if (intervals != null) {
+                  if (postOrder == intervals.length) {
+                     intervals = Arrays.copyOf(intervals, Math.max(16, intervals.length * 2));
+                  }
+                  intervals[postOrder] = mergeIntervals(stackLow.getQuick(top), postOrder, childNids, nidToPostOrder, intervals);
+                  intervalCount += intervals[postOrder].length / 2;
+                  if (intervalCount > maxIntervals) {
+                     intervals = null;
+                  }
+               }
+               onStack.remove(nid);
+               stackNids.remove(top);
+               stackChildIndex.remove(top);
+               stackLow.remove(top);
+            }
+         }
+      }
+      postOrderToNid.trimToSize();
+      return new ReachabilityIndex(nidToPostOrder,
+                                   postOrderToNid.elements(),
+                                   (intervals == null) ? null
+            : Arrays.copyOf(intervals, postOrderToNid.size()));
+   }
+
+   /**
+    * @return true if every node carries its interval labels, so the index can
+    * answer subsumption questions. False if the labelling was abandoned, when
+    * the index only records that the graph is acyclic.
+    */
+   boolean isLabelled() {
+      return this.postOrderIntervals != null;
+   }
+
+   /**
+    * Merge the spanning tree interval of a node with the intervals of all of
+    * its children.
+    */
+   private static int[] mergeIntervals(int low,
+         int postOrder,
+         int[] childNids,
+         OpenIntIntHashMap nidToPostOrder,
+         int[][] intervals) {
+      int intervalCount = 1;
+
+      for (int childNid: childNids) {
+         intervalCount += intervals[nidToPostOrder.get(childNid)].length / 2;
+      }
+
+      final long[] packedIntervals = new long[intervalCount];
+      int          packedIndex     = 0;
+
+      packedIntervals[packedIndex++] = ((long) low << 32) | postOrder;
+
+      for (int childNid: childNids) {
+         final int[] childIntervals = intervals[nidToPostOrder.get(childNid)];
+
+         for (int i = 0; i < childIntervals.length; i += 2) {
+            packedIntervals[packedIndex++] = ((long) childIntervals[i] << 32) | childIntervals[i + 1];
+         }
+      }
+
+      Arrays.sort(packedIntervals);
+
+      final IntArrayList merged = new IntArrayList(2);
+      int                start  = (int) (packedIntervals[0] >>> 32);
+      int                end    = (int) packedIntervals[0];
+
+      for (int i = 1; i < packedIntervals.length; i++) {
+         final int nextStart = (int) (packedIntervals[i] >>> 32);
+         final int nextEnd   = (int) packedIntervals[i];
+
+         if (nextStart <= end + 1) {
+            end = Math.max(end, nextEnd);
+         } else {
+            merged.add(start);
+            merged.add(end);
+            start = nextStart;
+            end   = nextEnd;
+         }
+      }
+      merged.add(start);
+      merged.add(end);
+      merged.trimToSize();
+      return merged.elements();
+   }
+
+   /**
+    * @param childNid the nid of the possible descendent
+    * @param parentNid the nid of the possible ancestor
+    * @return true if childNid is a descendent of parentNid. A node is not
+    * a descendent of itself.
+    */
+   boolean isDescendentOf(int childNid, int parentNid) {
+      if (childNid == parentNid ||
+            !this.nidToPostOrder.containsKey(childNid) ||
+            !this.nidToPostOrder.containsKey(parentNid)) {
+         return false;
+      }
+
+      final int   childPostOrder  = this.nidToPostOrder.get(childNid);
+      final int[] parentIntervals = this.postOrderIntervals[this.nidToPostOrder.get(parentNid)];
+      int         low             = 0;
+      int         high            = (parentIntervals.length / 2) - 1;
+
+      while (low <= high) {
+         final int middle = (low + high) >>> 1;
+
+         if (childPostOrder < parentIntervals[middle * 2]) {
+            high = middle - 1;
+         } else if (childPostOrder > parentIntervals[middle * 2 + 1]) {
+            low = middle + 1;
+         } else {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * @param parentNid the nid of the ancestor
+    * @return the nids of all descendents of parentNid, not including parentNid.
+    */
+   NidSet getDescendentNidSet(int parentNid) {
+      final NidSet descendentNids = new NidSet();
+
+      if (!this.nidToPostOrder.containsKey(parentNid)) {
+         return descendentNids;
+      }
+
+      final int   parentPostOrder = this.nidToPostOrder.get(parentNid);
+      final int[] parentIntervals = this.postOrderIntervals[parentPostOrder];
+
+      for (int i = 0; i < parentIntervals.length; i += 2) {
+         for (int postOrder = parentIntervals[i]; postOrder <= parentIntervals[i + 1]; postOrder++) {
+            if (postOrder != parentPostOrder) {
+               descendentNids.add(this.postOrderToNid[postOrder]);
+            }
+         }
+      }
+      return descendentNids;
+   }
+}
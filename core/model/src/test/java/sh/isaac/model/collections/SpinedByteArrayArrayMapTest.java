@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.model.collections;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import sh.isaac.api.externalizable.ByteArrayDataBuffer;
+
+/**
+ * Tests for writing a {@link SpinedByteArrayArrayMap} to memory mapped spines,
+ * and for merging puts with the mapped values.
+ *
+ * @author kec
+ */
+public class SpinedByteArrayArrayMapTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("spined-byte-array-map").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testWriteReleasesHeapAndReadsMappedValue() {
+        SpinedByteArrayArrayMap map = new SpinedByteArrayArrayMap();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, new byte[][] {chronology(i), version(i, 1)});
+        }
+        Assert.assertTrue(map.write(directory));
+        Assert.assertEquals("written value not released from the heap", 0, map.spines.get(0).get(0).length);
+
+        for (int i = 0; i < 100; i++) {
+            byte[][] value = map.get(i);
+            Assert.assertEquals(2, value.length);
+            Assert.assertArrayEquals(chronology(i), value[0]);
+            Assert.assertArrayEquals(version(i, 1), value[1]);
+        }
+        Assert.assertNull(map.get(100));
+        Assert.assertTrue(map.containsKey(99));
+        Assert.assertFalse(map.containsKey(100));
+    }
+
+    @Test
+    public void testChronologyDataFromMappedSpine() {
+        SpinedByteArrayArrayMap map = new SpinedByteArrayArrayMap();
+        map.put(7, new byte[][] {chronology(7), version(7, 1), version(7, 2)});
+        // chronology without its leading 0 integer, the versions, and a 0 integer
+        int length = 4 + 12 + 12 + 4;
+        byte[] heapData = chronologyBytes(map.getChronologyData(7).get(), length);
+
+        map.write(directory);
+        byte[] mappedData = chronologyBytes(map.getChronologyData(7).get(), length);
+
+        Assert.assertArrayEquals(heapData, mappedData);
+        Assert.assertFalse(map.getChronologyData(8).isPresent());
+    }
+
+    @Test
+    public void testPutMergesWithMappedValue() {
+        SpinedByteArrayArrayMap map = new SpinedByteArrayArrayMap();
+        map.put(3, new byte[][] {chronology(3), version(3, 1)});
+        map.write(directory);
+
+        Assert.assertTrue(map.put(3, new byte[][] {chronology(3), version(3, 2)}));
+        assertVersions(map.get(3), 3, 2);
+
+        map.write(directory);
+        assertVersions(map.get(3), 3, 2);
+
+        SpinedByteArrayArrayMap reread = new SpinedByteArrayArrayMap();
+        reread.read(directory);
+        assertVersions(reread.get(3), 3, 2);
+    }
+
+    @Test
+    public void testFailedWriteIsWrittenAgain() {
+        SpinedByteArrayArrayMap map = new SpinedByteArrayArrayMap();
+        map.put(5, new byte[][] {chronology(5), version(5, 1)});
+        // a folder in the place of the temporary spine file fails the write
+        File blocker = new File(directory, "tmp-" + SpineFileUtil.SPINE_PREFIX + "0");
+        Assert.assertTrue(blocker.mkdir());
+        try {
+            map.write(directory);
+            Assert.fail("the failed spine write was not reported");
+        } catch (RuntimeException ex) {
+            // expected
+        }
+        assertVersions(map.get(5), 5, 1);
+
+        Assert.assertTrue(blocker.delete());
+        Assert.assertTrue("the failed spine was not written again", map.write(directory));
+        SpinedByteArrayArrayMap reread = new SpinedByteArrayArrayMap();
+        reread.read(directory);
+        assertVersions(reread.get(5), 5, 1);
+    }
+
+    /**
+     * Puts race with writes that release written values from the heap. No
+     * version put may be lost, whether the put merged with the heap value
+     * before it was released, or with the mapped value after.
+     */
+    @Test
+    public void testConcurrentPutAndWrite() throws Exception {
+        final SpinedByteArrayArrayMap map = new SpinedByteArrayArrayMap();
+        final int elements = 64;
+        final int threads = 4;
+        final int versionsPerThread = 200;
+        for (int i = 0; i < elements; i++) {
+            map.put(i, new byte[][] {chronology(i)});
+        }
+        map.write(directory);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicBoolean putting = new AtomicBoolean(true);
+            Future<Integer> writer = executor.submit(() -> {
+                start.await();
+                int writes = 0;
+                while (putting.get()) {
+                    map.write(directory);
+                    writes++;
+                }
+                return writes;
+            });
+            List<Future<?>> putters = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                putters.add(executor.submit(() -> {
+                    start.await();
+                    for (int v = 0; v < versionsPerThread; v++) {
+                        int version = 1 + (thread * versionsPerThread) + v;
+                        for (int i = 0; i < elements; i++) {
+                            map.put(i, new byte[][] {version(i, version)});
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> putter : putters) {
+                putter.get(2, TimeUnit.MINUTES);
+            }
+            putting.set(false);
+            Assert.assertTrue(writer.get(2, TimeUnit.MINUTES) > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < elements; i++) {
+            assertVersions(map.get(i), i, threads * versionsPerThread);
+        }
+        map.write(directory);
+        SpinedByteArrayArrayMap reread = new SpinedByteArrayArrayMap();
+        reread.read(directory);
+        for (int i = 0; i < elements; i++) {
+            assertVersions(reread.get(i), i, threads * versionsPerThread);
+        }
+    }
+
+    private static void assertVersions(byte[][] value, int element, int versionCount) {
+        Assert.assertNotNull(value);
+        Assert.assertEquals(versionCount + 1, value.length);
+        Assert.assertArrayEquals(chronology(element), value[0]);
+        Set<String> versions = new HashSet<>();
+        for (int v = 1; v < value.length; v++) {
+            versions.add(Arrays.toString(value[v]));
+        }
+        for (int v = 1; v <= versionCount; v++) {
+            Assert.assertTrue("missing version " + v + " of " + element, versions.contains(Arrays.toString(version(element, v))));
+        }
+    }
+
+    /**
+     * The chronology record of an element starts with a 0 integer, so it sorts
+     * before the versions.
+     */
+    private static byte[] chronology(int element) {
+        return ByteBuffer.allocate(8).putInt(0).putInt(element).array();
+    }
+
+    /**
+     * Version records start with a non zero integer, so they sort after the
+     * chronology record.
+     */
+    private static byte[] version(int element, int version) {
+        return ByteBuffer.allocate(12).putInt(0x10000000 + version).putInt(element).putInt(version).array();
+    }
+
+    private static byte[] chronologyBytes(ByteArrayDataBuffer data, int length) {
+        byte[] bytes = new byte[length];
+        data.get(bytes, 0, bytes.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.model.collections;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for adding values to a {@link SpinedNidNidSetMap}, including keys
+ * with enough values to use an append log.
+ *
+ * @author kec
+ */
+public class SpinedNidNidSetMapTest {
+
+    private static final int KEY = Integer.MIN_VALUE + 5;
+
+    /** More values than the append log threshold. */
+    private static final int LARGE_SET_SIZE = 300;
+
+    @Test
+    public void testAddKeepsValuesSortedAndUnique() {
+        SpinedNidNidSetMap map = new SpinedNidNidSetMap();
+        map.add(KEY, nid(3));
+        map.add(KEY, nid(1));
+        map.add(KEY, nid(2));
+        map.add(KEY, nid(3));
+        Assert.assertArrayEquals(new int[] {nid(1), nid(2), nid(3)}, map.get(KEY));
+        Assert.assertTrue(map.containsKey(KEY));
+        Assert.assertFalse(map.containsKey(KEY + 1));
+        Assert.assertEquals(0, map.get(KEY + 1).length);
+    }
+
+    @Test
+    public void testReadsIncludePendingAppends() {
+        SpinedNidNidSetMap map = largeSet();
+        map.add(KEY, nid(LARGE_SET_SIZE + 2));
+        map.add(KEY, nid(LARGE_SET_SIZE + 1));
+        map.add(KEY, nid(5));
+
+        int[] values = map.get(KEY);
+        assertRange(values, LARGE_SET_SIZE + 2);
+        Assert.assertSame("unchanged key merged again", values, map.get(KEY));
+
+        map.add(KEY, nid(LARGE_SET_SIZE + 3));
+        assertRange(map.get(KEY), LARGE_SET_SIZE + 3);
+
+        map.compact();
+        assertRange(map.get(KEY), LARGE_SET_SIZE + 3);
+    }
+
+    @Test
+    public void testFullChunkIsCompacted() {
+        SpinedNidNidSetMap map = largeSet();
+        for (int i = LARGE_SET_SIZE + 1; i <= LARGE_SET_SIZE + 5000; i++) {
+            map.add(KEY, nid(i));
+        }
+        assertRange(map.get(KEY), LARGE_SET_SIZE + 5000);
+        Assert.assertTrue("full chunks not compacted", map.sizeInBytes() < (LARGE_SET_SIZE + 5000) * 4 + 8 * 1024 * 4);
+    }
+
+    /**
+     * Adds race with compaction sealing the append log. Every value must end
+     * up either in the sorted array or in a later append log.
+     */
+    @Test
+    public void testConcurrentAddAndCompact() throws Exception {
+        final SpinedNidNidSetMap map = largeSet();
+        final int threads = 4;
+        final int valuesPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicBoolean adding = new AtomicBoolean(true);
+            Future<Integer> compactor = executor.submit(() -> {
+                start.await();
+                int compactions = 0;
+                while (adding.get()) {
+                    map.compact();
+                    assertSortedAndUnique(map.get(KEY));
+                    compactions++;
+                }
+                return compactions;
+            });
+            List<Future<?>> adders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                adders.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < valuesPerThread; i++) {
+                        map.add(KEY, nid(LARGE_SET_SIZE + 1 + thread + (i * threads)));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> adder : adders) {
+                adder.get(2, TimeUnit.MINUTES);
+            }
+            adding.set(false);
+            Assert.assertTrue(compactor.get(2, TimeUnit.MINUTES) > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertRange(map.get(KEY), LARGE_SET_SIZE + (threads * valuesPerThread));
+        map.compact();
+        assertRange(map.get(KEY), LARGE_SET_SIZE + (threads * valuesPerThread));
+    }
+
+    @Test
+    public void testWriteIncludesPendingAppends() throws IOException {
+        File directory = Files.createTempDirectory("spined-nid-nid-set-map").toFile();
+        try {
+            SpinedNidNidSetMap map = largeSet();
+            map.add(KEY, nid(LARGE_SET_SIZE + 1));
+            Assert.assertTrue(map.write(directory));
+
+            SpinedNidNidSetMap reread = new SpinedNidNidSetMap();
+            reread.read(directory);
+            assertRange(reread.get(KEY), LARGE_SET_SIZE + 1);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private static SpinedNidNidSetMap largeSet() {
+        SpinedNidNidSetMap map = new SpinedNidNidSetMap();
+        int[] values = new int[LARGE_SET_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = nid(i + 1);
+        }
+        map.put(KEY, values);
+        return map;
+    }
+
+    private static int nid(int sequence) {
+        return Integer.MIN_VALUE + sequence;
+    }
+
+    /**
+     * @param values the values of a key
+     * @param count the expected values are the nids of sequences 1 to count
+     */
+    private static void assertRange(int[] values, int count) {
+        Assert.assertEquals(count, values.length);
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(nid(i + 1), values[i]);
+        }
+    }
+
+    private static void assertSortedAndUnique(int[] values) {
+        for (int i = 1; i < values.length; i++) {
+            Assert.assertTrue(values[i - 1] < values[i]);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.model.tree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+import org.junit.Assert;
+import org.junit.Test;
+import sh.isaac.api.collections.NidSet;
+
+/**
+ * Tests that the interval labels of a {@link ReachabilityIndex} answer the
+ * same subsumption questions as a traversal of the graph.
+ *
+ * @author kec
+ */
+public class ReachabilityIndexTest {
+
+    private static final int FIRST_NID = Integer.MIN_VALUE + 1;
+
+    @Test
+    public void testMatchesTraversalOnRandomDags() {
+        Random random = new Random(7);
+        for (int graph = 0; graph < 25; graph++) {
+            int nodeCount = 1 + random.nextInt(200);
+            Map<Integer, int[]> children = randomDag(random, nodeCount, 1 + random.nextInt(4));
+            int[] nodeNids = nodeNids(nodeCount);
+            ReachabilityIndex index = ReachabilityIndex.build(nodeNids, childSupplier(children), Long.MAX_VALUE);
+
+            Assert.assertNotNull(index);
+            Assert.assertTrue(index.isLabelled());
+            for (int parentNid : nodeNids) {
+                Set<Integer> expected = traverse(parentNid, children);
+                NidSet descendents = index.getDescendentNidSet(parentNid);
+
+                Assert.assertEquals(expected.size(), descendents.size());
+                for (int childNid : nodeNids) {
+                    Assert.assertEquals("graph " + graph + ": " + childNid + " below " + parentNid,
+                            expected.contains(childNid), index.isDescendentOf(childNid, parentNid));
+                    Assert.assertEquals(expected.contains(childNid), descendents.contains(childNid));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCycleIsDetected() {
+        Map<Integer, int[]> children = new HashMap<>();
+        children.put(FIRST_NID, new int[] {FIRST_NID + 1});
+        children.put(FIRST_NID + 1, new int[] {FIRST_NID + 2});
+        children.put(FIRST_NID + 2, new int[] {FIRST_NID});
+
+        Assert.assertNull(ReachabilityIndex.build(nodeNids(3), childSupplier(children), Long.MAX_VALUE));
+        Assert.assertNull("cycles are detected without labelling", ReachabilityIndex.build(nodeNids(3), childSupplier(children), 0));
+    }
+
+    @Test
+    public void testLabellingAbandonedPastTheLimit() {
+        Random random = new Random(11);
+        int nodeCount = 100;
+        Map<Integer, int[]> children = randomDag(random, nodeCount, 3);
+
+        ReachabilityIndex unlimited = ReachabilityIndex.build(nodeNids(nodeCount), childSupplier(children), Long.MAX_VALUE);
+        ReachabilityIndex limited = ReachabilityIndex.build(nodeNids(nodeCount), childSupplier(children), nodeCount);
+        ReachabilityIndex disabled = ReachabilityIndex.build(nodeNids(nodeCount), childSupplier(children), 0);
+
+        Assert.assertTrue(unlimited.isLabelled());
+        Assert.assertNotNull("an acyclic graph is not reported as a cycle", limited);
+        Assert.assertFalse(limited.isLabelled());
+        Assert.assertNotNull(disabled);
+        Assert.assertFalse(disabled.isLabelled());
+    }
+
+    /**
+     * A random graph where every edge points to a higher nid, so it can't
+     * contain a cycle.
+     */
+    private static Map<Integer, int[]> randomDag(Random random, int nodeCount, int maxChildren) {
+        Map<Integer, int[]> children = new HashMap<>();
+        for (int i = 0; i < nodeCount - 1; i++) {
+            int childCount = random.nextInt(maxChildren + 1);
+            Set<Integer> childNids = new HashSet<>();
+            for (int c = 0; c < childCount; c++) {
+                childNids.add(FIRST_NID + i + 1 + random.nextInt(nodeCount - i - 1));
+            }
+            int[] sortedChildNids = childNids.stream().mapToInt(Integer::intValue).toArray();
+            Arrays.sort(sortedChildNids);
+            children.put(FIRST_NID + i, sortedChildNids);
+        }
+        return children;
+    }
+
+    private static int[] nodeNids(int nodeCount) {
+        int[] nodeNids = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodeNids[i] = FIRST_NID + i;
+        }
+        return nodeNids;
+    }
+
+    private static IntFunction<int[]> childSupplier(Map<Integer, int[]> children) {
+        return nid -> children.getOrDefault(nid, new int[0]);
+    }
+
+    private static Set<Integer> traverse(int parentNid, Map<Integer, int[]> children) {
+        Set<Integer> descendents = new HashSet<>();
+        traverse(parentNid, children, descendents);
+        return descendents;
+    }
+
+    private static void traverse(int parentNid, Map<Integer, int[]> children, Set<Integer> descendents) {
+        for (int childNid : children.getOrDefault(parentNid, new int[0])) {
+            if (descendents.add(childNid)) {
+                traverse(childNid, children, descendents);
+            }
+        }
+    }
+}
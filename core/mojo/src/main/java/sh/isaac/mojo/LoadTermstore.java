@@ -57,8 +57,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -80,6 +81,7 @@ import sh.isaac.api.component.concept.ConceptChronology;
 import sh.isaac.api.component.semantic.SemanticChronology;
 import sh.isaac.api.component.semantic.version.LogicGraphVersion;
 import sh.isaac.api.component.semantic.version.MutableLogicGraphVersion;
+import sh.isaac.api.externalizable.BinaryDataReaderService;
 import sh.isaac.api.externalizable.IsaacExternalizable;
 import sh.isaac.api.externalizable.IsaacObjectType;
 import sh.isaac.api.externalizable.StampAlias;
@@ -226,7 +228,7 @@ public class LoadTermstore
    
    private boolean setDBBuildMode = true;
    
-   private int itemCount;
+   private final AtomicInteger itemCount = new AtomicInteger();
 
    private InputStream[] inputIBDFStreams;
    
@@ -331,8 +333,21 @@ public class LoadTermstore
          for (final File f: temp) {
             getLog().info("Loading termstore from " + f.getCanonicalPath() + (this.activeOnly ? " active items only" : ""));
             FileHandler fh = new FileHandler(f.getName());
-            final BinaryDatastreamReader reader = new BinaryDatastreamReader(item -> fh.process(item), f.toPath());
-            Get.executor().submit(reader).get();
+            try (BinaryDataReaderService reader = Get.binaryDataReader(f.toPath())) {
+               // One pass per object type, concepts first, so every concept of a file is written before 
+               // the semantics that refer to it. Each pass only parses records of its type. The concept
+               // pass splits the file into chunks of about equal bytes for parallel processing. The 
+               // semantic pass stays in file order, since merging logic graphs, and skipping semantics
+               // on skipped semantics, depend on the semantics read before.
+               for (final IsaacObjectType objectType : IsaacObjectType.values()) {
+                  final Stream<IsaacExternalizable> stream = reader.getStream(objectType);
+                  if (objectType == IsaacObjectType.SEMANTIC) {
+                     stream.forEachOrdered(item -> fh.process(item));
+                  } else {
+                     stream.parallel().forEach(item -> fh.process(item));
+                  }
+               }
+            }
             fh.summarize();
          }
          
@@ -383,11 +398,11 @@ public class LoadTermstore
             // Loading with activeOnly set to true causes a number of gaps in the concept /
             getLog().warn("Skipped components during import.");
          }
-         getLog().info("Final item count: "  + this.itemCount);
+         getLog().info("Final item count: "  + this.itemCount.get());
          LookupService.syncAll();
          Get.startIndexTask().get();
 
-      } catch (final ExecutionException | IOException | InterruptedException | UnsupportedOperationException ex) {
+      } catch (final Exception ex) {
          getLog().error("Loaded with exception");
          throw new MojoExecutionException(ex.getLocalizedMessage(), ex);
       } 
@@ -396,10 +411,15 @@ public class LoadTermstore
 
    class FileHandler
    {
-       private int conceptCount, semanticCount, stampAliasCount, stampCommentCount, itemFailure, mergeCount;
+       private final AtomicInteger conceptCount = new AtomicInteger();
+       private final AtomicInteger semanticCount = new AtomicInteger();
+       private final AtomicInteger stampAliasCount = new AtomicInteger();
+       private final AtomicInteger stampCommentCount = new AtomicInteger();
+       private final AtomicInteger itemFailure = new AtomicInteger();
+       private final AtomicInteger mergeCount = new AtomicInteger();
        int duplicateCount = 0;
        final int statedNid = Get.identifierService().getNidForUuids(TermAux.EL_PLUS_PLUS_STATED_ASSEMBLAGE.getPrimordialUuid());
-       private final HashSet<Integer> skippedItems = new HashSet<>();
+       private final Set<Integer> skippedItems = new ConcurrentSkipListSet<>();
        String inputIdentifier;
        
       protected FileHandler(String fileName)
@@ -411,7 +431,7 @@ public class LoadTermstore
       private void process(IsaacExternalizable object)
       {
           if (object != null) {
-             LoadTermstore.this.itemCount++;
+             final int itemCount = LoadTermstore.this.itemCount.incrementAndGet();
 
              try {
                 if (null != object.getIsaacObjectType()) {
@@ -420,7 +440,7 @@ public class LoadTermstore
                       if (!LoadTermstore.this.activeOnly || isActive((Chronology) object)) {
                          try {
                             Get.conceptService().writeConcept(((ConceptChronology) object));
-                            this.conceptCount++;
+                            this.conceptCount.incrementAndGet();
                          }
                          catch (Exception e) {
                             getLog().error("Write Error - ", e);
@@ -436,9 +456,9 @@ public class LoadTermstore
                       SemanticChronology sc = (SemanticChronology) object;
                       
                       if (sc.getPrimordialUuid().equals(TermAux.MASTER_PATH_SEMANTIC_UUID)) {
-                         getLog().info("Loading master path semantic at count: " + LoadTermstore.this.itemCount);
+                         getLog().info("Loading master path semantic at count: " + itemCount);
                       } else if (sc.getPrimordialUuid().equals(TermAux.DEVELOPMENT_PATH_SEMANTIC_UUID)) {
-                         getLog().info("Loading development path semantic at count: " + LoadTermstore.this.itemCount);
+                         getLog().info("Loading development path semantic at count: " + itemCount);
                       }
 
                       if (mergeLogicGraphs) {
@@ -476,7 +496,7 @@ public class LoadTermstore
    
                                  NecessarySet(And(assertions));
                                  byte[][] data = leb.build().getData(DataTarget.INTERNAL);
-                                 mergeCount++;
+                                 mergeCount.incrementAndGet();
    
                                  final SemanticChronology existingChronology = Get.assemblageService().getSemanticChronology(sequences.findFirst().getAsInt());
                                  int stampSequence = Get.stampService().getStampSequence(Status.ACTIVE, System.currentTimeMillis(),
@@ -534,7 +554,7 @@ public class LoadTermstore
                               data = leb.build().getData(DataTarget.INTERNAL);
                            }
                            
-                           mergeCount++;
+                           mergeCount.incrementAndGet();
 
                            final SemanticChronology existingChronology = Get.assemblageService()
                                                                           .getSemanticChronology(sequences.findFirst()
@@ -557,7 +577,7 @@ public class LoadTermstore
                              deferredActionNids.add(sc.getNid());
                           }
 
-                          this.semanticCount++;
+                          this.semanticCount.incrementAndGet();
                       }
                       catch (Exception e) {
                          getLog().error("Write Error - ", e);
@@ -574,14 +594,14 @@ public class LoadTermstore
                      .addAlias(((StampAlias) object).getStampSequence(),
                                ((StampAlias) object).getStampAlias(),
                                null);
-                  this.stampAliasCount++;
+                  this.stampAliasCount.incrementAndGet();
                   break;
 
                case STAMP_COMMENT:
                   Get.commitService()
                      .setComment(((StampComment) object).getStampSequence(),
                                  ((StampComment) object).getComment());
-                  this.stampCommentCount++;
+                  this.stampCommentCount.incrementAndGet();
                   break;
 
                default:
@@ -589,7 +609,7 @@ public class LoadTermstore
                }
             }
          } catch (final UnsupportedOperationException e) {
-            this.itemFailure++;
+            this.itemFailure.incrementAndGet();
             getLog().error("Failure at " + this.conceptCount + " concepts, " + this.semanticCount +
                            " semantics, " + this.stampAliasCount + " stampAlias, " + this.stampCommentCount +
                            " stampComments",
@@ -613,8 +633,8 @@ public class LoadTermstore
             }
          }
 
-         if (LoadTermstore.this.itemCount % 50000 == 0) {
-            getLog().info("Read " + LoadTermstore.this.itemCount + " entries, " + "Loaded " + this.conceptCount +
+         if (itemCount % 50000 == 0) {
+            getLog().info("Read " + itemCount + " entries, " + "Loaded " + this.conceptCount +
                           " concepts, " + this.semanticCount + " semantics, " + this.stampAliasCount +
                           " stampAlias, " + this.stampCommentCount + " stampComment");
          }
@@ -630,12 +650,12 @@ public class LoadTermstore
         getLog().info("Loaded " + this.conceptCount + " concepts, " + this.semanticCount + " semantics, " + this.stampAliasCount + " stampAlias, " 
               + stampCommentCount + " stampComments, " + mergeCount + " merged semantics" + (skippedItems.size() > 0 ? ", skipped for inactive " + skippedItems.size() : "")  
                       + ((duplicateCount > 0) ? " Duplicates " + duplicateCount : "") 
-                      + ((this.itemFailure > 0) ? " Failures " + this.itemFailure : "") + " from " + inputIdentifier);
-        getLog().info("running item count: "  + LoadTermstore.this.itemCount);
-        this.conceptCount      = 0;
-        this.semanticCount     = 0;
-        this.stampAliasCount   = 0;
-        this.stampCommentCount = 0;
+                      + ((this.itemFailure.get() > 0) ? " Failures " + this.itemFailure : "") + " from " + inputIdentifier);
+        getLog().info("running item count: "  + LoadTermstore.this.itemCount.get());
+        this.conceptCount.set(0);
+        this.semanticCount.set(0);
+        this.stampAliasCount.set(0);
+        this.stampCommentCount.set(0);
         this.skippedItems.clear();
       }
    }
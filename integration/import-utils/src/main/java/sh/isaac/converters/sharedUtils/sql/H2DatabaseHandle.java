@@ -43,6 +43,7 @@ package sh.isaac.converters.sharedUtils.sql;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 import java.math.BigDecimal;
 
@@ -53,10 +54,15 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 //~--- non-JDK imports --------------------------------------------------------
 
@@ -68,6 +74,12 @@ import sh.isaac.converters.sharedUtils.ConsoleUtil;
  * The Class H2DatabaseHandle.
  */
 public class H2DatabaseHandle {
+   /** The number of rows parsed together, and inserted in one JDBC batch. */
+   private static final int BATCH_SIZE = 5000;
+
+   /** The number of rows inserted between commits. */
+   private static final int COMMIT_INTERVAL = 100000;
+
    /** The connection. */
    protected Connection connection;
 
@@ -161,6 +173,8 @@ public class H2DatabaseHandle {
 
    /**
     * Load dataReader into table.
+    * Rows are inserted in batches, and committed periodically. Create any indexes on the table after it is loaded,
+    * so each index is built once, rather than updated for every row.
     *
     * @param tableDefinition the tableDefinition
     * @param dataReader the dataReader. Caller is responsible to close the reader. Try with resources is recommended. 
@@ -207,98 +221,84 @@ public class H2DatabaseHandle {
       insert.setLength(insert.length() - 1);
       insert.append(")");
 
-      int rowCount;
-      int                     sabSkipCount;
-      final HashSet<String>         skippedSabs;
-      try (PreparedStatement ps = this.connection.prepareStatement(insert.toString())) {
-         int                     filterColumn = -1;
-         HashSet<String>         sabHashSet   = null;
-         if ((includeValues != null) && (includeValues.size() > 0) && (includeValuesColumnName != null)) {
-            sabHashSet = new HashSet<>(includeValues);
-            
-            int pos = 0;
-            
-            // Find the skip column in this table, if it has one.
-            for (final ColumnDefinition cd: tableDefinition.getColumns()) {
-               if (cd.getColumnName()
-                       .equalsIgnoreCase(includeValuesColumnName)) {
-                  filterColumn = pos;
-                  break;
-               }
-               
-               pos++;
+      final ColumnDefinition[] columns      = tableDefinition.getColumns();
+      int                      filterColumn = -1;
+      HashSet<String>          sabHashSet   = null;
+
+      if ((includeValues != null) && (includeValues.size() > 0) && (includeValuesColumnName != null)) {
+         sabHashSet = new HashSet<>(includeValues);
+
+         // Find the skip column in this table, if it has one.
+         for (int pos = 0; pos < columns.length; pos++) {
+            if (columns[pos].getColumnName()
+                            .equalsIgnoreCase(includeValuesColumnName)) {
+               filterColumn = pos;
+               break;
             }
-         }  rowCount = 0;
-         sabSkipCount = 0;
-         skippedSabs = new HashSet<>();
-         while (dataReader.hasNextRow()) {
-            final List<String> cols = dataReader.getNextRow();
-            
-            if (cols.size() != tableDefinition.getColumns().length) {
-               throw new RuntimeException("Data length mismatch!");
+         }
+      }
+
+      final int             rowFilterColumn = filterColumn;
+      final HashSet<String> rowFilter       = (filterColumn >= 0) ? sabHashSet : null;
+      int                   rowCount        = 0;
+      int                   sabSkipCount    = 0;
+      final HashSet<String> skippedSabs     = new HashSet<>();
+      final boolean         autoCommit      = this.connection.getAutoCommit();
+      CompletableFuture<RowBatch> pendingBatch = null;
+
+      // Rows are inserted in JDBC batches, committed periodically rather than per row. The next
+      // batch is read and parsed, in parallel, while the current batch is inserted.
+      this.connection.setAutoCommit(false);
+
+      try (PreparedStatement ps = this.connection.prepareStatement(insert.toString())) {
+         pendingBatch = readBatchAsync(dataReader, columns, rowFilterColumn, rowFilter);
+
+         int uncommittedCount = 0;
+
+         while (pendingBatch != null) {
+            final RowBatch batch = awaitBatch(pendingBatch);
+
+            pendingBatch = batch.endOfData ? null
+                                           : readBatchAsync(dataReader, columns, rowFilterColumn, rowFilter);
+            sabSkipCount += batch.skipCount;
+            skippedSabs.addAll(batch.skippedValues);
+
+            if (batch.rows.isEmpty()) {
+               continue;
             }
-            
-            if ((sabHashSet != null) && (filterColumn >= 0)) {
-               if (!sabHashSet.contains(cols.get(filterColumn))) {
-                  skippedSabs.add(cols.get(filterColumn));
-                  sabSkipCount++;
-                  continue;
-               }
+
+            for (final Object[] row: batch.rows) {
+               bindRow(ps, columns, row);
+               ps.addBatch();
             }
-            
-            ps.clearParameters();
-            
-            int psIndex = 1;
-            
-            for (final String s: cols) {
-               final DataType colType = tableDefinition.getColumns()[psIndex - 1]
-                       .getDataType();
-               
-               if (colType.isBoolean()) {
-                  if ((s == null) || (s.length() == 0)) {
-                     ps.setNull(psIndex, Types.BOOLEAN);
-                  } else {
-                     ps.setBoolean(psIndex, (s.equalsIgnoreCase("true") || s.equals("1")));
-                  }
-               } else if (colType.isInteger()) {
-                  if ((s == null) || (s.length() == 0)) {
-                     ps.setNull(psIndex, Types.INTEGER);
-                  } else {
-                     ps.setInt(psIndex, Integer.parseInt(s));
-                  }
-               } else if (colType.isLong()) {
-                  if ((s == null) || (s.length() == 0)) {
-                     ps.setNull(psIndex, Types.BIGINT);
-                  } else {
-                     ps.setLong(psIndex, Long.parseLong(s));
-                  }
-               } else if (colType.isString()) {
-                  if ((s == null) || (s.length() == 0)) {
-                     ps.setNull(psIndex, Types.VARCHAR);
-                  } else {
-                     ps.setString(psIndex, s);
-                  }
-               } else if (colType.isBigDecimal()) {
-                  if ((s == null) || (s.length() == 0)) {
-                     ps.setNull(psIndex, Types.DECIMAL);
-                  } else {
-                     ps.setBigDecimal(psIndex, new BigDecimal(s));
-                  }
-               } else {
-                  throw new RuntimeException("Unsupported data type");
-               }
-               
-               psIndex++;
+
+            ps.executeBatch();
+
+            final int previousRowCount = rowCount;
+
+            rowCount         += batch.rows.size();
+            uncommittedCount += batch.rows.size();
+
+            if (uncommittedCount >= COMMIT_INTERVAL) {
+               this.connection.commit();
+               uncommittedCount = 0;
             }
-            
-            ps.execute();
-            rowCount++;
-            
-            if (rowCount % 10000 == 0) {
+
+            if (rowCount / 10000 > previousRowCount / 10000) {
                ConsoleUtil.showProgress();
             }
          }
+
+         this.connection.commit();
+      } finally {
+         if (pendingBatch != null) {
+            // Don't leave a read in progress on a reader the caller is about to close.
+            pendingBatch.handle((batch, throwable) -> batch).join();
+         }
+
+         this.connection.setAutoCommit(autoCommit);
       }
+
       ConsoleUtil.println("Loaded " + rowCount + " rows");
 
       if (sabSkipCount > 0) {
@@ -309,6 +309,152 @@ public class H2DatabaseHandle {
       return rowCount;
    }
 
+   /**
+    * Read the next batch of rows on another thread, and parse their columns in parallel.
+    *
+    * @param dataReader the data reader, which is only read by one batch at a time
+    * @param columns the columns of the table
+    * @param filterColumn the column to filter on, or -1 for no filter
+    * @param includeValues the values of the filter column to include, or null for no filter
+    * @return the batch
+    */
+   private static CompletableFuture<RowBatch> readBatchAsync(TerminologyFileReader dataReader,
+         ColumnDefinition[] columns,
+         int filterColumn,
+         Set<String> includeValues) {
+      return CompletableFuture.supplyAsync(() -> {
+                                              try {
+                                                 return readBatch(dataReader, columns, filterColumn, includeValues);
+                                              } catch (final IOException e) {
+                                                 throw new UncheckedIOException(e);
+                                              }
+                                           });
+   }
+
+   private static RowBatch readBatch(TerminologyFileReader dataReader,
+                                     ColumnDefinition[] columns,
+                                     int filterColumn,
+                                     Set<String> includeValues)
+            throws IOException {
+      final ArrayList<List<String>> rawRows = new ArrayList<>(BATCH_SIZE);
+      final RowBatch                batch   = new RowBatch();
+
+      while ((rawRows.size() < BATCH_SIZE) && dataReader.hasNextRow()) {
+         final List<String> cols = dataReader.getNextRow();
+
+         if (cols.size() != columns.length) {
+            throw new RuntimeException("Data length mismatch!");
+         }
+
+         if ((includeValues != null) && !includeValues.contains(cols.get(filterColumn))) {
+            batch.skippedValues.add(cols.get(filterColumn));
+            batch.skipCount++;
+            continue;
+         }
+
+         rawRows.add(cols);
+      }
+
+      batch.rows = rawRows.parallelStream()
+                          .map((cols) -> parseRow(cols, columns))
+                          .collect(Collectors.toList());
+      batch.endOfData = !dataReader.hasNextRow();
+      return batch;
+   }
+
+   /**
+    * Parse the values of a row to the types of the columns. Empty values are parsed to null.
+    */
+   private static Object[] parseRow(List<String> cols, ColumnDefinition[] columns) {
+      final Object[] row = new Object[columns.length];
+
+      for (int i = 0; i < columns.length; i++) {
+         final String   s       = cols.get(i);
+         final DataType colType = columns[i].getDataType();
+
+         if ((s == null) || (s.length() == 0)) {
+            row[i] = null;
+         } else if (colType.isBoolean()) {
+            row[i] = (s.equalsIgnoreCase("true") || s.equals("1"));
+         } else if (colType.isInteger()) {
+            row[i] = Integer.parseInt(s);
+         } else if (colType.isLong()) {
+            row[i] = Long.parseLong(s);
+         } else if (colType.isString()) {
+            row[i] = s;
+         } else if (colType.isBigDecimal()) {
+            row[i] = new BigDecimal(s);
+         } else {
+            throw new RuntimeException("Unsupported data type");
+         }
+      }
+
+      return row;
+   }
+
+   private static void bindRow(PreparedStatement ps, ColumnDefinition[] columns, Object[] row)
+            throws SQLException {
+      for (int i = 0; i < columns.length; i++) {
+         final int      psIndex = i + 1;
+         final DataType colType = columns[i].getDataType();
+         final Object   value   = row[i];
+
+         if (colType.isBoolean()) {
+            if (value == null) {
+               ps.setNull(psIndex, Types.BOOLEAN);
+            } else {
+               ps.setBoolean(psIndex, (Boolean) value);
+            }
+         } else if (colType.isInteger()) {
+            if (value == null) {
+               ps.setNull(psIndex, Types.INTEGER);
+            } else {
+               ps.setInt(psIndex, (Integer) value);
+            }
+         } else if (colType.isLong()) {
+            if (value == null) {
+               ps.setNull(psIndex, Types.BIGINT);
+            } else {
+               ps.setLong(psIndex, (Long) value);
+            }
+         } else if (colType.isString()) {
+            if (value == null) {
+               ps.setNull(psIndex, Types.VARCHAR);
+            } else {
+               ps.setString(psIndex, (String) value);
+            }
+         } else if (colType.isBigDecimal()) {
+            if (value == null) {
+               ps.setNull(psIndex, Types.DECIMAL);
+            } else {
+               ps.setBigDecimal(psIndex, (BigDecimal) value);
+            }
+         } else {
+            throw new RuntimeException("Unsupported data type");
+         }
+      }
+   }
+
+   /**
+    * Wait for a batch, rethrowing the exception it failed with, if any.
+    */
+   private static RowBatch awaitBatch(CompletableFuture<RowBatch> batch)
+            throws IOException {
+      try {
+         return batch.join();
+      } catch (final CompletionException e) {
+         if (e.getCause() instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) e.getCause()).getCause();
+         }
+
+         if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+         }
+
+         throw e;
+      }
+   }
+
    /**
     * Shutdown.
     *
@@ -333,5 +479,16 @@ public class H2DatabaseHandle {
    public Connection getConnection() {
       return this.connection;
    }
-}
 
+   //~--- inner classes -------------------------------------------------------
+
+   /**
+    * A batch of parsed rows, and the rows skipped by the include filter.
+    */
+   private static class RowBatch {
+      private List<Object[]>        rows;
+      private int                   skipCount     = 0;
+      private final HashSet<String> skippedValues = new HashSet<>();
+      private boolean               endOfData;
+   }
+}
@@ -146,6 +146,9 @@ public class QueryClause {
                 join.getJoinSpecifications().add(joinCriterion);
                 clausePropertySheet.getItems().add(new PropertySheetItemConceptWrapperNoSearch(manifold, "Join", 
                 forSpecProperty, forList));
+                forSpecProperty.addListener((observable, oldValue, newValue) -> {
+                    join.setAssemblageForIteration(newValue);
+                });
                 clausePropertySheet.getItems().add(new PropertySheetItemConceptWrapperNoSearch(manifold, "with", 
                 joinCriterion.assemblageToJoin, forList));
                 // need field list here
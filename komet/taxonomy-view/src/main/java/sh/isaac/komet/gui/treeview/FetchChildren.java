@@ -16,19 +16,14 @@
  */
 package sh.isaac.komet.gui.treeview;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.TreeSet;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import javafx.application.Platform;
 import sh.isaac.api.Get;
-import sh.isaac.api.TaxonomyLink;
 import sh.isaac.api.component.concept.ConceptChronology;
 import sh.isaac.api.task.TimedTaskWithProgressTracker;
-import sh.komet.gui.manifold.Manifold;
-import sh.isaac.api.TaxonomySnapshot;
 
 /**
  *
@@ -38,7 +33,6 @@ public class FetchChildren extends TimedTaskWithProgressTracker<Void> {
    private static final AtomicInteger FETCHER_SEQUENCE = new AtomicInteger(1);
    private static final ConcurrentHashMap<Integer, FetchChildren> FETCHER_MAP = new ConcurrentHashMap<>();
 
-   private static final int CHILD_BATCH_SIZE = 25;
     private final CountDownLatch childrenLoadedLatch;
     private final MultiParentTreeItemImpl treeItemImpl;
     private final int fetcherId = FETCHER_SEQUENCE.incrementAndGet();
@@ -69,76 +63,22 @@ public class FetchChildren extends TimedTaskWithProgressTracker<Void> {
             if (conceptChronology == null) {
                 LOG.debug("addChildren(): conceptChronology={}", conceptChronology);
             } else {  // if (conceptChronology != null)
-                // Gather the children
-                TreeSet<MultiParentTreeItemImpl> childrenToAdd = new TreeSet<>();
-                TaxonomySnapshot taxonomySnapshot = treeItemImpl.getTreeView().getTaxonomySnapshot();
-                Manifold manifold = treeItemImpl.getTreeView().getManifold();
-                Collection<TaxonomyLink>  children = taxonomySnapshot.getTaxonomyChildLinks(conceptChronology.getNid());
-                int batchCount = children.size()/CHILD_BATCH_SIZE;
-                addToTotalWork(children.size() + batchCount);
-                
-                
-                for (TaxonomyLink childLink : children) {
-                    ConceptChronology childChronology = Get.concept(childLink.getDestinationNid());
-                    MultiParentTreeItemImpl childItem = new MultiParentTreeItemImpl(childChronology, treeItemImpl.getTreeView(), childLink.getTypeNid(), null);
-                    childItem.setDefined(childChronology.isSufficientlyDefined(manifold, manifold));
-                    childItem.toString();
-                    childItem.setMultiParent(taxonomySnapshot.getTaxonomyParentConceptNids(childLink.getDestinationNid()).length > 1);
-                    childItem.isLeaf();
-
-                    if (childItem.shouldDisplay()) {
-                        childrenToAdd.add(childItem);
-                    } else {
-                        LOG.debug(
-                                "item.shouldDisplay() == false: not adding " + childItem.getConceptUuid() + " as child of "
-                                + treeItemImpl.getConceptUuid());
-                    }
-                    completedUnitOfWork();
-                    if (isCancelled()) return null;
-                }
-                
-                int counter = 0;
-                ArrayList<ArrayList<MultiParentTreeItemImpl>> itemListList = new ArrayList<>();
-                ArrayList<MultiParentTreeItemImpl> itemList = new ArrayList<>();
-                itemListList.add(itemList);
-                for (MultiParentTreeItemImpl treeItem: childrenToAdd) {
-                    
-                    if (counter <= CHILD_BATCH_SIZE) {
-                        counter++;
-                        itemList.add(treeItem);
-                    } else {
-                        counter = 0;
-                        itemList = new ArrayList<>();
-                        itemListList.add(itemList);
-                    }
-                    if (isCancelled()) return null;
-                }
-                    Platform.runLater(
-                        () -> {
-                            if (!FetchChildren.this.isCancelled()) {
-                                LOG.debug("###Clearing children for: " + treeItemImpl.getValue().getNid()
-                                    + " from: " + fetcherId);
-                                treeItemImpl.getChildren().clear();
-                                completedUnitOfWork();
-                            }
-                            
-                        });
-                
-                for (ArrayList<MultiParentTreeItemImpl> items: itemListList) {
-                    if (isCancelled()) return null;
-                    Platform.runLater(
-                        () -> {
-                            if (!FetchChildren.this.isCancelled()) {
-                                LOG.debug("###Adding children for: " + treeItemImpl.getValue().getNid()
-                                    + " from: " + fetcherId);
-                                treeItemImpl.getChildren().addAll(items);
-                                completedUnitOfWork();
-                            }
-                            
-                        });
-                }
-                    
+                addToTotalWork(2);
+                // Gather the children, summarized and sorted in parallel by the taxonomy snapshot
+                List<MultiParentTreeItemImpl> childrenToAdd = MultiParentTreeItemImpl.makeChildItems(treeItemImpl.getTreeView(), treeItemImpl);
+                completedUnitOfWork();
+                if (isCancelled()) return null;
 
+                // Replace the children in one change, rather than in batches, so the tree lays out once.
+                Platform.runLater(
+                    () -> {
+                        if (!FetchChildren.this.isCancelled()) {
+                            LOG.debug("###Adding children for: " + treeItemImpl.getValue().getNid()
+                                + " from: " + fetcherId);
+                            treeItemImpl.getChildren().setAll(childrenToAdd);
+                            completedUnitOfWork();
+                        }
+                    });
             }
             return null;
         } finally {
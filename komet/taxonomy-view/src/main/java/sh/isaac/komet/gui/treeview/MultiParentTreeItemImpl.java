@@ -43,6 +43,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
 
 //~--- non-JDK imports --------------------------------------------------------
 import javafx.application.Platform;
@@ -55,12 +56,11 @@ import org.apache.logging.log4j.Logger;
 
 import sh.isaac.MetaData;
 import sh.isaac.api.Get;
+import sh.isaac.api.TaxonomyChildSummary;
 import sh.isaac.api.TaxonomyLink;
 import sh.isaac.api.chronicle.LatestVersion;
 import sh.isaac.api.component.concept.ConceptChronology;
 import sh.isaac.api.util.NaturalOrder;
-import sh.komet.gui.manifold.Manifold;
-import sh.isaac.api.TaxonomySnapshot;
 
 //~--- classes ----------------------------------------------------------------
 /**
@@ -111,6 +111,16 @@ public class MultiParentTreeItemImpl
         this.typeNid = typeNid;
     }
 
+    MultiParentTreeItemImpl(TaxonomyChildSummary childSummary, MultiParentTreeView treeView) {
+        this(Get.concept(childSummary.getNid()), treeView, childSummary.getTypeNid(), null);
+        this.defined = childSummary.isDefined();
+        this.multiParent = childSummary.isMultiParent();
+        this.conceptDescriptionText = childSummary.getText();
+        if (childSummary.isLeaf()) {
+            this.childLinks = Collections.emptyList();
+        }
+    }
+
     //~--- methods -------------------------------------------------------------
     public void blockUntilChildrenReady()
             throws InterruptedException {
@@ -214,31 +224,7 @@ public class MultiParentTreeItemImpl
                 } else {  // if (conceptChronology != null)
                     // Gather the children
                     LOG.info("addChildrenNOW(): conceptChronology={}", conceptChronology);
-                    ArrayList<MultiParentTreeItemImpl> childrenToAdd = new ArrayList<>();
-                    TaxonomySnapshot taxonomySnapshot = treeView.getTaxonomySnapshot();
-
-                    if (childLinks == null) {
-                        childLinks = taxonomySnapshot.getTaxonomyChildLinks(conceptChronology.getNid());
-                    }
-
-                    for (TaxonomyLink childLink : childLinks) {
-                        ConceptChronology childChronology = Get.concept(childLink.getDestinationNid());
-                        MultiParentTreeItemImpl childItem = new MultiParentTreeItemImpl(childChronology, treeView, childLink.getTypeNid(), null);
-                        Manifold manifold = treeView.getManifold();
-                        childItem.setDefined(childChronology.isSufficientlyDefined(manifold, manifold));
-                        childItem.toString();
-                        childItem.setMultiParent(taxonomySnapshot.getTaxonomyParentConceptNids(childLink.getDestinationNid()).length > 1);
-
-                        if (childItem.shouldDisplay()) {
-                            childrenToAdd.add(childItem);
-                        } else {
-                            LOG.debug(
-                                    "item.shouldDisplay() == false: not adding " + childItem.getConceptUuid() + " as child of "
-                                    + this.getConceptUuid());
-                        }
-                    }
-
-                    Collections.sort(childrenToAdd);
+                    List<MultiParentTreeItemImpl> childrenToAdd = makeChildItems(treeView, this);
 
                     if (cancelLookup) {
                         return;
@@ -253,6 +239,32 @@ public class MultiParentTreeItemImpl
         }
     }
 
+    /**
+     * Make the items for the children of a parent item, from the taxonomy
+     * child summaries, in parallel. The items are in sort order, and exclude
+     * those the display policies say should not be displayed.
+     *
+     * @param treeView the tree view of the items
+     * @param parentItem the parent item
+     * @return the child items to display
+     */
+    static List<MultiParentTreeItemImpl> makeChildItems(MultiParentTreeView treeView, MultiParentTreeItemImpl parentItem) {
+        List<TaxonomyChildSummary> childSummaries = treeView.getTaxonomySnapshot()
+                .getTaxonomyChildSummaries(parentItem.getValue().getNid());
+
+        return childSummaries.parallelStream()
+                .map((childSummary) -> new MultiParentTreeItemImpl(childSummary, treeView))
+                .filter((childItem) -> {
+                    if (childItem.shouldDisplay()) {
+                        return true;
+                    }
+                    LOG.debug("item.shouldDisplay() == false: not adding " + childItem.getConceptUuid() + " as child of "
+                            + parentItem.getConceptUuid());
+                    return false;
+                })
+                .collect(Collectors.toList());
+    }
+
     void addChildren() {
         LOG.info("addChildren: conceptChronology={}", this.getValue());
         if (getChildren().isEmpty()) {
@@ -117,6 +117,7 @@ import sh.isaac.api.coordinate.StampPosition;
 import sh.isaac.api.coordinate.StampPrecedence;
 import sh.isaac.api.externalizable.IsaacObjectType;
 import sh.isaac.api.identity.StampedVersion;
+import sh.isaac.api.index.IdentifierIndexService;
 import sh.isaac.api.index.IndexQueryService;
 import sh.isaac.api.index.IndexSemanticQueryService;
 import sh.isaac.api.index.SearchResult;
@@ -1383,22 +1384,14 @@ public class Frills
       }
 
       if (SctId.isValidSctId(localIdentifier)) {
-
-         IndexSemanticQueryService si = LookupService.get().getService(IndexSemanticQueryService.class);
-         if (si != null) {
-            // force the prefix algorithm, and add a trailing space - quickest way to do an exact-match type of search
-            List<SearchResult> result = si.query(localIdentifier + " ", true, new int[] { MetaData.SCTID____SOLOR.getNid() }, null, null, 5, Long.MIN_VALUE);
-            if (result.size() > 0) {
-               int componentNid = Get.assemblageService().getSemanticChronology(result.get(0).getNid()).getReferencedComponentNid();
-               if (Get.identifierService().getObjectTypeForComponent(componentNid) == IsaacObjectType.CONCEPT) {
-                  return Get.conceptService().getOptionalConcept(componentNid);
-               } else {
-                  LOG.warn("Passed in SCTID is not a Concept ID!");
-                  return Optional.empty();
-               }
+         Optional<Integer> componentNid = getNidForSCTID(Long.parseLong(localIdentifier));
+         if (componentNid.isPresent()) {
+            if (Get.identifierService().getObjectTypeForComponent(componentNid.get()) == IsaacObjectType.CONCEPT) {
+               return Get.conceptService().getOptionalConcept(componentNid.get());
+            } else {
+               LOG.warn("Passed in SCTID is not a Concept ID!");
+               return Optional.empty();
             }
-         } else {
-            LOG.warn("Semantic Index not available - can't lookup SCTID");
          }
       } 
       return Optional.empty();
@@ -1823,13 +1816,33 @@ public class Frills
     * @return the nid for SCTID
     */
    public static Optional<Integer> getNidForSCTID(long sctID) {
+      return getNidForIdentifier(MetaData.SCTID____SOLOR.getNid(), sctID, "SCTID");
+   }
+
+   /**
+    * Gets the nid of the component that carries an identifier.  Uses the {@link IdentifierIndexService} when it is available,
+    * otherwise falls back to an exact-match search of the semantic index.
+    *
+    * @param identifierAssemblageNid the identifier assemblage, such as SCTID or VUID
+    * @param identifier the identifier
+    * @param identifierName the name of the identifier type, for logging
+    * @return the nid of the component that carries the identifier
+    */
+   private static Optional<Integer> getNidForIdentifier(int identifierAssemblageNid, long identifier, String identifierName) {
+      final IdentifierIndexService iis = LookupService.get().getService(IdentifierIndexService.class);
+
+      if (iis != null && iis.isIdentifierAssemblage(identifierAssemblageNid)) {
+         final OptionalInt nid = iis.getNidForIdentifier(identifierAssemblageNid, identifier);
+         return nid.isPresent() ? Optional.of(nid.getAsInt()) : Optional.empty();
+      }
+
       final IndexQueryService si = LookupService.get().getService(IndexSemanticQueryService.class);
 
       if (si != null) {
          // force the prefix algorithm, and add a trailing space - quickest way to do an exact-match type of search
-         final List<SearchResult> result = si.query(sctID + " ",
+         final List<SearchResult> result = si.query(identifier + " ",
                                                      true,
-                                                     new int[] { MetaData.SCTID____SOLOR.getNid() },
+                                                     new int[] { identifierAssemblageNid },
                                                      null,
                                                      null,
                                                      5,
@@ -1839,7 +1852,7 @@ public class Frills
             return Optional.of(Get.assemblageService().getSemanticChronology(result.get(0).getNid()).getReferencedComponentNid());
          }
       } else {
-         LOG.warn("Semantic Index not available - can't lookup SCTID");
+         LOG.warn("Semantic Index not available - can't lookup " + identifierName);
       }
 
       return Optional.empty();
@@ -1852,29 +1865,7 @@ public class Frills
     * @return the nid for VUID
     */
    public static Optional<Integer> getNidForVUID(long vuID) {
-      final IndexSemanticQueryService si = LookupService.get().getService(IndexSemanticQueryService.class);
-
-      if (si != null) {
-         // force the prefix algorithm, and add a trailing space - quickest way to do an exact-match type of search
-         final List<SearchResult> result = si.query(vuID + " ",
-                                                     true,
-                                                     new int[] { MetaData.VUID____SOLOR.getNid() },
-                                                     null, 
-                                                     null,
-                                                     5,
-                                                     Long.MIN_VALUE);
-
-         if (result.size() > 0) {
-            return Optional.of(Get.assemblageService()
-                                  .getSemanticChronology(result.get(0)
-                                        .getNid())
-                                  .getReferencedComponentNid());
-         }
-      } else {
-         LOG.warn("Semantic Index not available - can't lookup VUID");
-      }
-
-      return Optional.empty();
+      return getNidForIdentifier(MetaData.VUID____SOLOR.getNid(), vuID, "VUID");
    }
    
    /**
@@ -529,6 +529,7 @@ public class BdbProvider
       DatabaseEntry   key     = new DatabaseEntry();
       DatabaseEntry   data    = new DatabaseEntry();
 
+      map.compact();
       map.forEach(
           (int nid,
            int[] value) -> {
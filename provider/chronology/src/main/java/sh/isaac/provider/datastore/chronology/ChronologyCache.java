@@ -0,0 +1,341 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.provider.datastore.chronology;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import sh.isaac.api.chronicle.Chronology;
+import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.externalizable.DataWriteListener;
+import sh.isaac.api.externalizable.IsaacObjectType;
+
+/**
+ * A bounded cache of serialized chronologies, keyed by nid, so that repeated
+ * requests for the same chronology do not read and merge its data from the
+ * data store each time. The cache is bounded by the serialized size of the
+ * chronologies it holds, and evicts the least recently used entries first.
+ *
+ * <p>The cache holds the serialized form, rather than decoded chronologies,
+ * since a decoded chronology is mutable: callers add versions to the
+ * chronologies they get. Each read decodes a new chronology from the cached
+ * bytes, which are never modified.</p>
+ *
+ * <p>Entries are invalidated when the data store writes the chronology, which
+ * it does for new versions, commits, and cancels. A read that started before
+ * an invalidation of its nid is not cached, so a stale chronology read during
+ * a write is never added after the write's invalidation.</p>
+ *
+ * <p>Caching may be disabled for individual assemblages, for instance for
+ * large assemblages that are read once in bulk.</p>
+ *
+ * @author kec
+ */
+public class ChronologyCache
+        implements DataWriteListener {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    /** An estimate of the heap used by a cache entry, beyond the serialized size. */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final long maxWeight;
+    private final NidSet uncachedAssemblageNids = NidSet.concurrent();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxWeight the maximum total serialized size, in bytes, of the cached chronologies
+     */
+    public ChronologyCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            this.segments[i] = new Segment(maxWeight / SEGMENT_COUNT);
+        }
+    }
+
+    /**
+     * @param nid the nid of the chronology
+     * @param objectType the expected type of the chronology
+     * @return the cached serialized chronology, which must not be modified, or
+     * null if not cached as the expected type
+     */
+    byte[] get(int nid, IsaacObjectType objectType) {
+        byte[] data = segmentFor(nid).get(nid, objectType);
+        if (data == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+        }
+        return data;
+    }
+
+    /**
+     * Get the invalidation epoch for a nid. Must be called before reading the
+     * chronology from the data store, and passed to {@link #put}.
+     *
+     * @param nid the nid of the chronology
+     * @return the epoch
+     */
+    long getEpoch(int nid) {
+        return segmentFor(nid).epoch;
+    }
+
+    /**
+     * Cache a serialized chronology, unless its assemblage is not cached, or
+     * an invalidation of a nid in the same segment happened since the epoch
+     * was read.
+     *
+     * @param nid the nid of the chronology
+     * @param assemblageNid the assemblage of the chronology
+     * @param objectType the type of the chronology
+     * @param data the serialized chronology, which the cache takes ownership of
+     * @param epoch the epoch returned by {@link #getEpoch(int)} before the data was read
+     */
+    void put(int nid, int assemblageNid, IsaacObjectType objectType, byte[] data, long epoch) {
+        if (this.uncachedAssemblageNids.contains(assemblageNid)) {
+            return;
+        }
+        segmentFor(nid).put(nid, new CacheEntry(data, objectType, assemblageNid), epoch);
+    }
+
+    /**
+     * Remove a chronology from the cache.
+     *
+     * @param nid the nid of the chronology
+     */
+    public void invalidate(int nid) {
+        if (segmentFor(nid).invalidate(nid)) {
+            this.invalidations.increment();
+        }
+    }
+
+    /**
+     * Remove all chronologies from the cache.
+     */
+    public void clear() {
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Enable or disable caching of the chronologies of an assemblage. Disabling
+     * removes the cached chronologies of the assemblage.
+     *
+     * @param assemblageNid the assemblage
+     * @param cached true to cache chronologies of the assemblage, the default
+     */
+    public void setAssemblageCached(int assemblageNid, boolean cached) {
+        if (cached) {
+            this.uncachedAssemblageNids.remove(assemblageNid);
+        } else {
+            this.uncachedAssemblageNids.add(assemblageNid);
+            for (Segment segment : this.segments) {
+                segment.removeAssemblage(assemblageNid);
+            }
+        }
+    }
+
+    /**
+     * @param assemblageNid the assemblage
+     * @return true if chronologies of the assemblage are cached
+     */
+    public boolean isAssemblageCached(int assemblageNid) {
+        return !this.uncachedAssemblageNids.contains(assemblageNid);
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return the fraction of requests satisfied from the cache, or 0 if there were no requests
+     */
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long requestCount = hitCount + getMissCount();
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * @return the number of chronologies removed to make room for others
+     */
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return the number of cached chronologies removed because they were written
+     */
+    public long getInvalidationCount() {
+        return this.invalidations.sum();
+    }
+
+    /**
+     * @return the number of cached chronologies
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated size, in bytes, of the cached chronologies
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : this.segments) {
+            weight += segment.getWeight();
+        }
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return this.maxWeight;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeData(Chronology data) {
+        invalidate(data.getNid());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sync() {
+        // nothing to write
+    }
+
+    @Override
+    public String toString() {
+        return "ChronologyCache{size=" + size() + ", weight=" + getWeight() + "/" + this.maxWeight
+                + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + String.format(", hitRate=%.3f", getHitRate())
+                + ", evictions=" + getEvictionCount() + ", invalidations=" + getInvalidationCount() + "}";
+    }
+
+    private Segment segmentFor(int nid) {
+        return this.segments[(nid * 0x9E3779B9) >>> 28];
+    }
+
+    private static class CacheEntry {
+
+        final byte[] data;
+        final IsaacObjectType objectType;
+        final int assemblageNid;
+        final int weight;
+
+        CacheEntry(byte[] data, IsaacObjectType objectType, int assemblageNid) {
+            this.data = data;
+            this.objectType = objectType;
+            this.assemblageNid = assemblageNid;
+            this.weight = data.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    /**
+     * A least recently used map, bounded by weight, guarded by its own monitor.
+     */
+    private class Segment {
+
+        private final LinkedHashMap<Integer, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxSegmentWeight;
+        private long weight = 0;
+
+        /** Incremented by each invalidation in this segment. */
+        private volatile long epoch = 0;
+
+        Segment(long maxSegmentWeight) {
+            this.maxSegmentWeight = maxSegmentWeight;
+        }
+
+        synchronized byte[] get(int nid, IsaacObjectType objectType) {
+            CacheEntry entry = this.entries.get(nid);
+            return (entry == null || entry.objectType != objectType) ? null : entry.data;
+        }
+
+        synchronized void put(int nid, CacheEntry entry, long readEpoch) {
+            if (readEpoch != this.epoch || entry.weight > this.maxSegmentWeight) {
+                return;
+            }
+            CacheEntry prior = this.entries.put(nid, entry);
+            if (prior != null) {
+                this.weight -= prior.weight;
+            }
+            this.weight += entry.weight;
+            Iterator<CacheEntry> iterator = this.entries.values().iterator();
+            while (this.weight > this.maxSegmentWeight && iterator.hasNext()) {
+                CacheEntry eldest = iterator.next();
+                iterator.remove();
+                this.weight -= eldest.weight;
+                ChronologyCache.this.evictions.increment();
+            }
+        }
+
+        synchronized boolean invalidate(int nid) {
+            this.epoch++;
+            CacheEntry entry = this.entries.remove(nid);
+            if (entry == null) {
+                return false;
+            }
+            this.weight -= entry.weight;
+            return true;
+        }
+
+        synchronized void removeAssemblage(int assemblageNid) {
+            this.epoch++;
+            Iterator<Map.Entry<Integer, CacheEntry>> iterator = this.entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                CacheEntry entry = iterator.next().getValue();
+                if (entry.assemblageNid == assemblageNid) {
+                    iterator.remove();
+                    this.weight -= entry.weight;
+                }
+            }
+        }
+
+        synchronized void clear() {
+            this.epoch++;
+            this.entries.clear();
+            this.weight = 0;
+        }
+
+        synchronized int size() {
+            return this.entries.size();
+        }
+
+        synchronized long getWeight() {
+            return this.weight;
+        }
+    }
+}
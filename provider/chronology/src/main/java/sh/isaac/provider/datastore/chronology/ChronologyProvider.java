@@ -86,12 +86,14 @@ import sh.isaac.api.component.semantic.version.MutableStringVersion;
 import sh.isaac.api.component.semantic.version.SemanticVersion;
 import sh.isaac.api.component.semantic.version.StringVersion;
 import sh.isaac.api.constants.DatabaseInitialization;
+import sh.isaac.api.constants.SystemPropertyConstants;
 import sh.isaac.api.coordinate.ManifoldCoordinate;
 import sh.isaac.api.coordinate.StampCoordinate;
 import sh.isaac.api.datastore.DataStore;
 import sh.isaac.api.externalizable.BinaryDataReaderService;
 import sh.isaac.api.externalizable.ByteArrayDataBuffer;
 import sh.isaac.api.externalizable.IsaacObjectType;
+import sh.isaac.api.externalizable.ReadOnlyByteArrayDataBuffer;
 import sh.isaac.model.ChronologyImpl;
 import sh.isaac.model.ModelGet;
 import sh.isaac.model.concept.ConceptChronologyImpl;
@@ -116,8 +118,16 @@ public class ChronologyProvider
      */
     private static final Logger LOG = LogManager.getLogger();
 
+    private static final long DEFAULT_CHRONOLOGY_CACHE_SIZE_MB = 64;
+
     //~--- fields --------------------------------------------------------------
     private DataStore store;
+
+    /** Null when disabled by {@link SystemPropertyConstants#CHRONOLOGY_CACHE_SIZE_MB}, or in DB build mode. */
+    private ChronologyCache chronologyCache;
+
+    /** Null in DB build mode. */
+    private DescriptionTextCache descriptionTextCache;
     
    //set to -1, when we haven't loaded yet.  Set to 1, when we have (and did) load metadata.  Set to 0, when we have checked, 
    //but didn't load metadata because the database was already loaded, or the preferences said not to.
@@ -228,6 +238,16 @@ public class ChronologyProvider
         if (store == null) {
             throw new RuntimeException("Failed to get a data store!");
         }
+        long cacheSizeMb = Long.getLong(SystemPropertyConstants.CHRONOLOGY_CACHE_SIZE_MB, DEFAULT_CHRONOLOGY_CACHE_SIZE_MB);
+        // Bulk loads read each chronology about once, so gain nothing from the cache.
+        if (cacheSizeMb > 0 && !Get.configurationService().isInDBBuildMode()) {
+            this.chronologyCache = new ChronologyCache(cacheSizeMb * 1024 * 1024);
+            store.registerDataWriteListener(this.chronologyCache);
+        }
+        if (!Get.configurationService().isInDBBuildMode()) {
+            this.descriptionTextCache = new DescriptionTextCache(store);
+            store.registerDataWriteListener(this.descriptionTextCache);
+        }
     }
 
     /**
@@ -239,6 +259,16 @@ public class ChronologyProvider
             LOG.info("Stopping chronology provider for change to runlevel: " + LookupService.getProceedingToRunLevel());
             this.sync().get();
             this.metadataLoaded.set(-1);
+            if (this.chronologyCache != null) {
+                LOG.info("Chronology cache at shutdown: " + this.chronologyCache);
+                store.unregisterDataWriteListener(this.chronologyCache);
+                this.chronologyCache = null;
+            }
+            if (this.descriptionTextCache != null) {
+                LOG.info("Description text cache at shutdown: " + this.descriptionTextCache);
+                store.unregisterDataWriteListener(this.descriptionTextCache);
+                this.descriptionTextCache = null;
+            }
         } catch (InterruptedException | ExecutionException ex) {
             LOG.error(ex);
         }
@@ -255,8 +285,62 @@ public class ChronologyProvider
         return this.store.getAssemblageConceptNids();
     }
 
-    private Optional<ByteArrayDataBuffer> getChronologyData(int nid) {
-        return this.store.getChronologyVersionData(nid);
+    /**
+     * @return the cache of serialized chronologies, for configuration and metrics, or an empty optional if disabled.
+     */
+    public Optional<ChronologyCache> getChronologyCache() {
+        return Optional.ofNullable(this.chronologyCache);
+    }
+
+    /**
+     * @return the cache of concept description text, for metrics, or an empty optional if disabled.
+     */
+    public Optional<DescriptionTextCache> getDescriptionTextCache() {
+        return Optional.ofNullable(this.descriptionTextCache);
+    }
+
+    /**
+     * Decode a new chronology from the cached data, or from the data store.
+     * Each call returns a new instance, since callers may modify it.
+     *
+     * @param nid the nid of the chronology
+     * @param objectType the expected type of the chronology
+     * @return the chronology, or null if the data store has no data for the nid
+     */
+    private ChronologyImpl readChronology(int nid, IsaacObjectType objectType) {
+        final ChronologyCache cache = this.chronologyCache;
+        long epoch = 0;
+
+        if (cache != null) {
+            byte[] cached = cache.get(nid, objectType);
+            if (cached != null) {
+                return decodeChronology(new ReadOnlyByteArrayDataBuffer(cached), objectType);
+            }
+            epoch = cache.getEpoch(nid);
+        }
+
+        Optional<ByteArrayDataBuffer> optionalByteBuffer = store.getChronologyVersionData(nid);
+
+        if (!optionalByteBuffer.isPresent()) {
+            return null;
+        }
+
+        ByteArrayDataBuffer byteBuffer = optionalByteBuffer.get();
+        byte[] data = (cache == null) ? null : Arrays.copyOf(byteBuffer.getData(), byteBuffer.getUsed());
+        ChronologyImpl chronology = decodeChronology(byteBuffer, objectType);
+
+        if (cache != null) {
+            cache.put(nid, chronology.getAssemblageNid(), objectType, data, epoch);
+        }
+        return chronology;
+    }
+
+    private static ChronologyImpl decodeChronology(ByteArrayDataBuffer byteBuffer, IsaacObjectType objectType) {
+        objectType.readAndValidateHeader(byteBuffer);
+        if (objectType == IsaacObjectType.CONCEPT) {
+            return ConceptChronologyImpl.make(byteBuffer);
+        }
+        return SemanticChronologyImpl.make(byteBuffer);
     }
 
     @Override
@@ -272,13 +356,10 @@ public class ChronologyProvider
 
     @Override
     public ConceptChronologyImpl getConceptChronology(int conceptId) {
-        Optional<ByteArrayDataBuffer> optionalByteBuffer = store.getChronologyVersionData(conceptId);
-
-        if (optionalByteBuffer.isPresent()) {
-            ByteArrayDataBuffer byteBuffer = optionalByteBuffer.get();
+        ChronologyImpl chronology = readChronology(conceptId, IsaacObjectType.CONCEPT);
 
-            IsaacObjectType.CONCEPT.readAndValidateHeader(byteBuffer);
-            return ConceptChronologyImpl.make(byteBuffer);
+        if (chronology != null) {
+            return (ConceptChronologyImpl) chronology;
         }
 
         throw new NoSuchElementException("No element for: " + conceptId + Arrays.toString(Get.identifierService().getUuidsForNid(conceptId).toArray()));
@@ -424,26 +505,19 @@ public class ChronologyProvider
     @Override
     public Optional<? extends Chronology> getChronology(int nid) {
         try {
-            Optional<ByteArrayDataBuffer> optionalByteBuffer = getChronologyData(nid);
-
-            if (optionalByteBuffer.isPresent()) {
-                ByteArrayDataBuffer byteBuffer = optionalByteBuffer.get();
-
-                // concept or semantic?
-                switch (ModelGet.identifierService()
-                        .getObjectTypeForComponent(nid)) {
-                    case CONCEPT:
-                        IsaacObjectType.CONCEPT.readAndValidateHeader(byteBuffer);
-                        return Optional.of(ConceptChronologyImpl.make(byteBuffer));
-
-                    case SEMANTIC:
-                        IsaacObjectType.SEMANTIC.readAndValidateHeader(byteBuffer);
-                        return Optional.of(SemanticChronologyImpl.make(byteBuffer));
-
-                    default:
-                        throw new UnsupportedOperationException(
-                                "Can't handle: " + ModelGet.identifierService().getObjectTypeForComponent(nid));
-                }
+            // concept or semantic?
+            IsaacObjectType objectType = ModelGet.identifierService()
+                    .getObjectTypeForComponent(nid);
+
+            switch (objectType) {
+                case CONCEPT:
+                case SEMANTIC:
+                    return Optional.ofNullable(readChronology(nid, objectType));
+
+                default:
+                    if (store.getChronologyVersionData(nid).isPresent()) {
+                        throw new UnsupportedOperationException("Can't handle: " + objectType);
+                    }
             }
         } catch (NoSuchElementException nse) {
             return Optional.empty();
@@ -478,13 +552,10 @@ public class ChronologyProvider
 
     @Override
     public SemanticChronology getSemanticChronology(int semanticId) {
-        Optional<ByteArrayDataBuffer> optionalByteBuffer = store.getChronologyVersionData(semanticId);
+        ChronologyImpl chronology = readChronology(semanticId, IsaacObjectType.SEMANTIC);
 
-        if (optionalByteBuffer.isPresent()) {
-            ByteArrayDataBuffer byteBuffer = optionalByteBuffer.get();
-
-            IsaacObjectType.SEMANTIC.readAndValidateHeader(byteBuffer);
-            return SemanticChronologyImpl.make(byteBuffer);
+        if (chronology != null) {
+            return (SemanticChronologyImpl) chronology;
         }
 
         // Gather exception data...
@@ -715,6 +786,20 @@ public class ChronologyProvider
     }
 
     //~--- inner classes -------------------------------------------------------
+    /**
+     * A description text table, and the coordinate key it was requested by.
+     */
+    private static class TextTableBinding {
+
+        private final DescriptionTextCache.CoordinateKey key;
+        private final DescriptionTextCache.TextTable table;
+
+        TextTableBinding(DescriptionTextCache.CoordinateKey key, DescriptionTextCache.TextTable table) {
+            this.key = key;
+            this.table = table;
+        }
+    }
+
     /**
      * The Class ConceptSnapshotProvider.
      */
@@ -726,6 +811,13 @@ public class ChronologyProvider
          */
         ManifoldCoordinate manifoldCoordinate;
 
+        /**
+         * The description text table for the manifold coordinate, with the key it
+         * was requested by, replaced when the coordinate is changed or the table is
+         * dropped from the cache.
+         */
+        private volatile TextTableBinding textTableBinding;
+
         //~--- constructors -----------------------------------------------------
         /**
          * Instantiates a new concept snapshot provider.
@@ -745,16 +837,71 @@ public class ChronologyProvider
          */
         @Override
         public String conceptDescriptionText(int conceptId) {
-            final LatestVersion<DescriptionVersion> descriptionOptional = getDescriptionOptional(conceptId);
+            final Optional<String> descriptionText = getDescriptionText(conceptId);
 
-            if (descriptionOptional.isPresent()) {
-                return descriptionOptional.get()
-                        .getText();
+            if (descriptionText.isPresent()) {
+                return descriptionText.get();
             }
 
             return "No desc for: " + conceptId;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Optional<String> getDescriptionText(int conceptNid) {
+            final DescriptionTextCache cache = ChronologyProvider.this.descriptionTextCache;
+
+            if (cache == null) {
+                return ConceptSnapshotService.super.getDescriptionText(conceptNid);
+            }
+
+            final DescriptionTextCache.TextTable table = getTextTable(cache);
+            final String cachedText = table.get(conceptNid);
+
+            if (cachedText != null) {
+                return Optional.of(cachedText);
+            }
+
+            final long epoch = cache.getEpoch();
+            final Optional<String> descriptionText = ConceptSnapshotService.super.getDescriptionText(conceptNid);
+
+            descriptionText.ifPresent((text) -> table.put(conceptNid, text, epoch));
+            return descriptionText;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void preloadDescriptionText(int assemblageNid) {
+            final IntStream conceptNids;
+
+            if (store.getIsaacObjectTypeForAssemblageNid(assemblageNid) == IsaacObjectType.SEMANTIC) {
+                conceptNids = getReferencedComponentNidStreamFromAssemblage(assemblageNid)
+                        .filter((nid) -> Get.identifierService().getObjectTypeForComponent(nid) == IsaacObjectType.CONCEPT)
+                        .distinct();
+            } else {
+                conceptNids = Get.identifierService().getNidsForAssemblage(assemblageNid);
+            }
+
+            conceptNids.parallel().forEach(this::getDescriptionText);
+        }
+
+        private DescriptionTextCache.TextTable getTextTable(DescriptionTextCache cache) {
+            TextTableBinding binding = this.textTableBinding;
+
+            if (binding == null || binding.table.isRetired() || !binding.key.matches(this.manifoldCoordinate)) {
+                final DescriptionTextCache.CoordinateKey key = DescriptionTextCache.coordinateKey(this.manifoldCoordinate);
+
+                binding = new TextTableBinding(key, cache.getTable(key));
+                this.textTableBinding = binding;
+            }
+
+            return binding.table;
+        }
+
         /**
          * To string.
          *
@@ -0,0 +1,440 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.provider.datastore.chronology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import sh.isaac.api.Get;
+import sh.isaac.api.Status;
+import sh.isaac.api.chronicle.Chronology;
+import sh.isaac.api.chronicle.VersionType;
+import sh.isaac.api.component.concept.ConceptSpecification;
+import sh.isaac.api.component.semantic.SemanticChronology;
+import sh.isaac.api.coordinate.LanguageCoordinate;
+import sh.isaac.api.coordinate.ManifoldCoordinate;
+import sh.isaac.api.coordinate.StampCoordinate;
+import sh.isaac.api.coordinate.StampPosition;
+import sh.isaac.api.coordinate.StampPrecedence;
+import sh.isaac.api.datastore.DataStore;
+import sh.isaac.api.externalizable.DataWriteListener;
+import sh.isaac.api.externalizable.IsaacObjectType;
+
+/**
+ * A cache of the description text that concept snapshots resolve for a concept,
+ * with one table per coordinate. A table maps the nid of a concept to its text,
+ * and is keyed by an immutable snapshot of the stamp and language coordinate
+ * values that determine which description is chosen, so equal coordinates
+ * share a table. Coordinates may be changed after a snapshot is taken, so a
+ * holder of a table must check that its key still
+ * {@link CoordinateKey#matches(ManifoldCoordinate) matches} its coordinate.
+ *
+ * <p>Entries are invalidated when the data store writes a description of the
+ * concept, or a semantic, such as an acceptability, that refers to a description
+ * of the concept. A text resolved before an invalidation is not kept, so a
+ * stale text read during a write is never cached after the write's
+ * invalidation.</p>
+ *
+ * @author kec
+ */
+public class DescriptionTextCache
+        implements DataWriteListener {
+
+    private static final int MAX_TABLES = 16;
+    private static final int ELEMENTS_PER_SPINE = 1024;
+
+    private final DataStore store;
+    private final ConcurrentHashMap<CoordinateKey, TextTable> tables = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLong accessClock = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param store the data store, used to find the concept of a description referenced by a written semantic
+     */
+    public DescriptionTextCache(DataStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Get the table for a coordinate, creating it if necessary. The least
+     * recently requested table is dropped when there are more than
+     * {@code MAX_TABLES} tables.
+     *
+     * @param coordinateKey the key of the coordinate, from {@link #coordinateKey(ManifoldCoordinate)}
+     * @return the table for the coordinate
+     */
+    TextTable getTable(CoordinateKey coordinateKey) {
+        TextTable table = this.tables.get(coordinateKey);
+        if (table == null) {
+            table = this.tables.computeIfAbsent(coordinateKey, (key) -> new TextTable());
+            if (this.tables.size() > MAX_TABLES) {
+                removeLeastRecentlyRequestedTable(table);
+            }
+        }
+        table.lastRequest = this.accessClock.incrementAndGet();
+        return table;
+    }
+
+    private void removeLeastRecentlyRequestedTable(TextTable keep) {
+        Map.Entry<CoordinateKey, TextTable> oldest = null;
+        for (Map.Entry<CoordinateKey, TextTable> entry : this.tables.entrySet()) {
+            if (entry.getValue() != keep
+                    && (oldest == null || entry.getValue().lastRequest < oldest.getValue().lastRequest)) {
+                oldest = entry;
+            }
+        }
+        if (oldest != null && this.tables.remove(oldest.getKey(), oldest.getValue())) {
+            oldest.getValue().retired = true;
+        }
+    }
+
+    /**
+     * @return the current epoch, to be read before resolving a text that is then cached with {@link TextTable#put(int, String, long)}.
+     */
+    long getEpoch() {
+        return this.epoch.get();
+    }
+
+    /**
+     * Remove the text of a concept from all tables.
+     *
+     * @param conceptNid the nid of the concept
+     */
+    public void invalidate(int conceptNid) {
+        this.epoch.incrementAndGet();
+        this.invalidations.increment();
+        for (TextTable table : this.tables.values()) {
+            table.remove(conceptNid);
+        }
+    }
+
+    /**
+     * Remove all tables.
+     */
+    public void clear() {
+        this.epoch.incrementAndGet();
+        for (TextTable table : this.tables.values()) {
+            table.retired = true;
+        }
+        this.tables.clear();
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public long getInvalidationCount() {
+        return this.invalidations.sum();
+    }
+
+    /**
+     * @return the number of coordinate tables.
+     */
+    public int getTableCount() {
+        return this.tables.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeData(Chronology data) {
+        if (data instanceof SemanticChronology) {
+            SemanticChronology semantic = (SemanticChronology) data;
+            if (semantic.getVersionType() == VersionType.DESCRIPTION) {
+                invalidate(semantic.getReferencedComponentNid());
+            } else {
+                int referencedNid = semantic.getReferencedComponentNid();
+                OptionalInt referencedAssemblageNid = this.store.getAssemblageOfNid(referencedNid);
+                if (referencedAssemblageNid.isPresent()
+                        && this.store.getIsaacObjectTypeForAssemblageNid(referencedAssemblageNid.getAsInt()) == IsaacObjectType.SEMANTIC
+                        && this.store.getVersionTypeForAssemblageNid(referencedAssemblageNid.getAsInt()) == VersionType.DESCRIPTION) {
+                    // an acceptability, or other semantic of a description, may change which description is preferred.
+                    Get.assemblageService().getOptionalSemanticChronology(referencedNid)
+                            .ifPresent((description) -> invalidate(description.getReferencedComponentNid()));
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sync() {
+        // nothing to write
+    }
+
+    @Override
+    public String toString() {
+        return "DescriptionTextCache{tables=" + getTableCount() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", invalidations=" + getInvalidationCount() + "}";
+    }
+
+    /**
+     * Take a snapshot of the values of the stamp and language coordinates of
+     * a manifold coordinate that determine the description chosen for a
+     * concept. Coordinates with equal values produce equal keys, regardless of
+     * their implementation.
+     *
+     * @param manifoldCoordinate the coordinate
+     * @return the key
+     */
+    static CoordinateKey coordinateKey(ManifoldCoordinate manifoldCoordinate) {
+        return new CoordinateKey(manifoldCoordinate);
+    }
+
+    /**
+     * An immutable snapshot of the coordinate values that determine the
+     * description chosen for a concept.
+     */
+    static final class CoordinateKey {
+
+        private final StampPrecedence stampPrecedence;
+        private final int pathNid;
+        private final long time;
+        private final EnumSet<Status> allowedStates;
+        private final int[] moduleNids;
+        private final int[] modulePreferenceNids;
+        private final int[] languageNids;
+        private final int[][] dialectAssemblageNids;
+        private final int[][] descriptionTypeNids;
+        private final int[][] languageModuleNids;
+        private final int hashCode;
+
+        private CoordinateKey(ManifoldCoordinate manifoldCoordinate) {
+            final StampCoordinate stampCoordinate = manifoldCoordinate.getStampCoordinate();
+            final StampPosition stampPosition = stampCoordinate.getStampPosition();
+            this.stampPrecedence = stampCoordinate.getStampPrecedence();
+            this.pathNid = stampPosition.getStampPathSpecification().getNid();
+            this.time = stampPosition.getTime();
+            this.allowedStates = EnumSet.noneOf(Status.class);
+            this.allowedStates.addAll(stampCoordinate.getAllowedStates());
+            this.moduleNids = nids(stampCoordinate.getModuleSpecifications());
+            Arrays.sort(this.moduleNids);
+            this.modulePreferenceNids = nids(stampCoordinate.getModulePreferenceOrderForVersions());
+
+            final List<LanguageCoordinate> languageCoordinates = new ArrayList<>();
+            LanguageCoordinate languageCoordinate = manifoldCoordinate.getLanguageCoordinate();
+            while (languageCoordinate != null) {
+                languageCoordinates.add(languageCoordinate);
+                languageCoordinate = languageCoordinate.getNextProrityLanguageCoordinate().orElse(null);
+            }
+            this.languageNids = new int[languageCoordinates.size()];
+            this.dialectAssemblageNids = new int[languageCoordinates.size()][];
+            this.descriptionTypeNids = new int[languageCoordinates.size()][];
+            this.languageModuleNids = new int[languageCoordinates.size()][];
+            for (int i = 0; i < languageCoordinates.size(); i++) {
+                languageCoordinate = languageCoordinates.get(i);
+                this.languageNids[i] = languageCoordinate.getLanguageConceptNid();
+                this.dialectAssemblageNids[i] = copy(languageCoordinate.getDialectAssemblagePreferenceList());
+                this.descriptionTypeNids[i] = copy(languageCoordinate.getDescriptionTypePreferenceList());
+                this.languageModuleNids[i] = copy(languageCoordinate.getModulePreferenceListForLanguage());
+            }
+
+            int hash = this.stampPrecedence.hashCode();
+            hash = 31 * hash + this.pathNid;
+            hash = 31 * hash + Long.hashCode(this.time);
+            hash = 31 * hash + this.allowedStates.hashCode();
+            hash = 31 * hash + Arrays.hashCode(this.moduleNids);
+            hash = 31 * hash + Arrays.hashCode(this.modulePreferenceNids);
+            hash = 31 * hash + Arrays.hashCode(this.languageNids);
+            hash = 31 * hash + Arrays.deepHashCode(this.dialectAssemblageNids);
+            hash = 31 * hash + Arrays.deepHashCode(this.descriptionTypeNids);
+            hash = 31 * hash + Arrays.deepHashCode(this.languageModuleNids);
+            this.hashCode = hash;
+        }
+
+        /**
+         * Check, without building a new key, whether a coordinate still has
+         * the values of this snapshot. Coordinates such as
+         * {@code LanguageCoordinateImpl} may be changed in place, after which
+         * a new key must be taken.
+         *
+         * @param manifoldCoordinate the coordinate
+         * @return true if the coordinate would produce a key equal to this one
+         */
+        boolean matches(ManifoldCoordinate manifoldCoordinate) {
+            final StampCoordinate stampCoordinate = manifoldCoordinate.getStampCoordinate();
+            final StampPosition stampPosition = stampCoordinate.getStampPosition();
+            if (stampCoordinate.getStampPrecedence() != this.stampPrecedence
+                    || stampPosition.getTime() != this.time
+                    || stampPosition.getStampPathSpecification().getNid() != this.pathNid
+                    || !this.allowedStates.equals(stampCoordinate.getAllowedStates())) {
+                return false;
+            }
+            final Set<ConceptSpecification> modules = stampCoordinate.getModuleSpecifications();
+            if (modules.size() != this.moduleNids.length) {
+                return false;
+            }
+            for (ConceptSpecification module : modules) {
+                if (Arrays.binarySearch(this.moduleNids, module.getNid()) < 0) {
+                    return false;
+                }
+            }
+            final List<ConceptSpecification> modulePreferences = stampCoordinate.getModulePreferenceOrderForVersions();
+            if (modulePreferences.size() != this.modulePreferenceNids.length) {
+                return false;
+            }
+            for (int i = 0; i < this.modulePreferenceNids.length; i++) {
+                if (modulePreferences.get(i).getNid() != this.modulePreferenceNids[i]) {
+                    return false;
+                }
+            }
+            LanguageCoordinate languageCoordinate = manifoldCoordinate.getLanguageCoordinate();
+            for (int i = 0; i < this.languageNids.length; i++) {
+                if (languageCoordinate == null
+                        || languageCoordinate.getLanguageConceptNid() != this.languageNids[i]
+                        || !Arrays.equals(languageCoordinate.getDialectAssemblagePreferenceList(), this.dialectAssemblageNids[i])
+                        || !Arrays.equals(languageCoordinate.getDescriptionTypePreferenceList(), this.descriptionTypeNids[i])
+                        || !Arrays.equals(languageCoordinate.getModulePreferenceListForLanguage(), this.languageModuleNids[i])) {
+                    return false;
+                }
+                languageCoordinate = languageCoordinate.getNextProrityLanguageCoordinate().orElse(null);
+            }
+            return languageCoordinate == null;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CoordinateKey)) {
+                return false;
+            }
+            final CoordinateKey other = (CoordinateKey) obj;
+            return this.hashCode == other.hashCode
+                    && this.stampPrecedence == other.stampPrecedence
+                    && this.pathNid == other.pathNid
+                    && this.time == other.time
+                    && this.allowedStates.equals(other.allowedStates)
+                    && Arrays.equals(this.moduleNids, other.moduleNids)
+                    && Arrays.equals(this.modulePreferenceNids, other.modulePreferenceNids)
+                    && Arrays.equals(this.languageNids, other.languageNids)
+                    && Arrays.deepEquals(this.dialectAssemblageNids, other.dialectAssemblageNids)
+                    && Arrays.deepEquals(this.descriptionTypeNids, other.descriptionTypeNids)
+                    && Arrays.deepEquals(this.languageModuleNids, other.languageModuleNids);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        private static int[] nids(Collection<ConceptSpecification> specifications) {
+            final int[] nids = new int[specifications.size()];
+            int i = 0;
+            for (ConceptSpecification specification : specifications) {
+                nids[i++] = specification.getNid();
+            }
+            return nids;
+        }
+
+        private static int[] copy(int[] nids) {
+            return nids == null ? null : nids.clone();
+        }
+    }
+
+    /**
+     * The texts for one coordinate, held in spines of references indexed
+     * directly by nid, so lookups do not box the nid.
+     */
+    class TextTable {
+
+        private final ConcurrentMap<Integer, AtomicReferenceArray<String>> spines = new ConcurrentHashMap<>();
+
+        /** Set when the table is dropped from the cache, after which it no longer receives invalidations. */
+        private volatile boolean retired = false;
+
+        /** The value of the access clock when the table was last requested, used to pick a table to drop. */
+        private volatile long lastRequest;
+
+        /**
+         * @return true if the table was dropped from the cache, and should be replaced by a call to {@link #getTable(CoordinateKey)}.
+         */
+        boolean isRetired() {
+            return this.retired;
+        }
+
+        /**
+         * @param conceptNid the nid of the concept
+         * @return the cached text, or null if not cached
+         */
+        String get(int conceptNid) {
+            int index = index(conceptNid);
+            AtomicReferenceArray<String> spine = this.spines.get(index / ELEMENTS_PER_SPINE);
+            String text = spine == null ? null : spine.get(index % ELEMENTS_PER_SPINE);
+            if (text == null) {
+                DescriptionTextCache.this.misses.increment();
+            } else {
+                DescriptionTextCache.this.hits.increment();
+            }
+            return text;
+        }
+
+        /**
+         * Cache a text, unless an invalidation happened since it was resolved.
+         *
+         * @param conceptNid the nid of the concept
+         * @param text the text
+         * @param readEpoch the epoch read before the text was resolved
+         */
+        void put(int conceptNid, String text, long readEpoch) {
+            if (DescriptionTextCache.this.epoch.get() != readEpoch) {
+                return;
+            }
+            int index = index(conceptNid);
+            AtomicReferenceArray<String> spine = this.spines.computeIfAbsent(index / ELEMENTS_PER_SPINE,
+                    (spineIndex) -> new AtomicReferenceArray<>(ELEMENTS_PER_SPINE));
+            spine.set(index % ELEMENTS_PER_SPINE, text);
+            if (DescriptionTextCache.this.epoch.get() != readEpoch) {
+                // an invalidation raced with this put, it may have been for this concept.
+                spine.compareAndSet(index % ELEMENTS_PER_SPINE, text, null);
+            }
+        }
+
+        void remove(int conceptNid) {
+            int index = index(conceptNid);
+            AtomicReferenceArray<String> spine = this.spines.get(index / ELEMENTS_PER_SPINE);
+            if (spine != null) {
+                spine.set(index % ELEMENTS_PER_SPINE, null);
+            }
+        }
+
+        private int index(int nid) {
+            return nid < 0 ? Integer.MAX_VALUE + nid : nid;
+        }
+    }
+}
@@ -52,6 +52,8 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
@@ -144,6 +146,18 @@ public class TaxonomyProvider
      */
     private final ConcurrentHashMap<SnapshotCacheKey, Task<Tree>> snapshotCache = new ConcurrentHashMap<>(5);
     private final ConcurrentHashMap<SnapshotCacheKey, TaxonomySnapshot> noTreeSnapshotCache = new ConcurrentHashMap<>(5);
+    /**
+     * Whether concepts are sufficiently defined, so summarizing children for
+     * display doesn't decode a logic graph per child. Entries for concepts
+     * whose logic graphs change are removed on commit. Flags are only kept
+     * for coordinates with a cached snapshot, and are evicted with it.
+     */
+    private final ConcurrentHashMap<SnapshotCacheKey, ConcurrentHashMap<Integer, Boolean>> sufficientlyDefinedCache = new ConcurrentHashMap<>(5);
+    /**
+     * Incremented before the flags of changed concepts are removed, so a flag
+     * computed from a logic graph read before the change is not kept.
+     */
+    private final AtomicLong sufficientlyDefinedGeneration = new AtomicLong();
     private final UUID listenerUUID = UUID.randomUUID();
 
     /**
@@ -191,11 +205,12 @@ public class TaxonomyProvider
 
     @Override
     public void handleCommit(CommitRecord commitRecord) {
-        // If a logic graph changed, clear our cache.
-        if (this.semanticNidsForUnhandledChanges.size() > 0) {
-            LOG.debug("Clearing snapshot cache due to commit");
-            this.snapshotCache.clear();
-            this.noTreeSnapshotCache.clear();
+        // The logic graphs in this commit are the only changes the update task applies to the taxonomy.
+        final NidSet logicGraphNidsInCommit = new NidSet();
+        for (int semanticNid : this.semanticNidsForUnhandledChanges) {
+            if (commitRecord.getSemanticNidsInCommit().contains(semanticNid)) {
+                logicGraphNidsInCommit.add(semanticNid);
+            }
         }
 
         this.updatePermits.acquireUninterruptibly();
@@ -208,6 +223,66 @@ public class TaxonomyProvider
             LOG.error("Unexpected error waiting for taxonomy update after commit", e);
             throw new RuntimeException(e);
         }
+
+        // If a logic graph changed, patch the cached trees.
+        if (!logicGraphNidsInCommit.isEmpty()) {
+            LOG.debug("Patching snapshot cache due to commit");
+            this.noTreeSnapshotCache.clear();
+
+            final NidSet conceptNids = new NidSet();
+
+            for (int logicGraphNid : logicGraphNidsInCommit.asArray()) {
+                conceptNids.add(Get.assemblageService()
+                        .getSemanticChronology(logicGraphNid)
+                        .getReferencedComponentNid());
+            }
+
+            this.sufficientlyDefinedGeneration.incrementAndGet();
+            this.sufficientlyDefinedCache.values().forEach((definedFlags) -> {
+                conceptNids.stream().forEach((conceptNid) -> definedFlags.remove(conceptNid));
+            });
+            patchSnapshotCache(conceptNids);
+            retainSufficientlyDefinedForCachedSnapshots();
+        }
+    }
+
+    /**
+     * Replace each cached tree with a patched copy, in which the parents of
+     * the concepts whose logic graphs changed are replaced, rather than
+     * discarding the trees and rebuilding them from the taxonomy records of
+     * every concept. Readers keep the tree they have until the copy is
+     * complete. Trees that are still being built, or that can't be patched,
+     * are evicted, and will be rebuilt on next request.
+     *
+     * @param conceptNids the nids of the concepts whose logic graphs changed
+     */
+    private void patchSnapshotCache(NidSet conceptNids) {
+        final int[] changedConceptNids = conceptNids.asArray();
+
+        this.snapshotCache.forEach((key, treeTask) -> {
+            if (treeTask instanceof TreeBuilderTask && !treeTask.isDone()) {
+                // may have read taxonomy records before the update.
+                LOG.debug("Evicting tree for {}, cache key {}", key.manifoldCoordinate, key.hashCode());
+                this.snapshotCache.remove(key, treeTask);
+                return;
+            }
+
+            final int assemblageNid = key.manifoldCoordinate.getLogicCoordinate().getConceptAssemblageNid();
+            final AtomicReference<TreePatchTask> patchTaskReference = new AtomicReference<>();
+            final TreePatchTask patchTask = new TreePatchTask(treeTask, changedConceptNids,
+                    (conceptNid) -> store.getTaxonomyData(assemblageNid, conceptNid), key.manifoldCoordinate,
+                    () -> {
+                        this.snapshotCache.remove(key, patchTaskReference.get());
+                        retainSufficientlyDefinedForCachedSnapshots();
+                    });
+
+            patchTaskReference.set(patchTask);
+            if (this.snapshotCache.replace(key, treeTask, patchTask)) {
+                Get.executor().execute(patchTask);
+            } else {
+                Get.activeTasks().remove(patchTask);
+            }
+        });
     }
 
     @Override
@@ -215,6 +290,7 @@ public class TaxonomyProvider
         LOG.debug("Clearing snapshot cache due notify request");
         snapshotCache.clear();
         this.noTreeSnapshotCache.clear();
+        this.sufficientlyDefinedCache.clear();
         Platform.runLater(
                 () -> {
                     for (WeakReference<RefreshListener> listenerReference : refreshListeners) {
@@ -280,6 +356,7 @@ public class TaxonomyProvider
             this.pendingUpdateTasks.clear();
             this.snapshotCache.clear();
             this.noTreeSnapshotCache.clear();
+            this.sufficientlyDefinedCache.clear();
             this.refreshListeners.clear();
         } catch (final Exception e) {
             LookupService.getService(SystemStatusService.class)
@@ -307,6 +384,7 @@ public class TaxonomyProvider
             this.pendingUpdateTasks.clear();
             this.snapshotCache.clear();
             this.noTreeSnapshotCache.clear();
+            this.sufficientlyDefinedCache.clear();
             this.refreshListeners.clear();
             this.identifierService = null;
             this.store = null;
@@ -408,6 +486,40 @@ public class TaxonomyProvider
         return noTreeSnapshotCache.computeIfAbsent(new SnapshotCacheKey(mc), (key) -> new TaxonomySnapshotNoTree(mc));
     }
 
+    private boolean isSufficientlyDefined(int conceptNid, ManifoldCoordinate manifoldCoordinate) {
+        final SnapshotCacheKey key = new SnapshotCacheKey(manifoldCoordinate);
+        final long generation = this.sufficientlyDefinedGeneration.get();
+
+        if (!this.snapshotCache.containsKey(key) && !this.noTreeSnapshotCache.containsKey(key)) {
+            return Get.concept(conceptNid).isSufficientlyDefined(manifoldCoordinate, manifoldCoordinate);
+        }
+        final ConcurrentHashMap<Integer, Boolean> definedFlags
+                = this.sufficientlyDefinedCache.computeIfAbsent(key, (cacheKey) -> new ConcurrentHashMap<>());
+        final Boolean cachedDefined = definedFlags.get(conceptNid);
+
+        if (cachedDefined != null) {
+            return cachedDefined;
+        }
+        final Boolean defined = Get.concept(conceptNid).isSufficientlyDefined(manifoldCoordinate, manifoldCoordinate);
+
+        definedFlags.put(conceptNid, defined);
+        // Checked after the put: a commit that has not yet removed the flags removes this one,
+        // and one that has already removed them is seen here.
+        if (this.sufficientlyDefinedGeneration.get() != generation) {
+            definedFlags.remove(conceptNid, defined);
+        }
+        return defined;
+    }
+
+    /**
+     * Drop the sufficiently defined flags of coordinates that no longer have a
+     * cached snapshot.
+     */
+    private void retainSufficientlyDefinedForCachedSnapshots() {
+        this.sufficientlyDefinedCache.keySet().removeIf((key) -> !this.snapshotCache.containsKey(key)
+                && !this.noTreeSnapshotCache.containsKey(key));
+    }
+
     private TaxonomyRecordPrimitive getTaxonomyRecord(int nid) {
         int conceptAssemblageNid = ModelGet.identifierService()
                 .getAssemblageNid(nid).getAsInt();
@@ -436,10 +548,13 @@ public class TaxonomyProvider
 
         PremiseType taxPremiseType;
         StampCoordinate stampCoordinate;
+        // Not part of the key, retained to patch the tree after a commit.
+        ManifoldCoordinate manifoldCoordinate;
 
         public SnapshotCacheKey(ManifoldCoordinate tc) {
             this.taxPremiseType = tc.getTaxonomyPremiseType();
             this.stampCoordinate = tc.getStampCoordinate();
+            this.manifoldCoordinate = tc;
         }
 
         @Override
@@ -709,6 +824,11 @@ public class TaxonomyProvider
             return this.manifoldCoordinate;
         }
 
+        @Override
+        public boolean isSufficientlyDefined(int conceptNid) {
+            return TaxonomyProvider.this.isSufficientlyDefined(conceptNid, this.manifoldCoordinate);
+        }
+
         /**
          * Gets the roots.
          *
@@ -872,6 +992,11 @@ public class TaxonomyProvider
             return this.tc;
         }
 
+        @Override
+        public boolean isSufficientlyDefined(int conceptNid) {
+            return TaxonomyProvider.this.isSufficientlyDefined(conceptNid, this.tc);
+        }
+
         @Override
         public int[] getRootNids() {
             return new int[] { TermAux.SOLOR_ROOT.getNid() };
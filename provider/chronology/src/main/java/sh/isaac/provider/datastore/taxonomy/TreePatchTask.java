@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.provider.datastore.taxonomy;
+
+import java.util.function.IntFunction;
+import javafx.concurrent.Task;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import sh.isaac.api.Get;
+import sh.isaac.api.bootstrap.TermAux;
+import sh.isaac.api.coordinate.ManifoldCoordinate;
+import sh.isaac.api.task.TimedTaskWithProgressTracker;
+import sh.isaac.api.tree.Tree;
+import sh.isaac.model.taxonomy.TaxonomyRecordPrimitive;
+import sh.isaac.model.tree.HashTreeWithIntArraySets;
+
+/**
+ * Derive a taxonomy tree from a prior tree, by replacing the parents of the
+ * concepts that changed in a commit. The prior tree is copied, so readers
+ * continue to use it unchanged until this task completes, and the copy's
+ * reachability index is built here, off the commit path.
+ *
+ * @author kec
+ */
+public class TreePatchTask
+        extends TimedTaskWithProgressTracker<Tree> {
+   private static final Logger LOG = LogManager.getLogger();
+
+   private final Task<Tree>         priorTreeTask;
+   private final int[]              conceptNids;
+   private final IntFunction<int[]> taxonomyDataProvider;
+   private final ManifoldCoordinate manifoldCoordinate;
+   private final Runnable           evict;
+
+   /**
+    * @param priorTreeTask the task of the tree to patch, which may still be patching a prior commit
+    * @param conceptNids the concepts whose parents may have changed
+    * @param taxonomyDataProvider the taxonomy data of a concept
+    * @param manifoldCoordinate the coordinate of the tree
+    * @param evict run if the patched tree should be rebuilt rather than kept
+    */
+   public TreePatchTask(Task<Tree> priorTreeTask,
+                        int[] conceptNids,
+                        IntFunction<int[]> taxonomyDataProvider,
+                        ManifoldCoordinate manifoldCoordinate,
+                        Runnable evict) {
+      this.priorTreeTask        = priorTreeTask;
+      this.conceptNids          = conceptNids;
+      this.taxonomyDataProvider = taxonomyDataProvider;
+      this.manifoldCoordinate   = manifoldCoordinate;
+      this.evict                = evict;
+      this.updateTitle("Updating " + manifoldCoordinate.getTaxonomyPremiseType() + " snapshot");
+      Get.activeTasks()
+         .add(this);
+   }
+
+   @Override
+   protected Tree call()
+            throws Exception {
+      try {
+         final HashTreeWithIntArraySets tree  = ((HashTreeWithIntArraySets) this.priorTreeTask.get()).copy();
+         final int                      isaNid = TermAux.IS_A.getNid();
+         boolean                        changed = false;
+
+         for (int conceptNid: this.conceptNids) {
+            final int[] taxonomyData = this.taxonomyDataProvider.apply(conceptNid);
+            final int[] parentNids   = (taxonomyData == null) ? new int[0]
+                  : new TaxonomyRecordPrimitive(taxonomyData).getTaxonomyRecordUnpacked()
+                        .getConceptNidsForType(isaNid, this.manifoldCoordinate);
+
+            changed |= tree.replaceParents(conceptNid, parentNids);
+         }
+
+         if (changed && !tree.buildReachabilityIndex()) {
+            // The change introduced a cycle, rebuild the tree so the cycle is reported.
+            this.evict.run();
+         }
+         return tree;
+      } catch (Exception e) {
+         LOG.warn("Unable to patch taxonomy tree for " + this.manifoldCoordinate.getTaxonomyPremiseType() + ", it will be rebuilt", e);
+         this.evict.run();
+         throw e;
+      } finally {
+         Get.activeTasks()
+            .remove(this);
+      }
+   }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.provider.datastore.chronology;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import sh.isaac.api.externalizable.IsaacObjectType;
+
+/**
+ * Tests of the {@link ChronologyCache}.
+ *
+ * @author kec
+ */
+public class ChronologyCacheTest {
+
+    @Test
+    public void testGetReturnsCachedData() {
+        ChronologyCache cache = new ChronologyCache(1024 * 1024);
+        byte[] data = new byte[]{1, 2, 3};
+        cache.put(-10, -2, IsaacObjectType.SEMANTIC, data, cache.getEpoch(-10));
+
+        Assert.assertSame(cache.get(-10, IsaacObjectType.SEMANTIC), data);
+        Assert.assertNull(cache.get(-10, IsaacObjectType.CONCEPT));
+        Assert.assertNull(cache.get(-11, IsaacObjectType.SEMANTIC));
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 2);
+    }
+
+    @Test
+    public void testReadOverlappingWriteIsNotCached() {
+        ChronologyCache cache = new ChronologyCache(1024 * 1024);
+        long epoch = cache.getEpoch(-10);
+        cache.invalidate(-10);
+        cache.put(-10, -2, IsaacObjectType.SEMANTIC, new byte[]{1}, epoch);
+
+        Assert.assertNull(cache.get(-10, IsaacObjectType.SEMANTIC));
+        cache.put(-10, -2, IsaacObjectType.SEMANTIC, new byte[]{1}, cache.getEpoch(-10));
+        cache.invalidate(-10);
+        Assert.assertNull(cache.get(-10, IsaacObjectType.SEMANTIC));
+        Assert.assertEquals(cache.getInvalidationCount(), 1);
+    }
+
+    @Test
+    public void testUncachedAssemblage() {
+        ChronologyCache cache = new ChronologyCache(1024 * 1024);
+        cache.put(-10, -2, IsaacObjectType.SEMANTIC, new byte[]{1}, cache.getEpoch(-10));
+        cache.put(-11, -3, IsaacObjectType.SEMANTIC, new byte[]{1}, cache.getEpoch(-11));
+
+        cache.setAssemblageCached(-2, false);
+        Assert.assertNull(cache.get(-10, IsaacObjectType.SEMANTIC));
+        Assert.assertNotNull(cache.get(-11, IsaacObjectType.SEMANTIC));
+        cache.put(-10, -2, IsaacObjectType.SEMANTIC, new byte[]{1}, cache.getEpoch(-10));
+        Assert.assertNull(cache.get(-10, IsaacObjectType.SEMANTIC));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        // 16 segments, each bounded by a sixteenth of the weight
+        ChronologyCache cache = new ChronologyCache(16 * 1000);
+        int[] nids = new int[64];
+        for (int i = 0; i < nids.length; i++) {
+            nids[i] = -1000 - i;
+            cache.put(nids[i], -2, IsaacObjectType.SEMANTIC, new byte[400], cache.getEpoch(nids[i]));
+        }
+        Assert.assertTrue(cache.getWeight() <= cache.getMaxWeight());
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+        Assert.assertEquals(cache.size() + cache.getEvictionCount(), nids.length);
+    }
+}
@@ -684,6 +684,8 @@ public class CommitProvider
                 listener.handleCommit(commitRecord);
             }
         });
+        // The listeners have applied their changes (such as taxonomy updates), make the commit durable.
+        Get.dataStore().flushCommittedWrites();
     }
 
     /**
@@ -26,6 +26,7 @@ import java.util.UUID;
 import java.util.concurrent.Future;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.IntStream;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -38,6 +39,7 @@ import sh.isaac.api.ConfigurationService;
 import sh.isaac.api.LookupService;
 import sh.isaac.api.chronicle.VersionType;
 import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.commit.Stamp;
 import sh.isaac.api.constants.DatabaseImplementation;
 import sh.isaac.api.datastore.ChronologySerializeable;
 import sh.isaac.api.datastore.DataStore;
@@ -174,6 +176,78 @@ public class DatastoreLocator implements DataStore, SequenceStore, ExtendedStore
 		return dataStore.sync();
 	}
 
+	/** 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void flushCommittedWrites()
+	{
+		dataStore.flushCommittedWrites();
+	}
+
+	/** 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public OptionalLong getAssemblageWriteSequence(int assemblageNid)
+	{
+		return dataStore.getAssemblageWriteSequence(assemblageNid);
+	}
+
+	/** 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void logNidAssignment(UUID uuid, int nid)
+	{
+		dataStore.logNidAssignment(uuid, nid);
+	}
+
+	/** 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void logStampAssignment(int stampSequence, Stamp stamp)
+	{
+		dataStore.logStampAssignment(stampSequence, stamp);
+	}
+
+	/** 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void replayNidAssignments(ObjIntConsumer<UUID> consumer)
+	{
+		dataStore.replayNidAssignments(consumer);
+	}
+
+	/** 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void replayStampAssignments(ObjIntConsumer<Stamp> consumer)
+	{
+		dataStore.replayStampAssignments(consumer);
+	}
+
+	/** 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long startAllocationCheckpoint()
+	{
+		return dataStore.startAllocationCheckpoint();
+	}
+
+	/** 
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void completeAllocationCheckpoint(LoggedAllocation allocation, long checkpoint)
+	{
+		dataStore.completeAllocationCheckpoint(allocation, checkpoint);
+	}
+
 	/** 
 	 * {@inheritDoc}
 	 */
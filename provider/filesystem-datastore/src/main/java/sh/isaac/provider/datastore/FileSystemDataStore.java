@@ -39,6 +39,7 @@ package sh.isaac.provider.datastore;
 //~--- JDK imports ------------------------------------------------------------
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -50,12 +51,15 @@ import java.io.IOException;
 import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -66,8 +70,11 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BinaryOperator;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.IntStream;
 import javax.inject.Singleton;
 import org.apache.logging.log4j.LogManager;
@@ -81,6 +88,7 @@ import sh.isaac.api.Get;
 import sh.isaac.api.LookupService;
 import sh.isaac.api.chronicle.VersionType;
 import sh.isaac.api.collections.NidSet;
+import sh.isaac.api.commit.Stamp;
 import sh.isaac.api.constants.DatabaseImplementation;
 import sh.isaac.api.datastore.ChronologySerializeable;
 import sh.isaac.api.datastore.SequenceStore;
@@ -115,6 +123,13 @@ public class FileSystemDataStore
         implements DataStoreSubService, SequenceStore  {
 
     private static final Logger LOG = LogManager.getLogger();
+
+    /** The size of the write ahead log beyond which a commit starts a background sync, to bound replay time. */
+    private static final long CHECKPOINT_THRESHOLD_BYTES = 64L * 1024 * 1024;
+    private static final int TAXONOMY_LOCK_STRIPES = 64;
+    /** The write ahead log checkpointer name of the data written by a {@link SyncTask}. */
+    private static final String DATASTORE_CHECKPOINTER = "datastore";
+
     private Optional<UUID> dataStoreId = Optional.empty();
 
     //~--- fields --------------------------------------------------------------
@@ -138,6 +153,8 @@ public class FileSystemDataStore
     private final Semaphore syncSemaphore = new Semaphore(1);
     private final Semaphore pendingSync = new Semaphore(1);
     private final SpinedNidIntMap nidToAssemblageNidMap = new SpinedNidIntMap();
+    /** The number of writes to each assemblage, see {@link #getAssemblageWriteSequence(int)}. */
+    private final ConcurrentHashMap<Integer, AtomicLong> assemblageWriteSequenceMap = new ConcurrentHashMap<>();
     private final SpinedNidIntMap nidToElementSequenceMap = new SpinedNidIntMap();
     private File isaacDbDirectory;
     private File componentToSemanticMapDirectory;
@@ -147,14 +164,36 @@ public class FileSystemDataStore
     private File assemblageToObjectTypeFile;
     private File assemblageToVersionTypeFile;
     private File sequenceGeneratorMapFile;
+    private File assemblageWriteSequenceMapFile;
     private File propertiesFile;
     private File nidToAssemblageNidMapDirectory;
     private File nidToElementSequenceMapDirectory;
+    private File writeAheadLogDirectory;
+
+    /** Null when in DB build mode, where the data is only made durable by a sync. */
+    private volatile WriteAheadLog writeAheadLog;
+    private final AtomicBoolean checkpointInProgress = new AtomicBoolean();
+
+    /**
+     * Nid and stamp assignments read from the write ahead log on startup, held until the identifier and stamp 
+     * services start and apply them.
+     */
+    private List<Map.Entry<UUID, Integer>> replayedNidAssignments = new ArrayList<>();
+    private List<Map.Entry<Stamp, Integer>> replayedStampAssignments = new ArrayList<>();
+
+    /**
+     * Held while updating and logging taxonomy data, so that the log records for a concept are in the
+     * same order as the updates they record.
+     */
+    private final Object[] taxonomyLocks = new Object[TAXONOMY_LOCK_STRIPES];
     
     private final ArrayList<DataWriteListener> writeListeners = new ArrayList<>();
 
     private FileSystemDataStore() {
         //Private for HK2 construction only
+        for (int i = 0; i < taxonomyLocks.length; i++) {
+            taxonomyLocks[i] = new Object();
+        }
     }
 
     //~--- methods -------------------------------------------------------------
@@ -165,10 +204,11 @@ public class FileSystemDataStore
     public void putChronologyData(ChronologySerializeable chronology) {
         try {
             int assemblageNid = chronology.getAssemblageNid();
+            int referencedComponentNid = Integer.MAX_VALUE;
  
             if (chronology instanceof SemanticChronologyImpl) {
                 SemanticChronologyImpl semanticChronology = (SemanticChronologyImpl) chronology;
-                int referencedComponentNid = semanticChronology.getReferencedComponentNid();
+                referencedComponentNid = semanticChronology.getReferencedComponentNid();
 
                 //We could optionally check and see if this chronology is already listed for this nid, but its likely cheaper to just let it merge internally
                 componentToSemanticNidsMap.add(referencedComponentNid, semanticChronology.getNid());
@@ -177,7 +217,17 @@ public class FileSystemDataStore
             SpinedByteArrayArrayMap spinedByteArrayArrayMap = getChronologySpinedMap(assemblageNid);
             int elementSequence = getElementSequenceForNid(chronology.getNid(), assemblageNid);
 
-            spinedByteArrayArrayMap.put(elementSequence, getDataList(chronology));
+            List<byte[]> dataList = getDataList(chronology);
+
+            spinedByteArrayArrayMap.put(elementSequence, dataList);
+            // Counted before the write is logged, so a sync that rotates the log after the write was logged counts it,
+            // and before the listeners, so no listener sees a write that is not yet counted.
+            incrementAssemblageWriteSequence(assemblageNid);
+
+            WriteAheadLog log = this.writeAheadLog;
+            if (log != null) {
+                log.logPutChronology(assemblageNid, chronology.getNid(), elementSequence, referencedComponentNid, dataList);
+            }
             
             for (DataWriteListener dwl : writeListeners) {
                dwl.writeData(chronology);
@@ -259,6 +309,172 @@ public class FileSystemDataStore
         return lastSyncFuture;
     }
 
+    /**
+     * Force the write ahead log, and start a background sync if the log has
+     * grown past {@link #CHECKPOINT_THRESHOLD_BYTES} since the last sync. The
+     * stamp and identifier services are synced as well, since the log is only
+     * truncated once they have written the assignments it holds.
+     */
+    @Override
+    public void flushCommittedWrites() {
+        WriteAheadLog log = this.writeAheadLog;
+        if (log != null) {
+            log.flush();
+            if (log.getBytesSinceCheckpoint() > CHECKPOINT_THRESHOLD_BYTES
+                    && checkpointInProgress.compareAndSet(false, true)) {
+                LOG.info("Write ahead log exceeds checkpoint threshold, starting sync.");
+                Get.executor().submit(() -> {
+                    try {
+                        Get.stampService().sync().get();
+                        // also syncs this store
+                        Get.identifierService().sync().get();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        LOG.error("Error during write ahead log checkpoint", ex);
+                    } finally {
+                        checkpointInProgress.set(false);
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    public void logNidAssignment(UUID uuid, int nid) {
+        WriteAheadLog log = this.writeAheadLog;
+        if (log != null) {
+            log.logAssignNid(uuid, nid);
+        }
+    }
+
+    @Override
+    public void logStampAssignment(int stampSequence, Stamp stamp) {
+        WriteAheadLog log = this.writeAheadLog;
+        if (log != null) {
+            log.logAssignStamp(stampSequence, stamp);
+        }
+    }
+
+    @Override
+    public void replayNidAssignments(ObjIntConsumer<UUID> consumer) {
+        WriteAheadLog log = this.writeAheadLog;
+        if (log != null) {
+            log.addCheckpointer(LoggedAllocation.NIDS.name());
+        }
+        List<Map.Entry<UUID, Integer>> assignments = this.replayedNidAssignments;
+        this.replayedNidAssignments = new ArrayList<>();
+        assignments.forEach((assignment) -> consumer.accept(assignment.getKey(), assignment.getValue()));
+    }
+
+    @Override
+    public void replayStampAssignments(ObjIntConsumer<Stamp> consumer) {
+        WriteAheadLog log = this.writeAheadLog;
+        if (log != null) {
+            log.addCheckpointer(LoggedAllocation.STAMPS.name());
+        }
+        List<Map.Entry<Stamp, Integer>> assignments = this.replayedStampAssignments;
+        this.replayedStampAssignments = new ArrayList<>();
+        assignments.forEach((assignment) -> consumer.accept(assignment.getKey(), assignment.getValue()));
+    }
+
+    @Override
+    public long startAllocationCheckpoint() {
+        WriteAheadLog log = this.writeAheadLog;
+        if (log == null) {
+            return -1;
+        }
+        try {
+            return log.rotate();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public void completeAllocationCheckpoint(LoggedAllocation allocation, long checkpoint) {
+        WriteAheadLog log = this.writeAheadLog;
+        if (log != null && checkpoint >= 0) {
+            log.completeCheckpoint(allocation.name(), checkpoint);
+        }
+    }
+
+    /**
+     * Apply a write ahead log record to the in memory maps. Applying a record
+     * more than once, or applying a record already captured by a sync, leaves
+     * the maps unchanged.
+     */
+    private void replayLogRecord(byte recordType, DataInput payload)
+            throws IOException {
+        switch (recordType) {
+            case WriteAheadLog.PUT_CHRONOLOGY: {
+                int assemblageNid = payload.readInt();
+                int nid = payload.readInt();
+                int elementSequence = payload.readInt();
+                int referencedComponentNid = payload.readInt();
+                int partCount = payload.readInt();
+                List<byte[]> dataList = new ArrayList<>(partCount);
+
+                for (int i = 0; i < partCount; i++) {
+                    byte[] data = new byte[payload.readInt()];
+                    payload.readFully(data);
+                    dataList.add(data);
+                }
+
+                nidToAssemblageNidMap.put(nid, assemblageNid);
+                nidToElementSequenceMap.put(nid, elementSequence);
+                getAssemblageNid_ElementSequenceToNid_Map(assemblageNid).put(elementSequence, nid);
+                getSequenceGeneratorMap().computeIfAbsent(assemblageNid, (key) -> new AtomicInteger(1))
+                        .accumulateAndGet(elementSequence + 1, Math::max);
+
+                if (referencedComponentNid != Integer.MAX_VALUE) {
+                    componentToSemanticNidsMap.add(referencedComponentNid, nid);
+                }
+
+                getChronologySpinedMap(assemblageNid).put(elementSequence, dataList);
+                incrementAssemblageWriteSequence(assemblageNid);
+                break;
+            }
+            case WriteAheadLog.PUT_TAXONOMY: {
+                int assemblageNid = payload.readInt();
+                int conceptNid = payload.readInt();
+                int[] taxonomyData = new int[payload.readInt()];
+
+                for (int i = 0; i < taxonomyData.length; i++) {
+                    taxonomyData[i] = payload.readInt();
+                }
+
+                getTaxonomyMap(assemblageNid).put(conceptNid, taxonomyData);
+                break;
+            }
+            case WriteAheadLog.SET_ASSEMBLAGE_FOR_NID: {
+                int nid = payload.readInt();
+                nidToAssemblageNidMap.put(nid, payload.readInt());
+                break;
+            }
+            case WriteAheadLog.PUT_ASSEMBLAGE_OBJECT_TYPE: {
+                int assemblageNid = payload.readInt();
+                assemblageToObjectType_Map.put(assemblageNid, IsaacObjectType.fromToken(payload.readByte()));
+                break;
+            }
+            case WriteAheadLog.PUT_ASSEMBLAGE_VERSION_TYPE: {
+                int assemblageNid = payload.readInt();
+                assemblageToVersionType_Map.put(assemblageNid, VersionType.getFromToken(payload.readByte()));
+                break;
+            }
+            case WriteAheadLog.ASSIGN_NID: {
+                UUID uuid = new UUID(payload.readLong(), payload.readLong());
+                replayedNidAssignments.add(new SimpleImmutableEntry<>(uuid, payload.readInt()));
+                break;
+            }
+            case WriteAheadLog.ASSIGN_STAMP: {
+                int stampSequence = payload.readInt();
+                replayedStampAssignments.add(new SimpleImmutableEntry<>(new Stamp(payload), stampSequence));
+                break;
+            }
+            default:
+                throw new IOException("Unknown write ahead log record type: " + recordType);
+        }
+    }
+
     private void readAssemblageToObjectTypeFile()
             throws IOException {
         if (assemblageToObjectTypeFile.exists()) {
@@ -287,6 +503,20 @@ public class FileSystemDataStore
         }
     }
 
+    private void readAssemblageWriteSequenceMapFile()
+            throws IOException {
+        if (assemblageWriteSequenceMapFile.exists()) {
+            try (DataInputStream dis = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(assemblageWriteSequenceMapFile)))) {
+                int mapSize = dis.readInt();
+
+                for (int i = 0; i < mapSize; i++) {
+                    assemblageWriteSequenceMap.put(dis.readInt(), new AtomicLong(dis.readLong()));
+                }
+            }
+        }
+    }
+
     private void readSequenceGeneratorMapFile()
             throws IOException {
         if (sequenceGeneratorMapFile.exists()) {
@@ -313,6 +543,7 @@ public class FileSystemDataStore
             Path folderPath = configurationService.getDataStoreFolderPath();
 
             this.assemblageNid_SequenceGenerator_Map.clear();
+            this.assemblageWriteSequenceMap.clear();
             this.properties.clear();
             this.assemblage_ElementToNid_Map.clear();
             this.spinedChronologyMapMap.clear();
@@ -331,7 +562,9 @@ public class FileSystemDataStore
             this.assemblageToVersionTypeFile = new File(isaacDbDirectory, "assemblageToVersionTypeMap");
             this.nidToAssemblageNidMapDirectory = new File(isaacDbDirectory, "componentToAssemblageMap");
             this.sequenceGeneratorMapFile = new File(isaacDbDirectory, "sequenceGeneratorMap");
+            this.assemblageWriteSequenceMapFile = new File(isaacDbDirectory, "assemblageWriteSequenceMap");
             this.nidToElementSequenceMapDirectory = new File(isaacDbDirectory, "componentToAssemblageElementMap");
+            this.writeAheadLogDirectory = new File(isaacDbDirectory, "writeAheadLog");
 
             if (isaacDbDirectory.exists() && this.propertiesFile.isFile()) {
                 try (Reader reader = new FileReader(propertiesFile)) {
@@ -361,6 +594,7 @@ public class FileSystemDataStore
             readAssemblageToObjectTypeFile();
             readAssemblageToVersionTypeFile();
             readSequenceGeneratorMapFile();
+            readAssemblageWriteSequenceMapFile();
             componentToSemanticNidsMap.read(this.componentToSemanticMapDirectory);
 
             // spinedChronologyMapMap is lazily loaded
@@ -374,6 +608,27 @@ public class FileSystemDataStore
             }
 
             // assemblage_ElementToNid_Map is lazily loaded
+
+            // Changes logged since the last sync are applied over the maps read above.
+            if (!configurationService.isInDBBuildMode()) {
+                WriteAheadLog log = new WriteAheadLog(writeAheadLogDirectory);
+                this.replayedNidAssignments = new ArrayList<>();
+                this.replayedStampAssignments = new ArrayList<>();
+                int recordsReplayed = log.replay(this::replayLogRecord);
+                if (recordsReplayed > 0) {
+                    LOG.info("Replayed " + recordsReplayed + " write ahead log records");
+                }
+                log.open();
+                log.addCheckpointer(DATASTORE_CHECKPOINTER);
+                // Keep the replayed assignments logged until their services start, and write them.
+                if (!replayedNidAssignments.isEmpty()) {
+                    log.addCheckpointer(LoggedAllocation.NIDS.name());
+                }
+                if (!replayedStampAssignments.isEmpty()) {
+                    log.addCheckpointer(LoggedAllocation.STAMPS.name());
+                }
+                this.writeAheadLog = log;
+            }
         } catch (IOException ex) {
             LOG.error("Error starting FileSystemDataStore", ex);
             throw new RuntimeException(ex);
@@ -405,8 +660,13 @@ public class FileSystemDataStore
             pendingSync.acquire();
             executor.submit(syncTask)
                     .get();
+            if (this.writeAheadLog != null) {
+                this.writeAheadLog.close();
+                this.writeAheadLog = null;
+            }
             this.datastoreStartState = DataStoreStartState.NOT_YET_CHECKED;
             this.assemblageNid_SequenceGenerator_Map.clear();
+            this.assemblageWriteSequenceMap.clear();
             this.properties.clear();
             this.assemblage_ElementToNid_Map.clear();
             this.spinedChronologyMapMap.clear();
@@ -419,7 +679,7 @@ public class FileSystemDataStore
             this.lastSyncTask = null;
             this.lastSyncFuture = null;
             this.writeListeners.clear();
-        } catch (InterruptedException | ExecutionException ex) {
+        } catch (InterruptedException | ExecutionException | IOException ex) {
             LOG.error("Unexpected error in FileSystemDataStore shutdown", ex);
             throw new RuntimeException(ex);
         }
@@ -452,6 +712,22 @@ public class FileSystemDataStore
         }
     }
 
+    private void writeAssemblageWriteSequenceMapFile()
+            throws IOException {
+        try (DataOutputStream dos = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(assemblageWriteSequenceMapFile)))) {
+            // copied first, as the map may grow while it is written
+            Map<Integer, Long> writeSequences = new HashMap<>();
+            assemblageWriteSequenceMap.forEach((assemblageNid, writeSequence) -> writeSequences.put(assemblageNid, writeSequence.get()));
+            dos.writeInt(writeSequences.size());
+
+            for (Map.Entry<Integer, Long> entry : writeSequences.entrySet()) {
+                dos.writeInt(entry.getKey());
+                dos.writeLong(entry.getValue());
+            }
+        }
+    }
+
     private void writeSequenceGeneratorMapFile()
             throws IOException {
         try (DataOutputStream dos = new DataOutputStream(
@@ -528,8 +804,13 @@ public class FileSystemDataStore
    @Override
    public void putAssemblageIsaacObjectType(int assemblageNid, IsaacObjectType type) throws IllegalStateException
    {
-      IsaacObjectType oldValue = assemblageToObjectType_Map.computeIfAbsent(assemblageNid, (i -> type));
-      if (oldValue != type) {
+      IsaacObjectType oldValue = assemblageToObjectType_Map.putIfAbsent(assemblageNid, type);
+      if (oldValue == null) {
+         WriteAheadLog log = this.writeAheadLog;
+         if (log != null) {
+            log.logAssemblageType(WriteAheadLog.PUT_ASSEMBLAGE_OBJECT_TYPE, assemblageNid, type.getToken());
+         }
+      } else if (oldValue != type) {
          throw new IllegalStateException("Tried to change the isaac object type of " + assemblageNid + " from " + oldValue + " to " + type);
       }
    }
@@ -547,8 +828,13 @@ public class FileSystemDataStore
    @Override
    public void putAssemblageVersionType(int assemblageNid, VersionType type) throws IllegalStateException
    {
-      VersionType oldValue = assemblageToVersionType_Map.computeIfAbsent(assemblageNid, (i -> type));
-      if (oldValue != type) {
+      VersionType oldValue = assemblageToVersionType_Map.putIfAbsent(assemblageNid, type);
+      if (oldValue == null) {
+         WriteAheadLog log = this.writeAheadLog;
+         if (log != null) {
+            log.logAssemblageType(WriteAheadLog.PUT_ASSEMBLAGE_VERSION_TYPE, assemblageNid, type.getVersionTypeToken());
+         }
+      } else if (oldValue != type) {
          throw new IllegalStateException("Tried to change the version type of " + assemblageNid + " from " + oldValue + " to " + type);
       }
    }
@@ -562,42 +848,7 @@ public class FileSystemDataStore
 
         int elementSequence = getElementSequenceForNid(nid, assemblageNidOptional.getAsInt());
         SpinedByteArrayArrayMap spinedByteArrayArrayMap = getChronologySpinedMap(assemblageNidOptional.getAsInt());
-        byte[][] data = spinedByteArrayArrayMap.get(elementSequence);
-
-        if (data == null) {
-            return Optional.empty();
-        }
-
-        int size = 0;
-
-        for (byte[] dataEntry : data) {
-            size = size + dataEntry.length;
-        }
-
-        ByteArrayDataBuffer byteBuffer = new ByteArrayDataBuffer(
-                size + 4);  // room for 0 int value at end to indicate last version
-
-        for (int i = 0; i < data.length; i++) {
-            if (i == 0) {
-                // discard the 0 integer at the beginning of the record. 
-                // 0 put in to enable the chronicle to sort before the versions. 
-                if (data[0][0] != 0 && data[0][1] != 0 && data[0][2] != 0 && data[0][3] != 0) {
-                    throw new IllegalStateException("Record does not start with zero...");
-                }
-                byteBuffer.put(data[0], 4, data[0].length - 4);
-            } else {
-                byteBuffer.put(data[i]);
-            }
-
-        }
-
-        byteBuffer.putInt(0);
-        byteBuffer.rewind();
-
-        if (byteBuffer.getUsed() != size) {
-            throw new IllegalStateException("Size = " + size + " used = " + byteBuffer.getUsed());
-        }
-        return Optional.of(byteBuffer);
+        return spinedByteArrayArrayMap.getChronologyData(elementSequence);
     }
 
     @Override
@@ -656,6 +907,19 @@ public class FileSystemDataStore
         return nidToAssemblageNidMap;
     }
 
+    private void incrementAssemblageWriteSequence(int assemblageNid) {
+        assemblageWriteSequenceMap.computeIfAbsent(assemblageNid, (key) -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OptionalLong getAssemblageWriteSequence(int assemblageNid) {
+        AtomicLong writeSequence = assemblageWriteSequenceMap.get(assemblageNid);
+        return OptionalLong.of(writeSequence == null ? 0 : writeSequence.get());
+    }
+
     private ConcurrentMap<Integer, AtomicInteger> getSequenceGeneratorMap() {
         return assemblageNid_SequenceGenerator_Map;
     }
@@ -698,7 +962,16 @@ public class FileSystemDataStore
    @Override
    public int[] accumulateAndGetTaxonomyData(int assemblageId, int conceptNid, int[] newData, BinaryOperator<int[]> accumulatorFunction)
    {
-      return getTaxonomyMap(assemblageId).accumulateAndGet(conceptNid, newData, accumulatorFunction);
+      SpinedIntIntArrayMap taxonomyMap = getTaxonomyMap(assemblageId);
+      WriteAheadLog log = this.writeAheadLog;
+      if (log == null) {
+         return taxonomyMap.accumulateAndGet(conceptNid, newData, accumulatorFunction);
+      }
+      synchronized (taxonomyLocks[Math.floorMod(conceptNid, TAXONOMY_LOCK_STRIPES)]) {
+         int[] result = taxonomyMap.accumulateAndGet(conceptNid, newData, accumulatorFunction);
+         log.logPutTaxonomy(assemblageId, conceptNid, result);
+         return result;
+      }
    }
 
    /**
@@ -713,9 +986,8 @@ public class FileSystemDataStore
             }
             int elementSequence = getElementSequenceForNid(nid, assemblageNid.getAsInt());
             SpinedByteArrayArrayMap spinedByteArrayArrayMap = getChronologySpinedMap(assemblageNid.getAsInt());
-            byte[][] data = spinedByteArrayArrayMap.get(elementSequence);
 
-            return data != null;
+            return spinedByteArrayArrayMap.containsKey(elementSequence);
         } else {
             return false;
         }
@@ -746,9 +1018,14 @@ public class FileSystemDataStore
                     completedUnitOfWork();
                     FileSystemDataStore.LOG.info("Skipping write secondary to BuildMode.IBDF");
                 } else {
+                    // Changes logged before the rotation are applied in memory, so are captured by the writes below.
+                    WriteAheadLog log = writeAheadLog;
+                    long checkpointSegment = (log == null) ? -1 : log.rotate();
+
                     addToTotalWork(9);
                     updateMessage("Writing sequence generator map...");
                     writeSequenceGeneratorMapFile();
+                    writeAssemblageWriteSequenceMapFile();
 
                     completedUnitOfWork();  // 1
                     updateMessage("Writing assemblage nids...");
@@ -817,6 +1094,10 @@ public class FileSystemDataStore
                     completedUnitOfWork();  // 9
                     
                     writeListeners.forEach(listener -> listener.sync());
+
+                    if (log != null) {
+                        log.completeCheckpoint(DATASTORE_CHECKPOINTER, checkpointSegment);
+                    }
                 }
                 updateMessage("Write complete");
                 FileSystemDataStore.LOG.info("FileSystemDataStore sync complete.");
@@ -977,6 +1258,10 @@ public class FileSystemDataStore
       }
       else {
          nidToAssemblageNidMap.put(nid,  assemblage);
+         WriteAheadLog log = this.writeAheadLog;
+         if (log != null) {
+            log.logSetAssemblageForNid(nid, assemblage);
+         }
       }
    }
    
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.provider.datastore;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import sh.isaac.api.commit.Stamp;
+
+/**
+ * An append only log of the mutations made to a {@link FileSystemDataStore}
+ * since its spines were last written. Mutations are buffered in memory as
+ * they are made, and a call to {@link #flush()} writes and forces all
+ * buffered records with a single fsync. Concurrent callers of flush wait for
+ * the flush in progress, and are then usually covered by the next one, so
+ * commits that arrive together share an fsync (group commit).
+ *
+ * <p>The log is kept as numbered segment files. A checkpoint {@link #rotate()}s
+ * to a new segment before its data is written, and reports the new segment to
+ * {@link #completeCheckpoint(String, long)} once the write succeeds. Each
+ * record is applied in memory before it is logged, so every record in a
+ * segment older than the checkpoint is captured by the data written after the
+ * rotation.</p>
+ *
+ * <p>The nid and stamp assignments of the identifier and stamp services are
+ * logged here too, so that a replayed record never refers to a nid or stamp
+ * that was lost, but those services write their own data. Each writer of data
+ * the log covers is a checkpointer, and a segment is only deleted once every
+ * checkpointer has completed a checkpoint past it.</p>
+ *
+ * <p>Record layout:</p>
+ * <pre>
+ * int    payload length (n)
+ * byte   record type
+ * byte[n] payload
+ * int    CRC32 of the type and payload
+ * </pre>
+ *
+ * <p>A torn or corrupt record ends the replay of its segment. Since the log
+ * always opens a new segment for appends, such a record can only be at the
+ * end of a segment.</p>
+ *
+ * @author kec
+ */
+class WriteAheadLog {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    static final byte PUT_CHRONOLOGY = 1;
+    static final byte PUT_TAXONOMY = 2;
+    static final byte SET_ASSEMBLAGE_FOR_NID = 3;
+    static final byte PUT_ASSEMBLAGE_OBJECT_TYPE = 4;
+    static final byte PUT_ASSEMBLAGE_VERSION_TYPE = 5;
+    static final byte ASSIGN_NID = 6;
+    static final byte ASSIGN_STAMP = 7;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final int RECORD_OVERHEAD = 9;
+
+    /** Buffered records beyond this size are written and forced without waiting for a commit. */
+    private static final int MAX_PENDING_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Handler for records read during replay.
+     */
+    interface RecordHandler {
+
+        /**
+         * @param recordType the record type
+         * @param payload the record payload
+         * @throws IOException
+         */
+        void replay(byte recordType, DataInput payload) throws IOException;
+    }
+
+    private final File directory;
+
+    /** Guards pending and appendedBytes. */
+    private final Object appendLock = new Object();
+
+    /** Guards the channel, and serializes flushes. */
+    private final Object flushLock = new Object();
+
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOutput = new DataOutputStream(pending);
+    private long appendedBytes = 0;
+    private volatile long durableBytes = 0;
+
+    private FileChannel channel;
+    private long segmentNumber = -1;
+    private volatile long bytesSinceCheckpoint = 0;
+
+    /** The segment of the last checkpoint each checkpointer completed, or -1 before its first. Guards deletes. */
+    private final Map<String, Long> completedCheckpoints = new HashMap<>();
+
+    WriteAheadLog(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Replay the records of all segments, oldest first. Must be called before
+     * {@link #open()}.
+     *
+     * @param handler the handler to apply each record
+     * @return the number of records replayed
+     * @throws IOException
+     */
+    int replay(RecordHandler handler) throws IOException {
+        int recordsReplayed = 0;
+        for (long segment : listSegments()) {
+            File segmentFile = segmentFile(segment);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile)))) {
+                while (true) {
+                    int payloadLength;
+                    try {
+                        payloadLength = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    try {
+                        if (payloadLength < 0) {
+                            throw new IOException("Negative record length: " + payloadLength);
+                        }
+                        byte recordType = in.readByte();
+                        byte[] payload = new byte[payloadLength];
+                        in.readFully(payload);
+                        int checksum = in.readInt();
+                        if (checksum != checksum(recordType, payload)) {
+                            throw new IOException("Checksum mismatch");
+                        }
+                        handler.replay(recordType, new DataInputStream(new ByteArrayInputStream(payload)));
+                        recordsReplayed++;
+                    } catch (EOFException e) {
+                        LOG.warn("Ignoring torn record at end of write ahead log segment: " + segmentFile.getName());
+                        break;
+                    } catch (IOException e) {
+                        LOG.warn("Ignoring corrupt record at end of write ahead log segment: " + segmentFile.getName(), e);
+                        break;
+                    }
+                }
+            }
+        }
+        return recordsReplayed;
+    }
+
+    /**
+     * Open a new segment for appends.
+     *
+     * @throws IOException
+     */
+    void open() throws IOException {
+        synchronized (flushLock) {
+            directory.mkdirs();
+            long[] segments = listSegments();
+            openSegment(segments.length == 0 ? 0 : segments[segments.length - 1] + 1);
+            for (long segment : segments) {
+                bytesSinceCheckpoint += segmentFile(segment).length();
+            }
+        }
+    }
+
+    /**
+     * Write and force all buffered records, then close the log. The current
+     * segment is deleted if it is empty.
+     *
+     * @throws IOException
+     */
+    void close() throws IOException {
+        synchronized (flushLock) {
+            flush();
+            if (channel != null) {
+                long size = channel.size();
+                channel.close();
+                channel = null;
+                if (size == 0) {
+                    segmentFile(segmentNumber).delete();
+                }
+            }
+        }
+    }
+
+    void logPutChronology(int assemblageNid, int nid, int elementSequence, int referencedComponentNid, List<byte[]> dataList) {
+        int payloadLength = 20;
+        for (byte[] data : dataList) {
+            payloadLength += 4 + data.length;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        payload.putInt(assemblageNid);
+        payload.putInt(nid);
+        payload.putInt(elementSequence);
+        payload.putInt(referencedComponentNid);
+        payload.putInt(dataList.size());
+        for (byte[] data : dataList) {
+            payload.putInt(data.length);
+            payload.put(data);
+        }
+        append(PUT_CHRONOLOGY, payload.array());
+    }
+
+    void logPutTaxonomy(int assemblageNid, int conceptNid, int[] taxonomyData) {
+        ByteBuffer payload = ByteBuffer.allocate(12 + (4 * taxonomyData.length));
+        payload.putInt(assemblageNid);
+        payload.putInt(conceptNid);
+        payload.putInt(taxonomyData.length);
+        payload.asIntBuffer().put(taxonomyData);
+        append(PUT_TAXONOMY, payload.array());
+    }
+
+    void logSetAssemblageForNid(int nid, int assemblageNid) {
+        ByteBuffer payload = ByteBuffer.allocate(8);
+        payload.putInt(nid);
+        payload.putInt(assemblageNid);
+        append(SET_ASSEMBLAGE_FOR_NID, payload.array());
+    }
+
+    void logAssemblageType(byte recordType, int assemblageNid, byte typeToken) {
+        ByteBuffer payload = ByteBuffer.allocate(5);
+        payload.putInt(assemblageNid);
+        payload.put(typeToken);
+        append(recordType, payload.array());
+    }
+
+    void logAssignNid(UUID uuid, int nid) {
+        ByteBuffer payload = ByteBuffer.allocate(20);
+        payload.putLong(uuid.getMostSignificantBits());
+        payload.putLong(uuid.getLeastSignificantBits());
+        payload.putInt(nid);
+        append(ASSIGN_NID, payload.array());
+    }
+
+    void logAssignStamp(int stampSequence, Stamp stamp) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(40);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeInt(stampSequence);
+            stamp.write(out);
+        } catch (IOException ex) {
+            // not thrown by a ByteArrayOutputStream
+            throw new RuntimeException(ex);
+        }
+        append(ASSIGN_STAMP, payload.toByteArray());
+    }
+
+    private void append(byte recordType, byte[] payload) {
+        int checksum = checksum(recordType, payload);
+        boolean flushNow;
+        synchronized (appendLock) {
+            try {
+                pendingOutput.writeInt(payload.length);
+                pendingOutput.writeByte(recordType);
+                pendingOutput.write(payload);
+                pendingOutput.writeInt(checksum);
+            } catch (IOException ex) {
+                // not thrown by a ByteArrayOutputStream
+                throw new RuntimeException(ex);
+            }
+            appendedBytes += RECORD_OVERHEAD + payload.length;
+            flushNow = pending.size() > MAX_PENDING_BYTES;
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Make all records appended before this call durable. Callers that arrive
+     * while a flush is in progress are covered by the next flush, which writes
+     * all the records buffered by then with one fsync.
+     */
+    void flush() {
+        long target;
+        synchronized (appendLock) {
+            target = appendedBytes;
+        }
+        if (durableBytes >= target) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (durableBytes >= target) {
+                return;
+            }
+            byte[] batch;
+            long batchEnd;
+            synchronized (appendLock) {
+                batch = pending.toByteArray();
+                pending.reset();
+                batchEnd = appendedBytes;
+            }
+            if (channel == null) {
+                throw new IllegalStateException("Write ahead log is not open: " + directory.getAbsolutePath());
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException ex) {
+                LOG.error("Unable to write the write ahead log", ex);
+                throw new RuntimeException(ex);
+            }
+            bytesSinceCheckpoint += batch.length;
+            durableBytes = batchEnd;
+        }
+    }
+
+    /**
+     * Flush, and start a new segment. All records in prior segments were
+     * applied in memory before the rotation.
+     *
+     * @return the number of the new segment
+     * @throws IOException
+     */
+    long rotate() throws IOException {
+        synchronized (flushLock) {
+            flush();
+            channel.close();
+            openSegment(segmentNumber + 1);
+            return segmentNumber;
+        }
+    }
+
+    /**
+     * Add a writer of data covered by the log. Segments are kept until it
+     * completes its first checkpoint. Adding a checkpointer again has no
+     * effect.
+     *
+     * @param checkpointer the name of the writer
+     */
+    void addCheckpointer(String checkpointer) {
+        synchronized (completedCheckpoints) {
+            completedCheckpoints.putIfAbsent(checkpointer, -1L);
+        }
+    }
+
+    /**
+     * Record a completed checkpoint, and delete the segments that every
+     * checkpointer has written past.
+     *
+     * @param checkpointer the name of the writer, added if not yet known
+     * @param checkpointSegment the segment returned by the {@link #rotate()} that started the checkpoint
+     */
+    void completeCheckpoint(String checkpointer, long checkpointSegment) {
+        synchronized (completedCheckpoints) {
+            completedCheckpoints.merge(checkpointer, checkpointSegment, Math::max);
+            deleteSegmentsBefore(Collections.min(completedCheckpoints.values()));
+        }
+    }
+
+    private void deleteSegmentsBefore(long checkpointSegment) {
+        long bytesDeleted = 0;
+        for (long segment : listSegments()) {
+            if (segment < checkpointSegment) {
+                File segmentFile = segmentFile(segment);
+                long length = segmentFile.length();
+                if (segmentFile.delete()) {
+                    bytesDeleted += length;
+                } else {
+                    LOG.warn("Unable to delete write ahead log segment: " + segmentFile.getAbsolutePath());
+                }
+            }
+        }
+        bytesSinceCheckpoint = Math.max(0, bytesSinceCheckpoint - bytesDeleted);
+    }
+
+    /**
+     * @return the number of log bytes that a crash would replay.
+     */
+    long getBytesSinceCheckpoint() {
+        return bytesSinceCheckpoint;
+    }
+
+    private void openSegment(long segment) throws IOException {
+        this.segmentNumber = segment;
+        this.channel = FileChannel.open(segmentFile(segment).toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private File segmentFile(long segment) {
+        return new File(directory, SEGMENT_PREFIX + segment);
+    }
+
+    private long[] listSegments() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX));
+        if (files == null) {
+            return new long[0];
+        }
+        long[] segments = new long[files.length];
+        int count = 0;
+        for (File file : files) {
+            try {
+                segments[count] = Long.parseLong(file.getName().substring(SEGMENT_PREFIX.length()));
+                count++;
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring unexpected file in write ahead log directory: " + file.getName());
+            }
+        }
+        segments = Arrays.copyOf(segments, count);
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static int checksum(byte recordType, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(recordType);
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
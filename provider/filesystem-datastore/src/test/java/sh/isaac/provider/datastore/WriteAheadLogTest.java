@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.provider.datastore;
+
+import java.io.DataInput;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import sh.isaac.api.Status;
+import sh.isaac.api.commit.Stamp;
+
+/**
+ * Crash and replay tests of the {@link WriteAheadLog}. A crash is simulated by
+ * abandoning a log without closing it, and replaying its directory with a new
+ * log.
+ *
+ * @author kec
+ */
+public class WriteAheadLogTest {
+
+    private File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("wal-test").toFile();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testReplayAfterCrash() throws IOException {
+        UUID uuid = UUID.randomUUID();
+        WriteAheadLog log = new WriteAheadLog(directory);
+        log.open();
+        log.logAssignStamp(7, new Stamp(Status.ACTIVE, 1000L, -3, -4, -5));
+        log.logAssignNid(uuid, -10);
+        log.logPutChronology(-2, -10, 3, Integer.MAX_VALUE, Arrays.asList(new byte[]{1, 2}, new byte[]{3}));
+        log.logPutTaxonomy(-2, -10, new int[]{5, 6, 7});
+        log.logSetAssemblageForNid(-10, -2);
+        log.flush();
+        // not flushed, so lost in the crash
+        log.logAssignNid(UUID.randomUUID(), -11);
+
+        List<String> replayed = replay();
+        Assert.assertEquals(replayed, Arrays.asList(
+                "stamp 7 " + Status.ACTIVE + " 1000 -3 -4 -5",
+                "nid " + uuid + " -10",
+                "chronology -2 -10 3 [1, 2] [3]",
+                "taxonomy -2 -10 [5, 6, 7]",
+                "assemblage -10 -2"));
+    }
+
+    @Test
+    public void testTornRecordEndsReplay() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(directory);
+        log.open();
+        log.logSetAssemblageForNid(-10, -2);
+        log.logSetAssemblageForNid(-11, -2);
+        log.flush();
+
+        File segment = directory.listFiles()[0];
+        long intactLength = segment.length();
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            // a length and type, with the payload and checksum never written
+            out.write(new byte[]{0, 0, 0, 8, WriteAheadLog.SET_ASSEMBLAGE_FOR_NID, 1});
+        }
+        Assert.assertEquals(replay(), Arrays.asList("assemblage -10 -2", "assemblage -11 -2"));
+
+        // a complete record with a bad checksum
+        byte[] bytes = Files.readAllBytes(segment.toPath());
+        bytes = Arrays.copyOf(bytes, (int) intactLength);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(segment.toPath(), bytes);
+        Assert.assertEquals(replay(), Arrays.asList("assemblage -10 -2"));
+    }
+
+    @Test
+    public void testSegmentsKeptUntilEveryCheckpointerCompletes() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(directory);
+        log.open();
+        log.addCheckpointer("datastore");
+        log.addCheckpointer("STAMPS");
+        log.logAssignStamp(7, new Stamp(Status.ACTIVE, 1000L, -3, -4, -5));
+        log.logSetAssemblageForNid(-10, -2);
+
+        long checkpoint = log.rotate();
+        log.logSetAssemblageForNid(-11, -2);
+        log.flush();
+
+        // the stamps are not yet written, so the older segment must survive a crash here
+        log.completeCheckpoint("datastore", checkpoint);
+        Assert.assertEquals(replay().size(), 3);
+
+        long stampCheckpoint = log.rotate();
+        log.completeCheckpoint("STAMPS", stampCheckpoint);
+        Assert.assertEquals(replay(), Arrays.asList("assemblage -11 -2"));
+        Assert.assertTrue(log.getBytesSinceCheckpoint() > 0);
+    }
+
+    @Test
+    public void testOpenAfterReplayAppendsToNewSegment() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(directory);
+        log.open();
+        log.logSetAssemblageForNid(-10, -2);
+        log.flush();
+
+        WriteAheadLog restarted = new WriteAheadLog(directory);
+        Assert.assertEquals(restarted.replay((recordType, payload) -> { }), 1);
+        restarted.open();
+        restarted.logSetAssemblageForNid(-11, -2);
+        restarted.close();
+        Assert.assertEquals(replay(), Arrays.asList("assemblage -10 -2", "assemblage -11 -2"));
+    }
+
+    private List<String> replay() throws IOException {
+        List<String> replayed = new ArrayList<>();
+        new WriteAheadLog(directory).replay((recordType, payload) -> replayed.add(describe(recordType, payload)));
+        return replayed;
+    }
+
+    private static String describe(byte recordType, DataInput payload) throws IOException {
+        switch (recordType) {
+            case WriteAheadLog.PUT_CHRONOLOGY: {
+                StringBuilder sb = new StringBuilder("chronology ");
+                sb.append(payload.readInt()).append(' ').append(payload.readInt()).append(' ').append(payload.readInt());
+                payload.readInt();
+                int partCount = payload.readInt();
+                for (int i = 0; i < partCount; i++) {
+                    byte[] data = new byte[payload.readInt()];
+                    payload.readFully(data);
+                    sb.append(' ').append(Arrays.toString(data));
+                }
+                return sb.toString();
+            }
+            case WriteAheadLog.PUT_TAXONOMY: {
+                String prefix = "taxonomy " + payload.readInt() + " " + payload.readInt();
+                int[] taxonomyData = new int[payload.readInt()];
+                for (int i = 0; i < taxonomyData.length; i++) {
+                    taxonomyData[i] = payload.readInt();
+                }
+                return prefix + " " + Arrays.toString(taxonomyData);
+            }
+            case WriteAheadLog.SET_ASSEMBLAGE_FOR_NID:
+                return "assemblage " + payload.readInt() + " " + payload.readInt();
+            case WriteAheadLog.ASSIGN_NID:
+                return "nid " + new UUID(payload.readLong(), payload.readLong()) + " " + payload.readInt();
+            case WriteAheadLog.ASSIGN_STAMP: {
+                int stampSequence = payload.readInt();
+                Stamp stamp = new Stamp(payload);
+                return "stamp " + stampSequence + " " + stamp.getStatus() + " " + stamp.getTime() + " "
+                        + stamp.getAuthorNid() + " " + stamp.getModuleNid() + " " + stamp.getPathNid();
+            }
+            default:
+                throw new IOException("Unexpected record type: " + recordType);
+        }
+    }
+}
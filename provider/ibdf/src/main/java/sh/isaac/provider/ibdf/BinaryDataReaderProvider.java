@@ -42,6 +42,7 @@ package sh.isaac.provider.ibdf;
 //~--- JDK imports ------------------------------------------------------------
 
 import sh.isaac.model.datastream.IsaacExternalizableUnparsed;
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.FileInputStream;
@@ -49,10 +50,15 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 
+import java.util.Arrays;
 import java.util.Spliterator;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -63,26 +69,57 @@ import sh.isaac.api.externalizable.BinaryDataReaderService;
 import sh.isaac.api.externalizable.ByteArrayDataBuffer;
 import sh.isaac.api.task.TimedTaskWithProgressTracker;
 import sh.isaac.api.externalizable.IsaacExternalizable;
+import sh.isaac.api.externalizable.IsaacObjectType;
 
 //~--- classes ----------------------------------------------------------------
 
 /**
  * The Class BinaryDataReaderProvider.
  *
+ * When reading from a file, the length prefixed records are indexed when the
+ * reader is opened (only the length and type token of each record is read), and
+ * the records are then read with positional reads, so that the spliterator can
+ * split into chunks of approximately equal bytes, and parsing can proceed in
+ * parallel. When reading from an input stream, records are read sequentially.
+ *
  * @author kec
  */
 public class BinaryDataReaderProvider
         extends TimedTaskWithProgressTracker<Integer>
          implements BinaryDataReaderService, Spliterator<IsaacExternalizable> {
+   /** Ranges with fewer records are not split further. */
+   private static final int MIN_SPLIT_RECORDS = 64;
+
    /** The objects. */
-   int objects = 0;
+   final AtomicInteger objects = new AtomicInteger();
 
    /** The complete. */
    CountDownLatch complete = new CountDownLatch(1);
 
-   /** The input. */
+   /** The closed. */
+   private final AtomicBoolean closed = new AtomicBoolean();
+
+   /** The input, when reading from an input stream. */
    DataInputStream input;
 
+   /** The channel, when reading from a file. */
+   FileChannel channel;
+
+   /** The offset of each record's length prefix, followed by the end offset of the last record. */
+   long[] recordOffsets;
+
+   /** The object type token of each record. */
+   byte[] recordTypes;
+
+   /** The record count. */
+   int recordCount;
+
+   /** The records not yet consumed by the stream from {@link #getStream()}. */
+   AtomicInteger recordsRemaining;
+
+   /** The spliterator over all records, when reading from a file. */
+   Spliterator<IsaacExternalizable> records;
+
    /** The stream bytes. */
    int streamBytes;
 
@@ -96,14 +133,20 @@ public class BinaryDataReaderProvider
     */
    public BinaryDataReaderProvider(Path dataPath)
             throws FileNotFoundException {
-      this.input    = new DataInputStream(new FileInputStream(dataPath.toFile()));
+      final long fileBytes = dataPath.toFile().length();
+
+      this.streamBytes = (int) Math.min(fileBytes, Integer.MAX_VALUE);
+      indexRecords(dataPath, fileBytes);
 
       try {
-         this.streamBytes = this.input.available();
-         addToTotalWork(this.streamBytes);
+         this.channel = FileChannel.open(dataPath);
       } catch (final IOException ex) {
          throw new RuntimeException(ex);
       }
+
+      this.recordsRemaining = new AtomicInteger(this.recordCount);
+      this.records          = new RecordSpliterator(0, this.recordCount, null);
+      addToTotalWork(this.recordOffsets[this.recordCount]);
    }
    public BinaryDataReaderProvider(InputStream inputStream)
             throws FileNotFoundException {
@@ -126,6 +169,10 @@ public class BinaryDataReaderProvider
     */
    @Override
    public int characteristics() {
+      if (this.records != null) {
+         return this.records.characteristics();
+      }
+
       return IMMUTABLE | NONNULL;
    }
 
@@ -134,8 +181,19 @@ public class BinaryDataReaderProvider
     */
    @Override
    public void close() {
+      if (this.closed.getAndSet(true)) {
+         return;
+      }
+
       try {
-         this.input.close();
+         if (this.input != null) {
+            this.input.close();
+         }
+
+         if (this.channel != null) {
+            this.channel.close();
+         }
+
          done();
          this.complete.countDown();
       } catch (final IOException ex) {
@@ -150,6 +208,10 @@ public class BinaryDataReaderProvider
     */
    @Override
    public long estimateSize() {
+      if (this.records != null) {
+         return this.records.estimateSize();
+      }
+
       return Long.MAX_VALUE;
    }
 
@@ -161,18 +223,19 @@ public class BinaryDataReaderProvider
     */
    @Override
    public boolean tryAdvance(Consumer<? super IsaacExternalizable> action) {
+      if (this.records != null) {
+         return this.records.tryAdvance(action);
+      }
+
       try {
          final int                           startBytesAvailable        = this.input.available();
          final int                           recordSizeInBytes        = this.input.readInt();
          final byte[]                        objectData        = new byte[recordSizeInBytes];
          this.input.readFully(objectData);
          
-         ByteArrayDataBuffer byteArrayDataBuffer = new ByteArrayDataBuffer(objectData);
-         byteArrayDataBuffer.setExternalData(true);
-         IsaacExternalizableUnparsed unparsedObject = new IsaacExternalizableUnparsed(byteArrayDataBuffer);
-         action.accept(unparsedObject.parse());
+         action.accept(parse(objectData));
 
-         this.objects++;
+         this.objects.incrementAndGet();
          completedUnitsOfWork(startBytesAvailable - this.input.available());
          return true;
       } catch (final EOFException ex) {
@@ -184,12 +247,16 @@ public class BinaryDataReaderProvider
    }
 
    /**
-    * Try split.
+    * Try split. Only readers backed by a file can split.
     *
     * @return the spliterator
     */
    @Override
    public Spliterator<IsaacExternalizable> trySplit() {
+      if (this.records != null) {
+         return this.records.trySplit();
+      }
+
       return null;
    }
 
@@ -206,7 +273,105 @@ public class BinaryDataReaderProvider
          throw new RuntimeException(ex);
       }
 
-      return this.objects;
+      return this.objects.get();
+   }
+
+   /**
+    * Scan the length prefixes of the records in a file, recording the offset and
+    * object type token of each record. The record bodies are skipped, not read.
+    * A truncated record at the end of the file is ignored, as the sequential
+    * reader would.
+    *
+    * @param dataPath the data path
+    * @param fileBytes the length of the file
+    * @throws FileNotFoundException the file not found exception
+    */
+   private void indexRecords(Path dataPath, long fileBytes)
+            throws FileNotFoundException {
+      long[] offsets = new long[1024];
+      byte[] types   = new byte[1024];
+      int    count   = 0;
+      long   offset  = 0;
+
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dataPath.toFile())))) {
+         while (offset + 4 <= fileBytes) {
+            final int recordSizeInBytes = in.readInt();
+
+            if (recordSizeInBytes < 1 || offset + 4 + recordSizeInBytes > fileBytes) {
+               break;
+            }
+
+            if (count + 1 >= offsets.length) {
+               offsets = Arrays.copyOf(offsets, offsets.length * 2);
+               types   = Arrays.copyOf(types, types.length * 2);
+            }
+
+            offsets[count] = offset;
+            types[count]   = in.readByte();
+            skipFully(in, recordSizeInBytes - 1);
+            count++;
+            offset = offset + 4 + recordSizeInBytes;
+         }
+      } catch (final FileNotFoundException ex) {
+         throw ex;
+      } catch (final IOException ex) {
+         throw new RuntimeException(ex);
+      }
+
+      offsets[count]     = offset;
+      this.recordOffsets = offsets;
+      this.recordTypes   = types;
+      this.recordCount   = count;
+   }
+
+   /**
+    * Read and parse a record by positional read, so records may be read
+    * concurrently.
+    *
+    * @param recordIndex the index of the record
+    * @return the parsed object
+    */
+   private IsaacExternalizable readRecord(int recordIndex) {
+      final long       recordStart = this.recordOffsets[recordIndex] + 4;
+      final ByteBuffer buffer      = ByteBuffer.allocate((int) (this.recordOffsets[recordIndex + 1] - recordStart));
+
+      try {
+         while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, recordStart + buffer.position()) < 0) {
+               throw new EOFException("Unexpected end of file at record " + recordIndex);
+            }
+         }
+      } catch (final IOException ex) {
+         throw new RuntimeException(ex);
+      }
+
+      final IsaacExternalizable object = parse(buffer.array());
+
+      this.objects.incrementAndGet();
+      completedUnitsOfWork(this.recordOffsets[recordIndex + 1] - this.recordOffsets[recordIndex]);
+      return object;
+   }
+
+   private static IsaacExternalizable parse(byte[] objectData) {
+      ByteArrayDataBuffer byteArrayDataBuffer = new ByteArrayDataBuffer(objectData);
+      byteArrayDataBuffer.setExternalData(true);
+      IsaacExternalizableUnparsed unparsedObject = new IsaacExternalizableUnparsed(byteArrayDataBuffer);
+      return unparsedObject.parse();
+   }
+
+   private static void skipFully(DataInputStream in, int bytesToSkip)
+            throws IOException {
+      int remaining = bytesToSkip;
+
+      while (remaining > 0) {
+         final int skipped = in.skipBytes(remaining);
+
+         if (skipped <= 0) {
+            throw new EOFException();
+         }
+
+         remaining = remaining - skipped;
+      }
    }
 
    //~--- get methods ---------------------------------------------------------
@@ -219,7 +384,107 @@ public class BinaryDataReaderProvider
    @Override
    public Stream<IsaacExternalizable> getStream() {
       running();
+      if (this.records != null && this.recordCount == 0) {
+         close();
+      }
       return StreamSupport.stream(this, false);
    }
-}
 
+   /**
+    * Gets a stream of a single object type. For a file, only the records of the
+    * requested type are read and parsed.
+    *
+    * @param objectType the object type
+    * @return the stream
+    */
+   @Override
+   public Stream<IsaacExternalizable> getStream(IsaacObjectType objectType) {
+      if (this.records == null) {
+         return BinaryDataReaderService.super.getStream(objectType);
+      }
+
+      running();
+      return StreamSupport.stream(new RecordSpliterator(0, this.recordCount, objectType), false);
+   }
+
+   //~--- inner classes -------------------------------------------------------
+
+   /**
+    * A spliterator over a range of the indexed records of a file. Splits are made at
+    * the record nearest the byte midpoint of the range, so that chunks are balanced
+    * by bytes to parse rather than by record count.
+    */
+   private class RecordSpliterator
+            implements Spliterator<IsaacExternalizable> {
+      private int                   index;
+      private final int             fence;
+      private final IsaacObjectType objectType;
+
+      RecordSpliterator(int index, int fence, IsaacObjectType objectType) {
+         this.index      = index;
+         this.fence      = fence;
+         this.objectType = objectType;
+      }
+
+      @Override
+      public boolean tryAdvance(Consumer<? super IsaacExternalizable> action) {
+         while (this.index < this.fence) {
+            final int recordIndex = this.index++;
+
+            if (this.objectType == null) {
+               action.accept(readRecord(recordIndex));
+
+               if (recordsRemaining.decrementAndGet() == 0) {
+                  close();
+               }
+
+               return true;
+            }
+
+            if (recordTypes[recordIndex] == this.objectType.getToken()) {
+               action.accept(readRecord(recordIndex));
+               return true;
+            }
+         }
+
+         return false;
+      }
+
+      @Override
+      public Spliterator<IsaacExternalizable> trySplit() {
+         if (this.fence - this.index < MIN_SPLIT_RECORDS) {
+            return null;
+         }
+
+         final long midOffset = (recordOffsets[this.index] + recordOffsets[this.fence]) >>> 1;
+         int        mid       = Arrays.binarySearch(recordOffsets, this.index, this.fence, midOffset);
+
+         if (mid < 0) {
+            mid = -mid - 1;
+         }
+
+         if (mid <= this.index || mid >= this.fence) {
+            mid = (this.index + this.fence) >>> 1;
+         }
+
+         final RecordSpliterator prefix = new RecordSpliterator(this.index, mid, this.objectType);
+
+         this.index = mid;
+         return prefix;
+      }
+
+      @Override
+      public long estimateSize() {
+         return this.fence - this.index;
+      }
+
+      @Override
+      public int characteristics() {
+         if (this.objectType == null) {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+         }
+
+         return ORDERED | IMMUTABLE | NONNULL;
+      }
+   }
+}
@@ -0,0 +1,600 @@
+/*
+ * Copyright 2018 Organizations participating in ISAAC, ISAAC's KOMET, and SOLOR development include the
+         US Veterans Health Administration, OSHERA, and the Health Services Platform Consortium..
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sh.isaac.provider.identifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.mahout.math.map.OpenLongIntHashMap;
+import org.apache.mahout.math.map.OpenObjectIntHashMap;
+import org.glassfish.hk2.runlevel.RunLevel;
+import org.jvnet.hk2.annotations.Service;
+import sh.isaac.api.Get;
+import sh.isaac.api.LookupService;
+import sh.isaac.api.bootstrap.TermAux;
+import sh.isaac.api.chronicle.Chronology;
+import sh.isaac.api.chronicle.Version;
+import sh.isaac.api.component.semantic.SemanticChronology;
+import sh.isaac.api.component.semantic.version.DynamicVersion;
+import sh.isaac.api.component.semantic.version.LongVersion;
+import sh.isaac.api.component.semantic.version.StringVersion;
+import sh.isaac.api.component.semantic.version.dynamic.DynamicData;
+import sh.isaac.api.datastore.DataStore;
+import sh.isaac.api.externalizable.DataWriteListener;
+import sh.isaac.api.index.IdentifierIndexService;
+
+/**
+ * Maintains the {@link IdentifierIndexService} index by listening to every chronology written to the datastore, so 
+ * identifiers that arrive by a commit, a change set, or a bulk import that bypasses the commit service are all indexed.
+ * Each identifier assemblage has a primitive long to nid map for numeric identifiers, and a string to nid map for the
+ * rest, guarded by a read write lock, as the maps are not safe for concurrent reads during a rehash.
+ *
+ * The index is written to a single file in the datastore folder on sync, with the number of writes to each assemblage
+ * that the index has seen.  An assemblage whose {@link DataStore#getAssemblageWriteSequence(int) write sequence} 
+ * differs from that number on startup (because content was written while this service wasn't running, or was 
+ * replayed after a crash) is rebuilt from its semantics, as is every assemblage if the file is missing or from a 
+ * different datastore.  For a store that does not track writes, the nid count of the assemblage is compared instead.
+ *
+ * An identifier carried by more than one component keeps the component it was first indexed for, and the others are 
+ * kept beside it, and reported in the log.
+ *
+ * @author kec
+ */
+@Service
+@RunLevel(value = LookupService.SL_L3_DATABASE_SERVICES_STARTED_RUNLEVEL)
+public class IdentifierIndexProvider
+        implements IdentifierIndexService {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** "IDIX" */
+    private static final int MAGIC = 0x49444958;
+    private static final int FORMAT_VERSION = 2;
+    private static final String INDEX_FILE = "identifier-index";
+    private static final int MAX_REPORTED_DUPLICATES = 100;
+
+    /** The number of identifiers found on more than one component since startup, to limit the warnings logged. */
+    private static final AtomicInteger DUPLICATES_FOUND = new AtomicInteger();
+
+    private final ConcurrentHashMap<Integer, AssemblageIdentifiers> assemblageIdentifiers = new ConcurrentHashMap<>();
+    private final AtomicBoolean changed = new AtomicBoolean(false);
+    private final DataWriteListener writeListener = new DataWriteListener() {
+        @Override
+        public void writeData(Chronology data) {
+            index(data);
+        }
+
+        @Override
+        public void sync() {
+            // written by the sync of the service
+        }
+    };
+
+    private DataStore store;
+    private File indexFile;
+    private int identifierSourceNid;
+    private boolean storeTracksWrites;
+
+    private IdentifierIndexProvider() {
+        //Construct with HK2 only
+    }
+
+    @PostConstruct
+    private void startMe() {
+        LOG.info("Starting identifier index provider for change to runlevel: {}", LookupService.getProceedingToRunLevel());
+        this.store = Get.service(DataStore.class);
+        this.indexFile = new File(this.store.getDataStorePath().toAbsolutePath().toFile(), INDEX_FILE);
+        this.identifierSourceNid = TermAux.IDENTIFIER_SOURCE.getNid();
+        this.storeTracksWrites = this.store.getAssemblageWriteSequence(this.identifierSourceNid).isPresent();
+        this.assemblageIdentifiers.clear();
+        DUPLICATES_FOUND.set(0);
+
+        Map<Integer, Long> persistedWriteSequences = read();
+        // register before building, so nothing written while building is missed.  Indexing the same value twice is harmless.
+        this.store.registerDataWriteListener(this.writeListener);
+
+        Get.assemblageService().getReferencedComponentNidStreamFromAssemblage(this.identifierSourceNid).forEach(assemblageNid -> {
+            Long persistedWriteSequence = persistedWriteSequences.get(assemblageNid);
+            if (persistedWriteSequence == null || persistedWriteSequence != currentWriteSequence(assemblageNid)) {
+                AssemblageIdentifiers identifiers = new AssemblageIdentifiers();
+                this.assemblageIdentifiers.put(assemblageNid, identifiers);
+                indexAssemblage(assemblageNid, identifiers);
+            } else {
+                this.assemblageIdentifiers.computeIfAbsent(assemblageNid, nid -> new AssemblageIdentifiers());
+            }
+        });
+        LOG.info("Identifier index started with {} identifier assemblages", this.assemblageIdentifiers.size());
+        if (DUPLICATES_FOUND.get() > 0) {
+            LOG.warn("{} identifiers are carried by more than one component", DUPLICATES_FOUND.get());
+        }
+    }
+
+    @PreDestroy
+    private void stopMe() {
+        LOG.info("Stopping identifier index provider for change to runlevel: {}", LookupService.getProceedingToRunLevel());
+        this.store.unregisterDataWriteListener(this.writeListener);
+        try {
+            sync().get();
+        } catch (Throwable ex) {
+            LOG.error("Unexpected error while stopping identifier index provider", ex);
+        }
+        this.assemblageIdentifiers.clear();
+        this.store = null;
+    }
+
+    /**
+     * Index a chronology written to the datastore, if it is an identifier semantic, or marks an assemblage as an
+     * identifier assemblage.
+     *
+     * @param data the written chronology
+     */
+    private void index(Chronology data) {
+        if (!(data instanceof SemanticChronology)) {
+            return;
+        }
+        SemanticChronology semantic = (SemanticChronology) data;
+        if (semantic.getAssemblageNid() == this.identifierSourceNid) {
+            // A new identifier assemblage - pick up anything already written to it.
+            int assemblageNid = semantic.getReferencedComponentNid();
+            AssemblageIdentifiers identifiers = new AssemblageIdentifiers();
+            if (this.assemblageIdentifiers.putIfAbsent(assemblageNid, identifiers) == null) {
+                indexAssemblage(assemblageNid, identifiers);
+            }
+            return;
+        }
+        AssemblageIdentifiers identifiers = this.assemblageIdentifiers.get(semantic.getAssemblageNid());
+        if (identifiers != null) {
+            identifiers.index(semantic);
+            identifiers.writeSequence.incrementAndGet();
+            this.changed.set(true);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Future<?> sync() {
+        return Get.executor().submit(() -> {
+            if (this.changed.getAndSet(false)) {
+                try {
+                    write();
+                } catch (IOException ex) {
+                    this.changed.set(true);
+                    LOG.error("error writing identifier index", ex);
+                }
+            }
+        });
+    }
+
+    private void indexAssemblage(int assemblageNid, AssemblageIdentifiers identifiers) {
+        // Read before the semantics, so a write made while they are read is counted twice rather than missed, which
+        // forces a rebuild on the next start.
+        identifiers.writeSequence.set(currentWriteSequence(assemblageNid));
+        Get.assemblageService().getSemanticChronologyStream(assemblageNid).forEach(identifiers::index);
+        this.changed.set(true);
+    }
+
+    /**
+     * @param assemblageNid an identifier assemblage
+     * @return the write sequence of the assemblage in the store, or its nid count if the store does not track writes.
+     */
+    private long currentWriteSequence(int assemblageNid) {
+        OptionalLong writeSequence = this.store.getAssemblageWriteSequence(assemblageNid);
+        return writeSequence.isPresent() ? writeSequence.getAsLong() : countNids(assemblageNid);
+    }
+
+    private static long countNids(int assemblageNid) {
+        return Get.identifierService().getNidsForAssemblage(assemblageNid).count();
+    }
+
+    /**
+     * @return the write sequence of each assemblage in the index file, at the time it was written, or an empty map if 
+     * there is no usable index file.
+     */
+    private Map<Integer, Long> read() {
+        Map<Integer, Long> writeSequences = new HashMap<>();
+        if (!this.indexFile.isFile()) {
+            return writeSequences;
+        }
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(this.indexFile)))) {
+            if (dis.readInt() != MAGIC || dis.readInt() != FORMAT_VERSION) {
+                LOG.warn("Ignoring identifier index in an unknown format: {}", this.indexFile);
+                return writeSequences;
+            }
+            UUID fileDataStoreId = new UUID(dis.readLong(), dis.readLong());
+            if (!fileDataStoreId.equals(getDataStoreId().orElse(null))) {
+                LOG.warn("Ignoring identifier index from a different datastore: {}", this.indexFile);
+                return writeSequences;
+            }
+            if (dis.readBoolean() != this.storeTracksWrites) {
+                LOG.warn("Ignoring identifier index written with a different write tracking: {}", this.indexFile);
+                return writeSequences;
+            }
+            int assemblageCount = dis.readInt();
+            for (int i = 0; i < assemblageCount; i++) {
+                int assemblageNid = dis.readInt();
+                long writeSequence = dis.readLong();
+                writeSequences.put(assemblageNid, writeSequence);
+                AssemblageIdentifiers identifiers = new AssemblageIdentifiers();
+                identifiers.writeSequence.set(writeSequence);
+                identifiers.read(dis);
+                this.assemblageIdentifiers.put(assemblageNid, identifiers);
+            }
+            LOG.info("Read identifier index for {} assemblages from {}", assemblageCount, this.indexFile);
+        } catch (IOException ex) {
+            LOG.warn("Unable to read the identifier index, it will be rebuilt", ex);
+            writeSequences.clear();
+            this.assemblageIdentifiers.clear();
+        }
+        return writeSequences;
+    }
+
+    private void write() throws IOException {
+        File tempFile = new File(this.indexFile.getParentFile(), "tmp-" + this.indexFile.getName());
+        UUID dataStoreId = getDataStoreId().orElse(new UUID(0, 0));
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeLong(dataStoreId.getMostSignificantBits());
+            dos.writeLong(dataStoreId.getLeastSignificantBits());
+            dos.writeBoolean(this.storeTracksWrites);
+            dos.writeInt(this.assemblageIdentifiers.size());
+            for (Map.Entry<Integer, AssemblageIdentifiers> entry : this.assemblageIdentifiers.entrySet()) {
+                dos.writeInt(entry.getKey());
+                // Read before writing the identifiers - anything written in between makes the value stale, forcing a 
+                // rebuild on the next start, rather than silently missing from the index.  A store that tracks writes 
+                // counts each write before the index sees it, so the writes seen by the index are recorded, rather 
+                // than the writes made to the store.
+                dos.writeLong(this.storeTracksWrites ? entry.getValue().writeSequence.get() : countNids(entry.getKey()));
+                entry.getValue().write(dos);
+            }
+        }
+        Files.move(tempFile.toPath(), this.indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OptionalInt getNidForIdentifier(int identifierAssemblageNid, String identifier) {
+        int nid = getNidsForIdentifiers(identifierAssemblageNid, identifier)[0];
+        return nid == UNRESOLVED_NID ? OptionalInt.empty() : OptionalInt.of(nid);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OptionalInt getNidForIdentifier(int identifierAssemblageNid, long identifier) {
+        int nid = getNidsForIdentifiers(identifierAssemblageNid, identifier)[0];
+        return nid == UNRESOLVED_NID ? OptionalInt.empty() : OptionalInt.of(nid);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getNidsForIdentifiers(int identifierAssemblageNid, String... identifiers) {
+        int[] nids = new int[identifiers.length];
+        AssemblageIdentifiers assemblage = this.assemblageIdentifiers.get(identifierAssemblageNid);
+        if (assemblage != null) {
+            assemblage.lock.readLock().lock();
+            try {
+                for (int i = 0; i < identifiers.length; i++) {
+                    nids[i] = assemblage.get(identifiers[i]);
+                }
+            } finally {
+                assemblage.lock.readLock().unlock();
+            }
+        }
+        return nids;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getNidsForIdentifiers(int identifierAssemblageNid, long... identifiers) {
+        int[] nids = new int[identifiers.length];
+        AssemblageIdentifiers assemblage = this.assemblageIdentifiers.get(identifierAssemblageNid);
+        if (assemblage != null) {
+            assemblage.lock.readLock().lock();
+            try {
+                for (int i = 0; i < identifiers.length; i++) {
+                    nids[i] = assemblage.get(identifiers[i]);
+                }
+            } finally {
+                assemblage.lock.readLock().unlock();
+            }
+        }
+        return nids;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getAllNidsForIdentifier(int identifierAssemblageNid, String identifier) {
+        AssemblageIdentifiers assemblage = this.assemblageIdentifiers.get(identifierAssemblageNid);
+        if (assemblage == null) {
+            return new int[0];
+        }
+        assemblage.lock.readLock().lock();
+        try {
+            return assemblage.getAll(identifier);
+        } finally {
+            assemblage.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIdentifierAssemblage(int assemblageNid) {
+        return this.assemblageIdentifiers.containsKey(assemblageNid);
+    }
+
+    @Override
+    public Path getDataStorePath() {
+        return this.store.getDataStorePath();
+    }
+
+    @Override
+    public DataStoreStartState getDataStoreStartState() {
+        return this.store.getDataStoreStartState();
+    }
+
+    @Override
+    public Optional<UUID> getDataStoreId() {
+        return this.store.getDataStoreId();
+    }
+
+    /**
+     * @param identifier an identifier
+     * @return the value of the identifier, if it is a decimal integer in canonical form (no sign, no leading zeros) that
+     * fits in a long, otherwise -1.  Only canonical identifiers are held as longs, so that the string form can be recovered.
+     */
+    private static long canonicalLongValue(String identifier) {
+        int length = identifier.length();
+        if (length == 0 || length > 19 || (length > 1 && identifier.charAt(0) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = identifier.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = (value * 10) + (c - '0');
+            if (value < 0) {
+                return -1;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * The identifiers of a single identifier assemblage.
+     */
+    private static class AssemblageIdentifiers {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final OpenLongIntHashMap longIdentifiers = new OpenLongIntHashMap();
+        final OpenObjectIntHashMap<String> stringIdentifiers = new OpenObjectIntHashMap<>();
+        /** Every nid of an identifier carried by more than one component, keyed by the canonical identifier. */
+        final Map<String, int[]> duplicateIdentifiers = new HashMap<>();
+        /** The writes to the assemblage seen by the index. */
+        final AtomicLong writeSequence = new AtomicLong();
+
+        /**
+         * Index the identifier value of every version of an identifier semantic.  The values are indexed even if later
+         * retired, so that content using an identifier that was once valid still resolves.
+         */
+        void index(SemanticChronology semantic) {
+            int nid = semantic.getReferencedComponentNid();
+            this.lock.writeLock().lock();
+            try {
+                for (Version version : semantic.getVersionList()) {
+                    if (version instanceof StringVersion) {
+                        put(((StringVersion) version).getString(), nid);
+                    } else if (version instanceof LongVersion) {
+                        put(Long.toString(((LongVersion) version).getLongValue()), nid);
+                    } else if (version instanceof DynamicVersion) {
+                        DynamicData[] data = ((DynamicVersion<?>) version).getData();
+                        if (data.length > 0 && data[0] != null) {
+                            put(data[0].getDataObject().toString(), nid);
+                        }
+                    }
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+
+        private void put(String identifier, int nid) {
+            if (identifier == null) {
+                return;
+            }
+            String trimmed = identifier.trim();
+            long longValue = canonicalLongValue(trimmed);
+            int indexedNid = longValue >= 0 ? this.longIdentifiers.get(longValue) : this.stringIdentifiers.get(trimmed);
+            if (indexedNid == UNRESOLVED_NID) {
+                if (longValue >= 0) {
+                    this.longIdentifiers.put(longValue, nid);
+                } else {
+                    this.stringIdentifiers.put(trimmed, nid);
+                }
+            } else if (indexedNid != nid) {
+                addDuplicate(longValue >= 0 ? Long.toString(longValue) : trimmed, indexedNid, nid);
+            }
+        }
+
+        private void addDuplicate(String identifier, int indexedNid, int nid) {
+            int[] nids = this.duplicateIdentifiers.get(identifier);
+            if (nids == null) {
+                nids = new int[] {indexedNid};
+                int duplicatesFound = DUPLICATES_FOUND.incrementAndGet();
+                if (duplicatesFound <= MAX_REPORTED_DUPLICATES) {
+                    LOG.warn("Identifier {} is carried by more than one component: {} and {}{}", identifier, indexedNid, nid,
+                            duplicatesFound == MAX_REPORTED_DUPLICATES ? " (further duplicates are not reported)" : "");
+                }
+            } else {
+                for (int duplicateNid : nids) {
+                    if (duplicateNid == nid) {
+                        return;
+                    }
+                }
+            }
+            nids = Arrays.copyOf(nids, nids.length + 1);
+            nids[nids.length - 1] = nid;
+            this.duplicateIdentifiers.put(identifier, nids);
+        }
+
+        /**
+         * Caller must hold the read lock.
+         */
+        int[] getAll(String identifier) {
+            if (identifier == null) {
+                return new int[0];
+            }
+            String trimmed = identifier.trim();
+            long longValue = canonicalLongValue(trimmed);
+            int[] nids = this.duplicateIdentifiers.get(longValue >= 0 ? Long.toString(longValue) : trimmed);
+            if (nids != null) {
+                return nids.clone();
+            }
+            int nid = get(identifier);
+            return nid == UNRESOLVED_NID ? new int[0] : new int[] {nid};
+        }
+
+        /**
+         * Caller must hold the read lock.
+         */
+        int get(String identifier) {
+            if (identifier == null) {
+                return UNRESOLVED_NID;
+            }
+            String trimmed = identifier.trim();
+            long longValue = canonicalLongValue(trimmed);
+            if (longValue >= 0) {
+                return this.longIdentifiers.get(longValue);
+            }
+            return this.stringIdentifiers.get(trimmed);
+        }
+
+        /**
+         * Caller must hold the read lock.
+         */
+        int get(long identifier) {
+            if (identifier >= 0) {
+                return this.longIdentifiers.get(identifier);
+            }
+            // negative values are not canonical, so they are held as strings
+            return this.stringIdentifiers.get(Long.toString(identifier));
+        }
+
+        void write(DataOutputStream dos) throws IOException {
+            this.lock.readLock().lock();
+            try {
+                dos.writeInt(this.longIdentifiers.size());
+                IOException[] failure = new IOException[1];
+                this.longIdentifiers.forEachPair((long key, int value) -> {
+                    try {
+                        dos.writeLong(key);
+                        dos.writeInt(value);
+                        return true;
+                    } catch (IOException ex) {
+                        failure[0] = ex;
+                        return false;
+                    }
+                });
+                dos.writeInt(this.stringIdentifiers.size());
+                this.stringIdentifiers.forEachPair((String key, int value) -> {
+                    try {
+                        dos.writeUTF(key);
+                        dos.writeInt(value);
+                        return true;
+                    } catch (IOException ex) {
+                        failure[0] = ex;
+                        return false;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                dos.writeInt(this.duplicateIdentifiers.size());
+                for (Map.Entry<String, int[]> entry : this.duplicateIdentifiers.entrySet()) {
+                    dos.writeUTF(entry.getKey());
+                    dos.writeInt(entry.getValue().length);
+                    for (int nid : entry.getValue()) {
+                        dos.writeInt(nid);
+                    }
+                }
+            } finally {
+                this.lock.readLock().unlock();
+            }
+        }
+
+        void read(DataInputStream dis) throws IOException {
+            int longCount = dis.readInt();
+            this.longIdentifiers.ensureCapacity(longCount);
+            for (int i = 0; i < longCount; i++) {
+                this.longIdentifiers.put(dis.readLong(), dis.readInt());
+            }
+            int stringCount = dis.readInt();
+            this.stringIdentifiers.ensureCapacity(stringCount);
+            for (int i = 0; i < stringCount; i++) {
+                this.stringIdentifiers.put(dis.readUTF(), dis.readInt());
+            }
+            int duplicateCount = dis.readInt();
+            for (int i = 0; i < duplicateCount; i++) {
+                String identifier = dis.readUTF();
+                int[] nids = new int[dis.readInt()];
+                for (int j = 0; j < nids.length; j++) {
+                    nids[j] = dis.readInt();
+                }
+                this.duplicateIdentifiers.put(identifier, nids);
+            }
+        }
+    }
+}
@@ -72,6 +72,7 @@ import sh.isaac.api.component.concept.ConceptSpecification;
 import sh.isaac.api.datastore.DataStore;
 import sh.isaac.api.datastore.ExtendedStore;
 import sh.isaac.api.externalizable.IsaacObjectType;
+import sh.isaac.model.collections.SpinedNidUuidMap;
 
 //~--- classes ----------------------------------------------------------------
 /**
@@ -95,7 +96,16 @@ public class IdentifierProvider
     private transient DataStore store;
     private UuidToIntMap uuidIntMapMap;
 
+    /**
+     * Reverse index from nid to primordial UUID, so that nid to UUID lookups do not
+     * need to scan every uuid to nid map. The primordial UUID is recorded where the nid
+     * is first assigned. Nids assigned before this index existed, or replayed after a
+     * crash, are added on their first lookup, from the first UUID of the component.
+     */
+    private final SpinedNidUuidMap nidToPrimordialUuidMap = new SpinedNidUuidMap();
+
     private File uuidNidMapDirectory;
+    private File nidUuidMapDirectory;
 
     private IdentifierProvider() {
         //Construct with HK2 only
@@ -105,10 +115,25 @@ public class IdentifierProvider
     @Override
     public void addUuidForNid(UUID uuid, int nid) {
         OptionalInt old = this.uuidIntMapMap.get(uuid);
-        if (old.isPresent() && old.getAsInt() != nid) {
-            throw new RuntimeException("Reassignment of nid for " + uuid + " from " + old + " to " + nid);
+        if (old.isPresent()) {
+            if (old.getAsInt() != nid) {
+                throw new RuntimeException("Reassignment of nid for " + uuid + " from " + old + " to " + nid);
+            }
+            return;
         }
+        // An additional UUID for the nid, the primordial UUID was recorded when the nid was assigned.
         this.uuidIntMapMap.put(uuid, nid);
+        logNidAssignment(uuid, nid);
+    }
+
+    /**
+     * Log the assignment with the datastore writes, so that the writes are not replayed without it 
+     * after a crash. An extended store persists the assignment itself.
+     */
+    private void logNidAssignment(UUID uuid, int nid) {
+        if (!this.store.implementsExtendedStoreAPI()) {
+            this.store.logNidAssignment(uuid, nid);
+        }
     }
 
     /**
@@ -119,11 +144,19 @@ public class IdentifierProvider
         LOG.info("Starting identifier provider for change to runlevel: {}", LookupService.getProceedingToRunLevel());
         this.store = Get.service(DataStore.class);
         uuidNidMapDirectory = new File(store.getDataStorePath().toAbsolutePath().toFile(), "uuid-nid-map");
+        nidUuidMapDirectory = new File(store.getDataStorePath().toAbsolutePath().toFile(), "nid-uuid-map");
+        this.nidToPrimordialUuidMap.clear();
+        if (nidUuidMapDirectory.exists()) {
+            this.nidToPrimordialUuidMap.read(nidUuidMapDirectory);
+        }
 
         if (this.store.implementsExtendedStoreAPI()) {
             uuidIntMapMap = new DataStoreUuidToIntMap((ExtendedStore) this.store);
         } else {
             this.uuidIntMapMap = UuidIntMapMap.create(uuidNidMapDirectory);
+            // assignments made after the maps were last written. The log does not tell a primordial UUID
+            // from an additional one, so the primordial UUIDs of these nids are added on their first lookup.
+            this.store.replayNidAssignments((uuid, nid) -> this.uuidIntMapMap.put(uuid, nid));
         }
 
         //bootstrap our nids for core metadata concepts.  
@@ -143,6 +176,7 @@ public class IdentifierProvider
             this.store.sync().get();
             this.store = null;
             uuidIntMapMap = null;
+            this.nidToPrimordialUuidMap.clear();
         } catch (Throwable ex) {
             LOG.error("Unexpected error while stopping identifier provider", ex);
             throw new RuntimeException(ex);
@@ -234,9 +268,13 @@ public class IdentifierProvider
             return lastFoundNid;
         }
         final int nid = this.uuidIntMapMap.getWithGeneration(uuids[0]);
+        // the nid is first assigned here
+        this.nidToPrimordialUuidMap.putIfAbsent(nid, uuids[0]);
+        logNidAssignment(uuids[0], nid);
 
         for (int i = 1; i < uuids.length; i++) {
             this.uuidIntMapMap.put(uuids[i], nid);
+            logNidAssignment(uuids[i], nid);
         }
         return nid;
     }
@@ -270,7 +308,13 @@ public class IdentifierProvider
 
     @Override
     public UUID getUuidPrimordialForNid(int nid) throws NoSuchElementException {
-        return getUuidsForNid(nid).get(0);
+        Optional<UUID> primordialUuid = this.nidToPrimordialUuidMap.get(nid);
+        if (primordialUuid.isPresent()) {
+            return primordialUuid.get();
+        }
+        UUID uuid = getUuidsForNid(nid).get(0);
+        this.nidToPrimordialUuidMap.putIfAbsent(nid, uuid);
+        return uuid;
     }
 
     @Override
@@ -342,10 +386,15 @@ public class IdentifierProvider
     public Future<?> sync() {
         return Get.executor().submit(() -> {
             try {
+                // assignments logged before the checkpoint starts are in the maps written below
+                long checkpoint = this.store.startAllocationCheckpoint();
                 LOG.info("writing uuid-nid-map.");
                 if (!store.implementsExtendedStoreAPI()) {
                     ((UuidIntMapMap) this.uuidIntMapMap).write();
                 }
+                LOG.info("writing nid-uuid-map.");
+                this.nidToPrimordialUuidMap.write(nidUuidMapDirectory);
+                this.store.completeAllocationCheckpoint(DataStore.LoggedAllocation.NIDS, checkpoint);
                 this.store.sync().get();
             } catch (IOException | InterruptedException | ExecutionException ex) {
                 LOG.error("error syncing identifier provider", ex);
@@ -356,7 +405,7 @@ public class IdentifierProvider
     //TODO [refactor] need to see if I'm reporting this as part of the datastore
     @Override
     public long getMemoryInUse() {
-        return uuidIntMapMap.getMemoryInUse();
+        return uuidIntMapMap.getMemoryInUse() + nidToPrimordialUuidMap.sizeInBytes();
     }
 
     @Override
@@ -68,6 +68,7 @@ import sh.isaac.api.logic.LogicService;
 import sh.isaac.api.logic.LogicalExpression;
 import sh.isaac.model.logic.LogicalExpressionImpl;
 import sh.isaac.model.semantic.version.LogicGraphVersionImpl;
+import sh.isaac.provider.logic.csiro.classify.ClassifierData;
 import sh.isaac.provider.logic.csiro.classify.ClassifierProvider;
 import sh.isaac.api.component.semantic.SemanticSnapshotService;
 
@@ -132,6 +133,8 @@ public class LogicProvider
                     LOG.error(ex);
                 }
             }
+      // Save the reasoner state while the datastore is still up, so the next classify after a restart may be incremental.
+      ClassifierData.saveAndClear();
       classifierServiceMap.clear();
       pendingLogicTasks.clear();
    }
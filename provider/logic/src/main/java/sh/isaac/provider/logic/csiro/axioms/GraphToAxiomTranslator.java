@@ -112,6 +112,19 @@ public class GraphToAxiomTranslator {
       nidLogicConceptMap = ModelGet.dataStore().implementsSequenceStore() ? new SpinedIntObjectMap<>() : new IntObjectMapImpl<>();
    }
 
+   /**
+    * Instantiates a shard of a translator. The shard shares the concept, role, and feature
+    * objects of its parent, but accumulates axioms and loaded concepts separately, so that
+    * each thread of a parallel extraction may translate into its own shard.
+    *
+    * @param parent the translator that owns the shared concept, role, and feature objects
+    */
+   private GraphToAxiomTranslator(GraphToAxiomTranslator parent) {
+      this.nidLogicConceptMap = parent.nidLogicConceptMap;
+      this.nidLogicRoleMap = parent.nidLogicRoleMap;
+      this.nidLogicFeatureMap = parent.nidLogicFeatureMap;
+   }
+
    /**
     * Clear.
     */
@@ -123,6 +136,28 @@ public class GraphToAxiomTranslator {
       this.loadedConceptNids.clear();
    }
 
+   /**
+    * Create a shard of this translator for use by a single thread. Once translation is
+    * complete, the shard must be merged back with {@link #merge(GraphToAxiomTranslator)}.
+    *
+    * @return a new shard
+    */
+   public GraphToAxiomTranslator newShard() {
+      return new GraphToAxiomTranslator(this);
+   }
+
+   /**
+    * Add the axioms and loaded concepts of a shard to this translator. The axioms and
+    * loaded concepts are held in sorted sets, so the merged result does not depend
+    * on how the logic graphs were divided among the shards.
+    *
+    * @param shard a shard created by {@link #newShard()}
+    */
+   public void merge(GraphToAxiomTranslator shard) {
+      this.axioms.addAll(shard.axioms);
+      this.loadedConceptNids.addAll(shard.loadedConceptNids);
+   }
+
    /**
     * Translates the logicGraphSemantic into a set of axioms, and adds those axioms
  to the internal set of axioms.
@@ -489,9 +524,10 @@ public class GraphToAxiomTranslator {
       if (optionalConcept.isPresent()) {
          return optionalConcept.get();
       }
-      Concept concept = Factory.createNamedConcept(Integer.toString(name));
-      this.nidLogicConceptMap.put(name, concept);
-      return concept;
+      // shards may race to create the same concept, the first one stored wins.
+      return this.nidLogicConceptMap.accumulateAndGet(name,
+            Factory.createNamedConcept(Integer.toString(name)),
+            (existing, created) -> existing == null ? created : existing);
    }
 
    /**
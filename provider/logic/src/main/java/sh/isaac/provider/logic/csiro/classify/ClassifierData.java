@@ -38,8 +38,19 @@ package sh.isaac.provider.logic.csiro.classify;
 
 //~--- JDK imports ------------------------------------------------------------
 import au.csiro.ontology.Node;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 
+import java.util.Arrays;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -57,7 +68,9 @@ import sh.isaac.api.Get;
 import sh.isaac.api.chronicle.LatestVersion;
 import sh.isaac.api.commit.ChronologyChangeListener;
 import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.chronicle.Version;
 import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.concept.ConceptSpecification;
 import sh.isaac.api.coordinate.LogicCoordinate;
 import sh.isaac.api.coordinate.StampCoordinate;
 import sh.isaac.model.semantic.version.LogicGraphVersionImpl;
@@ -84,6 +97,12 @@ public class ClassifierData
      */
     private static final AtomicReference<ClassifierData> SINGLETON = new AtomicReference<>();
 
+    /**
+     * "ICLS" - the start of a saved classifier state file.
+     */
+    private static final int STATE_FILE_MAGIC = 0x49434C53;
+    private static final int STATE_FILE_VERSION = 1;
+
     //~--- fields --------------------------------------------------------------
     /**
      * The listener uuid.
@@ -137,6 +156,12 @@ public class ClassifierData
 
     private final int conceptAssemblageNid;
 
+    /**
+     * True if this was restored from a saved state, and the stated changes made since the last classify have not yet
+     * been processed - the change listener wasn't registered while the state was on disk.
+     */
+    private boolean restored = false;
+
     //~--- constructors --------------------------------------------------------
     /**
      * Instantiates a new classifier data.
@@ -300,6 +325,26 @@ public class ClassifierData
         this.allGraphsToAxiomTranslator.convertToAxiomsAndAdd(lgs);
     }
 
+    /**
+     * Create a translator shard for one thread of a parallel extraction of all
+     * stated axioms.
+     *
+     * @return a shard of the all graphs translator
+     * @see #mergeTranslation(GraphToAxiomTranslator)
+     */
+    public GraphToAxiomTranslator newTranslationShard() {
+        return this.allGraphsToAxiomTranslator.newShard();
+    }
+
+    /**
+     * Merge the axioms of a translator shard into the all graphs translator.
+     *
+     * @param shard a shard created by {@link #newTranslationShard()}
+     */
+    public void mergeTranslation(GraphToAxiomTranslator shard) {
+        this.allGraphsToAxiomTranslator.merge(shard);
+    }
+
     //~--- get methods ---------------------------------------------------------
     /**
      * Gets the affected concept nid set.
@@ -344,6 +389,158 @@ public class ClassifierData
         return this.reasoner.getClassifiedOntology();
     }
 
+    /**
+     * Process the changes to stated logic graphs made since the last classify, if this was restored from a saved state.
+     * Changes that only add to the stated form are translated for an incremental classify, any other change disallows
+     * incremental classification, as it would while running.
+     */
+    public void processChangesSinceRestore() {
+        if (!this.restored) {
+            return;
+        }
+        this.restored = false;
+        final long lastClassifyTime = this.lastClassifyInstant.toEpochMilli();
+        final int[] changed = new int[1];
+
+        Get.assemblageService().getSemanticChronologyStream(this.logicCoordinate.getStatedAssemblageNid())
+                .forEach(sc -> {
+                    if (this.incrementalAllowed && changedSince(sc, lastClassifyTime)) {
+                        changed[0]++;
+                        handleChange(sc);
+                    }
+                });
+        LOG.info("Processed {} stated changes made since the saved classify of {}, incremental allowed: {}", 
+                changed[0], this.lastClassifyInstant, this.incrementalAllowed);
+    }
+
+    private static boolean changedSince(SemanticChronology sc, long time) {
+        for (Version version : sc.getVersionList()) {
+            if (version.getTime() > time) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Save the state of the classifier, so that the first classify after a restart may be incremental, and release it.
+     * Nothing is saved unless the last classify would allow the next to be incremental.
+     */
+    public static void saveAndClear() {
+        final ClassifierData classifierData = SINGLETON.getAndSet(null);
+        if (classifierData == null) {
+            return;
+        }
+        try {
+            Get.commitService().removeChangeListener(classifierData);
+        } catch (RuntimeException e) {
+            LOG.debug("Commit service unavailable for listener removal", e);
+        }
+
+        final File stateFile = getStateFile();
+        try {
+            if (!classifierData.incrementalAllowed || !classifierData.isClassified()
+                    || !(classifierData.reasoner instanceof SnorocketReasoner)) {
+                Files.deleteIfExists(stateFile.toPath());
+                return;
+            }
+            stateFile.getParentFile().mkdirs();
+            final File tempFile = new File(stateFile.getParentFile(), "tmp-" + stateFile.getName());
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                final UUID dataStoreId = Get.assemblageService().getDataStoreId().get();
+                dos.writeInt(STATE_FILE_MAGIC);
+                dos.writeInt(STATE_FILE_VERSION);
+                dos.writeLong(dataStoreId.getMostSignificantBits());
+                dos.writeLong(dataStoreId.getLeastSignificantBits());
+                dos.writeUTF(coordinateKey(classifierData.stampCoordinate, classifierData.logicCoordinate));
+                dos.writeLong(classifierData.lastClassifyInstant.getEpochSecond());
+                dos.writeInt(classifierData.lastClassifyInstant.getNano());
+                dos.writeUTF(classifierData.lastClassifyType.name());
+                dos.writeInt(classifierData.loadedConcepts.size());
+                for (int conceptNid : classifierData.loadedConcepts) {
+                    dos.writeInt(conceptNid);
+                }
+                dos.flush();
+                ((SnorocketReasoner) classifierData.reasoner).save(dos);
+            }
+            Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.info("Saved classifier state for {} concepts to {}", classifierData.loadedConcepts.size(), stateFile);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Unable to save the classifier state, the next classify will be complete", e);
+        }
+    }
+
+    /**
+     * Restore a classifier state saved by {@link #saveAndClear()}.
+     *
+     * @param stampCoordinate the stamp coordinate
+     * @param logicCoordinate the logic coordinate
+     * @return the restored classifier data, or null, if there is no saved state for this datastore and these coordinates.
+     */
+    private static ClassifierData restore(StampCoordinate stampCoordinate, LogicCoordinate logicCoordinate) {
+        final File stateFile = getStateFile();
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (dis.readInt() != STATE_FILE_MAGIC || dis.readInt() != STATE_FILE_VERSION) {
+                LOG.warn("Ignoring classifier state in an unknown format: {}", stateFile);
+                return null;
+            }
+            if (!new UUID(dis.readLong(), dis.readLong()).equals(Get.assemblageService().getDataStoreId().get())) {
+                LOG.warn("Ignoring classifier state from a different datastore: {}", stateFile);
+                return null;
+            }
+            if (!dis.readUTF().equals(coordinateKey(stampCoordinate, logicCoordinate))) {
+                LOG.info("Saved classifier state is for different coordinates, a complete classify is required");
+                return null;
+            }
+            final ClassifierData classifierData = new ClassifierData(stampCoordinate, logicCoordinate);
+            classifierData.lastClassifyInstant = Instant.ofEpochSecond(dis.readLong(), dis.readInt());
+            classifierData.lastClassifyType = ClassificationType.valueOf(dis.readUTF());
+            final int loadedConceptCount = dis.readInt();
+            final Set<Integer> loadedConcepts = new ConcurrentSkipListSet<>();
+            for (int i = 0; i < loadedConceptCount; i++) {
+                loadedConcepts.add(dis.readInt());
+            }
+            classifierData.loadedConcepts = loadedConcepts;
+            classifierData.reasoner = SnorocketReasoner.load(dis);
+            classifierData.incrementalAllowed = true;
+            classifierData.restored = true;
+            LOG.info("Restored classifier state for {} concepts, last classified {}", loadedConceptCount, classifierData.lastClassifyInstant);
+            return classifierData;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to restore the classifier state, a complete classify is required", e);
+            return null;
+        }
+    }
+
+    private static File getStateFile() {
+        return Get.configurationService().getDataStoreFolderPath().resolve("classifier").resolve("classifier-state").toFile();
+    }
+
+    /**
+     * A key that is equal only for coordinates that select the same stated forms, to check that a saved state applies.
+     */
+    private static String coordinateKey(StampCoordinate stampCoordinate, LogicCoordinate logicCoordinate) {
+        final StringBuilder key = new StringBuilder();
+        key.append(stampCoordinate.getStampPrecedence())
+                .append(';').append(stampCoordinate.getStampPosition().getStampPathSpecification().getNid())
+                .append(';').append(stampCoordinate.getStampPosition().getTime())
+                .append(';').append(stampCoordinate.getAllowedStates())
+                .append(';').append(Arrays.toString(stampCoordinate.getModuleNids().asArray()))
+                .append(';');
+        for (ConceptSpecification module : stampCoordinate.getModulePreferenceOrderForVersions()) {
+            key.append(module.getNid()).append(',');
+        }
+        key.append(';').append(logicCoordinate.getStatedAssemblageNid())
+                .append(';').append(logicCoordinate.getInferredAssemblageNid())
+                .append(';').append(logicCoordinate.getClassifierNid())
+                .append(';').append(logicCoordinate.getDescriptionLogicProfileNid())
+                .append(';').append(logicCoordinate.getConceptAssemblageNid());
+        return key.toString();
+    }
+
     /**
      * Gets the.
      *
@@ -353,7 +550,8 @@ public class ClassifierData
      */
     public static ClassifierData get(StampCoordinate stampCoordinate, LogicCoordinate logicCoordinate) {
         if (SINGLETON.get() == null) {
-            SINGLETON.compareAndSet(null, new ClassifierData(stampCoordinate, logicCoordinate));
+            final ClassifierData restoredData = restore(stampCoordinate, logicCoordinate);
+            SINGLETON.compareAndSet(null, restoredData != null ? restoredData : new ClassifierData(stampCoordinate, logicCoordinate));
         } else {
             ClassifierData classifierData = SINGLETON.get();
 
@@ -41,6 +41,7 @@ package sh.isaac.provider.logic.csiro.classify.tasks;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 //~--- non-JDK imports --------------------------------------------------------
@@ -52,6 +53,7 @@ import sh.isaac.api.coordinate.LogicCoordinate;
 import sh.isaac.api.coordinate.StampCoordinate;
 import sh.isaac.api.task.TimedTaskWithProgressTracker;
 import sh.isaac.model.semantic.version.LogicGraphVersionImpl;
+import sh.isaac.provider.logic.csiro.axioms.GraphToAxiomTranslator;
 import sh.isaac.provider.logic.csiro.classify.ClassifierData;
 import sh.isaac.api.component.semantic.SemanticSnapshotService;
 import sh.isaac.api.bootstrap.TestConcept;
@@ -101,6 +103,11 @@ public class ExtractAxioms
            final AtomicInteger logicGraphMembers = new AtomicInteger();
            final ClassifierData cd = ClassifierData.get(this.stampCoordinate, this.logicCoordinate);
            
+           if (cd.isIncrementalAllowed()) {
+               // pick up changes made while the classifier state was saved - these may disallow incremental classification.
+               cd.processChangesSinceRestore();
+           }
+           
            if (cd.isIncrementalAllowed()) {
                // axioms are already extracted.
            } else {
@@ -129,8 +136,17 @@ public class ExtractAxioms
       final SemanticSnapshotService<LogicGraphVersionImpl> semanticSnapshot = Get.assemblageService()
                                                                             .getSnapshot(LogicGraphVersionImpl.class,
                                                                                   stampCoordinate);
+      // each thread translates into its own shard, the shards are merged once all graphs are translated.
+      final ConcurrentLinkedQueue<GraphToAxiomTranslator> shards = new ConcurrentLinkedQueue<>();
+      final ThreadLocal<GraphToAxiomTranslator> threadShard = ThreadLocal.withInitial(() -> {
+         final GraphToAxiomTranslator shard = cd.newTranslationShard();
+         shards.add(shard);
+         return shard;
+      });
+      final long startTime = System.currentTimeMillis();
 
       semanticSnapshot.getLatestSemanticVersionsFromAssemblage(logicCoordinate.getStatedAssemblageNid(), this)
+                    .parallel()
                     .forEach((LatestVersion<LogicGraphVersionImpl> latest) -> {
                                 final LogicGraphVersionImpl lgs = latest.get();
                                 final int conceptNid = lgs.getReferencedComponentNid();
@@ -143,11 +159,15 @@ public class ExtractAxioms
 
                                 if (Get.conceptService()
                                        .isConceptActive(conceptNid, stampCoordinate)) {
-                                   cd.translate(lgs);
+                                   threadShard.get().convertToAxiomsAndAdd(lgs);
                                    logicGraphMembers.incrementAndGet();
                                 }
                              });
-      
+      shards.forEach(cd::mergeTranslation);
+
+      final long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+      LOG.info("Extracted {} logical definitions using {} threads in {} ms ({} definitions/sec)",
+               logicGraphMembers.get(), shards.size(), elapsed, (logicGraphMembers.get() * 1000L) / elapsed);
       System.out.println("Extracted " + logicGraphMembers + " logical definitions from: " + Get.conceptDescriptionText(logicCoordinate.getStatedAssemblageNid()));
    }
 }
@@ -44,6 +44,8 @@ package sh.isaac.provider.path;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -64,10 +66,15 @@ import org.jvnet.hk2.annotations.Service;
 import sh.isaac.api.Get;
 import sh.isaac.api.LookupService;
 import sh.isaac.api.bootstrap.TermAux;
+import sh.isaac.api.commit.ChronologyChangeListener;
+import sh.isaac.api.commit.CommitRecord;
+import sh.isaac.api.component.concept.ConceptChronology;
+import sh.isaac.api.component.semantic.SemanticChronology;
 import sh.isaac.api.coordinate.StampPath;
 import sh.isaac.api.coordinate.StampPosition;
 import sh.isaac.api.identity.StampedVersion;
 import sh.isaac.api.snapshot.calculator.RelativePosition;
+import sh.isaac.api.snapshot.calculator.RelativePositionCalculator;
 import sh.isaac.model.coordinate.StampPathImpl;
 import sh.isaac.model.coordinate.StampPositionImpl;
 import sh.isaac.api.component.semantic.version.LongVersion;
@@ -83,7 +90,7 @@ import sh.isaac.api.VersionManagmentPathService;
 @Service(name = "Path Provider")
 @RunLevel(value = LookupService.SL_L3_DATABASE_SERVICES_STARTED_RUNLEVEL)
 public class VersionManagmentPathProvider
-         implements VersionManagmentPathService {
+         implements VersionManagmentPathService, ChronologyChangeListener {
    /** The Constant LOG. */
    private static final Logger LOG = LogManager.getLogger();
 
@@ -95,6 +102,8 @@ public class VersionManagmentPathProvider
    /** The path map. */
    ConcurrentHashMap<Integer, StampPath> pathMap;
 
+   private final UUID listenerUuid = UUID.randomUUID();
+
    //~--- constructors --------------------------------------------------------
 
    /**
@@ -143,6 +152,7 @@ public class VersionManagmentPathProvider
                      });
          
          this.pathMap = newMap;
+         RelativePositionCalculator.invalidatePaths();
       } finally {
          LOCK.unlock();
       }
@@ -300,6 +310,45 @@ public class VersionManagmentPathProvider
    public void rebuildPathMap() {
       setupPathMap();
    }
+
+   @Override
+   public void handleChange(ConceptChronology cc) {
+      // Paths and their origins are semantics
+   }
+
+   @Override
+   public void handleChange(SemanticChronology sc) {
+      // Calculators are only invalidated when a path change is committed
+   }
+
+   /**
+    * Invalidate the path segments of the relative position calculators if the
+    * commit includes a path or path origin semantic.
+    *
+    * @param commitRecord the commit record
+    */
+   @Override
+   public void handleCommit(CommitRecord commitRecord) {
+      final int pathAssemblageNid = TermAux.PATH_ASSEMBLAGE.getNid();
+      final int pathOriginAssemblageNid = TermAux.PATH_ORIGIN_ASSEMBLAGE.getNid();
+
+      final boolean pathChanged = commitRecord.getSemanticNidsInCommit().stream().anyMatch((semanticNid) -> {
+         final OptionalInt assemblageNid = Get.identifierService().getAssemblageNid(semanticNid);
+
+         return assemblageNid.isPresent()
+               && (assemblageNid.getAsInt() == pathAssemblageNid || assemblageNid.getAsInt() == pathOriginAssemblageNid);
+      });
+
+      if (pathChanged) {
+         LOG.debug("Path change committed, invalidating relative position calculator paths");
+         RelativePositionCalculator.invalidatePaths();
+      }
+   }
+
+   @Override
+   public UUID getListenerUuid() {
+      return this.listenerUuid;
+   }
    
    /**
     * Start me.
@@ -308,6 +357,7 @@ public class VersionManagmentPathProvider
    private void startMe() {
       LOG.info("VersionManagementPathProvider starts");
       setupPathMap();
+      Get.commitService().addChangeListener(this);
    }
 
    /**
@@ -316,6 +366,7 @@ public class VersionManagmentPathProvider
    @PreDestroy
    private void stopMe() {
       LOG.info("VersionManagementPathProvider stops");
+      Get.commitService().removeChangeListener(this);
       this.pathMap = null;
    }
 }
@@ -18,29 +18,57 @@ package sh.isaac.provider.query.lucene;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.TreeSet;
 import java.util.function.Predicate;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.TopScoreDocCollector;
 
 /**
+ * Collects the top scoring components for a query, rather than the top scoring
+ * documents. Each component may have several documents in the index (one per
+ * indexed version), so hits are de-duplicated by component nid as they are
+ * collected, keeping the best scoring document of each component. A single
+ * search therefore returns a full page of distinct components.
+ *
+ * The component nid is read from the numeric doc values of
+ * {@link LuceneIndexer#FIELD_COMPONENT_NID}, so stored fields are not loaded.
+ * Segments written before the doc values were indexed fall back to reading
+ * the stored field.
+ *
+ * The returned {@link TopDocs} contain {@link NidScoreDoc} instances.
  *
  * @author kec
  * @author <a href="mailto:daniel.armbrust.list@gmail.com">Dan Armbrust</a>
  */
 public class IsaacFilteredCollectorManager implements CollectorManager<IsaacFilteredCollectorManager.IsaacFilteredCollector, TopDocs> {
 
+   /**
+    * Orders hits from best to worst, with the same tie break on document
+    * number as lucene uses for paging.
+    */
+   private static final Comparator<ScoreDoc> BEST_FIRST = (ScoreDoc a, ScoreDoc b) -> {
+      int comparison = Float.compare(b.score, a.score);
+      if (comparison != 0) {
+         return comparison;
+      }
+      return Integer.compare(a.doc, b.doc);
+   };
+
    final Predicate<Integer> filter;
    final int sizeLimit;
    final ScoreDoc after;
@@ -70,76 +98,126 @@ public class IsaacFilteredCollectorManager implements CollectorManager<IsaacFilt
       return collector;
    }
 
+   /**
+    * Merge the per collector results. Since each collector holds the best
+    * {@code sizeLimit} distinct components among the documents it saw, the
+    * best {@code sizeLimit} distinct components of the union is the global result.
+    */
    @Override
    public TopDocs reduce(Collection<IsaacFilteredCollectorManager.IsaacFilteredCollector> collectors) throws IOException {
-      final TopDocs[] topDocs = new TopDocs[collectors.size()];
-      int i = 0;
-      int totalSize = 0;
+      final HashMap<Integer, NidScoreDoc> bestForNid = new HashMap<>();
+      long totalHits = 0;
       for (IsaacFilteredCollectorManager.IsaacFilteredCollector collector : collectors) {
-         topDocs[i] = collector.topDocs();
-         totalSize = totalSize + topDocs[i++].scoreDocs.length;
+         totalHits = totalHits + collector.totalHits;
+         for (NidScoreDoc hit : collector.hits) {
+            bestForNid.merge(hit.nid, hit, (NidScoreDoc existing, NidScoreDoc candidate) -> 
+                  BEST_FIRST.compare(candidate, existing) < 0 ? candidate : existing);
+         }
+      }
+      final NidScoreDoc[] hits = bestForNid.values().toArray(new NidScoreDoc[bestForNid.size()]);
+      Arrays.sort(hits, BEST_FIRST);
+      final ScoreDoc[] scoreDocs = Arrays.copyOf(hits, Math.min(sizeLimit, hits.length), ScoreDoc[].class);
+      return new TopDocs(totalHits, scoreDocs, scoreDocs.length == 0 ? Float.NaN : scoreDocs[0].score);
+   }
+
+   /**
+    * A score doc that also carries the nid of the component the document indexes.
+    */
+   public static class NidScoreDoc extends ScoreDoc {
+      final int nid;
+
+      NidScoreDoc(int doc, float score, int nid) {
+         super(doc, score);
+         this.nid = nid;
+      }
+
+      public int getNid() {
+         return nid;
       }
-      return TopDocs.merge(0, Math.min(sizeLimit, totalSize), topDocs, true);
    }
 
    public class IsaacFilteredCollector implements Collector {
-      HashMap<LeafReaderContext, LeafCollector> leafDelegates = new HashMap<>();
-      TopScoreDocCollector delegateCollector = TopScoreDocCollector.create(sizeLimit, after);
-      
+      /**
+       * Best hit first, holding at most sizeLimit distinct nids. Ordered by
+       * score then document, so a replaced hit is removed in log time.
+       */
+      final TreeSet<NidScoreDoc> hits = new TreeSet<>(BEST_FIRST);
+      final HashMap<Integer, NidScoreDoc> hitForNid = new HashMap<>();
+      long totalHits = 0;
+
       @Override
       public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
-         if (leafDelegates.get(context) == null)
-         {
-            leafDelegates.put(context, new LeafCollector() 
-            {
-               LeafCollector internalDelegate = delegateCollector.getLeafCollector(context);
-               
-               @Override
-               public void setScorer(Scorer scorer) throws IOException {
-                  internalDelegate.setScorer(scorer);
-                  
+         final FieldInfo nidFieldInfo = context.reader().getFieldInfos().fieldInfo(LuceneIndexer.FIELD_COMPONENT_NID);
+         final NumericDocValues nidValues = (nidFieldInfo != null && nidFieldInfo.getDocValuesType() == DocValuesType.NUMERIC)
+               ? context.reader().getNumericDocValues(LuceneIndexer.FIELD_COMPONENT_NID) : null;
+         if (nidValues == null) {
+            LOG.trace("No nid doc values in segment, reading stored fields");
+         }
+
+         return new LeafCollector() {
+            Scorer scorer;
+
+            @Override
+            public void setScorer(Scorer scorer) throws IOException {
+               this.scorer = scorer;
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+               final float score = scorer.score();
+               final int globalDoc = context.docBase + doc;
+
+               if (after != null && (score > after.score || (score == after.score && globalDoc <= after.doc))) {
+                  //Belongs to a previous page, don't evaluate filters, or collect.
+                  return;
+               }
+
+               final int componentNid;
+               if (nidValues != null && nidValues.advanceExact(doc)) {
+                  componentNid = (int) nidValues.longValue();
+               } else {
+                  componentNid = context.reader().document(doc).getField(LuceneIndexer.FIELD_COMPONENT_NID)
+                        .numericValue()
+                        .intValue();
                }
-               
-               @Override
-               public void collect(int doc) throws IOException {
-                  boolean filterPass = false;
-                  int afterDoc = (after == null ? 0 : after.doc) - context.docBase;
-                  if (doc < afterDoc)
-                  {
-                     //This little optimization prevents us from re-evaluating filters and from re-collecting the same docs more than once
-                      LOG.trace("skipping filter eval and collect for item before page 1");
-                      filterPass = false;
-                  }
-                  if (filter != null)
-                  {
-                    final Document document = context.reader().document(doc);
-                    final int componentNid = document.getField(LuceneIndexer.FIELD_COMPONENT_NID)
-                            .numericValue()
-                            .intValue();
-                    filterPass = filter.test(componentNid);
-                  }
-                  else
-                  {
-                     filterPass = true;
-                  }
-                  
-                  if (filterPass)
-                  {
-                     internalDelegate.collect(doc);
-                  }
+
+               if (filter != null && !filter.test(componentNid)) {
+                  return;
                }
-            });
+               totalHits++;
+               collectHit(new NidScoreDoc(globalDoc, score, componentNid));
+            }
+         };
+      }
+
+      private void collectHit(NidScoreDoc hit) {
+         final NidScoreDoc existing = hitForNid.get(hit.nid);
+         if (existing != null) {
+            if (BEST_FIRST.compare(hit, existing) < 0) {
+               hits.remove(existing);
+               hits.add(hit);
+               hitForNid.put(hit.nid, hit);
+            }
+            return;
+         }
+         if (hits.size() < sizeLimit) {
+            hits.add(hit);
+            hitForNid.put(hit.nid, hit);
+         } else if (!hits.isEmpty() && BEST_FIRST.compare(hit, hits.last()) < 0) {
+            hitForNid.remove(hits.pollLast().nid);
+            hits.add(hit);
+            hitForNid.put(hit.nid, hit);
          }
-         return leafDelegates.get(context);
       }
 
       @Override
       public boolean needsScores() {
-         return delegateCollector.needsScores();
+         return true;
       }
       
       public TopDocs topDocs() {
-         return delegateCollector.topDocs();
+         final NidScoreDoc[] sorted = hits.toArray(new NidScoreDoc[hits.size()]);
+         return new TopDocs(totalHits, sorted, sorted.length == 0 ? Float.NaN : sorted[0].score);
       }
    }
 }
@@ -54,6 +54,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -74,21 +75,24 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.document.StoredField;
-import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexFormatTooOldException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LogByteSizeMergePolicy;
 import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
@@ -146,9 +150,8 @@ public abstract class LuceneIndexer
       UNINDEXED_FUTURE.complete(Long.MIN_VALUE);
    }
 
-   // don't need to analyze this - and even though it is an integer, we index it as a string, as that is faster when we are only doing
-   // exact matches.
-   protected static final String FIELD_SEMANTIC_ASSEMBLAGE_NID = "_semantic_type_sequence_" + PerFieldAnalyzer.WHITE_SPACE_FIELD_MARKER;
+   // The nid fields that searches are restricted by are indexed as points and doc values, not as analyzed strings - see addNidFilterField.
+   protected static final String FIELD_SEMANTIC_ASSEMBLAGE_NID = "_semantic_assemblage_nid_";
    
    //don't need to analyze, we only ever put a single char here - "t" - when a description is on a concept that is a part of the metadata tree.
    protected static final String FIELD_CONCEPT_IS_METADATA = "_concept_metadata_marker_" + PerFieldAnalyzer.WHITE_SPACE_FIELD_MARKER;
@@ -156,9 +159,13 @@ public abstract class LuceneIndexer
 
    // this isn't indexed
    public static final String FIELD_COMPONENT_NID = "_component_nid_";
-   private static final String FIELD_INDEXED_MODULE_NID = "_module_content_";
-   private static final String FIELD_INDEXED_PATH_NID = "_path_content_";
-   private static final String FIELD_INDEXED_AUTHOR_NID = "_author_content_";
+   private static final String FIELD_INDEXED_MODULE_NID = "_module_nid_";
+   private static final String FIELD_INDEXED_PATH_NID = "_path_nid_";
+   private static final String FIELD_INDEXED_AUTHOR_NID = "_author_nid_";
+
+   // Bump this when the fields of the index change in an incompatible way, to force a reindex of existing indexes on startup.
+   private static final int INDEX_FORMAT_VERSION = 2;
+   private static final String INDEX_FORMAT_FILE = "indexFormatVersion.txt";
    
    private final Cache<Integer, ScoreDoc> lastDocCache = Caffeine.newBuilder().maximumSize(100).build();
 
@@ -207,6 +214,9 @@ public abstract class LuceneIndexer
    private final String indexName;
    
    private final ReentrantLock reindexLock = new ReentrantLock();
+
+   /** The per-thread segments of the batch-reindex in progress, or null, if documents go straight to the index writer. */
+   private volatile BatchSegments batchSegments = null;
    
    //~--- constructors --------------------------------------------------------
 
@@ -231,6 +241,21 @@ public abstract class LuceneIndexer
       return config;
    }
 
+   /**
+    * The config for the writer of a single batch-reindex segment.  Every worker thread holds one of these, so the buffer
+    * is smaller than that of the main writer.  The segments are merged once, after they are added to the index, so
+    * merging within a segment would only rewrite the same documents twice.
+    */
+   private IndexWriterConfig getBatchSegmentWriterConfig()
+   {
+      IndexWriterConfig config = new IndexWriterConfig(new PerFieldAnalyzer());
+      config.setRAMBufferSizeMB(64);
+      config.setMergePolicy(NoMergePolicy.INSTANCE);
+      config.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+      config.setSimilarity(new ShortTextSimilarity());
+      return config;
+   }
+
    //~--- methods -------------------------------------------------------------
 
    /**
@@ -242,6 +267,7 @@ public abstract class LuceneIndexer
          this.lastDocCache.invalidateAll();;
          //When we wipe the index, write out the data store ID that we know will apply to anything we index going forward
          Files.write(getDataStorePath().resolve(DATASTORE_ID_FILE), Get.assemblageService().getDataStoreId().get().toString().getBytes());
+         Files.write(getDataStorePath().resolve(INDEX_FORMAT_FILE), Integer.toString(INDEX_FORMAT_VERSION).getBytes());
       } catch (IOException ex) {
          throw new RuntimeException(ex);
       }
@@ -314,6 +340,29 @@ public abstract class LuceneIndexer
       return Long.MIN_VALUE;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void indexForBatchReindex(Chronology chronicle) {
+      final BatchSegments batch = this.batchSegments;
+
+      if (batch == null) {
+         indexNow(chronicle);
+         return;
+      }
+
+      if (this.enabled && indexChronicle(chronicle)) {
+         try {
+            batch.getWriter().addDocument(new AddDocument(chronicle).buildDocument());
+         } catch (IOException ex) {
+            throw new RuntimeException(ex);
+         }
+      }
+      // The content won't be searchable until the batch is complete, there is no generation to wait for.
+      releaseLatch(chronicle.getNid(), Long.MIN_VALUE);
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -501,43 +550,56 @@ public abstract class LuceneIndexer
 
       if (amp.getAuthors() != null && !amp.getAuthors().isEmpty())
       {
-         BooleanQuery.Builder inner = new BooleanQuery.Builder();
-
-         for (Integer authorNid : amp.getAuthors().asArray())
-         {
-            inner.add(new TermQuery(new Term(FIELD_INDEXED_AUTHOR_NID + PerFieldAnalyzer.WHITE_SPACE_FIELD_MARKER,
-                  authorNid.toString())), Occur.SHOULD);
-         }
-         bq.add(inner.build(), Occur.MUST);
+         bq.add(buildNidFilter(FIELD_INDEXED_AUTHOR_NID, amp.getAuthors().asArray()), Occur.FILTER);
       }
 
       if (amp.getModules() != null && !amp.getModules().isEmpty())
       {
-         BooleanQuery.Builder inner = new BooleanQuery.Builder();
-
-         for (Integer moduleNid : amp.getModules().asArray())
-         {
-            inner.add(new TermQuery(new Term(FIELD_INDEXED_MODULE_NID + PerFieldAnalyzer.WHITE_SPACE_FIELD_MARKER,
-                  moduleNid.toString())), Occur.SHOULD);
-         }
-         bq.add(inner.build(), Occur.MUST);
+         bq.add(buildNidFilter(FIELD_INDEXED_MODULE_NID, amp.getModules().asArray()), Occur.FILTER);
       }
       
       if (amp.getPaths() != null && !amp.getPaths().isEmpty())
       {
-         BooleanQuery.Builder inner = new BooleanQuery.Builder();
-
-         for (Integer pathNid : amp.getPaths().asArray())
-         {
-            inner.add(new TermQuery(new Term(FIELD_INDEXED_PATH_NID + PerFieldAnalyzer.WHITE_SPACE_FIELD_MARKER,
-                  pathNid.toString())), Occur.SHOULD);
-         }
-         bq.add(inner.build(), Occur.MUST);
+         bq.add(buildNidFilter(FIELD_INDEXED_PATH_NID, amp.getPaths().asArray()), Occur.FILTER);
       }
 
       return bq.build();
    }
 
+   /**
+    * Index a nid in a field that searches can be restricted by, with {@link #buildNidFilter(String, int...)}.  The nid is 
+    * indexed as a point, for restrictions that select few documents, and as a doc value, for restrictions that are checked 
+    * against the few documents that a more selective part of the query matched.  Neither requires analysis.
+    *
+    * @param doc the document to add the field to
+    * @param field the field name
+    * @param nid the nid to index.  Call repeatedly to index more than one nid in the same field.
+    */
+   protected static void addNidFilterField(Document doc, String field, int nid)
+   {
+      doc.add(new IntPoint(field, nid));
+      doc.add(new SortedNumericDocValuesField(field, nid));
+   }
+
+   /**
+    * Build a query that matches the documents with any of the nids in a field indexed by 
+    * {@link #addNidFilterField(Document, String, int)}.  Add the result to a query with {@link Occur#FILTER}, so it 
+    * doesn't contribute to the score, and is eligible for the query cache of the searcher.
+    *
+    * @param field the field name
+    * @param nids the nids to match
+    * @return the filter query
+    */
+   protected static Query buildNidFilter(String field, int... nids)
+   {
+      if (nids.length == 1)
+      {
+         // let lucene decide whether to lead with the points, or to verify the matches of the rest of the query against the doc values
+         return new IndexOrDocValuesQuery(IntPoint.newExactQuery(field, nids[0]), SortedNumericDocValuesField.newSlowExactQuery(field, nids[0]));
+      }
+      return IntPoint.newSetQuery(field, nids);
+   }
+
    /**
     * Increment indexed item count.  Just increments the stats counters.
     *
@@ -638,7 +700,7 @@ public abstract class LuceneIndexer
     * @return the query newly modified query that takes into account the semantic restriction
     */
    protected Query restrictToSemantic(Query query, int[] semanticAssemblageNid) {
-      final ArrayList<Integer> nullSafe = new ArrayList<>();
+      final List<Integer> nullSafe = new ArrayList<>();
 
       if (semanticAssemblageNid != null) {
          for (final Integer i: semanticAssemblageNid) {
@@ -650,18 +712,13 @@ public abstract class LuceneIndexer
 
       if (!nullSafe.isEmpty()) {
          final BooleanQuery.Builder outerWrapQueryBuilder = new BooleanQuery.Builder();
-;
 
          outerWrapQueryBuilder.add(query, Occur.MUST);
 
-         final BooleanQuery.Builder wrapBuilder = new BooleanQuery.Builder();
+         // require at least one of the semanticAssemblageNids to match.
+         final int[] assemblageNids = nullSafe.stream().mapToInt(Integer::intValue).toArray();
 
-         // or together the semanticAssemblageNid, but require at least one of them to match.
-         nullSafe.forEach((i) -> {
-            wrapBuilder.add(new TermQuery(new Term(FIELD_SEMANTIC_ASSEMBLAGE_NID, i.toString())), Occur.SHOULD);
-         });
-
-         return outerWrapQueryBuilder.add(wrapBuilder.build(), Occur.MUST).build();
+         return outerWrapQueryBuilder.add(buildNidFilter(FIELD_SEMANTIC_ASSEMBLAGE_NID, assemblageNids), Occur.FILTER).build();
       } else {
          return query;
       }
@@ -727,44 +784,24 @@ public abstract class LuceneIndexer
 
          // We're only going to return up to what was requested
          List<SearchResult> results = new ArrayList<>(Math.min(500, internalSize)); // Use page size, only up to 500 for our pre-allocation
-         HashSet<Integer> includedComponentNids = new HashSet<>();
-         boolean complete = false; // i.e., results.size() < sizeLimit
 
          ScoreDoc after = getAfterScoreDoc(q, filter, internalPage, internalSize, targetGeneration);
 
-         // Note, we cannot just ask lucene for the same page size / result count as we are asked for, because lucene may have multiple versions
-         // of a component indexed, which each match the query. However, since we only return nids, not versions, these results get merged.
-         // We will ask lucene for a few extra results up front, and then keep going until the requested number of docs are found, or no more
-         // matches/results
-         while (!complete) {
-            
-            //We use this API for search even when we don't have a filter, because this also enables parallel searching in the lower levels of lucene.
-            TopDocs topDocs = searcher.search(q, new IsaacFilteredCollectorManager(filter, Math.min(500, internalSize), after));
-
-            // If no scoreDocs exist, we're done
-            if (topDocs.scoreDocs.length == 0) {
-               complete = true;
-               LOG.debug("Search exhausted after finding only {} results (of {} requested) from query", results.size(), internalSize);
-            } else {
-               for (ScoreDoc hit : topDocs.scoreDocs) {
-                  LOG.trace("Hit: {} Score: {}", new Object[] { hit.doc, hit.score });
-
-                  // Save the last doc to search after later, if needed
-                  after = hit;
-                  Document doc = searcher.doc(hit.doc);
-                  int componentNid = doc.getField(FIELD_COMPONENT_NID).numericValue().intValue();
-                  if (includedComponentNids.contains(componentNid)) {
-                     continue;
-                  } else {
-                     includedComponentNids.add(componentNid);
-                     results.add(new ComponentSearchResult(componentNid, hit.score));
-                     if (results.size() == internalSize) {
-                        complete = true;
-                        break;
-                     }
-                  }
-               }
-            }
+         // Lucene may have multiple versions of a component indexed, which each match the query. However, since we only return nids, 
+         // not versions, these results get merged. The collector merges them by nid as it collects, so a single search returns
+         // a full page of distinct components.
+         //We use this API for search even when we don't have a filter, because this also enables parallel searching in the lower levels of lucene.
+         TopDocs topDocs = searcher.search(q, new IsaacFilteredCollectorManager(filter, internalSize, after));
+
+         for (ScoreDoc hit : topDocs.scoreDocs) {
+            LOG.trace("Hit: {} Score: {}", new Object[] { hit.doc, hit.score });
+
+            // Save the last doc to search after later, if needed
+            after = hit;
+            results.add(new ComponentSearchResult(((IsaacFilteredCollectorManager.NidScoreDoc) hit).getNid(), hit.score));
+         }
+         if (results.size() < internalSize) {
+            LOG.debug("Search exhausted after finding only {} results (of {} requested) from query", results.size(), internalSize);
          }
          LOG.debug("Returning {} results from query", results.size());
          if (lastDoc != null)
@@ -950,6 +987,15 @@ public abstract class LuceneIndexer
          
          LOG.info("Index: {} " + (reindexRequired ? "" : " data store id {} "), this.indexFolder.getAbsolutePath(), getDataStoreId() );
 
+         if (!reindexRequired && getIndexFormatVersion() != INDEX_FORMAT_VERSION)
+         {
+            LOG.warn("Lucene index format of '{}' is {}, but {} is required.  Reindexing!", getIndexerName(), getIndexFormatVersion(), INDEX_FORMAT_VERSION);
+            RecursiveDelete.delete(this.indexFolder);
+            this.databaseValidity = DataStoreStartState.NO_DATASTORE;
+            this.indexFolder.mkdirs();
+            reindexRequired = true;
+         }
+
          final Directory indexDirectory = new MMapDirectory(this.indexFolder.toPath()); // switch over to MMapDirectory - in theory - this gives us back some
          // room on the JDK stack, letting the OS directly manage the caching of the index files - and more importantly, gives us a huge
          // performance boost during any operation that tries to do multi-threaded reads of the index (like the SOLOR rules processing) because
@@ -1209,6 +1255,22 @@ public abstract class LuceneIndexer
       return Optional.empty();
    }
 
+   /**
+    * @return the format version of the fields in the index, or 0, if the index predates format versions.
+    */
+   private int getIndexFormatVersion() {
+      Path p = getDataStorePath().resolve(INDEX_FORMAT_FILE);
+      try {
+         if (p.toFile().isFile())
+         {
+            return Integer.parseInt(new String(Files.readAllBytes(p)).trim());
+         }
+      } catch (IOException | NumberFormatException e) {
+         LOG.error("Error reading index format version from {}", p);
+      }
+      return 0;
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -1220,6 +1282,58 @@ public abstract class LuceneIndexer
       }
       clearIndexedStatistics();
       clearIndex();
+      discardBatchSegments();
+      try {
+         this.batchSegments = new BatchSegments(new File(this.indexFolder.getParentFile(), this.indexName + "-batch"));
+      } catch (IOException ex) {
+         throw new RuntimeException(ex);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void completeBatchReindex() {
+      final BatchSegments batch = this.batchSegments;
+
+      if (batch == null) {
+         return;
+      }
+
+      this.batchSegments = null;
+      try {
+         final Directory[] segments = batch.closeWriters();
+
+         if (segments.length > 0) {
+            this.indexWriter.addIndexes(segments);
+         }
+
+         LOG.info("Added {} batch segments to {}", segments.length, getIndexerName());
+      } catch (IOException ex) {
+         throw new RuntimeException(ex);
+      } finally {
+         batch.delete();
+      }
+      commitWriter();
+   }
+
+   /**
+    * Close and delete the segments of a batch-reindex that did not complete, if any.
+    */
+   private void discardBatchSegments() {
+      final BatchSegments batch = this.batchSegments;
+
+      if (batch != null) {
+         this.batchSegments = null;
+         try {
+            batch.closeWriters();
+         } catch (IOException ex) {
+            LOG.warn("Error closing abandoned batch segments of " + getIndexerName(), ex);
+         } finally {
+            batch.delete();
+         }
+      }
    }
 
    /**
@@ -1227,6 +1341,7 @@ public abstract class LuceneIndexer
     */
    @Override
    public void finishBatchReindex() {
+      discardBatchSegments();
       if (reindexLock.isHeldByCurrentThread()) {
          reindexLock.unlock();
          LOG.info("unlocking after reindex");
@@ -1268,6 +1383,105 @@ public abstract class LuceneIndexer
       }
    }
    
+   /**
+    * The segments of a batch-reindex.  Each thread that indexes during the batch gets its own writer, over its own
+    * directory, so the threads don't contend on the main index writer.  The segments are added to the index with
+    * {@link IndexWriter#addIndexes(Directory...)} once all the content has been indexed.
+    */
+   private class BatchSegments {
+      private final File batchFolder;
+      private final AtomicInteger segmentCount = new AtomicInteger();
+      private final ConcurrentLinkedQueue<BatchSegment> segments = new ConcurrentLinkedQueue<>();
+      private final ThreadLocal<BatchSegment> threadSegment = ThreadLocal.withInitial(() -> newSegment());
+
+      public BatchSegments(File batchFolder) throws IOException {
+         this.batchFolder = batchFolder;
+         // Leftovers of a batch that was interrupted by a crash
+         RecursiveDelete.delete(batchFolder);
+         batchFolder.mkdirs();
+      }
+
+      private BatchSegment newSegment() {
+         try {
+            final Directory directory = new MMapDirectory(new File(this.batchFolder, "segment-" + this.segmentCount.getAndIncrement()).toPath());
+            final BatchSegment segment = new BatchSegment(directory, new IndexWriter(directory, getBatchSegmentWriterConfig()));
+            this.segments.add(segment);
+            return segment;
+         } catch (IOException ex) {
+            throw new RuntimeException(ex);
+         }
+      }
+
+      /**
+       * @return the writer of the calling thread's segment.
+       */
+      public IndexWriter getWriter() {
+         return this.threadSegment.get().writer;
+      }
+
+      /**
+       * Close the writers of all segments, committing their content.  Must only be called once all indexing threads 
+       * are done with the batch.
+       * 
+       * @return the directories of the segments, which remain open until {@link #delete()} is called.
+       * @throws IOException
+       */
+      public Directory[] closeWriters() throws IOException {
+         final List<Directory> directories = new ArrayList<>();
+         IOException firstException = null;
+
+         for (BatchSegment segment : this.segments) {
+            try {
+               segment.writer.close();
+               directories.add(segment.directory);
+            } catch (IOException ex) {
+               if (firstException == null) {
+                  firstException = ex;
+               }
+            }
+         }
+
+         if (firstException != null) {
+            throw firstException;
+         }
+
+         return directories.toArray(new Directory[directories.size()]);
+      }
+
+      /**
+       * Close the segment directories, and remove them from disk.
+       */
+      public void delete() {
+         for (BatchSegment segment : this.segments) {
+            try {
+               segment.directory.close();
+            } catch (IOException ex) {
+               LOG.warn("Error closing batch segment directory", ex);
+            }
+         }
+
+         this.segments.clear();
+         try {
+            RecursiveDelete.delete(this.batchFolder);
+         } catch (IOException ex) {
+            LOG.warn("Unable to delete the batch segments in " + this.batchFolder.getAbsolutePath(), ex);
+         }
+      }
+   }
+
+   /**
+    * A writer, and the directory it writes to, for one thread of a batch-reindex.
+    */
+   private static class BatchSegment {
+      final Directory directory;
+      final IndexWriter writer;
+
+      BatchSegment(Directory directory, IndexWriter writer) {
+         this.directory = directory;
+         this.writer = writer;
+      }
+   }
+
    /**
     * The Class AddDocument.
     */
@@ -1295,11 +1509,7 @@ public abstract class LuceneIndexer
       @Override
       public Long get() {
          try {
-            final Document doc = new Document();
-            doc.add(new StoredField(FIELD_COMPONENT_NID,
-                    this.chronicle.getNid()));
-            Set<Integer> foundPathNids = indexStamp(chronicle, doc);
-            addFields(this.chronicle, doc, foundPathNids);
+            final Document doc = buildDocument();
             // Note that the addDocument operation could cause duplicate documents to be
             // added to the index if a new version is added after initial index
             // creation. It does this to avoid the performance penalty of
@@ -1318,6 +1528,22 @@ public abstract class LuceneIndexer
             throw new RuntimeException(ex);
          }
       }
+
+      /**
+       * Build the document for the chronicle, without adding it to any writer.
+       *
+       * @return the document
+       */
+      public Document buildDocument() {
+         final Document doc = new Document();
+         doc.add(new StoredField(FIELD_COMPONENT_NID,
+                 this.chronicle.getNid()));
+         doc.add(new NumericDocValuesField(FIELD_COMPONENT_NID,
+                 this.chronicle.getNid()));
+         Set<Integer> foundPathNids = indexStamp(chronicle, doc);
+         addFields(this.chronicle, doc, foundPathNids);
+         return doc;
+      }
       
       /**
        * Add the necessary ids to the index to represent author, module and path
@@ -1335,24 +1561,21 @@ public abstract class LuceneIndexer
          {
             if (!uniqAuthorNid.contains(sv.getAuthorNid()))
             {
-               doc.add(new TextField(FIELD_INDEXED_AUTHOR_NID + PerFieldAnalyzer.WHITE_SPACE_FIELD_MARKER, 
-                     sv.getAuthorNid() + "", Field.Store.NO));
+               addNidFilterField(doc, FIELD_INDEXED_AUTHOR_NID, sv.getAuthorNid());
                incrementIndexedItemCount("Author");
                uniqAuthorNid.add(sv.getAuthorNid());
             }
             
             if (!uniqModuleNid.contains(sv.getModuleNid()))
             {
-               doc.add(new TextField(FIELD_INDEXED_MODULE_NID + PerFieldAnalyzer.WHITE_SPACE_FIELD_MARKER, 
-                     sv.getModuleNid() + "", Field.Store.NO));
+               addNidFilterField(doc, FIELD_INDEXED_MODULE_NID, sv.getModuleNid());
                incrementIndexedItemCount("Module");
                uniqModuleNid.add(sv.getModuleNid());
             }
             
             if (!uniqPathNid.contains(sv.getPathNid()))
             {
-               doc.add(new TextField(FIELD_INDEXED_PATH_NID + PerFieldAnalyzer.WHITE_SPACE_FIELD_MARKER, 
-                     sv.getPathNid() + "", Field.Store.NO));
+               addNidFilterField(doc, FIELD_INDEXED_PATH_NID, sv.getPathNid());
                incrementIndexedItemCount("Path");
                uniqPathNid.add(sv.getPathNid());
             }
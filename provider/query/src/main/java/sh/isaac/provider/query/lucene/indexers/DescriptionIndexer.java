@@ -134,7 +134,7 @@ public class DescriptionIndexer extends LuceneIndexer
     * @param semanticChronology the semantic chronology
     */
    private void indexDescription(Document doc,SemanticChronology semanticChronology, Set<Integer> pathNids) {
-      doc.add(new TextField(FIELD_SEMANTIC_ASSEMBLAGE_NID, semanticChronology.getAssemblageNid() + "", Field.Store.NO));
+      addNidFilterField(doc, FIELD_SEMANTIC_ASSEMBLAGE_NID, semanticChronology.getAssemblageNid());
 
       String                      lastDescText     = null;
       String                      lastDescType     = null;
@@ -201,7 +201,7 @@ public class DescriptionIndexer extends LuceneIndexer
       
       for (Integer i : uniqueDescriptionTypes)
       {
-         addField(doc, FIELD_INDEXED_DESCRIPTION_TYPE_NID, i.toString(), false);
+         addNidFilterField(doc, FIELD_INDEXED_DESCRIPTION_TYPE_NID, i);
       }
 
       final Set<String> uniqueExtensionTypes = new HashSet<>();
@@ -279,14 +279,7 @@ public class DescriptionIndexer extends LuceneIndexer
       if (descriptionTypes != null && descriptionTypes.length > 0) {
          final BooleanQuery.Builder outerWrapQueryBuilder = new BooleanQuery.Builder();
          outerWrapQueryBuilder.add(q, Occur.MUST);
-         
-         final BooleanQuery.Builder innerQueryBuilder = new BooleanQuery.Builder();
-         for (Integer i : descriptionTypes)
-         {
-            innerQueryBuilder.add(new TermQuery(new Term(FIELD_INDEXED_DESCRIPTION_TYPE_NID + PerFieldAnalyzer.WHITE_SPACE_FIELD_MARKER, i.toString())), Occur.SHOULD);
-         }
-         
-         outerWrapQueryBuilder.add(innerQueryBuilder.build(), Occur.MUST);
+         outerWrapQueryBuilder.add(buildNidFilter(FIELD_INDEXED_DESCRIPTION_TYPE_NID, descriptionTypes), Occur.FILTER);
          q = outerWrapQueryBuilder.build();
       }
       
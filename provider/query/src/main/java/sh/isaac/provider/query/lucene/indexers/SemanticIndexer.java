@@ -158,9 +158,7 @@ public class SemanticIndexer
    protected void addFields(Chronology chronicle, Document doc, Set<Integer> pathNids) {
       final SemanticChronology semanticChronology = (SemanticChronology) chronicle;
 
-      doc.add(new TextField(FIELD_SEMANTIC_ASSEMBLAGE_NID,
-                            semanticChronology.getAssemblageNid() + "",
-                            Field.Store.NO));
+      addNidFilterField(doc, FIELD_SEMANTIC_ASSEMBLAGE_NID, semanticChronology.getAssemblageNid());
 
       for (final Version sv: semanticChronology.getVersionList()) {
          if (sv instanceof DynamicVersion) {
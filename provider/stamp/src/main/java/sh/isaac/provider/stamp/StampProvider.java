@@ -39,6 +39,8 @@
 
 package sh.isaac.provider.stamp;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -56,7 +58,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.OptionalInt;
 import java.util.OptionalLong;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -85,6 +86,7 @@ import sh.isaac.api.commit.StampService;
 import sh.isaac.api.commit.UncommittedStamp;
 import sh.isaac.api.component.semantic.version.DescriptionVersion;
 import sh.isaac.api.coordinate.ManifoldCoordinate;
+import sh.isaac.api.datastore.DataStore;
 import sh.isaac.api.datastore.ExtendedStore;
 import sh.isaac.api.datastore.ExtendedStoreData;
 import sh.isaac.api.task.TimedTask;
@@ -111,6 +113,11 @@ public class StampProvider
     */
    private static final String STAMP_MANAGER_DATA_FILENAME = "stamp-manager.data";
 
+   /**
+    * The stamp table data file, which replaces the {@link #STAMP_MANAGER_DATA_FILENAME} file.
+    */
+   private static final String STAMP_TABLE_DATA_FILENAME = "stamp-table.data";
+
    /**
     * The Constant DEFAULT_STAMP_MANAGER_FOLDER.
     */
@@ -135,20 +142,15 @@ public class StampProvider
    private final AtomicInteger nextStampSequence = new AtomicInteger(FIRST_STAMP_SEQUENCE);
 
    /**
-    * Persistent map of stamp sequences to a Stamp object.
+    * Persistent columnar table of stamps, indexed by stamp sequence.
     */
-   private final ConcurrentHashMap<Stamp, Integer> stampMap = new ConcurrentHashMap<>();
+   private final StampTable stampTable = new StampTable();
 
    /**
     * The database validity.
     */
    private DataStoreStartState databaseValidity = DataStoreStartState.NOT_YET_CHECKED;
 
-   /**
-    * The stamp sequence path nid map.
-    */
-   ConcurrentHashMap<Integer, Integer> stampSequence_PathNid_Map = new ConcurrentHashMap<>();
-
    /**
     * The db folder path.
     */
@@ -159,12 +161,12 @@ public class StampProvider
     */
    private Path stampManagerFolder;
 
+   private ExtendedStore dataStore = null;
+
    /**
-    * Persistent as a result of reading and writing the stampMap.
+    * The store that logs stamp assignments with its writes, when stamps are kept in the local file store.
     */
-   private final ConcurrentHashMap<Integer, Stamp> inverseStampMap;
-   
-   private ExtendedStore dataStore = null;
+   private DataStore stampLog = null;
    private ExtendedStoreData<Integer, Stamp> sequenceToStamp; 
    private ExtendedStoreData<Integer, UncommittedStamp> sequenceToUncommittedStamp;
 
@@ -181,7 +183,6 @@ public class StampProvider
       Path       dataStorePath        = configurationService.getDataStoreFolderPath();
 
       this.dbFolderPath = dataStorePath.resolve("stamp-provider");
-      this.inverseStampMap    = new ConcurrentHashMap<>();
       
       if (Get.dataStore().implementsExtendedStoreAPI()) {
          dataStore = (ExtendedStore)Get.dataStore();
@@ -212,6 +213,7 @@ public class StampProvider
       else {
          Files.createDirectories(this.dbFolderPath);
          this.stampManagerFolder = this.dbFolderPath.resolve(DEFAULT_STAMP_MANAGER_FOLDER);
+         this.stampLog = Get.dataStore();
          LOG.info("DataStore does not implement extended API, local file store will be used for Stamp Manager");
       }
    }
@@ -238,10 +240,17 @@ public class StampProvider
     */
    @Override
    public void addStamp(Stamp stamp, int stampSequence) {
-      this.stampMap.put(stamp, stampSequence);
-      this.inverseStampMap.put(stampSequence, stamp);
-      if (dataStore != null) {
-         sequenceToStamp.put(stampSequence, stamp);
+      this.stampLock.lock();
+
+      try {
+         this.stampTable.put(stampSequence, stamp);
+         if (dataStore != null) {
+            sequenceToStamp.put(stampSequence, stamp);
+         } else {
+            this.stampLog.logStampAssignment(stampSequence, stamp);
+         }
+      } finally {
+         this.stampLock.unlock();
       }
       LOG.trace("Added stamp {}", stamp);
    }
@@ -455,7 +464,6 @@ public class StampProvider
             }
             else {
                LOG.info("Reading existing commit manager data. ");
-               LOG.info("Reading " + STAMP_MANAGER_DATA_FILENAME);
                
                this.databaseValidity = DataStoreStartState.EXISTING_DATASTORE;
                if (this.stampManagerFolder.resolve(DATASTORE_ID_FILE).toFile().isFile())
@@ -478,36 +486,17 @@ public class StampProvider
             
             UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get().clear();
             this.nextStampSequence.set(FIRST_STAMP_SEQUENCE);
-            this.stampMap.clear();
-            this.stampSequence_PathNid_Map.clear();
-            this.inverseStampMap.clear();
+            this.stampTable.clear();
             
             if (this.databaseValidity == DataStoreStartState.EXISTING_DATASTORE) {
-               try (DataInputStream in = new DataInputStream(
-                                             new FileInputStream(
-                                                 new File(
-                                                     this.stampManagerFolder.toFile(),
-                                                     STAMP_MANAGER_DATA_FILENAME)))) {
-                  this.nextStampSequence.set(in.readInt());
-   
-                  final int stampMapSize = in.readInt();
-   
-                  for (int i = 0; i < stampMapSize; i++) {
-                     final int   stampSequence = in.readInt();
-                     final Stamp stamp         = new Stamp(in);
-   
-                     this.stampMap.put(stamp, stampSequence);
-                     this.inverseStampMap.put(stampSequence, stamp);
-                  }
-   
-                  final int uncommittedSize = in.readInt();
-   
-                  for (int i = 0; i < uncommittedSize; i++) {
-                     UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
-                           .put(new UncommittedStamp(in), in.readInt());
-                  }
+               File stampTableFile = new File(this.stampManagerFolder.toFile(), STAMP_TABLE_DATA_FILENAME);
+               if (stampTableFile.isFile()) {
+                  readStampTableData(stampTableFile);
+               } else {
+                  readLegacyStampData(new File(this.stampManagerFolder.toFile(), STAMP_MANAGER_DATA_FILENAME));
                }
             }
+            this.stampLog.replayStampAssignments(this::replayStampAssignment);
          }
          else
          {
@@ -516,22 +505,20 @@ public class StampProvider
             this.dataStoreId = null;
             UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get().clear();
             this.nextStampSequence.set(FIRST_STAMP_SEQUENCE);
-            this.stampMap.clear();
-            this.stampSequence_PathNid_Map.clear();
-            this.inverseStampMap.clear();
+            this.stampTable.clear();
             //We put the nextStampSequence here in the MAX_VALUE slot.
             OptionalLong oi = dataStore.getSharedStoreLong(DEFAULT_STAMP_MANAGER_FOLDER + "-nextStampSequence");
             if (oi.isPresent()) {
                this.nextStampSequence.set((int)oi.getAsLong());
                sequenceToStamp.getStream().forEach(stampPair ->
                {
-                   this.stampMap.put(stampPair.getValue(), stampPair.getKey());
-                   this.inverseStampMap.put(stampPair.getKey(), stampPair.getValue());
+                   this.stampTable.put(stampPair.getKey(), stampPair.getValue());
                });
                
                sequenceToUncommittedStamp.getStream().forEach(stampPair ->
                {
                   this.UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get().put(stampPair.getValue(), stampPair.getKey());
+                  putUncommittedInTable(stampPair.getValue(), stampPair.getKey());
                });
             }
          }
@@ -542,6 +529,89 @@ public class StampProvider
       }
    }
 
+   /**
+    * Read the columnar stamp data written by {@link #writeData()}.
+    *
+    * @param stampTableFile the file to read
+    * @throws IOException
+    */
+   private void readStampTableData(File stampTableFile) throws IOException {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stampTableFile)))) {
+         this.nextStampSequence.set(in.readInt());
+
+         if (in.readInt() != StampTable.FORMAT_MAGIC || in.readInt() != StampTable.FORMAT_VERSION) {
+            throw new IOException("Unsupported stamp table format in " + stampTableFile);
+         }
+         this.stampTable.read(in);
+         readUncommittedStamps(in);
+      }
+   }
+
+   /**
+    * Read stamp data written in the format that preceded the stamp table, 
+    * one serialized stamp per stamp sequence. The data is written in the 
+    * stamp table format on the next write.
+    *
+    * @param stampDataFile the file to read
+    * @throws IOException
+    */
+   private void readLegacyStampData(File stampDataFile) throws IOException {
+      LOG.info("Reading " + STAMP_MANAGER_DATA_FILENAME);
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stampDataFile)))) {
+         this.nextStampSequence.set(in.readInt());
+
+         final int stampMapSize = in.readInt();
+
+         for (int i = 0; i < stampMapSize; i++) {
+            final int   stampSequence = in.readInt();
+            final Stamp stamp         = new Stamp(in);
+
+            this.stampTable.put(stampSequence, stamp);
+         }
+         readUncommittedStamps(in);
+      }
+   }
+
+   private void readUncommittedStamps(DataInputStream in) throws IOException {
+      final int uncommittedSize = in.readInt();
+
+      for (int i = 0; i < uncommittedSize; i++) {
+         final UncommittedStamp uncommittedStamp = new UncommittedStamp(in);
+         final int stampSequence = in.readInt();
+
+         UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
+               .put(uncommittedStamp, stampSequence);
+         putUncommittedInTable(uncommittedStamp, stampSequence);
+      }
+   }
+
+   /**
+    * Apply a stamp assignment made after the stamp data was last written.
+    */
+   private void replayStampAssignment(Stamp stamp, int stampSequence) {
+      if (!this.stampTable.contains(stampSequence) || !stamp.equals(this.stampTable.getStamp(stampSequence))) {
+         this.stampTable.put(stampSequence, stamp);
+      }
+      this.nextStampSequence.accumulateAndGet(stampSequence + 1, Math::max);
+
+      if (stamp.getTime() == Long.MAX_VALUE) {
+         UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
+               .put(new UncommittedStamp(stamp.getStatus(), stamp.getAuthorNid(), stamp.getModuleNid(), stamp.getPathNid()), 
+                     stampSequence);
+      } else {
+         // committed or canceled since it was assigned
+         UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
+               .values().remove(stampSequence);
+      }
+   }
+
+   private void putUncommittedInTable(UncommittedStamp uncommittedStamp, int stampSequence) {
+      if (!this.stampTable.contains(stampSequence)) {
+         this.stampTable.put(stampSequence, uncommittedStamp.status, Long.MAX_VALUE, uncommittedStamp.authorNid, 
+               uncommittedStamp.moduleNid, uncommittedStamp.pathNid);
+      }
+   }
+
    /**
     * Stop me.
     */
@@ -553,30 +623,21 @@ public class StampProvider
       this.databaseValidity = DataStoreStartState.NOT_YET_CHECKED;
       UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get().clear();
       this.nextStampSequence.set(FIRST_STAMP_SEQUENCE);
-      this.stampMap.clear();
-      this.stampSequence_PathNid_Map.clear();
-      this.inverseStampMap.clear();
+      this.stampTable.clear();
       this.dataStoreId = Optional.empty();
    }
 
    private void writeData() throws RuntimeException {
       if (dataStore == null) {
+         // stamps logged before the checkpoint starts are in the table written below
+         final long checkpoint = this.stampLog.startAllocationCheckpoint();
          //write to the file store
-         try (DataOutputStream out = new DataOutputStream(
+         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
                  new FileOutputStream(
-                         new File(this.stampManagerFolder.toFile(), STAMP_MANAGER_DATA_FILENAME)))) {
-            out.writeInt(this.nextStampSequence.get());
-            out.writeInt(this.stampMap.size());
-            this.stampMap.forEach(
-                    (Stamp stamp,
-                            Integer stampSequence) -> {
-                       try {
-                          out.writeInt(stampSequence);
-                          stamp.write(out);
-                       } catch (final IOException ex) {
-                          throw new RuntimeException(ex);
-                       }
-                    });
+                         new File(this.stampManagerFolder.toFile(), STAMP_TABLE_DATA_FILENAME))))) {
+            final int nextSequence = this.nextStampSequence.get();
+            out.writeInt(nextSequence);
+            this.stampTable.write(out, nextSequence);
             
             final int size = UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
                     .size();
@@ -593,6 +654,9 @@ public class StampProvider
          } catch (final IOException e) {
             throw new RuntimeException(e);
          }
+         // superseded by the stamp table data file
+         new File(this.stampManagerFolder.toFile(), STAMP_MANAGER_DATA_FILENAME).delete();
+         this.stampLog.completeAllocationCheckpoint(DataStore.LoggedAllocation.STAMPS, checkpoint);
       }
       else
       {
@@ -640,9 +704,8 @@ public class StampProvider
          return TermAux.USER.getNid();
       }
 
-      if (this.inverseStampMap.containsKey(stampSequence)) {
-         return this.inverseStampMap.get(stampSequence)
-                                    .getAuthorNid();
+      if (this.stampTable.contains(stampSequence)) {
+         return this.stampTable.getAuthorNid(stampSequence);
       }
 
       for (Map.Entry<UncommittedStamp, Integer> entry: UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
@@ -692,9 +755,8 @@ public class StampProvider
          return TermAux.UNSPECIFIED_MODULE.getNid();
       }
 
-      if (this.inverseStampMap.containsKey(stampSequence)) {
-         return this.inverseStampMap.get(stampSequence)
-                                    .getModuleNid();
+      if (this.stampTable.contains(stampSequence)) {
+         return this.stampTable.getModuleNid(stampSequence);
       }
 
       for (Map.Entry<UncommittedStamp, Integer> entry: UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
@@ -734,14 +796,8 @@ public class StampProvider
          return TermAux.DEVELOPMENT_PATH.getNid();
       }
 
-      if (this.stampSequence_PathNid_Map.containsKey(stampSequence)) {
-         return this.stampSequence_PathNid_Map.get(stampSequence);
-      }
-
-      if (this.inverseStampMap.containsKey(stampSequence)) {
-         this.stampSequence_PathNid_Map.put(stampSequence, this.inverseStampMap.get(stampSequence)
-               .getPathNid());
-         return this.stampSequence_PathNid_Map.get(stampSequence);
+      if (this.stampTable.contains(stampSequence)) {
+         return this.stampTable.getPathNid(stampSequence);
       }
 
       for (Map.Entry<UncommittedStamp, Integer> entry: UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
@@ -804,8 +860,6 @@ public class StampProvider
        if (status == Status.PRIMORDIAL) {
            throw new UnsupportedOperationException(status + " is not an assignable value.");
        }
-      final Stamp stampKey = new Stamp(status, time, authorSequence, moduleSequence, pathSequence);
-
       if (time == Long.MAX_VALUE) {
          final UncommittedStamp usp  = new UncommittedStamp(status, authorSequence, moduleSequence, pathSequence);
          final Integer          temp = UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
@@ -828,9 +882,11 @@ public class StampProvider
                LOG.trace("Putting {}, {} into uncommitted stamp to sequence map",  usp, stampSequence);
                UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
                      .put(usp, stampSequence);
-               this.inverseStampMap.put(stampSequence, stampKey);
+               this.stampTable.put(stampSequence, status, time, authorSequence, moduleSequence, pathSequence);
                if (dataStore != null) {
                   dataStore.putSharedStoreLong(DEFAULT_STAMP_MANAGER_FOLDER + "-nextStampSequence", nextStampSequence.get());
+               } else {
+                  this.stampLog.logStampAssignment(stampSequence, new Stamp(status, time, authorSequence, moduleSequence, pathSequence));
                }
                return stampSequence;
             } finally {
@@ -839,7 +895,9 @@ public class StampProvider
          }
       }
 
-      if (!this.stampMap.containsKey(stampKey)) {
+      int stampSequence = this.stampTable.find(status, time, authorSequence, moduleSequence, pathSequence);
+
+      if (stampSequence < 0) {
          // maybe have a few available in an atomic queue, and put back
          // if not used? Maybe in a thread-local?
          // Have different sequences, and have the increments be equal to the
@@ -847,14 +905,16 @@ public class StampProvider
          this.stampLock.lock();
 
          try {
-            if (!this.stampMap.containsKey(stampKey)) {
-               OptionalInt stampValue = OptionalInt.of(this.nextStampSequence.getAndIncrement());
+            stampSequence = this.stampTable.find(status, time, authorSequence, moduleSequence, pathSequence);
+            if (stampSequence < 0) {
+               stampSequence = this.nextStampSequence.getAndIncrement();
 
-               this.inverseStampMap.put(stampValue.getAsInt(), stampKey);
-               this.stampMap.put(stampKey, stampValue.getAsInt());
+               this.stampTable.put(stampSequence, status, time, authorSequence, moduleSequence, pathSequence);
                if (dataStore != null) {
                   dataStore.putSharedStoreLong(DEFAULT_STAMP_MANAGER_FOLDER + "-nextStampSequence", nextStampSequence.get());
-                  sequenceToStamp.put(stampValue.getAsInt(), stampKey);
+                  sequenceToStamp.put(stampSequence, new Stamp(status, time, authorSequence, moduleSequence, pathSequence));
+               } else {
+                  this.stampLog.logStampAssignment(stampSequence, new Stamp(status, time, authorSequence, moduleSequence, pathSequence));
                }
             }
          } finally {
@@ -862,7 +922,7 @@ public class StampProvider
          }
       }
 
-      return this.stampMap.get(stampKey);
+      return stampSequence;
    }
 
    /**
@@ -873,7 +933,7 @@ public class StampProvider
    @Override
    public IntStream getStampSequences() {
       return IntStream.rangeClosed(FIRST_STAMP_SEQUENCE, this.nextStampSequence.get())
-                      .filter((stampSequence) -> this.inverseStampMap.containsKey(stampSequence));
+                      .filter((stampSequence) -> this.stampTable.contains(stampSequence));
    }
 
    /**
@@ -888,9 +948,9 @@ public class StampProvider
          return Status.CANCELED;
       }
 
-      if (this.inverseStampMap.containsKey(stampSequence)) {
-         return this.inverseStampMap.get(stampSequence)
-                                    .getStatus();
+      final Status status = this.stampTable.getStatus(stampSequence);
+      if (status != null) {
+         return status;
       }
 
       for (Map.Entry<UncommittedStamp, Integer> entry: UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
@@ -915,9 +975,8 @@ public class StampProvider
          return Long.MIN_VALUE;
       }
 
-      if (this.inverseStampMap.containsKey(stampSequence)) {
-         return this.inverseStampMap.get(stampSequence)
-                                    .getTime();
+      if (this.stampTable.contains(stampSequence)) {
+         return this.stampTable.getTime(stampSequence);
       }
 
       if (UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
@@ -926,8 +985,7 @@ public class StampProvider
       }
 
       throw new NoSuchElementException(
-          "No stampSequence found: " + stampSequence + " map size: " + this.stampMap.size() + " inverse map size: " +
-          this.inverseStampMap.size());
+          "No stampSequence found: " + stampSequence + " stamp table size: " + this.stampTable.size());
    }
 
    @Override
@@ -937,8 +995,9 @@ public class StampProvider
           return new Stamp(Status.CANCELED, Long.MIN_VALUE, TermAux.USER.getNid(), TermAux.UNSPECIFIED_MODULE.getNid(), TermAux.DEVELOPMENT_PATH.getNid());
       }
 
-      if (this.inverseStampMap.containsKey(stampSequence)) {
-         return this.inverseStampMap.get(stampSequence);
+      final Stamp stamp = this.stampTable.getStamp(stampSequence);
+      if (stamp != null) {
+         return stamp;
       }
 
       for (Map.Entry<UncommittedStamp, Integer> entry: UNCOMMITTED_STAMP_TO_STAMP_SEQUENCE_MAP.get()
@@ -950,8 +1009,7 @@ public class StampProvider
       }
 
       throw new NoSuchElementException(
-         "No stampSequence found: " + stampSequence + " map size: " + this.stampMap.size() + " inverse map size: " +
-         this.inverseStampMap.size());
+         "No stampSequence found: " + stampSequence + " stamp table size: " + this.stampTable.size());
    }
 
    /**
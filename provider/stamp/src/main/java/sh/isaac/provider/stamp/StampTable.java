@@ -0,0 +1,411 @@
+/* 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributions from 2013-2017 where performed either by US government 
+ * employees, or under US Veterans Health Administration contracts. 
+ *
+ * US Veterans Health Administration contributions by government employees
+ * are work of the U.S. Government and are not subject to copyright
+ * protection in the United States. Portions contributed by government 
+ * employees are USGovWork (17USC §105). Not subject to copyright. 
+ * 
+ * Contribution by contractors to the US Veterans Health Administration
+ * during this period are contractually contributed under the
+ * Apache License, Version 2.0.
+ *
+ * See: https://www.usa.gov/government-works
+ * 
+ * Contributions prior to 2013:
+ *
+ * Copyright (C) International Health Terminology Standards Development Organisation.
+ * Licensed under the Apache License, Version 2.0.
+ *
+ */
+
+
+
+package sh.isaac.provider.stamp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import sh.isaac.api.Status;
+import sh.isaac.api.commit.Stamp;
+
+/**
+ * A columnar table of stamps, indexed directly by stamp sequence. Each field
+ * of a stamp is held in a primitive column, so the per stamp lookups made for
+ * every version comparison neither box the stamp sequence nor hash it.
+ *
+ * Columns are held in pages of {@link #PAGE_SIZE} stamps, so growth never
+ * copies the columns, only the (small) page directory.
+ *
+ * A primitive open addressing hash table maps stamp values to stamp
+ * sequences, to de-duplicate stamps without constructing {@link Stamp}
+ * keys. The hash table holds stamp sequences only, and candidates are
+ * compared against the columns, so an entry for a stamp sequence that has
+ * since been reassigned (for example, from uncommitted to committed) simply
+ * fails to match.
+ *
+ * All writes are synchronized on the table. Reads are not: the columns are
+ * atomic arrays, and a slot is published by writing its status last, so a
+ * reader that sees the status of a stamp sees the other fields written with
+ * it. A stamp may be replaced (for example, when an uncommitted stamp is
+ * committed), so each slot also carries a sequence counter, odd while the
+ * slot is being written, and reads of more than one field retry until they
+ * see the same even count before and after. A read that finds no stamp
+ * retries while synchronized before reporting the stamp as absent.
+ *
+ * @author kec
+ */
+class StampTable {
+   private static final int PAGE_SHIFT = 12;
+   private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+   private static final int PAGE_MASK = PAGE_SIZE - 1;
+   private static final Status[] STATUS_VALUES = Status.values();
+
+   /** Identifies the columnar format when written to disk. */
+   static final int FORMAT_MAGIC = 0x5354424C;
+   static final int FORMAT_VERSION = 1;
+
+   private volatile Page[] pages = new Page[0];
+
+   /** Open addressing hash of committed (and canceled) stamps: stamp sequence + 1, 0 if empty. */
+   private volatile int[] hashSlots = new int[1024];
+   private int hashEntries = 0;
+
+   private static final class Page {
+      /** Status ordinal + 1, 0 if there is no stamp. Written last. */
+      final AtomicIntegerArray status = new AtomicIntegerArray(PAGE_SIZE);
+      final AtomicLongArray time = new AtomicLongArray(PAGE_SIZE);
+      final AtomicIntegerArray authorNid = new AtomicIntegerArray(PAGE_SIZE);
+      final AtomicIntegerArray moduleNid = new AtomicIntegerArray(PAGE_SIZE);
+      final AtomicIntegerArray pathNid = new AtomicIntegerArray(PAGE_SIZE);
+      /** Incremented before and after each write of a slot, so odd while it is written. */
+      final AtomicIntegerArray writeCount = new AtomicIntegerArray(PAGE_SIZE);
+   }
+
+   /**
+    * Remove all stamps.
+    */
+   synchronized void clear() {
+      this.pages = new Page[0];
+      this.hashSlots = new int[1024];
+      this.hashEntries = 0;
+   }
+
+   /**
+    * Record the stamp for a stamp sequence, replacing any existing stamp for
+    * the sequence. Stamps with a time of {@code Long.MAX_VALUE} (uncommitted)
+    * are recorded in the columns, but not in the de-duplication hash.
+    */
+   synchronized void put(int stampSequence, Status status, long time, int authorNid, int moduleNid, int pathNid) {
+      final Page page = getOrCreatePage(stampSequence);
+      final int  index = stampSequence & PAGE_MASK;
+
+      page.writeCount.incrementAndGet(index);
+      page.time.set(index, time);
+      page.authorNid.set(index, authorNid);
+      page.moduleNid.set(index, moduleNid);
+      page.pathNid.set(index, pathNid);
+      page.status.set(index, status.ordinal() + 1);
+      page.writeCount.incrementAndGet(index);
+
+      if (time != Long.MAX_VALUE) {
+         addToHash(stampSequence, status, time, authorNid, moduleNid, pathNid);
+      }
+   }
+
+   void put(int stampSequence, Stamp stamp) {
+      put(stampSequence, stamp.getStatus(), stamp.getTime(), stamp.getAuthorNid(), stamp.getModuleNid(), stamp.getPathNid());
+   }
+
+   /**
+    * @return the stamp sequence of a committed or canceled stamp with these values, or -1 if there is none.
+    */
+   int find(Status status, long time, int authorNid, int moduleNid, int pathNid) {
+      int stampSequence = find(this.hashSlots, status, time, authorNid, moduleNid, pathNid);
+      if (stampSequence < 0) {
+         // The hash slots are written without a release, so a miss is checked again while synchronized.
+         synchronized (this) {
+            stampSequence = find(this.hashSlots, status, time, authorNid, moduleNid, pathNid);
+         }
+      }
+      return stampSequence;
+   }
+
+   private int find(int[] slots, Status status, long time, int authorNid, int moduleNid, int pathNid) {
+      final int   mask  = slots.length - 1;
+
+      for (int slot = hash(status, time, authorNid, moduleNid, pathNid) & mask; ; slot = (slot + 1) & mask) {
+         final int entry = slots[slot];
+
+         if (entry == 0) {
+            return -1;
+         }
+         if (matches(entry - 1, status, time, authorNid, moduleNid, pathNid)) {
+            return entry - 1;
+         }
+      }
+   }
+
+   boolean contains(int stampSequence) {
+      return page(stampSequence) != null;
+   }
+
+   /**
+    * @return the status, or null if there is no stamp for the sequence.
+    */
+   Status getStatus(int stampSequence) {
+      final Page page = page(stampSequence);
+      return page == null ? null : STATUS_VALUES[page.status.get(stampSequence & PAGE_MASK) - 1];
+   }
+
+   /**
+    * Callers must first check {@link #contains(int)}, as must the callers of
+    * the other field getters.
+    */
+   long getTime(int stampSequence) {
+      return page(stampSequence).time.get(stampSequence & PAGE_MASK);
+   }
+
+   int getAuthorNid(int stampSequence) {
+      return page(stampSequence).authorNid.get(stampSequence & PAGE_MASK);
+   }
+
+   int getModuleNid(int stampSequence) {
+      return page(stampSequence).moduleNid.get(stampSequence & PAGE_MASK);
+   }
+
+   int getPathNid(int stampSequence) {
+      return page(stampSequence).pathNid.get(stampSequence & PAGE_MASK);
+   }
+
+   Stamp getStamp(int stampSequence) {
+      final Page page = page(stampSequence);
+      if (page == null) {
+         return null;
+      }
+      final int index = stampSequence & PAGE_MASK;
+      while (true) {
+         final int count = page.writeCount.get(index);
+         if ((count & 1) == 0) {
+            final Stamp stamp = new Stamp(STATUS_VALUES[page.status.get(index) - 1], page.time.get(index),
+                  page.authorNid.get(index), page.moduleNid.get(index), page.pathNid.get(index));
+            if (page.writeCount.get(index) == count) {
+               return stamp;
+            }
+         }
+         Thread.yield();
+      }
+   }
+
+   /**
+    * @return the number of committed (or canceled) stamps in the de-duplication hash.
+    */
+   synchronized int size() {
+      return this.hashEntries;
+   }
+
+   /**
+    * Write the committed (and canceled) stamps with sequences less than
+    * {@code sequenceLimit}, one column after another.
+    */
+   synchronized void write(DataOutput out, int sequenceLimit) throws IOException {
+      final int limit = Math.min(sequenceLimit, this.pages.length * PAGE_SIZE);
+      out.writeInt(FORMAT_MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(limit);
+      final byte[] status = new byte[limit];
+      for (int i = 0; i < limit; i++) {
+         final Page page = this.pages[i >>> PAGE_SHIFT];
+         if (page != null && page.status.get(i & PAGE_MASK) != 0 && page.time.get(i & PAGE_MASK) != Long.MAX_VALUE) {
+            status[i] = (byte) page.status.get(i & PAGE_MASK);
+         }
+      }
+      out.write(status);
+      for (int i = 0; i < limit; i++) {
+         out.writeLong(status[i] == 0 ? 0 : this.pages[i >>> PAGE_SHIFT].time.get(i & PAGE_MASK));
+      }
+      for (int i = 0; i < limit; i++) {
+         out.writeInt(status[i] == 0 ? 0 : this.pages[i >>> PAGE_SHIFT].authorNid.get(i & PAGE_MASK));
+      }
+      for (int i = 0; i < limit; i++) {
+         out.writeInt(status[i] == 0 ? 0 : this.pages[i >>> PAGE_SHIFT].moduleNid.get(i & PAGE_MASK));
+      }
+      for (int i = 0; i < limit; i++) {
+         out.writeInt(status[i] == 0 ? 0 : this.pages[i >>> PAGE_SHIFT].pathNid.get(i & PAGE_MASK));
+      }
+   }
+
+   /**
+    * Read stamps written by {@link #write(DataOutput, int)}, after the
+    * format magic and version have been read and verified by the caller.
+    */
+   synchronized void read(DataInput in) throws IOException {
+      final int limit = in.readInt();
+      final byte[] status = new byte[limit];
+      in.readFully(status);
+      final long[] time = new long[limit];
+      for (int i = 0; i < limit; i++) {
+         time[i] = in.readLong();
+      }
+      final int[] authorNid = new int[limit];
+      for (int i = 0; i < limit; i++) {
+         authorNid[i] = in.readInt();
+      }
+      final int[] moduleNid = new int[limit];
+      for (int i = 0; i < limit; i++) {
+         moduleNid[i] = in.readInt();
+      }
+      final int[] pathNid = new int[limit];
+      for (int i = 0; i < limit; i++) {
+         pathNid[i] = in.readInt();
+      }
+      for (int i = 0; i < limit; i++) {
+         if (status[i] != 0) {
+            put(i, STATUS_VALUES[status[i] - 1], time[i], authorNid[i], moduleNid[i], pathNid[i]);
+         }
+      }
+   }
+
+   private Page page(int stampSequence) {
+      if (stampSequence < 0) {
+         return null;
+      }
+      Page page = pageIfPresent(this.pages, stampSequence);
+      if (page == null) {
+         // Not yet visible to this thread without synchronization, or absent.
+         synchronized (this) {
+            page = pageIfPresent(this.pages, stampSequence);
+         }
+      }
+      return page;
+   }
+
+   private static Page pageIfPresent(Page[] pages, int stampSequence) {
+      final int pageIndex = stampSequence >>> PAGE_SHIFT;
+      if (pageIndex >= pages.length) {
+         return null;
+      }
+      final Page page = pages[pageIndex];
+      if (page == null || page.status.get(stampSequence & PAGE_MASK) == 0) {
+         return null;
+      }
+      return page;
+   }
+
+   private Page getOrCreatePage(int stampSequence) {
+      final int pageIndex = stampSequence >>> PAGE_SHIFT;
+      Page[] currentPages = this.pages;
+      if (pageIndex >= currentPages.length) {
+         currentPages = Arrays.copyOf(currentPages, Math.max(pageIndex + 1, currentPages.length * 2));
+      }
+      if (currentPages[pageIndex] == null) {
+         currentPages[pageIndex] = new Page();
+      }
+      this.pages = currentPages;
+      return currentPages[pageIndex];
+   }
+
+   private boolean matches(int stampSequence, Status status, long time, int authorNid, int moduleNid, int pathNid) {
+      final Page page = pageIfPresent(this.pages, stampSequence);
+      if (page == null) {
+         return false;
+      }
+      final int index = stampSequence & PAGE_MASK;
+      while (true) {
+         final int count = page.writeCount.get(index);
+         if ((count & 1) == 0) {
+            final boolean matches = page.time.get(index) == time &&
+                  page.authorNid.get(index) == authorNid &&
+                  page.moduleNid.get(index) == moduleNid &&
+                  page.pathNid.get(index) == pathNid &&
+                  page.status.get(index) == status.ordinal() + 1;
+            if (page.writeCount.get(index) == count) {
+               return matches;
+            }
+         }
+         Thread.yield();
+      }
+   }
+
+   private void addToHash(int stampSequence, Status status, long time, int authorNid, int moduleNid, int pathNid) {
+      int[] slots = this.hashSlots;
+      int   mask  = slots.length - 1;
+      int   slot  = hash(status, time, authorNid, moduleNid, pathNid) & mask;
+
+      for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+         if (slots[slot] - 1 == stampSequence) {
+            return;
+         }
+         if (matches(slots[slot] - 1, status, time, authorNid, moduleNid, pathNid)) {
+            // The most recently recorded sequence for a stamp wins.
+            slots[slot] = stampSequence + 1;
+            return;
+         }
+      }
+      slots[slot] = stampSequence + 1;
+      this.hashEntries++;
+      if (this.hashEntries * 2 > slots.length) {
+         rehash(slots.length * 2);
+      }
+   }
+
+   /**
+    * Rebuild the hash table, dropping entries for stamp sequences that have
+    * been reassigned to stamps that are no longer hashed.
+    */
+   private void rehash(int newSize) {
+      final int[] oldSlots = this.hashSlots;
+      final int[] newSlots = new int[newSize];
+      final int   mask     = newSize - 1;
+      int         entries  = 0;
+
+      for (int entry: oldSlots) {
+         if (entry != 0) {
+            final int stampSequence = entry - 1;
+            final Page page = pageIfPresent(this.pages, stampSequence);
+            final int index = stampSequence & PAGE_MASK;
+            if (page != null && page.time.get(index) != Long.MAX_VALUE) {
+               int slot = hash(STATUS_VALUES[page.status.get(index) - 1], page.time.get(index), page.authorNid.get(index),
+                     page.moduleNid.get(index), page.pathNid.get(index)) & mask;
+               while (newSlots[slot] != 0 && newSlots[slot] != entry) {
+                  slot = (slot + 1) & mask;
+               }
+               if (newSlots[slot] == 0) {
+                  newSlots[slot] = entry;
+                  entries++;
+               }
+            }
+         }
+      }
+      this.hashEntries = entries;
+      this.hashSlots = newSlots;
+   }
+
+   private static int hash(Status status, long time, int authorNid, int moduleNid, int pathNid) {
+      long hash = time * 0x9E3779B97F4A7C15L;
+      hash = (hash ^ authorNid) * 0x9E3779B97F4A7C15L;
+      hash = (hash ^ moduleNid) * 0x9E3779B97F4A7C15L;
+      hash = (hash ^ pathNid) * 0x9E3779B97F4A7C15L;
+      hash = hash ^ status.ordinal();
+      return (int) (hash ^ (hash >>> 32));
+   }
+}